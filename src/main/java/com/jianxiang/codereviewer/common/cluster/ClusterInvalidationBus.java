@@ -0,0 +1,110 @@
+package com.jianxiang.codereviewer.common.cluster;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * @className: ClusterInvalidationBus
+ * @author: jianXiang
+ * @description: 节点间的本地缓存失效通知（Redis 发布订阅）
+ * 各节点的内存缓存只感知本节点的写入，写入方按主题发布失效键，其他节点收到后清理对应条目；
+ * 发布订阅不保证送达，订阅断开期间的通知会丢失，因此重新订阅前各主题按“全部失效”处理
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class ClusterInvalidationBus {
+
+    /**
+     * 消息格式: 来源节点 + '\n' + 主题 + '\n' + 失效键
+     */
+    private static final char SEPARATOR = '\n';
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final String channel;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Listener> listeners = new ConcurrentHashMap<>();
+
+    private volatile Disposable subscription;
+
+    private record Listener(Consumer<String> onInvalidate, Runnable onReset) {}
+
+    public ClusterInvalidationBus(ReactiveStringRedisTemplate redisTemplate,
+                                  @Value("${cluster.invalidation.channel:codereviewer:invalidation}") String channel) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+    }
+
+    /**
+     * 注册主题监听
+     *
+     * @param onInvalidate 其他节点发布的失效键
+     * @param onReset      可能漏收通知时清空该主题的全部缓存
+     */
+    public void subscribe(String topic, Consumer<String> onInvalidate, Runnable onReset) {
+        listeners.put(topic, new Listener(onInvalidate, onReset));
+    }
+
+    /**
+     * 通知其他节点失效（发送失败只记录日志，缓存由各自的兜底策略纠正）
+     */
+    public void publish(String topic, String key) {
+        redisTemplate.convertAndSend(channel, nodeId + SEPARATOR + topic + SEPARATOR + key)
+                .subscribe(null, e -> log.warn("发布缓存失效通知失败: topic={}, key={}, error={}",
+                        topic, key, e.getMessage()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // 监听容器创建时即建立连接，放进 defer 让连接失败也走重试
+        subscription = Flux.defer(() -> redisTemplate.listenToChannel(channel))
+                .doOnSubscribe(s -> log.info("订阅缓存失效通知: {}", channel))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> {
+                            log.warn("缓存失效通知订阅中断，清空本地缓存后重新订阅: {}",
+                                    signal.failure().getMessage());
+                            listeners.values().forEach(listener -> listener.onReset().run());
+                        }))
+                .subscribe(message -> dispatch(message.getMessage()),
+                        e -> log.error("缓存失效通知订阅终止", e));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private void dispatch(String message) {
+        int first = message.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : message.indexOf(SEPARATOR, first + 1);
+        if (second < 0 || message.startsWith(nodeId + SEPARATOR)) {
+            return;
+        }
+        Listener listener = listeners.get(message.substring(first + 1, second));
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onInvalidate().accept(message.substring(second + 1));
+        } catch (RuntimeException e) {
+            log.warn("处理缓存失效通知失败: {}", e.getMessage());
+        }
+    }
+}
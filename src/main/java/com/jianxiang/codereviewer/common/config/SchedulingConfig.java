@@ -0,0 +1,13 @@
+package com.jianxiang.codereviewer.common.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置
+ * 用于索引同步等后台任务
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,139 @@
+package com.jianxiang.codereviewer.common.diff;
+
+import com.jianxiang.codereviewer.common.util.ContentUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 行级增量编码
+ *
+ * 将新版本表示为对基准版本的操作序列：COPY(起始行, 行数) 复制基准版本的连续行，
+ * INSERT(行...) 插入新行。编码格式（整数均为无符号 varint）：
+ * <pre>
+ *   magic(1B)='D' | formatVersion(1B)=1 | opCount
+ *   COPY  : 0 | start | count
+ *   INSERT: 1 | lineCount | (byteLength | utf8Bytes) * lineCount
+ * </pre>
+ */
+public final class LineDelta {
+
+    private static final byte MAGIC = 'D';
+    private static final byte FORMAT_VERSION = 1;
+    private static final int OP_COPY = 0;
+    private static final int OP_INSERT = 1;
+
+    private LineDelta() {
+    }
+
+    /**
+     * 计算增量
+     *
+     * @param baseLines   基准版本的行（含换行符）
+     * @param targetLines 新版本的行（含换行符）
+     * @return 编码后的增量
+     */
+    public static byte[] encode(List<String> baseLines, List<String> targetLines) {
+        List<MyersDiff.Edit> edits = MyersDiff.diff(baseLines, targetLines);
+
+        int opCount = 0;
+        for (MyersDiff.Edit edit : edits) {
+            if (edit.type() != MyersDiff.Type.DELETE) {
+                opCount++;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MAGIC);
+        out.write(FORMAT_VERSION);
+        writeVarint(out, opCount);
+        for (MyersDiff.Edit edit : edits) {
+            switch (edit.type()) {
+                case EQUAL -> {
+                    writeVarint(out, OP_COPY);
+                    writeVarint(out, edit.aStart());
+                    writeVarint(out, edit.aLength());
+                }
+                case INSERT -> {
+                    writeVarint(out, OP_INSERT);
+                    writeVarint(out, edit.bLength());
+                    for (int i = edit.bStart(); i < edit.bEnd(); i++) {
+                        byte[] line = targetLines.get(i).getBytes(StandardCharsets.UTF_8);
+                        writeVarint(out, line.length);
+                        out.write(line, 0, line.length);
+                    }
+                }
+                case DELETE -> {
+                    // 删除的行不需要记录
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 在基准版本上应用增量，还原新版本内容
+     */
+    public static String apply(String base, byte[] delta) {
+        return apply(ContentUtil.splitLines(base), delta);
+    }
+
+    /**
+     * 在基准版本的行上应用增量，还原新版本内容
+     */
+    public static String apply(List<String> baseLines, byte[] delta) {
+        ByteBuffer in = ByteBuffer.wrap(delta);
+        if (in.get() != MAGIC || in.get() != FORMAT_VERSION) {
+            throw new IllegalArgumentException("无效的增量格式");
+        }
+
+        StringBuilder result = new StringBuilder();
+        int opCount = readVarint(in);
+        for (int op = 0; op < opCount; op++) {
+            int type = readVarint(in);
+            if (type == OP_COPY) {
+                int start = readVarint(in);
+                int count = readVarint(in);
+                if (start + count > baseLines.size()) {
+                    throw new IllegalArgumentException("增量引用的行超出基准版本范围");
+                }
+                for (int i = start; i < start + count; i++) {
+                    result.append(baseLines.get(i));
+                }
+            } else if (type == OP_INSERT) {
+                int count = readVarint(in);
+                for (int i = 0; i < count; i++) {
+                    int length = readVarint(in);
+                    result.append(new String(delta, in.position(), length, StandardCharsets.UTF_8));
+                    in.position(in.position() + length);
+                }
+            } else {
+                throw new IllegalArgumentException("未知的增量操作: " + type);
+            }
+        }
+        return result.toString();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
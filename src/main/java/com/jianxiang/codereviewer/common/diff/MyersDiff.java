@@ -0,0 +1,234 @@
+package com.jianxiang.codereviewer.common.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行级 Myers 差异算法（线性空间版本）
+ *
+ * 先去掉公共前缀/后缀，再用"中间蛇"二分递归求最短编辑脚本，空间 O(N+M)。
+ * 单个区间的编辑距离超过 maxEditCost 时放弃求最优解，直接按整段替换处理，
+ * 保证超大且差异很大的文件也能在有限时间内得到合法结果。
+ */
+public final class MyersDiff {
+
+    /**
+     * 默认的单区间最大编辑距离
+     */
+    public static final int DEFAULT_MAX_EDIT_COST = 4096;
+
+    private final int[] a;
+    private final int[] b;
+    private final boolean[] aMatched;
+    private final boolean[] bMatched;
+    private final int maxEditCost;
+
+    private MyersDiff(int[] a, int[] b, int maxEditCost) {
+        this.a = a;
+        this.b = b;
+        this.aMatched = new boolean[a.length];
+        this.bMatched = new boolean[b.length];
+        this.maxEditCost = maxEditCost;
+    }
+
+    /**
+     * 差异片段类型
+     */
+    public enum Type {
+        EQUAL, DELETE, INSERT
+    }
+
+    /**
+     * 差异片段：旧版本 [aStart, aEnd) 与新版本 [bStart, bEnd)
+     * EQUAL 两侧长度相同；DELETE 的 b 区间为空；INSERT 的 a 区间为空
+     */
+    public record Edit(Type type, int aStart, int aEnd, int bStart, int bEnd) {
+
+        public int aLength() {
+            return aEnd - aStart;
+        }
+
+        public int bLength() {
+            return bEnd - bStart;
+        }
+    }
+
+    /**
+     * 计算两组行的差异
+     */
+    public static List<Edit> diff(List<String> oldLines, List<String> newLines) {
+        return diff(oldLines, newLines, DEFAULT_MAX_EDIT_COST);
+    }
+
+    /**
+     * 计算两组行的差异
+     *
+     * @param maxEditCost 单区间最大编辑距离，超过后按整段替换
+     */
+    public static List<Edit> diff(List<String> oldLines, List<String> newLines, int maxEditCost) {
+        // 行内容映射为整数，比较时不再做字符串比较
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = new int[oldLines.size()];
+        int[] b = new int[newLines.size()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = ids.computeIfAbsent(oldLines.get(i), k -> ids.size());
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = ids.computeIfAbsent(newLines.get(i), k -> ids.size());
+        }
+
+        MyersDiff myers = new MyersDiff(a, b, Math.max(1, maxEditCost));
+        myers.compute(0, a.length, 0, b.length);
+        return myers.toEdits();
+    }
+
+    private void compute(int aStart, int aEnd, int bStart, int bEnd) {
+        // 公共前缀
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+            aMatched[aStart++] = true;
+            bMatched[bStart++] = true;
+        }
+        // 公共后缀
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+            aMatched[--aEnd] = true;
+            bMatched[--bEnd] = true;
+        }
+        if (aStart == aEnd || bStart == bEnd) {
+            return;
+        }
+        bisect(aStart, aEnd, bStart, bEnd);
+    }
+
+    /**
+     * 正反两个方向同时推进，找到重叠点（中间蛇）后分成两半递归
+     */
+    private void bisect(int aStart, int aEnd, int bStart, int bEnd) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        int[] v1 = new int[length];
+        int[] v2 = new int[length];
+        Arrays.fill(v1, -1);
+        Arrays.fill(v2, -1);
+        v1[offset + 1] = 0;
+        v2[offset + 1] = 0;
+        int delta = n - m;
+        // 差值为奇数时正向路径先与反向路径重叠
+        boolean front = (delta & 1) != 0;
+        int k1start = 0;
+        int k1end = 0;
+        int k2start = 0;
+        int k2end = 0;
+        int limit = Math.min(maxD, maxEditCost);
+
+        for (int d = 0; d < limit; d++) {
+            for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1])) {
+                    x1 = v1[k1Offset + 1];
+                } else {
+                    x1 = v1[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aStart + x1] == b[bStart + y1]) {
+                    x1++;
+                    y1++;
+                }
+                v1[k1Offset] = x1;
+                if (x1 > n) {
+                    // 越过右边界
+                    k1end += 2;
+                } else if (y1 > m) {
+                    // 越过下边界
+                    k1start += 2;
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length && v2[k2Offset] != -1) {
+                        int x2 = n - v2[k2Offset];
+                        if (x1 >= x2) {
+                            split(aStart, aEnd, bStart, bEnd, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1])) {
+                    x2 = v2[k2Offset + 1];
+                } else {
+                    x2 = v2[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aEnd - x2 - 1] == b[bEnd - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                v2[k2Offset] = x2;
+                if (x2 > n) {
+                    k2end += 2;
+                } else if (y2 > m) {
+                    k2start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length && v1[k1Offset] != -1) {
+                        int x1 = v1[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            split(aStart, aEnd, bStart, bEnd, x1, y1);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+        // 没有公共部分，或超过编辑距离上限：整段删除 + 整段插入（匹配标记保持 false）
+    }
+
+    private void split(int aStart, int aEnd, int bStart, int bEnd, int x, int y) {
+        compute(aStart, aStart + x, bStart, bStart + y);
+        compute(aStart + x, aEnd, bStart + y, bEnd);
+    }
+
+    /**
+     * 由匹配标记生成按顺序排列的差异片段
+     * 匹配行在两侧按相同顺序一一对应，未匹配的行即删除/插入
+     */
+    private List<Edit> toEdits() {
+        List<Edit> edits = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (i < a.length && !aMatched[i]) {
+                int start = i;
+                while (i < a.length && !aMatched[i]) {
+                    i++;
+                }
+                edits.add(new Edit(Type.DELETE, start, i, j, j));
+            } else if (j < b.length && !bMatched[j]) {
+                int start = j;
+                while (j < b.length && !bMatched[j]) {
+                    j++;
+                }
+                edits.add(new Edit(Type.INSERT, i, i, start, j));
+            } else {
+                int aStart = i;
+                int bStart = j;
+                while (i < a.length && j < b.length && aMatched[i] && bMatched[j]) {
+                    i++;
+                    j++;
+                }
+                edits.add(new Edit(Type.EQUAL, aStart, i, bStart, j));
+            }
+        }
+        return edits;
+    }
+}
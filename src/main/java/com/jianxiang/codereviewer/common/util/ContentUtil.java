@@ -0,0 +1,97 @@
+package com.jianxiang.codereviewer.common.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * 代码内容工具类
+ * 统计内容大小、行数等元数据
+ */
+public final class ContentUtil {
+
+    private ContentUtil() {
+    }
+
+    /**
+     * 计算 UTF-8 编码后的字节数（不创建字节数组）
+     */
+    public static long utf8Length(CharSequence content) {
+        if (content == null) {
+            return 0;
+        }
+        long length = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < content.length()
+                    && Character.isLowSurrogate(content.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 统计行数（末尾换行不额外计一行，空内容为0行）
+     */
+    public static int countLines(CharSequence content) {
+        if (content == null || content.isEmpty()) {
+            return 0;
+        }
+        int lines = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return content.charAt(content.length() - 1) == '\n' ? lines : lines + 1;
+    }
+
+    /**
+     * 按行拆分，每行保留行尾换行符，拼接后与原文完全一致
+     */
+    public static List<String> splitLines(String content) {
+        List<String> lines = new ArrayList<>();
+        if (content == null || content.isEmpty()) {
+            return lines;
+        }
+        int start = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n') {
+                lines.add(content.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < content.length()) {
+            lines.add(content.substring(start));
+        }
+        return lines;
+    }
+
+    /**
+     * 计算 SHA-256 摘要（十六进制小写）
+     */
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(newSha256().digest(data));
+    }
+
+    /**
+     * 创建 SHA-256 摘要器（用于流式计算）
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支持 SHA-256", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.jianxiang.codereviewer.common.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果（按键值翻页，不使用 OFFSET）
+ *
+ * @param <T> 数据类型
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> items;
+
+    /**
+     * 下一页游标，没有更多数据时为空
+     */
+    private Long nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 由多查询一条的结果构建分页：超过 size 说明还有下一页，游标取当前页最后一条的键值
+     *
+     * @param rows   查询结果（最多 size + 1 条）
+     * @param size   每页条数
+     * @param cursor 游标键值提取函数
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, Long> cursor) {
+        if (rows.size() <= size) {
+            return new CursorPage<>(rows, null, false);
+        }
+        List<T> items = rows.subList(0, size);
+        return new CursorPage<>(items, cursor.apply(items.get(size - 1)), true);
+    }
+}
@@ -0,0 +1,90 @@
+package com.jianxiang.codereviewer.common.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * 有界 LRU 缓存（线程安全）
+ * 同时按条目数和总权重（如字节数）限制容量，超出时淘汰最久未访问的条目
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class LruCache<K, V> {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+
+    /**
+     * 仅按条目数限制
+     */
+    public LruCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, v -> 0L);
+    }
+
+    /**
+     * 按条目数和总权重限制
+     */
+    public LruCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(K key) {
+        return map.get(key);
+    }
+
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxWeight) {
+            // 单个条目超过总容量，不缓存
+            remove(key);
+            return;
+        }
+        V previous = map.put(key, value);
+        if (previous != null) {
+            totalWeight -= weigher.applyAsLong(previous);
+        }
+        totalWeight += weight;
+
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        while ((map.size() > maxEntries || totalWeight > maxWeight) && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            totalWeight -= weigher.applyAsLong(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    public synchronized V remove(K key) {
+        V previous = map.remove(key);
+        if (previous != null) {
+            totalWeight -= weigher.applyAsLong(previous);
+        }
+        return previous;
+    }
+
+    /**
+     * 移除所有满足条件的键
+     */
+    public synchronized void removeIf(Predicate<K> predicate) {
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+            if (predicate.test(entry.getKey())) {
+                totalWeight -= weigher.applyAsLong(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+}
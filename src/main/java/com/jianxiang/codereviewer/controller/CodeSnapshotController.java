@@ -1,16 +1,40 @@
 package com.jianxiang.codereviewer.controller;
 
+import com.jianxiang.codereviewer.common.exception.BusinessException;
 import com.jianxiang.codereviewer.common.util.ApiResponse;
+import com.jianxiang.codereviewer.domain.enums.SnapshotContentCodec;
 import com.jianxiang.codereviewer.dto.snapshot.CreateSnapshotRequest;
+import com.jianxiang.codereviewer.dto.snapshot.CreateSnapshotTreeRequest;
+import com.jianxiang.codereviewer.dto.snapshot.DiffHunk;
+import com.jianxiang.codereviewer.dto.snapshot.GitImportRequest;
+import com.jianxiang.codereviewer.dto.snapshot.LiveDocumentResponse;
+import com.jianxiang.codereviewer.dto.snapshot.SnapshotDiffResponse;
 import com.jianxiang.codereviewer.dto.snapshot.SnapshotResponse;
+import com.jianxiang.codereviewer.dto.snapshot.SnapshotSummaryResponse;
+import com.jianxiang.codereviewer.service.live.LiveDocumentService;
 import com.jianxiang.codereviewer.service.snapshot.CodeSnapshotService;
+import com.jianxiang.codereviewer.service.snapshot.GitImportService;
+import com.jianxiang.codereviewer.service.snapshot.SnapshotContent;
+import com.jianxiang.codereviewer.service.snapshot.SnapshotDiffService;
+import com.jianxiang.codereviewer.service.snapshot.SnapshotETagCache;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -25,7 +49,15 @@ import java.util.List;
 @RequiredArgsConstructor
 public class CodeSnapshotController {
 
+    /**
+     * 快照可被删除，客户端每次使用前需重新验证（命中时为 304）
+     */
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     private final CodeSnapshotService codeSnapshotService;
+    private final SnapshotDiffService snapshotDiffService;
+    private final GitImportService gitImportService;
+    private final LiveDocumentService liveDocumentService;
 
     /**
      * 上传代码快照
@@ -45,10 +77,72 @@ public class CodeSnapshotController {
     }
 
     /**
-     * 获取房间的快照列表
+     * 批量上传代码快照（多个文件共用一个版本号）
+     */
+    @PostMapping("/batch")
+    public Mono<ApiResponse<List<SnapshotSummaryResponse>>> createSnapshotTree(
+            @PathVariable String roomCode,
+            @Valid @RequestBody CreateSnapshotTreeRequest request,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        log.info("用户[{}]在房间[{}]批量上传代码快照: {} 个文件", userId, roomCode, request.getFiles().size());
+
+        return codeSnapshotService.createSnapshotTree(roomCode, request, userId)
+                .map(ApiResponse::success);
+    }
+
+    /**
+     * 从服务器本地 Git 仓库导入快照版本
+     */
+    @PostMapping("/import/git")
+    public Mono<ApiResponse<List<SnapshotSummaryResponse>>> importFromGit(
+            @PathVariable String roomCode,
+            @Valid @RequestBody GitImportRequest request,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        log.info("用户[{}]在房间[{}]从 Git 仓库导入快照: {} @ {}", userId, roomCode,
+                request.getRepoPath(), request.getRevision());
+
+        return gitImportService.importRevision(roomCode, request, userId)
+                .map(ApiResponse::success);
+    }
+
+    /**
+     * 流式上传代码快照（大文件）
+     * 请求体为原始文本（text/plain 或 application/octet-stream），元数据通过查询参数传递
+     */
+    @PostMapping(value = "/upload", consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public Mono<ApiResponse<SnapshotSummaryResponse>> uploadSnapshot(
+            @PathVariable String roomCode,
+            @RequestParam String language,
+            @RequestParam(required = false) String filePath,
+            @RequestParam(required = false) String description,
+            ServerHttpRequest request,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        log.info("用户[{}]在房间[{}]流式上传代码快照", userId, roomCode);
+
+        if (language.isBlank() || language.length() > 50) {
+            return Mono.error(new BusinessException("编程语言不能为空且长度不能超过50个字符"));
+        }
+        if ((filePath != null && filePath.length() > 500) || (description != null && description.length() > 500)) {
+            return Mono.error(new BusinessException("文件路径和版本说明长度不能超过500个字符"));
+        }
+
+        return codeSnapshotService.uploadSnapshot(roomCode, language, filePath, description, request.getBody(), userId)
+                .map(ApiResponse::success)
+                .doOnSuccess(response -> log.info("快照上传成功，版本号: {}, 大小: {} 字节",
+                        response.getData().getVersion(), response.getData().getContentSize()));
+    }
+
+    /**
+     * 获取房间的快照列表（不含代码内容）
      */
     @GetMapping
-    public Mono<ApiResponse<List<SnapshotResponse>>> getRoomSnapshots(
+    public Mono<ApiResponse<List<SnapshotSummaryResponse>>> getRoomSnapshots(
             @PathVariable String roomCode) {
 
         log.info("查询房间[{}]的快照列表", roomCode);
@@ -58,20 +152,121 @@ public class CodeSnapshotController {
                 .map(ApiResponse::success);
     }
 
+    /**
+     * 获取房间各文件的实时内容（最新快照 + 之后的代码更新）
+     */
+    @GetMapping("/live")
+    public Mono<ApiResponse<List<LiveDocumentResponse>>> getLiveDocuments(
+            @PathVariable String roomCode) {
+
+        log.info("查询房间[{}]的实时文档", roomCode);
+
+        return liveDocumentService.getLiveDocuments(roomCode)
+                .collectList()
+                .map(ApiResponse::success);
+    }
+
+    /**
+     * 获取版本的文件列表（不含代码内容）
+     */
+    @GetMapping("/{version}/files")
+    public Mono<ApiResponse<List<SnapshotSummaryResponse>>> getVersionFiles(
+            @PathVariable String roomCode,
+            @PathVariable Integer version) {
+
+        log.info("查询房间[{}]版本[{}]的文件列表", roomCode, version);
+
+        return codeSnapshotService.getVersionFiles(roomCode, version)
+                .map(ApiResponse::success);
+    }
+
     /**
      * 根据版本号获取快照详情
+     * 版本内容不可变，ETag 取内容哈希；If-None-Match 命中内存缓存时直接返回 304
      */
     @GetMapping("/{version}")
-    public Mono<ApiResponse<SnapshotResponse>> getSnapshotByVersion(
+    public Mono<ResponseEntity<ApiResponse<SnapshotResponse>>> getSnapshotByVersion(
             @PathVariable String roomCode,
-            @PathVariable Integer version) {
+            @PathVariable Integer version,
+            @RequestParam(required = false) String filePath,
+            ServerWebExchange exchange) {
+
+        SnapshotETagCache.Tag tag = codeSnapshotService.getCachedTag(roomCode, version, filePath);
+        if (tag != null && exchange.checkNotModified(jsonETag(tag.contentHash()))) {
+            return Mono.just(notModified(jsonETag(tag.contentHash())));
+        }
 
         log.info("查询房间[{}]的版本[{}]快照", roomCode, version);
 
-        return codeSnapshotService.getSnapshotByVersion(roomCode, version)
+        return codeSnapshotService.getSnapshotByVersion(roomCode, version, filePath)
+                .map(response -> ResponseEntity.ok()
+                        .eTag(jsonETag(response.getContentHash()))
+                        .cacheControl(REVALIDATE)
+                        .body(ApiResponse.success(response)));
+    }
+
+    /**
+     * 获取快照原始内容（text/plain）
+     * 1. 客户端接受 gzip 且内容以 gzip 存储时，直接输出压缩字节，不在服务端解压
+     * 2. 支持 Range 按字节区间读取（区间请求总是输出未压缩原文）
+     * 3. ETag 取内容哈希，If-None-Match 命中内存缓存时直接返回 304
+     */
+    @GetMapping("/{version}/raw")
+    public Mono<ResponseEntity<Resource>> getSnapshotRawContent(
+            @PathVariable String roomCode,
+            @PathVariable Integer version,
+            @RequestParam(required = false) String filePath,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            ServerWebExchange exchange) {
+
+        boolean ranged = exchange.getRequest().getHeaders().containsKey(HttpHeaders.RANGE);
+        SnapshotETagCache.Tag tag = codeSnapshotService.getCachedTag(roomCode, version, filePath);
+        if (tag != null && tag.codec() != null) {
+            String eTag = rawETag(tag.contentHash(), passThrough(tag.codec(), acceptEncoding, ranged));
+            if (exchange.checkNotModified(eTag)) {
+                return Mono.just(notModified(eTag));
+            }
+        }
+
+        log.info("查询房间[{}]的版本[{}]原始内容", roomCode, version);
+
+        return codeSnapshotService.getSnapshotContent(roomCode, version, filePath)
+                .map(content -> buildRawResponse(content, acceptEncoding, ranged));
+    }
+
+    /**
+     * 获取两个版本之间的差异（unified diff 风格的差异块）
+     */
+    @GetMapping("/{fromVersion}/diff/{toVersion}")
+    public Mono<ApiResponse<SnapshotDiffResponse>> getSnapshotDiff(
+            @PathVariable String roomCode,
+            @PathVariable Integer fromVersion,
+            @PathVariable Integer toVersion,
+            @RequestParam(required = false) String filePath,
+            @RequestParam(required = false) Integer context) {
+
+        log.info("查询房间[{}]版本[{}]与版本[{}]的差异", roomCode, fromVersion, toVersion);
+
+        return snapshotDiffService.diff(roomCode, fromVersion, toVersion, filePath, context)
                 .map(ApiResponse::success);
     }
 
+    /**
+     * 逐块流式输出两个版本之间的差异（application/x-ndjson，每行一个差异块）
+     */
+    @GetMapping(value = "/{fromVersion}/diff/{toVersion}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DiffHunk> streamSnapshotDiff(
+            @PathVariable String roomCode,
+            @PathVariable Integer fromVersion,
+            @PathVariable Integer toVersion,
+            @RequestParam(required = false) String filePath,
+            @RequestParam(required = false) Integer context) {
+
+        log.info("流式查询房间[{}]版本[{}]与版本[{}]的差异", roomCode, fromVersion, toVersion);
+
+        return snapshotDiffService.streamDiff(roomCode, fromVersion, toVersion, filePath, context);
+    }
+
     /**
      * 删除快照
      */
@@ -88,4 +283,65 @@ public class CodeSnapshotController {
                 .then(Mono.just(ApiResponse.<Void>success()))
                 .doOnSuccess(response -> log.info("快照删除成功"));
     }
+
+    private ResponseEntity<Resource> buildRawResponse(SnapshotContent content, String acceptEncoding, boolean ranged) {
+        boolean passThrough = passThrough(content.codec(), acceptEncoding, ranged);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(rawETag(content.contentHash(), passThrough))
+                .cacheControl(REVALIDATE);
+
+        if (passThrough) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, content.codec().getContentEncoding())
+                    .body(new ByteArrayResource(content.data()));
+        }
+        // Resource 响应体由框架按 Range 头输出 206 区间
+        return builder.body(new ByteArrayResource(content.decodedBytes()));
+    }
+
+    /**
+     * 是否直接输出存储的压缩字节
+     */
+    private static boolean passThrough(SnapshotContentCodec codec, String acceptEncoding, boolean ranged) {
+        String encoding = codec.getContentEncoding();
+        return encoding != null && !ranged && acceptsEncoding(acceptEncoding, encoding);
+    }
+
+    /**
+     * 详情接口 ETag（与原始内容接口的表示不同，需区分）
+     */
+    private static String jsonETag(String contentHash) {
+        return contentHash + ".json";
+    }
+
+    /**
+     * 原始内容接口 ETag（压缩输出与原文输出是不同的表示，需区分）
+     */
+    private static String rawETag(String contentHash, boolean gzip) {
+        return gzip ? contentHash + ".gz" : contentHash;
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .cacheControl(REVALIDATE)
+                .build();
+    }
+
+    /**
+     * 判断 Accept-Encoding 是否接受指定编码（忽略 q=0 的项）
+     */
+    private static boolean acceptsEncoding(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase(encoding) || parts[0].trim().equals("*")) {
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
 }
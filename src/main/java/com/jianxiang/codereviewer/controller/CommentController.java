@@ -0,0 +1,76 @@
+package com.jianxiang.codereviewer.controller;
+
+import com.jianxiang.codereviewer.common.util.ApiResponse;
+import com.jianxiang.codereviewer.dto.comment.CommentResponse;
+import com.jianxiang.codereviewer.service.comment.ReviewCommentService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * @className: CommentController
+ * @author: jianXiang
+ * @description: 评审评论控制器（评论通过 WebSocket 提交，此处提供查询）
+ * @date: 2026/10/19
+ */
+@RestController
+@Slf4j
+@RequestMapping("/api/rooms/{roomCode}/comments")
+@RequiredArgsConstructor
+public class CommentController {
+
+    private final ReviewCommentService reviewCommentService;
+
+    /**
+     * 查询房间评论（可按文件路径、快照版本过滤；指定行区间时只返回区间内的顶层评论）
+     */
+    @GetMapping
+    public Mono<ApiResponse<List<CommentResponse>>> listComments(
+            @PathVariable String roomCode,
+            @RequestParam(required = false) String filePath,
+            @RequestParam(required = false) Integer version,
+            @RequestParam(required = false) Integer fromLine,
+            @RequestParam(required = false) Integer toLine,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        return reviewCommentService.listComments(roomCode, userId, filePath, version, fromLine, toLine)
+                .collectList()
+                .map(ApiResponse::success);
+    }
+
+    /**
+     * 查询某个快照版本中文件的评论（更早版本的评论按版本间差异定位到该版本，所在行已删除的标记为过时）
+     */
+    @GetMapping("/anchored")
+    public Mono<ApiResponse<List<CommentResponse>>> listAnchoredComments(
+            @PathVariable String roomCode,
+            @RequestParam Integer version,
+            @RequestParam(required = false) String filePath,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        return reviewCommentService.listAnchoredComments(roomCode, userId, version, filePath)
+                .collectList()
+                .map(ApiResponse::success);
+    }
+
+    /**
+     * 展开评论串（根评论及其所有回复）
+     */
+    @GetMapping("/{commentId}/thread")
+    public Mono<ApiResponse<List<CommentResponse>>> getThread(
+            @PathVariable String roomCode,
+            @PathVariable Long commentId,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        return reviewCommentService.getThread(roomCode, userId, commentId)
+                .collectList()
+                .map(ApiResponse::success);
+    }
+}
@@ -1,7 +1,9 @@
 package com.jianxiang.codereviewer.controller;
 
 import com.jianxiang.codereviewer.common.util.ApiResponse;
+import com.jianxiang.codereviewer.common.util.CursorPage;
 import com.jianxiang.codereviewer.dto.room.CreateRoomRequest;
+import com.jianxiang.codereviewer.dto.room.ParticipatingRoomResponse;
 import com.jianxiang.codereviewer.dto.room.RoomResponse;
 import com.jianxiang.codereviewer.dto.room.UpdateRoomRequest;
 import com.jianxiang.codereviewer.service.room.RoomReviewService;
@@ -88,6 +90,23 @@ public class RoomController {
                 .map(ApiResponse::success);
     }
 
+    /**
+     * 获取我参与的房间列表（房主和成员，带角色，游标分页）
+     */
+    @GetMapping("/participating")
+    public Mono<ApiResponse<CursorPage<ParticipatingRoomResponse>>> getParticipatingRooms(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        log.info("查询用户[{}]参与的房间列表 - status: {}, cursor: {}", userId, status, cursor);
+
+        return roomReviewService.getParticipatingRooms(userId, status, cursor, size)
+                .map(ApiResponse::success);
+    }
+
     /**
      * 开始评审（WAITING → IN_PROGRESS）
      */
@@ -0,0 +1,99 @@
+package com.jianxiang.codereviewer.controller;
+
+import com.jianxiang.codereviewer.common.util.ApiResponse;
+import com.jianxiang.codereviewer.common.util.CursorPage;
+import com.jianxiang.codereviewer.dto.room.RoomEventResponse;
+import com.jianxiang.codereviewer.service.journal.RoomEventService;
+import com.jianxiang.codereviewer.service.journal.RoomJournalReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * @className: RoomEventController
+ * @author: jianXiang
+ * @description: 房间历史事件控制器（中途加入的成员追赶已发生的事件、回放）
+ * @date: 2026/10/19
+ */
+@RestController
+@Slf4j
+@RequestMapping("/api/rooms/{roomCode}/events")
+@RequiredArgsConstructor
+public class RoomEventController {
+
+    /**
+     * 原始格式响应中本段第一条、最后一条记录的序号
+     */
+    private static final String FIRST_SEQ_HEADER = "X-Event-First-Seq";
+    private static final String LAST_SEQ_HEADER = "X-Event-Last-Seq";
+
+    private final RoomEventService roomEventService;
+
+    /**
+     * 分页查询房间事件（afterSeq 为上一页游标；指定 since 时从该时间开始）
+     */
+    @GetMapping
+    public Mono<ApiResponse<CursorPage<RoomEventResponse>>> listEvents(
+            @PathVariable String roomCode,
+            @RequestParam(required = false) Long afterSeq,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        return roomEventService.listEvents(roomCode, userId, afterSeq, since, limit)
+                .map(ApiResponse::success);
+    }
+
+    /**
+     * 流式输出房间事件（application/x-ndjson，每行一个事件，不分页）
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<RoomEventResponse> streamEvents(
+            @PathVariable String roomCode,
+            @RequestParam(required = false) Long afterSeq,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication) {
+
+        Long userId = (Long) authentication.getDetails();
+        log.info("流式查询房间[{}]的事件: afterSeq={}, since={}", roomCode, afterSeq, since);
+
+        return roomEventService.streamEvents(roomCode, userId, afterSeq, since, limit);
+    }
+
+    /**
+     * 按事件日志磁盘格式原样输出一段连续记录（application/octet-stream，每条记录: length(4B) | crc32(4B) | 记录体）
+     * 直接包装段文件的内存映射发送；响应头给出本段首尾序号，客户端以最后序号作为 afterSeq 继续请求，没有更多事件时为 204
+     */
+    @GetMapping(value = "/raw", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<Void> rawEvents(
+            @PathVariable String roomCode,
+            @RequestParam(required = false) Long afterSeq,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer limit,
+            Authentication authentication,
+            ServerHttpResponse response) {
+
+        Long userId = (Long) authentication.getDetails();
+        return roomEventService.rawEvents(roomCode, userId, afterSeq, since, limit)
+                .flatMap(region -> writeRegion(response, region).thenReturn(region))
+                .switchIfEmpty(Mono.fromRunnable(() -> response.setStatusCode(HttpStatus.NO_CONTENT)))
+                .then();
+    }
+
+    private Mono<Void> writeRegion(ServerHttpResponse response, RoomJournalReader.Region region) {
+        response.getHeaders().setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        response.getHeaders().setContentLength(region.length());
+        response.getHeaders().set(FIRST_SEQ_HEADER, String.valueOf(region.firstSeq()));
+        response.getHeaders().set(LAST_SEQ_HEADER, String.valueOf(region.lastSeq()));
+        // 包装段文件映射发送，不经过堆内复制
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(region.data())));
+    }
+}
@@ -36,11 +36,59 @@ public class CodeSnapshot {
     private Integer version;
 
     /**
-     * 代码内容
+     * 内容哈希（完整内容的 SHA-256；关键帧指向 snapshot_blob，为空时内容内联在本表中）
+     */
+    @Column("content_hash")
+    private String contentHash;
+
+    /**
+     * 增量基准快照ID（为空表示关键帧，内容块即完整内容）
+     */
+    @Column("delta_base_id")
+    private Long deltaBaseId;
+
+    /**
+     * 增量链深度（关键帧为0，每隔固定版本数强制写一次关键帧）
+     */
+    @Column("delta_depth")
+    private Integer deltaDepth;
+
+    /**
+     * 增量内容块哈希（指向 snapshot_blob，仅增量版本使用）
+     */
+    @Column("delta_hash")
+    private String deltaHash;
+
+    /**
+     * 代码内容（旧数据内联存储时使用）
      */
     @Column("content")
     private String content;
 
+    /**
+     * 内容编码标记：RAW / GZIP（旧数据为空，按 RAW 读取 content 列）
+     */
+    @Column("content_codec")
+    private String contentCodec;
+
+    /**
+     * 压缩后的代码内容（旧数据内联压缩存储时使用）
+     */
+    @Column("compressed_content")
+    private byte[] compressedContent;
+
+    /**
+     * 内容大小（UTF-8 字节数）
+     */
+    @Column("content_size")
+    private Long contentSize;
+
+    /**
+     * 内容行数
+     */
+    @Column("line_count")
+    private Integer lineCount;
+
     /**
      * 编程语言
      */
@@ -59,6 +107,12 @@ public class CodeSnapshot {
     @Column("description")
     private String description;
 
+    /**
+     * 创建时房间事件日志的最后序号（之后的代码更新不包含在快照中），旧数据为空
+     */
+    @Column("journal_seq")
+    private Long journalSeq;
+
     /**
      * 创建者ID
      */
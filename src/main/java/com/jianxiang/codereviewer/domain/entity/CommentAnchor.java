@@ -0,0 +1,59 @@
+package com.jianxiang.codereviewer.domain.entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * @className: CommentAnchor
+ * @author: jianXiang
+ * @description: 评论在后续快照版本中的位置（按版本间差异逐版本推算）
+ * @date: 2026/10/19
+ */
+@Data
+@Table("comment_anchor")
+public class CommentAnchor {
+
+    /**
+     * 主键ID
+     */
+    @Id
+    private Long id;
+
+    /**
+     * 评论ID
+     */
+    @Column("comment_id")
+    private Long commentId;
+
+    /**
+     * 所属房间ID
+     */
+    @Column("room_id")
+    private Long roomId;
+
+    /**
+     * 快照版本号
+     */
+    @Column("snapshot_version")
+    private Integer snapshotVersion;
+
+    /**
+     * 文件路径
+     */
+    @Column("file_path")
+    private String filePath;
+
+    /**
+     * 该版本中的行号（已过时为空）
+     */
+    @Column("line_number")
+    private Integer lineNumber;
+
+    /**
+     * 是否已过时（评论所在行在某个版本中被删除或改写）
+     */
+    @Column("outdated")
+    private Boolean outdated;
+}
@@ -0,0 +1,91 @@
+package com.jianxiang.codereviewer.domain.entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * @className: ReviewComment
+ * @author: jianXiang
+ * @description: 评审评论实体（ID 由服务端分配，写入由写后缓冲批量完成）
+ * @date: 2026/10/19
+ */
+@Data
+@Table("review_comment")
+public class ReviewComment {
+
+    /**
+     * 评论ID（服务端号段分配，不使用自增）
+     */
+    @Id
+    private Long id;
+
+    /**
+     * 所属房间ID
+     */
+    @Column("room_id")
+    private Long roomId;
+
+    /**
+     * 评论所针对的快照版本号
+     */
+    @Column("snapshot_version")
+    private Integer snapshotVersion;
+
+    /**
+     * 文件路径
+     */
+    @Column("file_path")
+    private String filePath;
+
+    /**
+     * 行号
+     */
+    @Column("line_number")
+    private Integer lineNumber;
+
+    /**
+     * 评论内容
+     */
+    @Column("content")
+    private String content;
+
+    /**
+     * 父评论ID（回复时不为空）
+     */
+    @Column("parent_id")
+    private Long parentId;
+
+    /**
+     * 修订号（每次修改或删除加一，用于丢弃乱序的旧版本）
+     */
+    @Column("revision")
+    private Integer revision;
+
+    /**
+     * 是否已删除（墓碑，过保留期后清理）
+     */
+    @Column("deleted")
+    private Boolean deleted;
+
+    /**
+     * 作者ID
+     */
+    @Column("author_id")
+    private Long authorId;
+
+    /**
+     * 创建时间
+     */
+    @Column("create_time")
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    @Column("update_time")
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,74 @@
+package com.jianxiang.codereviewer.domain.entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * @className: SnapshotBlob
+ * @author: jianXiang
+ * @description: 快照内容块实体（按内容哈希寻址，跨房间去重）
+ * @date: 2026/10/19
+ */
+@Data
+@Table("snapshot_blob")
+public class SnapshotBlob {
+
+    /**
+     * 内容哈希（原文 UTF-8 字节的 SHA-256，十六进制）
+     */
+    @Id
+    @Column("hash")
+    private String hash;
+
+    /**
+     * 内容编码：RAW / GZIP
+     */
+    @Column("codec")
+    private String codec;
+
+    /**
+     * 编码后的内容（已归档到段文件时为空）
+     */
+    @Column("data")
+    private byte[] data;
+
+    /**
+     * 原文大小（UTF-8 字节数）
+     */
+    @Column("content_size")
+    private Long contentSize;
+
+    /**
+     * 归档段文件存储标识（未归档或早期归档时为空）
+     */
+    @Column("segment_store")
+    private String segmentStore;
+
+    /**
+     * 归档段文件编号（未归档时为空）
+     */
+    @Column("segment_id")
+    private Integer segmentId;
+
+    /**
+     * 内容在段文件中的起始偏移
+     */
+    @Column("segment_offset")
+    private Long segmentOffset;
+
+    /**
+     * 内容在段文件中的长度（编码后字节数）
+     */
+    @Column("segment_length")
+    private Integer segmentLength;
+
+    /**
+     * 创建时间
+     */
+    @Column("create_time")
+    private LocalDateTime createTime;
+}
@@ -3,6 +3,9 @@ package com.jianxiang.codereviewer.domain.enums;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 评审房间状态枚举（会议模式）
  *
@@ -145,6 +148,22 @@ public enum RoomStatus {
         }
     }
 
+    /**
+     * 获取可以转换到目标状态的来源状态码（用于条件更新的 status IN (...)）
+     *
+     * @param target 目标状态
+     * @return 来源状态码列表
+     */
+    public static List<String> allowedSourceCodes(RoomStatus target) {
+        List<String> codes = new ArrayList<>();
+        for (RoomStatus status : RoomStatus.values()) {
+            if (status.canTransitionTo(target)) {
+                codes.add(status.getCode());
+            }
+        }
+        return codes;
+    }
+
     /**
      * 获取允许转换到的状态列表（用于前端展示可用操作）
      *
@@ -0,0 +1,105 @@
+package com.jianxiang.codereviewer.domain.enums;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 快照内容编码枚举
+ *
+ * 旧数据没有编码标记（null），按 RAW 处理，内容仍在 content 列中
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Getter
+@AllArgsConstructor
+public enum SnapshotContentCodec {
+
+    /**
+     * 原文：UTF-8 文本，不压缩
+     */
+    RAW("RAW", null),
+
+    /**
+     * GZIP 压缩：可直接以 Content-Encoding: gzip 输出给客户端
+     */
+    GZIP("GZIP", "gzip");
+
+    private final String code;
+
+    /**
+     * 对应的 HTTP Content-Encoding（RAW 无）
+     */
+    private final String contentEncoding;
+
+    /**
+     * 根据编码标记获取枚举（null 视为 RAW，兼容旧数据）
+     *
+     * @param code 编码标记
+     * @return 编码枚举
+     * @throws IllegalArgumentException 如果编码标记无效
+     */
+    public static SnapshotContentCodec getCodec(String code) {
+        if (code == null) {
+            return RAW;
+        }
+        for (SnapshotContentCodec codec : SnapshotContentCodec.values()) {
+            if (codec.getCode().equals(code)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("无效的快照内容编码: " + code);
+    }
+
+    /**
+     * 编码文本
+     */
+    public byte[] encode(String content) {
+        return encode(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 编码 UTF-8 字节
+     */
+    public byte[] encode(byte[] raw) {
+        if (this == RAW) {
+            return raw;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException("快照内容压缩失败", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码为 UTF-8 字节
+     */
+    public byte[] decodeBytes(byte[] data) {
+        if (this == RAW) {
+            return data;
+        }
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("快照内容解压失败", e);
+        }
+    }
+
+    /**
+     * 解码为文本
+     */
+    public String decode(byte[] data) {
+        return new String(decodeBytes(data), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,71 @@
+package com.jianxiang.codereviewer.domain.projection;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 代码快照元数据投影（不含 content 列）
+ * 用于快照列表查询，避免从数据库读取代码内容
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+public class CodeSnapshotSummary {
+
+    /**
+     * 主键ID
+     */
+    private Long id;
+
+    /**
+     * 所属房间ID
+     */
+    private Long roomId;
+
+    /**
+     * 版本号
+     */
+    private Integer version;
+
+    /**
+     * 内容大小（UTF-8 字节数）
+     */
+    private Long contentSize;
+
+    /**
+     * 内容行数
+     */
+    private Integer lineCount;
+
+    /**
+     * 编程语言
+     */
+    private String language;
+
+    /**
+     * 文件路径
+     */
+    private String filePath;
+
+    /**
+     * 版本说明
+     */
+    private String description;
+
+    /**
+     * 创建时房间事件日志的最后序号
+     */
+    private Long journalSeq;
+
+    /**
+     * 创建者ID
+     */
+    private Long createdBy;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
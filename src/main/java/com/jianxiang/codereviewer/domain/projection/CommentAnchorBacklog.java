@@ -0,0 +1,37 @@
+package com.jianxiang.codereviewer.domain.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 房间待定位的版本区间（由已分配的快照版本号与评论定位进度推算）
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentAnchorBacklog {
+
+    /**
+     * 房间ID
+     */
+    private Long roomId;
+
+    /**
+     * 起始版本号（含）
+     */
+    private Integer fromVersion;
+
+    /**
+     * 结束版本号（含，读取时已分配的最大版本号）
+     */
+    private Integer toVersion;
+
+    /**
+     * 读取时的回退请求序号，推进进度时用于判断期间是否有新的回退
+     */
+    private Long requestSeq;
+}
@@ -1,6 +1,7 @@
 package com.jianxiang.codereviewer.domain.repository;
 
 import com.jianxiang.codereviewer.domain.entity.CodeSnapshot;
+import com.jianxiang.codereviewer.domain.projection.CodeSnapshotSummary;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
@@ -14,7 +15,9 @@ import reactor.core.publisher.Mono;
  * @date: 2026/1/29
  */
 @Repository
-public interface CodeSnapshotRepository extends ReactiveCrudRepository<CodeSnapshot, Long> {
+public interface CodeSnapshotRepository
+        extends ReactiveCrudRepository<CodeSnapshot, Long>,
+                CodeSnapshotRepositoryCustom {
 
     /**
      * 根据房间ID查询所有快照（按版本号倒序）
@@ -22,15 +25,45 @@ public interface CodeSnapshotRepository extends ReactiveCrudRepository<CodeSnaps
     Flux<CodeSnapshot> findByRoomIdOrderByVersionDesc(Long roomId);
 
     /**
-     * 根据房间ID和版本号查询快照
+     * 根据房间ID查询快照元数据列表（按版本号倒序，不读取 content 列）
      */
-    Mono<CodeSnapshot> findByRoomIdAndVersion(Long roomId, Integer version);
+    @Query("SELECT id, room_id, version, content_size, line_count, language, file_path, description, "
+            + "journal_seq, created_by, create_time FROM code_snapshot WHERE room_id = :roomId ORDER BY version DESC")
+    Flux<CodeSnapshotSummary> findSummariesByRoomId(Long roomId);
 
     /**
-     * 查询房间的最大版本号
+     * 根据房间ID和版本号查询文件元数据列表（按文件路径排序，不读取 content 列）
      */
-    @Query("SELECT MAX(version) FROM code_snapshot WHERE room_id = :roomId")
-    Mono<Integer> findMaxVersionByRoomId(Long roomId);
+    @Query("SELECT id, room_id, version, content_size, line_count, language, file_path, description, "
+            + "journal_seq, created_by, create_time FROM code_snapshot WHERE room_id = :roomId AND version = :version "
+            + "ORDER BY file_path")
+    Flux<CodeSnapshotSummary> findSummariesByRoomIdAndVersion(Long roomId, Integer version);
+
+    /**
+     * 查询版本中的指定文件；filePath 为空时返回该版本的第一个文件（兼容单文件版本）
+     */
+    @Query("SELECT * FROM code_snapshot WHERE room_id = :roomId AND version = :version "
+            + "AND (:filePath IS NULL OR file_path = :filePath) ORDER BY id LIMIT 1")
+    Mono<CodeSnapshot> findFileByVersion(Long roomId, Integer version, String filePath);
+
+    /**
+     * 查询同一房间、同一文件在指定版本之前的最近一个快照（用作增量基准）
+     */
+    @Query("SELECT * FROM code_snapshot WHERE room_id = :roomId AND file_path <=> :filePath "
+            + "AND version < :version ORDER BY version DESC LIMIT 1")
+    Mono<CodeSnapshot> findPreviousVersion(Long roomId, String filePath, Integer version);
+
+    /**
+     * 查询房间在版本区间内已写入的版本号（升序）
+     */
+    @Query("SELECT DISTINCT version FROM code_snapshot WHERE room_id = :roomId "
+            + "AND version BETWEEN :fromVersion AND :toVersion ORDER BY version")
+    Flux<Integer> findVersionsBetween(Long roomId, Integer fromVersion, Integer toVersion);
+
+    /**
+     * 查询以指定快照为增量基准的快照
+     */
+    Flux<CodeSnapshot> findByDeltaBaseId(Long deltaBaseId);
 
     /**
      * 统计房间的快照数量
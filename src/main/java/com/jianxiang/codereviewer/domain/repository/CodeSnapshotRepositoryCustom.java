@@ -0,0 +1,25 @@
+package com.jianxiang.codereviewer.domain.repository;
+
+import com.jianxiang.codereviewer.domain.entity.CodeSnapshot;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface CodeSnapshotRepositoryCustom {
+
+    /**
+     * 原子分配房间的下一个快照版本号
+     *
+     * @param roomId 房间ID
+     * @return 新版本号（并发调用不会重复）
+     */
+    Mono<Integer> allocateVersion(Long roomId);
+
+    /**
+     * 批量插入快照（多行 INSERT，不回填主键）
+     *
+     * @param snapshots 快照列表
+     * @return 插入行数
+     */
+    Mono<Long> insertAll(List<CodeSnapshot> snapshots);
+}
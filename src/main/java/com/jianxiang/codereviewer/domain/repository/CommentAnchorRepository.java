@@ -0,0 +1,36 @@
+package com.jianxiang.codereviewer.domain.repository;
+
+import com.jianxiang.codereviewer.domain.entity.CommentAnchor;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * @className: CommentAnchorRepository
+ * @author: jianXiang
+ * @description: 评论位置Repository
+ * @date: 2026/10/19
+ */
+@Repository
+public interface CommentAnchorRepository
+        extends ReactiveCrudRepository<CommentAnchor, Long>,
+                CommentAnchorRepositoryCustom {
+
+    /**
+     * 查询版本中某个文件的评论位置
+     */
+    @Query("SELECT * FROM comment_anchor WHERE room_id = :roomId AND snapshot_version = :version "
+            + "AND file_path <=> :filePath")
+    Flux<CommentAnchor> findByVersionFile(Long roomId, Integer version, String filePath);
+
+    /**
+     * 删除版本中某个文件的评论位置（快照删除后）
+     */
+    @Modifying
+    @Query("DELETE FROM comment_anchor WHERE room_id = :roomId AND snapshot_version = :version "
+            + "AND file_path <=> :filePath")
+    Mono<Integer> deleteByVersionFile(Long roomId, Integer version, String filePath);
+}
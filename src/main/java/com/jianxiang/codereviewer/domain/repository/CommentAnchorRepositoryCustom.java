@@ -0,0 +1,60 @@
+package com.jianxiang.codereviewer.domain.repository;
+
+import com.jianxiang.codereviewer.domain.entity.CommentAnchor;
+import com.jianxiang.codereviewer.domain.projection.CommentAnchorBacklog;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * @className: CommentAnchorRepositoryCustom
+ * @author: jianXiang
+ * @description: 评论位置批量写入与定位进度（comment_anchor_progress）
+ * @date: 2026/10/19
+ */
+public interface CommentAnchorRepositoryCustom {
+
+    /**
+     * 批量写入评论位置（多行 INSERT，(comment_id, snapshot_version) 已存在时覆盖）
+     *
+     * @param anchors 评论位置列表
+     * @return 影响行数
+     */
+    Mono<Long> upsertAll(List<CommentAnchor> anchors);
+
+    /**
+     * 查询有待定位版本的房间（已分配的最大版本号超过定位进度）
+     *
+     * @param limit 最多返回的房间数
+     * @return 各房间待定位的版本区间
+     */
+    Flux<CommentAnchorBacklog> findBacklog(int limit);
+
+    /**
+     * 查询房间待定位的版本区间
+     *
+     * @param roomId 房间ID
+     * @return 待定位的版本区间，没有时为空
+     */
+    Mono<CommentAnchorBacklog> findBacklog(Long roomId);
+
+    /**
+     * 把定位进度回退到指定版本（进度已超过该版本时），之后的版本需要重新定位
+     *
+     * @param roomId          房间ID
+     * @param anchoredVersion 回退后的进度
+     * @return 是否回退
+     */
+    Mono<Boolean> rewind(Long roomId, Integer anchoredVersion);
+
+    /**
+     * 推进定位进度；读取区间后有新的回退时不推进
+     *
+     * @param roomId          房间ID
+     * @param anchoredVersion 已定位到的版本号
+     * @param requestSeq      读取区间时的回退请求序号
+     * @return 影响行数
+     */
+    Mono<Long> advance(Long roomId, Integer anchoredVersion, Long requestSeq);
+}
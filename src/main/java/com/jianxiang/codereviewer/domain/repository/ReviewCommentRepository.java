@@ -0,0 +1,49 @@
+package com.jianxiang.codereviewer.domain.repository;
+
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * @className: ReviewCommentRepository
+ * @author: jianXiang
+ * @description: 评审评论Repository
+ * @date: 2026/10/19
+ */
+@Repository
+public interface ReviewCommentRepository
+        extends ReactiveCrudRepository<ReviewComment, Long>,
+                ReviewCommentRepositoryCustom {
+
+    /**
+     * 查询房间评论（文件路径、快照版本为空时不过滤），按ID（即创建顺序）排列
+     */
+    @Query("SELECT * FROM review_comment WHERE room_id = :roomId "
+            + "AND (:filePath IS NULL OR file_path = :filePath) "
+            + "AND (:version IS NULL OR snapshot_version = :version) "
+            + "ORDER BY id")
+    Flux<ReviewComment> findByRoom(Long roomId, String filePath, Integer version);
+
+    /**
+     * 查询可清理的墓碑：删除时间早于 before，且没有未删除的回复
+     */
+    @Query("SELECT t.* FROM review_comment t "
+            + "LEFT JOIN review_comment c ON c.parent_id = t.id AND c.deleted = 0 "
+            + "WHERE t.deleted = 1 AND t.update_time < :before AND c.id IS NULL "
+            + "LIMIT :limit")
+    Flux<ReviewComment> findCompactableTombstones(LocalDateTime before, int limit);
+
+    /**
+     * 物理删除墓碑
+     */
+    @Modifying
+    @Query("DELETE FROM review_comment WHERE id IN (:ids) AND deleted = 1")
+    Mono<Integer> deleteTombstones(Collection<Long> ids);
+}
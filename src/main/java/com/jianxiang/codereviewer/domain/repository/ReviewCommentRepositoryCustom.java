@@ -0,0 +1,31 @@
+package com.jianxiang.codereviewer.domain.repository;
+
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * @className: ReviewCommentRepositoryCustom
+ * @author: jianXiang
+ * @description: 评论批量写入与ID号段分配
+ * @date: 2026/10/19
+ */
+public interface ReviewCommentRepositoryCustom {
+
+    /**
+     * 分配一段评论ID
+     *
+     * @param size 号段大小
+     * @return 号段中最大的ID（号段为 (返回值 - size, 返回值]）
+     */
+    Mono<Long> allocateIdBlock(int size);
+
+    /**
+     * 批量写入评论（多行 INSERT，主键已存在时覆盖可变字段）
+     *
+     * @param comments 评论列表
+     * @return 影响行数
+     */
+    Mono<Long> upsertAll(List<ReviewComment> comments);
+}
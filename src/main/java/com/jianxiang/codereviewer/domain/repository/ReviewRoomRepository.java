@@ -8,6 +8,8 @@ import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 /**
  * @className: ReviewRoomRepository
  * @author: jianXiang
@@ -35,4 +37,6 @@ public interface ReviewRoomRepository
 
     Flux<ReviewRoom> findByStatus(String status);
 
+    Flux<ReviewRoom> findByRoomCodeIn(Collection<String> roomCodes);
+
 }
@@ -1,7 +1,14 @@
 package com.jianxiang.codereviewer.domain.repository;
 
 import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
+import com.jianxiang.codereviewer.domain.enums.RoomStatus;
+import com.jianxiang.codereviewer.dto.room.ParticipatingRoomResponse;
+import com.jianxiang.codereviewer.dto.room.RoomResponse;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 
 public interface ReviewRoomRepositoryCustom {
 
@@ -13,4 +20,60 @@ public interface ReviewRoomRepositoryCustom {
        * @return 房间列表
        */
       Flux<ReviewRoom> findByDynamicConditions(String status, String name);
+
+      /**
+       * 按房间码查询房间详情（关联房主用户名，一条语句）
+       *
+       * @param roomCode 房间代码
+       * @return 房间详情
+       */
+      Mono<RoomResponse> findResponseByRoomCode(String roomCode);
+
+      /**
+       * 按ID批量查询房间详情（关联房主用户名），不保证返回顺序
+       *
+       * @param roomIds 房间ID列表
+       * @return 房间详情列表
+       */
+      Flux<RoomResponse> findResponsesByIds(Collection<Long> roomIds);
+
+      /**
+       * 动态条件查询房间详情列表（关联房主用户名）
+       *
+       * @param status 状态（可选）
+       * @param name 名称（可选）
+       * @return 房间详情列表
+       */
+      Flux<RoomResponse> findResponsesByDynamicConditions(String status, String name);
+
+      /**
+       * 查询用户创建的房间详情列表（关联房主用户名）
+       *
+       * @param ownerId 房主ID
+       * @param status 状态（可选）
+       * @return 房间详情列表
+       */
+      Flux<RoomResponse> findResponsesByOwnerId(Long ownerId, String status);
+
+      /**
+       * 查询用户参与的房间（房主和成员），按房间ID倒序游标分页
+       *
+       * @param userId 用户ID
+       * @param status 状态（可选）
+       * @param beforeRoomId 游标：只返回房间ID小于该值的房间（可选）
+       * @param limit 最多返回条数
+       * @return 房间详情及用户角色
+       */
+      Flux<ParticipatingRoomResponse> findParticipatingRooms(Long userId, String status, Long beforeRoomId, int limit);
+
+      /**
+       * 条件更新房间状态：仅当房主匹配且当前状态可以转换到目标状态时更新
+       *
+       * @param roomCode 房间代码
+       * @param ownerId 房主ID
+       * @param target 目标状态
+       * @param now 更新时间（进入终态时同时写入关闭时间）
+       * @return 更新行数（0 表示房间不存在、无权限或状态不允许）
+       */
+      Mono<Long> transitionStatus(String roomCode, Long ownerId, RoomStatus target, LocalDateTime now);
   }
\ No newline at end of file
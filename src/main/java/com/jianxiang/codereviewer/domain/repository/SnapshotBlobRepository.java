@@ -0,0 +1,42 @@
+package com.jianxiang.codereviewer.domain.repository;
+
+import com.jianxiang.codereviewer.domain.entity.SnapshotBlob;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * @className: SnapshotBlobRepository
+ * @author: jianXiang
+ * @description: 快照内容块Repository（主键为内容哈希，新增需通过 R2dbcEntityTemplate.insert）
+ * @date: 2026/10/19
+ */
+@Repository
+public interface SnapshotBlobRepository extends ReactiveCrudRepository<SnapshotBlob, String> {
+
+    /**
+     * 查询可归档的内容块：内容仍在库内，且没有被未结束（非 COMPLETED / CANCELLED）房间的快照引用
+     */
+    @Query("SELECT b.hash FROM snapshot_blob b WHERE b.data IS NOT NULL AND b.create_time < :before "
+            + "AND NOT EXISTS (SELECT 1 FROM code_snapshot s JOIN review_room r ON r.id = s.room_id "
+            + "WHERE s.content_hash = b.hash AND r.status NOT IN ('COMPLETED', 'CANCELLED')) "
+            + "AND NOT EXISTS (SELECT 1 FROM code_snapshot s JOIN review_room r ON r.id = s.room_id "
+            + "WHERE s.delta_hash = b.hash AND r.status NOT IN ('COMPLETED', 'CANCELLED')) "
+            + "LIMIT :limit")
+    Flux<String> findArchivableHashes(LocalDateTime before, int limit);
+
+    /**
+     * 记录归档位置并清空库内内容
+     */
+    @Modifying
+    @Query("UPDATE snapshot_blob SET segment_store = :segmentStore, segment_id = :segmentId, "
+            + "segment_offset = :segmentOffset, segment_length = :segmentLength, data = NULL "
+            + "WHERE hash = :hash AND data IS NOT NULL")
+    Mono<Integer> markArchived(String hash, String segmentStore, Integer segmentId, Long segmentOffset,
+                               Integer segmentLength);
+}
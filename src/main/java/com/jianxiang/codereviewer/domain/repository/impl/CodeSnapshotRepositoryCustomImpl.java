@@ -0,0 +1,135 @@
+package com.jianxiang.codereviewer.domain.repository.impl;
+
+import com.jianxiang.codereviewer.domain.entity.CodeSnapshot;
+import com.jianxiang.codereviewer.domain.repository.CodeSnapshotRepositoryCustom;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @className: CodeSnapshotRepositoryCustomImpl
+ * @author: jianXiang
+ * @description: 快照版本号分配（room_snapshot_seq 计数行原地自增）与批量插入
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class CodeSnapshotRepositoryCustomImpl implements CodeSnapshotRepositoryCustom {
+
+    /**
+     * 行锁内自增，并通过 LAST_INSERT_ID(expr) 把新值带回 OK 包，一次往返拿到版本号
+     */
+    private static final String INCREMENT_SQL =
+            "UPDATE room_snapshot_seq SET last_version = LAST_INSERT_ID(last_version + 1) WHERE room_id = :roomId";
+
+    /**
+     * 计数行不存在时按现有最大版本号初始化（每个房间只执行一次）
+     */
+    private static final String SEED_SQL =
+            "INSERT IGNORE INTO room_snapshot_seq (room_id, last_version) "
+                    + "SELECT :roomId, COALESCE(MAX(version), 0) FROM code_snapshot WHERE room_id = :roomId";
+
+    /**
+     * 单条 INSERT 语句的最大行数
+     */
+    private static final int INSERT_BATCH_SIZE = 200;
+
+    private static final List<String> INSERT_COLUMNS = List.of(
+            "room_id", "version", "content", "content_codec", "compressed_content", "content_size", "line_count",
+            "content_hash", "delta_base_id", "delta_depth", "delta_hash", "language", "file_path", "description",
+            "journal_seq", "created_by", "create_time");
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Integer> allocateVersion(Long roomId) {
+        return increment(roomId)
+                .switchIfEmpty(Mono.defer(() -> seed(roomId).then(increment(roomId))))
+                .switchIfEmpty(Mono.error(new IllegalStateException("快照版本号分配失败: roomId=" + roomId)));
+    }
+
+    @Override
+    public Mono<Long> insertAll(List<CodeSnapshot> snapshots) {
+        List<List<CodeSnapshot>> batches = new ArrayList<>();
+        for (int i = 0; i < snapshots.size(); i += INSERT_BATCH_SIZE) {
+            batches.add(snapshots.subList(i, Math.min(i + INSERT_BATCH_SIZE, snapshots.size())));
+        }
+        return Flux.fromIterable(batches)
+                .concatMap(this::insertBatch)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> insertBatch(List<CodeSnapshot> batch) {
+        StringBuilder sql = new StringBuilder("INSERT INTO code_snapshot (")
+                .append(String.join(", ", INSERT_COLUMNS))
+                .append(") VALUES ");
+        for (int row = 0; row < batch.size(); row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 0; column < INSERT_COLUMNS.size(); column++) {
+                sql.append(column == 0 ? ":" : ", :").append(INSERT_COLUMNS.get(column)).append('_').append(row);
+            }
+            sql.append(')');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int row = 0; row < batch.size(); row++) {
+            CodeSnapshot snapshot = batch.get(row);
+            String suffix = "_" + row;
+            spec = bind(spec, "room_id" + suffix, snapshot.getRoomId(), Long.class);
+            spec = bind(spec, "version" + suffix, snapshot.getVersion(), Integer.class);
+            spec = bind(spec, "content" + suffix, snapshot.getContent(), String.class);
+            spec = bind(spec, "content_codec" + suffix, snapshot.getContentCodec(), String.class);
+            spec = bind(spec, "compressed_content" + suffix, snapshot.getCompressedContent(), byte[].class);
+            spec = bind(spec, "content_size" + suffix, snapshot.getContentSize(), Long.class);
+            spec = bind(spec, "line_count" + suffix, snapshot.getLineCount(), Integer.class);
+            spec = bind(spec, "content_hash" + suffix, snapshot.getContentHash(), String.class);
+            spec = bind(spec, "delta_base_id" + suffix, snapshot.getDeltaBaseId(), Long.class);
+            spec = bind(spec, "delta_depth" + suffix, snapshot.getDeltaDepth(), Integer.class);
+            spec = bind(spec, "delta_hash" + suffix, snapshot.getDeltaHash(), String.class);
+            spec = bind(spec, "language" + suffix, snapshot.getLanguage(), String.class);
+            spec = bind(spec, "file_path" + suffix, snapshot.getFilePath(), String.class);
+            spec = bind(spec, "description" + suffix, snapshot.getDescription(), String.class);
+            spec = bind(spec, "journal_seq" + suffix, snapshot.getJournalSeq(), Long.class);
+            spec = bind(spec, "created_by" + suffix, snapshot.getCreatedBy(), Long.class);
+            spec = bind(spec, "create_time" + suffix, snapshot.getCreateTime(), LocalDateTime.class);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec,
+                                                          String name, Object value, Class<?> type) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+
+    private Mono<Integer> increment(Long roomId) {
+        return databaseClient.sql(INCREMENT_SQL)
+                .bind("roomId", roomId)
+                .filter(statement -> statement.returnGeneratedValues("last_version"))
+                .map(row -> row.get("last_version", Long.class))
+                .first()
+                // 计数行不存在时没有更新任何行，LAST_INSERT_ID 为 0
+                .filter(version -> version != null && version > 0)
+                .map(Long::intValue);
+    }
+
+    private Mono<Void> seed(Long roomId) {
+        return databaseClient.sql(SEED_SQL)
+                .bind("roomId", roomId)
+                .fetch()
+                .rowsUpdated()
+                .doOnNext(rows -> {
+                    if (rows > 0) {
+                        log.debug("初始化房间快照版本计数: roomId={}", roomId);
+                    }
+                })
+                .then();
+    }
+}
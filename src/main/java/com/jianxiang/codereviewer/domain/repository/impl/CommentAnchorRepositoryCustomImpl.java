@@ -0,0 +1,145 @@
+package com.jianxiang.codereviewer.domain.repository.impl;
+
+import com.jianxiang.codereviewer.domain.entity.CommentAnchor;
+import com.jianxiang.codereviewer.domain.projection.CommentAnchorBacklog;
+import com.jianxiang.codereviewer.domain.repository.CommentAnchorRepositoryCustom;
+import lombok.RequiredArgsConstructor;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @className: CommentAnchorRepositoryCustomImpl
+ * @author: jianXiang
+ * @description: 评论位置多行批量写入与定位进度
+ * @date: 2026/10/19
+ */
+@Repository
+@RequiredArgsConstructor
+public class CommentAnchorRepositoryCustomImpl implements CommentAnchorRepositoryCustom {
+
+    /**
+     * 单条 INSERT 语句的最大行数
+     */
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private static final List<String> INSERT_COLUMNS = List.of(
+            "comment_id", "room_id", "snapshot_version", "file_path", "line_number", "outdated");
+
+    private static final String UPSERT_SUFFIX = " ON DUPLICATE KEY UPDATE "
+            + "line_number = VALUES(line_number), outdated = VALUES(outdated)";
+
+    /**
+     * 待定位区间：进度之后到已分配的最大版本号（没有进度行的房间从第一个版本开始）
+     */
+    private static final String BACKLOG_SQL = "SELECT s.room_id, COALESCE(p.anchored_version, 0) + 1 AS from_version, "
+            + "s.last_version AS to_version, COALESCE(p.request_seq, 0) AS request_seq "
+            + "FROM room_snapshot_seq s LEFT JOIN comment_anchor_progress p ON p.room_id = s.room_id "
+            + "WHERE s.last_version > COALESCE(p.anchored_version, 0)";
+
+    private static final String REWIND_SQL = "UPDATE comment_anchor_progress "
+            + "SET anchored_version = :anchoredVersion, request_seq = request_seq + 1 "
+            + "WHERE room_id = :roomId AND anchored_version > :anchoredVersion";
+
+    /**
+     * 读取区间后发生过回退（request_seq 变化）时保留回退后的进度
+     */
+    private static final String ADVANCE_SQL = "INSERT INTO comment_anchor_progress "
+            + "(room_id, anchored_version, request_seq) VALUES (:roomId, :anchoredVersion, 0) "
+            + "ON DUPLICATE KEY UPDATE anchored_version = IF(request_seq = :requestSeq, "
+            + "GREATEST(anchored_version, VALUES(anchored_version)), anchored_version)";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<CommentAnchorBacklog> findBacklog(int limit) {
+        return databaseClient.sql(BACKLOG_SQL + " ORDER BY s.room_id LIMIT :limit")
+                .bind("limit", limit)
+                .map(CommentAnchorRepositoryCustomImpl::toBacklog)
+                .all();
+    }
+
+    @Override
+    public Mono<CommentAnchorBacklog> findBacklog(Long roomId) {
+        return databaseClient.sql(BACKLOG_SQL + " AND s.room_id = :roomId")
+                .bind("roomId", roomId)
+                .map(CommentAnchorRepositoryCustomImpl::toBacklog)
+                .one();
+    }
+
+    @Override
+    public Mono<Boolean> rewind(Long roomId, Integer anchoredVersion) {
+        return databaseClient.sql(REWIND_SQL)
+                .bind("roomId", roomId)
+                .bind("anchoredVersion", anchoredVersion)
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    @Override
+    public Mono<Long> advance(Long roomId, Integer anchoredVersion, Long requestSeq) {
+        return databaseClient.sql(ADVANCE_SQL)
+                .bind("roomId", roomId)
+                .bind("anchoredVersion", anchoredVersion)
+                .bind("requestSeq", requestSeq)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    @Override
+    public Mono<Long> upsertAll(List<CommentAnchor> anchors) {
+        List<List<CommentAnchor>> batches = new ArrayList<>();
+        for (int i = 0; i < anchors.size(); i += INSERT_BATCH_SIZE) {
+            batches.add(anchors.subList(i, Math.min(i + INSERT_BATCH_SIZE, anchors.size())));
+        }
+        return Flux.fromIterable(batches)
+                .concatMap(this::upsertBatch)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> upsertBatch(List<CommentAnchor> batch) {
+        StringBuilder sql = new StringBuilder("INSERT INTO comment_anchor (")
+                .append(String.join(", ", INSERT_COLUMNS))
+                .append(") VALUES ");
+        for (int row = 0; row < batch.size(); row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 0; column < INSERT_COLUMNS.size(); column++) {
+                sql.append(column == 0 ? ":" : ", :").append(INSERT_COLUMNS.get(column)).append('_').append(row);
+            }
+            sql.append(')');
+        }
+        sql.append(UPSERT_SUFFIX);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int row = 0; row < batch.size(); row++) {
+            CommentAnchor anchor = batch.get(row);
+            String suffix = "_" + row;
+            spec = bind(spec, "comment_id" + suffix, anchor.getCommentId(), Long.class);
+            spec = bind(spec, "room_id" + suffix, anchor.getRoomId(), Long.class);
+            spec = bind(spec, "snapshot_version" + suffix, anchor.getSnapshotVersion(), Integer.class);
+            spec = bind(spec, "file_path" + suffix, anchor.getFilePath(), String.class);
+            spec = bind(spec, "line_number" + suffix, anchor.getLineNumber(), Integer.class);
+            spec = bind(spec, "outdated" + suffix, anchor.getOutdated(), Boolean.class);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    private static CommentAnchorBacklog toBacklog(Readable row) {
+        return new CommentAnchorBacklog(
+                row.get("room_id", Long.class),
+                row.get("from_version", Long.class).intValue(),
+                row.get("to_version", Long.class).intValue(),
+                row.get("request_seq", Long.class));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec,
+                                                          String name, Object value, Class<?> type) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+}
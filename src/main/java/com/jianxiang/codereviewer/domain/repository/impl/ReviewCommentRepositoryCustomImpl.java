@@ -0,0 +1,112 @@
+package com.jianxiang.codereviewer.domain.repository.impl;
+
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import com.jianxiang.codereviewer.domain.repository.ReviewCommentRepositoryCustom;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @className: ReviewCommentRepositoryCustomImpl
+ * @author: jianXiang
+ * @description: 评论ID号段分配（comment_id_seq 单行原地自增）与多行批量写入
+ * @date: 2026/10/19
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReviewCommentRepositoryCustomImpl implements ReviewCommentRepositoryCustom {
+
+    /**
+     * 行锁内按号段大小自增，并通过 LAST_INSERT_ID(expr) 把新值带回
+     */
+    private static final String ALLOCATE_SQL =
+            "UPDATE comment_id_seq SET last_id = LAST_INSERT_ID(last_id + :size) WHERE id = 1";
+
+    /**
+     * 单条 INSERT 语句的最大行数
+     */
+    private static final int INSERT_BATCH_SIZE = 200;
+
+    private static final List<String> INSERT_COLUMNS = List.of(
+            "id", "room_id", "snapshot_version", "file_path", "line_number", "content", "parent_id",
+            "revision", "deleted", "author_id", "create_time", "update_time");
+
+    /**
+     * 主键已存在时只用修订号更大的版本覆盖可变字段（revision 必须最后赋值，前面的条件读到的是旧值）
+     */
+    private static final String UPSERT_SUFFIX = " ON DUPLICATE KEY UPDATE "
+            + "content = IF(VALUES(revision) > revision, VALUES(content), content), "
+            + "line_number = IF(VALUES(revision) > revision, VALUES(line_number), line_number), "
+            + "deleted = IF(VALUES(revision) > revision, VALUES(deleted), deleted), "
+            + "update_time = IF(VALUES(revision) > revision, VALUES(update_time), update_time), "
+            + "revision = GREATEST(revision, VALUES(revision))";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Mono<Long> allocateIdBlock(int size) {
+        return databaseClient.sql(ALLOCATE_SQL)
+                .bind("size", size)
+                .filter(statement -> statement.returnGeneratedValues("last_id"))
+                .map(row -> row.get("last_id", Long.class))
+                .first()
+                // 计数行不存在时没有更新任何行，LAST_INSERT_ID 为 0
+                .filter(lastId -> lastId != null && lastId > 0)
+                .switchIfEmpty(Mono.error(new IllegalStateException("评论ID号段分配失败，comment_id_seq 未初始化")));
+    }
+
+    @Override
+    public Mono<Long> upsertAll(List<ReviewComment> comments) {
+        List<List<ReviewComment>> batches = new ArrayList<>();
+        for (int i = 0; i < comments.size(); i += INSERT_BATCH_SIZE) {
+            batches.add(comments.subList(i, Math.min(i + INSERT_BATCH_SIZE, comments.size())));
+        }
+        return Flux.fromIterable(batches)
+                .concatMap(this::upsertBatch)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> upsertBatch(List<ReviewComment> batch) {
+        StringBuilder sql = new StringBuilder("INSERT INTO review_comment (")
+                .append(String.join(", ", INSERT_COLUMNS))
+                .append(") VALUES ");
+        for (int row = 0; row < batch.size(); row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 0; column < INSERT_COLUMNS.size(); column++) {
+                sql.append(column == 0 ? ":" : ", :").append(INSERT_COLUMNS.get(column)).append('_').append(row);
+            }
+            sql.append(')');
+        }
+        sql.append(UPSERT_SUFFIX);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int row = 0; row < batch.size(); row++) {
+            ReviewComment comment = batch.get(row);
+            String suffix = "_" + row;
+            spec = bind(spec, "id" + suffix, comment.getId(), Long.class);
+            spec = bind(spec, "room_id" + suffix, comment.getRoomId(), Long.class);
+            spec = bind(spec, "snapshot_version" + suffix, comment.getSnapshotVersion(), Integer.class);
+            spec = bind(spec, "file_path" + suffix, comment.getFilePath(), String.class);
+            spec = bind(spec, "line_number" + suffix, comment.getLineNumber(), Integer.class);
+            spec = bind(spec, "content" + suffix, comment.getContent(), String.class);
+            spec = bind(spec, "parent_id" + suffix, comment.getParentId(), Long.class);
+            spec = bind(spec, "revision" + suffix, comment.getRevision(), Integer.class);
+            spec = bind(spec, "deleted" + suffix, comment.getDeleted(), Boolean.class);
+            spec = bind(spec, "author_id" + suffix, comment.getAuthorId(), Long.class);
+            spec = bind(spec, "create_time" + suffix, comment.getCreateTime(), LocalDateTime.class);
+            spec = bind(spec, "update_time" + suffix, comment.getUpdateTime(), LocalDateTime.class);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec,
+                                                          String name, Object value, Class<?> type) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+}
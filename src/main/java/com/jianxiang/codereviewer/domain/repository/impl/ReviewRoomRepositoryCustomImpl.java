@@ -1,13 +1,25 @@
 package com.jianxiang.codereviewer.domain.repository.impl;
 
 import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
+import com.jianxiang.codereviewer.domain.enums.RoomStatus;
 import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepositoryCustom;
+import com.jianxiang.codereviewer.dto.room.ParticipatingRoomResponse;
+import com.jianxiang.codereviewer.dto.room.RoomResponse;
+import io.r2dbc.spi.Readable;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.data.relational.core.query.Query;
+import org.springframework.data.relational.core.query.Update;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import static org.springframework.data.relational.core.query.Criteria.where;
 
@@ -21,6 +33,27 @@ import static org.springframework.data.relational.core.query.Criteria.where;
 @RequiredArgsConstructor
 public class ReviewRoomRepositoryCustomImpl implements ReviewRoomRepositoryCustom {
 
+    /**
+     * 房间详情读模型：关联房主用户名，直接映射为 RoomResponse
+     */
+    private static final String RESPONSE_COLUMNS =
+            "r.id, r.name, r.room_code, r.description, r.owner_id, u.username AS owner_username, "
+                    + "r.status, r.repo_info, r.code_scope, r.create_time, r.close_time, r.update_time";
+
+    private static final String RESPONSE_SELECT =
+            "SELECT " + RESPONSE_COLUMNS + " FROM review_room r LEFT JOIN `user` u ON u.id = r.owner_id";
+
+    /**
+     * 用户参与的房间：从 room_member(user_id, room_id) 索引出发，按房间ID倒序取一页
+     */
+    private static final String PARTICIPATING_SELECT =
+            "SELECT m.role, m.join_time, " + RESPONSE_COLUMNS + " FROM room_member m "
+                    + "JOIN review_room r ON r.id = m.room_id "
+                    + "LEFT JOIN `user` u ON u.id = r.owner_id "
+                    + "WHERE m.user_id = :userId";
+
+    private static final String UNKNOWN_USERNAME = "未知用户";
+
     private final R2dbcEntityTemplate template;
 
     @Override
@@ -42,4 +75,126 @@ public class ReviewRoomRepositoryCustomImpl implements ReviewRoomRepositoryCusto
         Query query = Query.query(criteria);
         return template.select(query, ReviewRoom.class);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Mono<RoomResponse> findResponseByRoomCode(String roomCode) {
+        return template.getDatabaseClient()
+                .sql(RESPONSE_SELECT + " WHERE r.room_code = :roomCode")
+                .bind("roomCode", roomCode)
+                .map(ReviewRoomRepositoryCustomImpl::toResponse)
+                .one();
+    }
+
+    @Override
+    public Flux<RoomResponse> findResponsesByIds(Collection<Long> roomIds) {
+        if (roomIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return template.getDatabaseClient()
+                .sql(RESPONSE_SELECT + " WHERE r.id IN (:roomIds)")
+                .bind("roomIds", roomIds)
+                .map(ReviewRoomRepositoryCustomImpl::toResponse)
+                .all();
+    }
+
+    @Override
+    public Flux<RoomResponse> findResponsesByDynamicConditions(String status, String name) {
+        return selectResponses(null, status, name);
+    }
+
+    @Override
+    public Flux<RoomResponse> findResponsesByOwnerId(Long ownerId, String status) {
+        return selectResponses(ownerId, status, null);
+    }
+
+    @Override
+    public Flux<ParticipatingRoomResponse> findParticipatingRooms(Long userId, String status, Long beforeRoomId,
+                                                                  int limit) {
+        StringBuilder sql = new StringBuilder(PARTICIPATING_SELECT);
+        if (status != null && !status.isEmpty()) {
+            sql.append(" AND r.status = :status");
+        }
+        if (beforeRoomId != null) {
+            sql.append(" AND m.room_id < :beforeRoomId");
+        }
+        sql.append(" ORDER BY m.room_id DESC LIMIT :limit");
+
+        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient()
+                .sql(sql.toString())
+                .bind("userId", userId)
+                .bind("limit", limit);
+        if (status != null && !status.isEmpty()) {
+            spec = spec.bind("status", status);
+        }
+        if (beforeRoomId != null) {
+            spec = spec.bind("beforeRoomId", beforeRoomId);
+        }
+        return spec.map(row -> ParticipatingRoomResponse.builder()
+                        .room(toResponse(row))
+                        .role(row.get("role", String.class))
+                        .joinTime(row.get("join_time", LocalDateTime.class))
+                        .build())
+                .all();
+    }
+
+    @Override
+    public Mono<Long> transitionStatus(String roomCode, Long ownerId, RoomStatus target, LocalDateTime now) {
+        Criteria criteria = where("room_code").is(roomCode)
+                .and("owner_id").is(ownerId)
+                .and("status").in(RoomStatus.allowedSourceCodes(target));
+        return template.update(Query.query(criteria), statusUpdate(target, now), ReviewRoom.class);
+    }
+
+    private static Update statusUpdate(RoomStatus target, LocalDateTime now) {
+        Update update = Update.update("status", target.getCode())
+                .set("update_time", now);
+        // 进入终态时记录关闭时间
+        return target.isTerminal() ? update.set("close_time", now) : update;
+    }
+
+    private Flux<RoomResponse> selectResponses(Long ownerId, String status, String name) {
+        List<String> conditions = new ArrayList<>();
+        if (ownerId != null) {
+            conditions.add("r.owner_id = :ownerId");
+        }
+        if (status != null && !status.isEmpty()) {
+            conditions.add("r.status = :status");
+        }
+        if (name != null && !name.isEmpty()) {
+            conditions.add("r.name LIKE :name");
+        }
+        String sql = conditions.isEmpty()
+                ? RESPONSE_SELECT
+                : RESPONSE_SELECT + " WHERE " + String.join(" AND ", conditions);
+
+        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient().sql(sql);
+        if (ownerId != null) {
+            spec = spec.bind("ownerId", ownerId);
+        }
+        if (status != null && !status.isEmpty()) {
+            spec = spec.bind("status", status);
+        }
+        if (name != null && !name.isEmpty()) {
+            spec = spec.bind("name", "%" + name + "%");
+        }
+        return spec.map(ReviewRoomRepositoryCustomImpl::toResponse).all();
+    }
+
+    private static RoomResponse toResponse(Readable row) {
+        String ownerUsername = row.get("owner_username", String.class);
+        return RoomResponse.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .roomCode(row.get("room_code", String.class))
+                .description(row.get("description", String.class))
+                .ownerId(row.get("owner_id", Long.class))
+                .ownerUsername(ownerUsername != null ? ownerUsername : UNKNOWN_USERNAME)
+                .status(row.get("status", String.class))
+                .repoInfo(row.get("repo_info", String.class))
+                .codeScope(row.get("code_scope", String.class))
+                .createTime(row.get("create_time", LocalDateTime.class))
+                .closeTime(row.get("close_time", LocalDateTime.class))
+                .updateTime(row.get("update_time", LocalDateTime.class))
+                .build();
+    }
+}
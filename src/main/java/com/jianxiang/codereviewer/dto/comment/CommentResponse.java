@@ -0,0 +1,93 @@
+package com.jianxiang.codereviewer.dto.comment;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 评审评论响应 DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentResponse {
+
+    /**
+     * 评论ID
+     */
+    private Long id;
+
+    /**
+     * 房间ID
+     */
+    private Long roomId;
+
+    /**
+     * 快照版本号
+     */
+    private Integer snapshotVersion;
+
+    /**
+     * 文件路径
+     */
+    private String filePath;
+
+    /**
+     * 行号
+     */
+    private Integer lineNumber;
+
+    /**
+     * 评论内容
+     */
+    private String content;
+
+    /**
+     * 父评论ID
+     */
+    private Long parentId;
+
+    /**
+     * 在查询版本中的行号（跨版本定位结果；直接针对查询版本的评论与 lineNumber 相同）
+     */
+    private Integer anchorLine;
+
+    /**
+     * 是否已过时（所在行在后续版本中被删除或改写）
+     */
+    private Boolean outdated;
+
+    /**
+     * 修订号
+     */
+    private Integer revision;
+
+    /**
+     * 是否已删除（仅在评论串中保留结构时出现）
+     */
+    private Boolean deleted;
+
+    /**
+     * 作者ID
+     */
+    private Long authorId;
+
+    /**
+     * 作者用户名
+     */
+    private String authorUsername;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -0,0 +1,33 @@
+package com.jianxiang.codereviewer.dto.room;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户参与的房间响应 DTO（房间详情 + 用户在房间中的角色）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipatingRoomResponse {
+
+    /**
+     * 房间详情
+     */
+    private RoomResponse room;
+
+    /**
+     * 角色：OWNER（房主）/ MEMBER（成员）
+     */
+    private String role;
+
+    /**
+     * 加入时间
+     */
+    private LocalDateTime joinTime;
+}
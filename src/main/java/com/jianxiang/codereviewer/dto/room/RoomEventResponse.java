@@ -0,0 +1,51 @@
+package com.jianxiang.codereviewer.dto.room;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 房间历史事件响应 DTO（来自房间事件日志）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomEventResponse {
+
+    /**
+     * 事件序号
+     */
+    private Long seq;
+
+    /**
+     * 事件类型
+     */
+    private MessageType type;
+
+    /**
+     * 发送者ID
+     */
+    private Long senderId;
+
+    /**
+     * 发送者用户名
+     */
+    private String senderUsername;
+
+    /**
+     * 事件时间
+     */
+    private LocalDateTime timestamp;
+
+    /**
+     * 事件载荷（日志中保存的 JSON 原样输出，不重新解析）
+     */
+    @JsonRawValue
+    private String payload;
+}
@@ -0,0 +1,31 @@
+package com.jianxiang.codereviewer.dto.snapshot;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量上传代码快照请求 DTO（多个文件共用一个版本号）
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+public class CreateSnapshotTreeRequest {
+
+    /**
+     * 文件列表
+     */
+    @NotEmpty(message = "文件列表不能为空")
+    @Size(max = 1000, message = "单次最多上传1000个文件")
+    private List<@Valid SnapshotFileRequest> files;
+
+    /**
+     * 版本说明
+     */
+    @Size(max = 500, message = "版本说明长度不能超过500个字符")
+    private String description;
+}
@@ -0,0 +1,46 @@
+package com.jianxiang.codereviewer.dto.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 差异块 DTO（对应 unified diff 的一个 @@ 块，行号从1开始）
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiffHunk {
+
+    /**
+     * 旧版本起始行号
+     */
+    private Integer oldStart;
+
+    /**
+     * 旧版本行数
+     */
+    private Integer oldLines;
+
+    /**
+     * 新版本起始行号
+     */
+    private Integer newStart;
+
+    /**
+     * 新版本行数
+     */
+    private Integer newLines;
+
+    /**
+     * 块内的行
+     */
+    private List<DiffLine> lines;
+}
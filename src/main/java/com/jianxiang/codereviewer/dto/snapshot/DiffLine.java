@@ -0,0 +1,29 @@
+package com.jianxiang.codereviewer.dto.snapshot;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 差异行 DTO
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiffLine {
+
+    /**
+     * 行类型：CONTEXT（上下文）/ DELETE（删除）/ INSERT（新增）
+     */
+    private String type;
+
+    /**
+     * 行内容（不含换行符）
+     */
+    private String content;
+}
@@ -0,0 +1,35 @@
+package com.jianxiang.codereviewer.dto.snapshot;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * 从本地 Git 仓库导入快照请求 DTO
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+public class GitImportRequest {
+
+    /**
+     * 服务器上的仓库路径（相对路径基于配置的导入根目录）
+     */
+    @NotBlank(message = "仓库路径不能为空")
+    @Size(max = 1000, message = "仓库路径长度不能超过1000个字符")
+    private String repoPath;
+
+    /**
+     * 提交（如 main、a1b2c3d）或区间（如 main..feature，只导入区间内新增或修改的文件）
+     */
+    @NotBlank(message = "提交不能为空")
+    @Size(max = 200, message = "提交长度不能超过200个字符")
+    private String revision;
+
+    /**
+     * 版本说明
+     */
+    @Size(max = 500, message = "版本说明长度不能超过500个字符")
+    private String description;
+}
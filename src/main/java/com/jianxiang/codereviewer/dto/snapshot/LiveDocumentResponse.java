@@ -0,0 +1,40 @@
+package com.jianxiang.codereviewer.dto.snapshot;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 房间实时文档响应 DTO（最新快照 + 之后的代码更新）
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+@Builder
+public class LiveDocumentResponse {
+
+    /**
+     * 文件路径
+     */
+    private String filePath;
+
+    /**
+     * 基准快照版本，文件没有快照时为空
+     */
+    private Integer baseVersion;
+
+    /**
+     * 已应用的最后一条代码更新的事件序号
+     */
+    private Long lastSeq;
+
+    /**
+     * 当前行数
+     */
+    private Integer lineCount;
+
+    /**
+     * 当前内容
+     */
+    private String content;
+}
@@ -0,0 +1,47 @@
+package com.jianxiang.codereviewer.dto.snapshot;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 快照差异响应 DTO
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+@Builder
+public class SnapshotDiffResponse {
+
+    /**
+     * 所属房间ID
+     */
+    private Long roomId;
+
+    /**
+     * 起始版本号
+     */
+    private Integer fromVersion;
+
+    /**
+     * 目标版本号
+     */
+    private Integer toVersion;
+
+    /**
+     * 新增行数
+     */
+    private Integer addedLines;
+
+    /**
+     * 删除行数
+     */
+    private Integer removedLines;
+
+    /**
+     * 差异块
+     */
+    private List<DiffHunk> hunks;
+}
@@ -0,0 +1,36 @@
+package com.jianxiang.codereviewer.dto.snapshot;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * 批量上传中的单个文件 DTO
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+public class SnapshotFileRequest {
+
+    /**
+     * 文件路径（同一版本内唯一）
+     */
+    @NotBlank(message = "文件路径不能为空")
+    @Size(max = 500, message = "文件路径长度不能超过500个字符")
+    private String filePath;
+
+    /**
+     * 代码内容（允许为空文件）
+     */
+    @NotNull(message = "代码内容不能为空")
+    private String content;
+
+    /**
+     * 编程语言
+     */
+    @NotBlank(message = "编程语言不能为空")
+    @Size(max = 50, message = "编程语言长度不能超过50个字符")
+    private String language;
+}
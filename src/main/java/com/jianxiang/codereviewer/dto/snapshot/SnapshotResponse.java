@@ -35,6 +35,21 @@ public class SnapshotResponse {
      */
     private String content;
 
+    /**
+     * 内容大小（UTF-8 字节数）
+     */
+    private Long contentSize;
+
+    /**
+     * 内容哈希（SHA-256，同时用作 ETag）
+     */
+    private String contentHash;
+
+    /**
+     * 内容行数
+     */
+    private Integer lineCount;
+
     /**
      * 编程语言
      */
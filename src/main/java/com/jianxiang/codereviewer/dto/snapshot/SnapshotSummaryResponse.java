@@ -0,0 +1,73 @@
+package com.jianxiang.codereviewer.dto.snapshot;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 代码快照摘要响应 DTO（不含代码内容）
+ * 用于版本列表展示，内容按版本单独获取
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Data
+@Builder
+public class SnapshotSummaryResponse {
+
+    /**
+     * 快照ID
+     */
+    private Long id;
+
+    /**
+     * 所属房间ID
+     */
+    private Long roomId;
+
+    /**
+     * 版本号
+     */
+    private Integer version;
+
+    /**
+     * 内容大小（UTF-8 字节数）
+     */
+    private Long contentSize;
+
+    /**
+     * 内容行数
+     */
+    private Integer lineCount;
+
+    /**
+     * 编程语言
+     */
+    private String language;
+
+    /**
+     * 文件路径
+     */
+    private String filePath;
+
+    /**
+     * 版本说明
+     */
+    private String description;
+
+    /**
+     * 创建者ID
+     */
+    private Long createdBy;
+
+    /**
+     * 创建者用户名
+     */
+    private String createdByUsername;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+}
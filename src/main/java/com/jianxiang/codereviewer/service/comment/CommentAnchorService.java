@@ -0,0 +1,288 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.jianxiang.codereviewer.common.diff.MyersDiff;
+import com.jianxiang.codereviewer.common.util.ContentUtil;
+import com.jianxiang.codereviewer.common.util.LruCache;
+import com.jianxiang.codereviewer.domain.entity.CodeSnapshot;
+import com.jianxiang.codereviewer.domain.entity.CommentAnchor;
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import com.jianxiang.codereviewer.domain.repository.CodeSnapshotRepository;
+import com.jianxiang.codereviewer.domain.repository.CommentAnchorRepository;
+import com.jianxiang.codereviewer.service.snapshot.SnapshotContentStore;
+import com.jianxiang.codereviewer.domain.projection.CommentAnchorBacklog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @className: CommentAnchorService
+ * @author: jianXiang
+ * @description: 评论跨版本定位：每个新版本只与同一文件的上一版本做一次行级差异，
+ * 把上一版本中的评论位置（含更早版本推算来的位置）映射到新版本；所在行被删除或改写的评论标记为过时
+ * 待定位的版本由数据库推算（已分配的版本号超过房间的定位进度），同一房间按版本号升序逐个处理；
+ * 版本乱序提交或向更早版本添加评论时回退进度，重启或失败后由定时任务继续
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class CommentAnchorService {
+
+    private final CodeSnapshotRepository codeSnapshotRepository;
+    private final CommentAnchorRepository commentAnchorRepository;
+    private final SnapshotContentStore snapshotContentStore;
+    private final CommentIndexService commentIndexService;
+
+    /**
+     * 已计算的评论位置: (roomId, version, filePath) -> 位置列表
+     */
+    private final LruCache<AnchorKey, List<CommentAnchor>> anchorCache;
+
+    /**
+     * 各房间的处理请求数：非零表示该房间正在处理，处理期间的新请求在本轮结束后再处理一轮
+     */
+    private final Map<Long, Integer> roomRequests = new ConcurrentHashMap<>();
+
+    @Value("${comment.anchor.redrive-batch-size:100}")
+    private int redriveBatchSize;
+
+    private record AnchorKey(Long roomId, Integer version, String filePath) {}
+
+    /**
+     * 上一版本中的评论位置
+     */
+    record Position(Long commentId, Integer line, boolean outdated) {}
+
+    public CommentAnchorService(CodeSnapshotRepository codeSnapshotRepository,
+                                CommentAnchorRepository commentAnchorRepository,
+                                SnapshotContentStore snapshotContentStore,
+                                CommentIndexService commentIndexService,
+                                @Value("${comment.anchor.cache-max-entries:1024}") int cacheMaxEntries) {
+        this.codeSnapshotRepository = codeSnapshotRepository;
+        this.commentAnchorRepository = commentAnchorRepository;
+        this.snapshotContentStore = snapshotContentStore;
+        this.commentIndexService = commentIndexService;
+        this.anchorCache = new LruCache<>(cacheMaxEntries);
+    }
+
+    /**
+     * 新版本提交后在后台定位（立即返回）
+     * 进度已超过该版本（比它大的版本先提交并已定位）时回退，之后的版本基于它重新定位
+     */
+    public void onVersionCreated(Long roomId, Integer version) {
+        commentAnchorRepository.rewind(roomId, version - 1)
+                .doFinally(signal -> schedule(roomId))
+                .subscribe(null, e -> log.warn("回退评论定位进度失败: roomId={}, version={}, error={}",
+                        roomId, version, e.getMessage()));
+    }
+
+    /**
+     * 针对某个版本的顶层行评论添加后，若之后的版本已定位则回退进度，把新评论带到之后的版本
+     */
+    public void onCommentAdded(ReviewComment comment) {
+        if (comment.getParentId() != null || comment.getSnapshotVersion() == null
+                || comment.getLineNumber() == null) {
+            return;
+        }
+        Long roomId = comment.getRoomId();
+        commentAnchorRepository.rewind(roomId, comment.getSnapshotVersion())
+                .filter(rewound -> rewound)
+                .subscribe(rewound -> schedule(roomId),
+                        e -> log.warn("回退评论定位进度失败: roomId={}, commentId={}, error={}",
+                                roomId, comment.getId(), e.getMessage()));
+    }
+
+    /**
+     * 定时继续未完成的定位（启动后首次执行即恢复停机前未处理的版本，也用于重试失败的房间）
+     */
+    @Scheduled(fixedDelayString = "${comment.anchor.redrive-interval:60000}",
+            initialDelayString = "${comment.anchor.redrive-initial-delay:10000}")
+    public void redrive() {
+        commentAnchorRepository.findBacklog(redriveBatchSize)
+                .subscribe(backlog -> schedule(backlog.getRoomId()),
+                        e -> log.warn("查询待定位的评论版本失败: {}", e.getMessage()));
+    }
+
+    /**
+     * 查询版本中某个文件的评论位置（不含直接针对该版本的评论）
+     */
+    public Mono<List<CommentAnchor>> anchors(Long roomId, Integer version, String filePath) {
+        AnchorKey key = new AnchorKey(roomId, version, filePath);
+        List<CommentAnchor> cached = anchorCache.get(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return commentAnchorRepository.findByVersionFile(roomId, version, filePath)
+                .collectList()
+                .doOnNext(anchors -> anchorCache.put(key, anchors));
+    }
+
+    /**
+     * 快照删除后清理该版本文件的评论位置
+     */
+    public Mono<Void> evict(Long roomId, Integer version, String filePath) {
+        anchorCache.remove(new AnchorKey(roomId, version, filePath));
+        return commentAnchorRepository.deleteByVersionFile(roomId, version, filePath).then();
+    }
+
+    /**
+     * 提交房间处理请求；房间正在处理时只记录请求，由当前一轮结束后再处理一轮
+     */
+    private void schedule(Long roomId) {
+        AtomicBoolean start = new AtomicBoolean();
+        roomRequests.compute(roomId, (id, requests) -> {
+            if (requests == null) {
+                start.set(true);
+                return 1;
+            }
+            return requests + 1;
+        });
+        if (start.get()) {
+            drain(roomId);
+        }
+    }
+
+    private void drain(Long roomId) {
+        int handled = roomRequests.get(roomId);
+        anchorBacklog(roomId)
+                .onErrorResume(e -> {
+                    log.warn("评论定位失败，等待重试: roomId={}, error={}", roomId, e.getMessage());
+                    return Mono.empty();
+                })
+                .doFinally(signal -> {
+                    Integer remaining = roomRequests.compute(roomId,
+                            (id, requests) -> requests - handled == 0 ? null : requests - handled);
+                    if (remaining != null) {
+                        drain(roomId);
+                    }
+                })
+                .subscribe();
+    }
+
+    /**
+     * 按版本号升序定位房间的待定位区间，全部完成后推进进度（中途失败时进度不变，下次从头重算该区间）
+     */
+    private Mono<Void> anchorBacklog(Long roomId) {
+        return commentAnchorRepository.findBacklog(roomId)
+                .flatMap(backlog -> codeSnapshotRepository.findVersionsBetween(roomId,
+                                backlog.getFromVersion(), backlog.getToVersion())
+                        .concatMap(version -> anchorVersion(roomId, version))
+                        .then(advance(backlog)));
+    }
+
+    private Mono<Void> advance(CommentAnchorBacklog backlog) {
+        return commentAnchorRepository.advance(backlog.getRoomId(), backlog.getToVersion(), backlog.getRequestSeq())
+                .then();
+    }
+
+    /**
+     * 计算版本中每个文件的评论位置
+     */
+    private Mono<Integer> anchorVersion(Long roomId, Integer version) {
+        return codeSnapshotRepository.findSummariesByRoomIdAndVersion(roomId, version)
+                .concatMap(summary -> anchorFile(roomId, version, summary.getFilePath()))
+                .reduce(0, Integer::sum)
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        log.debug("评论定位完成: roomId={}, version={}, anchors={}", roomId, version, count);
+                    }
+                });
+    }
+
+    private Mono<Integer> anchorFile(Long roomId, Integer version, String filePath) {
+        return codeSnapshotRepository.findPreviousVersion(roomId, filePath, version)
+                .flatMap(previous -> Mono.zip(commentIndexService.index(roomId),
+                                anchors(roomId, previous.getVersion(), filePath))
+                        .map(tuple -> sourcePositions(tuple.getT1(), tuple.getT2(), previous.getVersion(), filePath))
+                        // 上一版本没有评论时不做差异
+                        .filter(positions -> !positions.isEmpty())
+                        .flatMap(positions -> codeSnapshotRepository.findFileByVersion(roomId, version, filePath)
+                                .flatMap(current -> Mono.zip(readText(previous), readText(current)))
+                                .publishOn(Schedulers.parallel())
+                                .map(texts -> relocate(positions, texts.getT1(), texts.getT2(),
+                                        roomId, version, filePath))))
+                .flatMap(anchors -> commentAnchorRepository.upsertAll(anchors)
+                        .doOnSuccess(rows -> anchorCache.put(new AnchorKey(roomId, version, filePath), anchors))
+                        .thenReturn(anchors.size()))
+                .defaultIfEmpty(0);
+    }
+
+    private Mono<String> readText(CodeSnapshot snapshot) {
+        return snapshotContentStore.readText(snapshot).defaultIfEmpty("");
+    }
+
+    /**
+     * 上一版本中的评论位置：由更早版本推算来的位置 + 直接针对上一版本的顶层评论（已删除的评论跳过）
+     */
+    static List<Position> sourcePositions(CommentLineIndex index, List<CommentAnchor> anchors,
+                                                  Integer version, String filePath) {
+        Map<Long, Position> positions = new LinkedHashMap<>();
+        for (CommentAnchor anchor : anchors) {
+            ReviewComment comment = index.get(anchor.getCommentId());
+            if (comment != null && !Boolean.TRUE.equals(comment.getDeleted())) {
+                positions.put(anchor.getCommentId(), new Position(anchor.getCommentId(), anchor.getLineNumber(),
+                        Boolean.TRUE.equals(anchor.getOutdated())));
+            }
+        }
+        for (ReviewComment comment : index.list(version, null)) {
+            if (comment.getParentId() == null && comment.getLineNumber() != null
+                    && Objects.equals(comment.getFilePath(), filePath)) {
+                positions.put(comment.getId(), new Position(comment.getId(), comment.getLineNumber(), false));
+            }
+        }
+        return new ArrayList<>(positions.values());
+    }
+
+    static List<CommentAnchor> relocate(List<Position> positions, String oldContent, String newContent,
+                                                Long roomId, Integer version, String filePath) {
+        List<String> oldLines = ContentUtil.splitLines(oldContent);
+        List<String> newLines = ContentUtil.splitLines(newContent);
+        int[] lineMap = mapLines(MyersDiff.diff(oldLines, newLines), oldLines.size());
+
+        List<CommentAnchor> anchors = new ArrayList<>(positions.size());
+        for (Position position : positions) {
+            Integer line = null;
+            if (!position.outdated() && position.line() != null
+                    && position.line() >= 1 && position.line() <= lineMap.length
+                    && lineMap[position.line() - 1] >= 0) {
+                line = lineMap[position.line() - 1] + 1;
+            }
+            CommentAnchor anchor = new CommentAnchor();
+            anchor.setCommentId(position.commentId());
+            anchor.setRoomId(roomId);
+            anchor.setSnapshotVersion(version);
+            anchor.setFilePath(filePath);
+            anchor.setLineNumber(line);
+            anchor.setOutdated(line == null);
+            anchors.add(anchor);
+        }
+        return anchors;
+    }
+
+    /**
+     * 旧版本行号（从 0 开始）到新版本行号的映射；被删除或改写的行为 -1
+     */
+    static int[] mapLines(List<MyersDiff.Edit> edits, int oldSize) {
+        int[] lineMap = new int[oldSize];
+        Arrays.fill(lineMap, -1);
+        for (MyersDiff.Edit edit : edits) {
+            if (edit.type() == MyersDiff.Type.EQUAL) {
+                for (int k = 0; k < edit.aLength(); k++) {
+                    lineMap[edit.aStart() + k] = edit.bStart() + k;
+                }
+            }
+        }
+        return lineMap;
+    }
+}
@@ -0,0 +1,72 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import com.jianxiang.codereviewer.domain.repository.ReviewCommentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @className: CommentCompactionService
+ * @author: jianXiang
+ * @description: 评论墓碑清理：删除超过保留期且没有未删除回复的墓碑，同步移出内存索引
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class CommentCompactionService {
+
+    private final ReviewCommentRepository reviewCommentRepository;
+    private final CommentIndexService commentIndexService;
+
+    @Value("${comment.tombstone.retention:604800000}")
+    private long retentionMillis;
+
+    @Value("${comment.tombstone.batch-size:500}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public CommentCompactionService(ReviewCommentRepository reviewCommentRepository,
+                                    CommentIndexService commentIndexService) {
+        this.reviewCommentRepository = reviewCommentRepository;
+        this.commentIndexService = commentIndexService;
+    }
+
+    /**
+     * 定时清理一批墓碑
+     */
+    @Scheduled(fixedDelayString = "${comment.tombstone.interval:3600000}",
+            initialDelayString = "${comment.tombstone.interval:3600000}")
+    public void compactTombstones() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        compactBatch()
+                .doFinally(signal -> running.set(false))
+                .subscribe(count -> {
+                    if (count > 0) {
+                        log.info("评论墓碑清理完成: {} 条", count);
+                    }
+                }, e -> log.warn("评论墓碑清理失败: {}", e.getMessage()));
+    }
+
+    public Mono<Integer> compactBatch() {
+        LocalDateTime before = LocalDateTime.now().minus(Duration.ofMillis(retentionMillis));
+        return reviewCommentRepository.findCompactableTombstones(before, batchSize)
+                .collectList()
+                .flatMap(tombstones -> tombstones.isEmpty()
+                        ? Mono.just(0)
+                        : reviewCommentRepository.deleteTombstones(
+                                        tombstones.stream().map(ReviewComment::getId).toList())
+                                .doOnSuccess(deleted -> tombstones.forEach(tombstone ->
+                                        commentIndexService.onCommentRemoved(tombstone.getRoomId(),
+                                                tombstone.getId()))));
+    }
+}
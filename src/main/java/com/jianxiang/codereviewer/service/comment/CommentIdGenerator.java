@@ -0,0 +1,67 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.jianxiang.codereviewer.domain.repository.ReviewCommentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * @className: CommentIdGenerator
+ * @author: jianXiang
+ * @description: 评论ID号段生成器：每次从数据库取一段ID在内存中发放，号段用完才访问数据库
+ * @date: 2026/10/19
+ */
+@Component
+public class CommentIdGenerator {
+
+    private final ReviewCommentRepository reviewCommentRepository;
+    private final int blockSize;
+
+    /**
+     * 当前号段中下一个可用ID与号段上界（由 this 保护）
+     */
+    private long nextId = 1;
+    private long lastId = 0;
+
+    /**
+     * 进行中的号段申请（并发请求共用一次申请）
+     */
+    private Mono<Long> refill;
+
+    public CommentIdGenerator(ReviewCommentRepository reviewCommentRepository,
+                              @Value("${comment.id-block-size:1000}") int blockSize) {
+        this.reviewCommentRepository = reviewCommentRepository;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * 获取下一个评论ID
+     */
+    public Mono<Long> nextId() {
+        return Mono.defer(() -> {
+            Mono<Long> pending;
+            synchronized (this) {
+                if (nextId <= lastId) {
+                    return Mono.just(nextId++);
+                }
+                if (refill == null) {
+                    refill = reviewCommentRepository.allocateIdBlock(blockSize)
+                            .doOnNext(this::onBlockAllocated)
+                            .doFinally(signal -> clearRefill())
+                            .cache();
+                }
+                pending = refill;
+            }
+            return pending.then(nextId());
+        });
+    }
+
+    private synchronized void onBlockAllocated(Long blockEnd) {
+        nextId = blockEnd - blockSize + 1;
+        lastId = blockEnd;
+    }
+
+    private synchronized void clearRefill() {
+        refill = null;
+    }
+}
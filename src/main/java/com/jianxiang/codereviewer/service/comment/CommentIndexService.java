@@ -0,0 +1,144 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.jianxiang.codereviewer.common.cluster.ClusterInvalidationBus;
+import com.jianxiang.codereviewer.common.util.LruCache;
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import com.jianxiang.codereviewer.domain.repository.ReviewCommentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @className: CommentIndexService
+ * @author: jianXiang
+ * @description: 评论读模型：按房间懒加载评论行号索引，之后由评论事件增量维护，查询不再访问数据库
+ * 本节点的事件只覆盖本节点的写入，其他节点写库后通过失效通知丢弃对应房间的索引，下次查询重新加载
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class CommentIndexService {
+
+    private final ReviewCommentRepository reviewCommentRepository;
+    private final CommentWriteBehindBuffer writeBehindBuffer;
+    private final ClusterInvalidationBus clusterInvalidationBus;
+
+    /**
+     * 已加载的房间索引（按最近访问淘汰）
+     */
+    private final LruCache<Long, CommentLineIndex> indexes;
+
+    /**
+     * 加载中的房间索引：加载期间到达的事件同样写入，避免加载结果覆盖新事件
+     */
+    private final Map<Long, CommentLineIndex> building = new ConcurrentHashMap<>();
+
+    /**
+     * 进行中的加载（同一房间并发查询共用一次加载）
+     */
+    private final Map<Long, Mono<CommentLineIndex>> loading = new ConcurrentHashMap<>();
+
+    public CommentIndexService(ReviewCommentRepository reviewCommentRepository,
+                               CommentWriteBehindBuffer writeBehindBuffer,
+                               ClusterInvalidationBus clusterInvalidationBus,
+                               @Value("${comment.index.max-rooms:256}") int maxRooms) {
+        this.reviewCommentRepository = reviewCommentRepository;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.clusterInvalidationBus = clusterInvalidationBus;
+        this.indexes = new LruCache<>(maxRooms);
+    }
+
+    @PostConstruct
+    public void subscribeInvalidation() {
+        clusterInvalidationBus.subscribe(CommentWriteBehindBuffer.WRITTEN_TOPIC,
+                key -> invalidate(Long.valueOf(key)),
+                () -> indexes.removeIf(roomId -> true));
+    }
+
+    /**
+     * 获取房间索引，未加载时从数据库和写后缓冲构建
+     */
+    public Mono<CommentLineIndex> index(Long roomId) {
+        CommentLineIndex loaded = indexes.get(roomId);
+        if (loaded != null) {
+            return Mono.just(loaded);
+        }
+        return loading.computeIfAbsent(roomId, this::startLoad);
+    }
+
+    /**
+     * 评论新增或修改后同步到已加载（或加载中）的索引
+     */
+    public void onCommentSaved(ReviewComment comment) {
+        CommentLineIndex loaded = indexes.get(comment.getRoomId());
+        if (loaded != null) {
+            loaded.merge(comment);
+        }
+        CommentLineIndex pending = building.get(comment.getRoomId());
+        if (pending != null) {
+            pending.merge(comment);
+        }
+    }
+
+    /**
+     * 评论删除后同步到索引
+     */
+    public void onCommentRemoved(Long roomId, Long commentId) {
+        CommentLineIndex loaded = indexes.get(roomId);
+        if (loaded != null) {
+            loaded.remove(commentId);
+        }
+        CommentLineIndex pending = building.get(roomId);
+        if (pending != null) {
+            pending.remove(commentId);
+        }
+    }
+
+    /**
+     * 丢弃房间索引（其他节点写入了该房间的评论）
+     * 进行中的加载可能读到写入前的数据，同时作废，其结果不再放入缓存
+     */
+    public synchronized void invalidate(Long roomId) {
+        indexes.remove(roomId);
+        loading.remove(roomId);
+        building.remove(roomId);
+    }
+
+    private Mono<CommentLineIndex> startLoad(Long roomId) {
+        // 只移除自己这次加载（失效后可能已开始新的加载）
+        AtomicReference<Mono<CommentLineIndex>> self = new AtomicReference<>();
+        Mono<CommentLineIndex> shared = load(roomId)
+                .doFinally(signal -> loading.remove(roomId, self.get()))
+                .cache();
+        self.set(shared);
+        return shared;
+    }
+
+    private Mono<CommentLineIndex> load(Long roomId) {
+        CommentLineIndex index = new CommentLineIndex();
+        return Mono.defer(() -> {
+                    building.put(roomId, index);
+                    return reviewCommentRepository.findByRoom(roomId, null, null)
+                            .doOnNext(index::merge)
+                            .then();
+                })
+                .then(Mono.fromCallable(() -> {
+                    // 数据库结果之后再合并缓冲区：未写库的评论和比库内更新的修改以缓冲区为准
+                    writeBehindBuffer.pending(roomId).forEach(index::merge);
+                    synchronized (this) {
+                        if (building.get(roomId) == index) {
+                            indexes.put(roomId, index);
+                        }
+                    }
+                    log.debug("评论索引已加载: roomId={}, comments={}", roomId, index.size());
+                    return index;
+                }))
+                .doFinally(signal -> building.remove(roomId, index));
+    }
+}
@@ -0,0 +1,219 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * 单个房间的评论行号索引（纯内存数据结构）
+ *
+ * 顶层评论按 (快照版本, 文件路径) 分组，组内按行号放入 TreeMap，行区间查询为一次 subMap；
+ * 回复按父评论ID分组，用于展开评论串。已删除的评论以墓碑保留（区间查询和列表中不返回），
+ * 评论串中保留墓碑以维持回复结构。
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+public class CommentLineIndex {
+
+    private static final Comparator<ReviewComment> BY_ID = Comparator.comparing(ReviewComment::getId);
+
+    /**
+     * 全部评论: commentId -> 评论
+     */
+    private final Map<Long, ReviewComment> comments = new HashMap<>();
+
+    /**
+     * 顶层评论: (版本, 文件) -> 行号 -> 评论集合
+     */
+    private final Map<FileKey, TreeMap<Integer, TreeSet<ReviewComment>>> lines = new HashMap<>();
+
+    /**
+     * 回复: parentId -> 回复集合
+     */
+    private final Map<Long, TreeSet<ReviewComment>> replies = new HashMap<>();
+
+    private record FileKey(Integer version, String filePath) {}
+
+    /**
+     * 新增或替换评论；已有修订号更大的版本时忽略（用于合并数据库加载结果与实时事件）
+     *
+     * @return 是否写入
+     */
+    public synchronized boolean merge(ReviewComment comment) {
+        ReviewComment previous = comments.get(comment.getId());
+        if (previous != null && revision(comment) < revision(previous)) {
+            return false;
+        }
+        if (previous != null) {
+            unlink(previous);
+        }
+        comments.put(comment.getId(), comment);
+        link(comment);
+        return true;
+    }
+
+    /**
+     * 移除评论（其回复保留，仍可按父评论ID展开）
+     */
+    public synchronized void remove(Long commentId) {
+        ReviewComment previous = comments.remove(commentId);
+        if (previous != null) {
+            unlink(previous);
+        }
+    }
+
+    public synchronized ReviewComment get(Long commentId) {
+        return comments.get(commentId);
+    }
+
+    /**
+     * 基于当前版本原子地生成并写入新版本（修改、删除时使用，保证修订号不重复）
+     *
+     * @param update 输入当前版本（不存在时为 null），返回新版本；可抛出异常拒绝修改
+     * @return 新版本
+     */
+    public synchronized ReviewComment compute(Long commentId, UnaryOperator<ReviewComment> update) {
+        ReviewComment next = update.apply(comments.get(commentId));
+        merge(next);
+        return next;
+    }
+
+    /**
+     * 查询文件行区间内的顶层评论，按行号、ID排列
+     *
+     * @param version  快照版本号（为空时匹配所有版本）
+     * @param filePath 文件路径
+     * @param fromLine 起始行（含，可为空）
+     * @param toLine   结束行（含，可为空）
+     */
+    public synchronized List<ReviewComment> range(Integer version, String filePath, Integer fromLine, Integer toLine) {
+        int from = fromLine == null ? Integer.MIN_VALUE : fromLine;
+        int to = toLine == null ? Integer.MAX_VALUE : toLine;
+        if (from > to) {
+            return List.of();
+        }
+        List<ReviewComment> result = new ArrayList<>();
+        for (Map.Entry<FileKey, TreeMap<Integer, TreeSet<ReviewComment>>> entry : lines.entrySet()) {
+            FileKey key = entry.getKey();
+            if (!Objects.equals(key.filePath(), filePath) || (version != null && !version.equals(key.version()))) {
+                continue;
+            }
+            NavigableMap<Integer, TreeSet<ReviewComment>> slice = entry.getValue().subMap(from, true, to, true);
+            for (TreeSet<ReviewComment> atLine : slice.values()) {
+                for (ReviewComment comment : atLine) {
+                    if (!isDeleted(comment)) {
+                        result.add(comment);
+                    }
+                }
+            }
+        }
+        if (version == null) {
+            // 多个版本的结果拼接后重新排序
+            result.sort(Comparator.comparing(ReviewComment::getLineNumber).thenComparing(BY_ID));
+        }
+        return result;
+    }
+
+    /**
+     * 按条件列出评论（含回复），按ID排列
+     */
+    public synchronized List<ReviewComment> list(Integer version, String filePath) {
+        List<ReviewComment> result = new ArrayList<>();
+        for (ReviewComment comment : comments.values()) {
+            if (!isDeleted(comment)
+                    && (filePath == null || filePath.equals(comment.getFilePath()))
+                    && (version == null || version.equals(comment.getSnapshotVersion()))) {
+                result.add(comment);
+            }
+        }
+        result.sort(BY_ID);
+        return result;
+    }
+
+    /**
+     * 展开评论串：根评论及其所有层级的回复（广度优先，同层按ID排列）
+     */
+    public synchronized List<ReviewComment> thread(Long rootId) {
+        ReviewComment root = comments.get(rootId);
+        if (root == null) {
+            return List.of();
+        }
+        List<ReviewComment> result = new ArrayList<>();
+        Deque<ReviewComment> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            ReviewComment comment = queue.poll();
+            result.add(comment);
+            TreeSet<ReviewComment> children = replies.get(comment.getId());
+            if (children != null) {
+                queue.addAll(children);
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return comments.size();
+    }
+
+    private static int revision(ReviewComment comment) {
+        return comment.getRevision() == null ? 0 : comment.getRevision();
+    }
+
+    private static boolean isDeleted(ReviewComment comment) {
+        return Boolean.TRUE.equals(comment.getDeleted());
+    }
+
+    private void link(ReviewComment comment) {
+        if (comment.getParentId() != null) {
+            replies.computeIfAbsent(comment.getParentId(), id -> new TreeSet<>(BY_ID)).add(comment);
+        } else if (comment.getLineNumber() != null) {
+            lines.computeIfAbsent(new FileKey(comment.getSnapshotVersion(), comment.getFilePath()), key -> new TreeMap<>())
+                    .computeIfAbsent(comment.getLineNumber(), line -> new TreeSet<>(BY_ID))
+                    .add(comment);
+        }
+    }
+
+    private void unlink(ReviewComment comment) {
+        if (comment.getParentId() != null) {
+            TreeSet<ReviewComment> children = replies.get(comment.getParentId());
+            if (children != null) {
+                children.remove(comment);
+                if (children.isEmpty()) {
+                    replies.remove(comment.getParentId());
+                }
+            }
+            return;
+        }
+        if (comment.getLineNumber() == null) {
+            return;
+        }
+        FileKey key = new FileKey(comment.getSnapshotVersion(), comment.getFilePath());
+        TreeMap<Integer, TreeSet<ReviewComment>> byLine = lines.get(key);
+        if (byLine == null) {
+            return;
+        }
+        TreeSet<ReviewComment> atLine = byLine.get(comment.getLineNumber());
+        if (atLine != null) {
+            atLine.remove(comment);
+            if (atLine.isEmpty()) {
+                byLine.remove(comment.getLineNumber());
+            }
+        }
+        if (byLine.isEmpty()) {
+            lines.remove(key);
+        }
+    }
+}
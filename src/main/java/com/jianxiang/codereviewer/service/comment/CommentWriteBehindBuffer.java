@@ -0,0 +1,295 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.common.cluster.ClusterInvalidationBus;
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import com.jianxiang.codereviewer.domain.repository.ReviewCommentRepository;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @className: CommentWriteBehindBuffer
+ * @author: jianXiang
+ * @description: 评论写后缓冲：写入先进入内存，按固定间隔或攒满一批时以多行 INSERT 刷到数据库
+ * 按评论ID去重，同一评论在刷盘前的多次修改只写最后一次；缓冲区满时拒绝新写入
+ * 一批因数据错误写入失败时二分重试，定位到的单条坏数据转入死信文件，不会阻塞后续评论；
+ * 停机时未能写库的评论转存到本地文件，下次启动时重新放入缓冲区；
+ * 写库后通知其他节点涉及的房间（其内存中的评论索引需要重新加载）
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class CommentWriteBehindBuffer {
+
+    /**
+     * 评论写库通知主题，失效键为房间ID
+     */
+    public static final String WRITTEN_TOPIC = "comment-written";
+
+    private static final String SPILL_FILE = "pending.ndjson";
+    private static final String DEAD_LETTER_FILE = "dead-letter.ndjson";
+
+    private final ReviewCommentRepository reviewCommentRepository;
+    private final ObjectMapper objectMapper;
+    private final ClusterInvalidationBus clusterInvalidationBus;
+    private final Path spillDirectory;
+    private final int capacity;
+    private final int batchSize;
+    private final long shutdownTimeoutMillis;
+
+    /**
+     * 待写入的评论: 评论ID -> 最新内容（按首次写入顺序，由 this 保护）
+     */
+    private final LinkedHashMap<Long, ReviewComment> dirty = new LinkedHashMap<>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    public CommentWriteBehindBuffer(ReviewCommentRepository reviewCommentRepository,
+                                    ObjectMapper objectMapper,
+                                    ClusterInvalidationBus clusterInvalidationBus,
+                                    @Value("${comment.write-behind.spill-dir:data/comment-spill}") String spillDirectory,
+                                    @Value("${comment.write-behind.capacity:10000}") int capacity,
+                                    @Value("${comment.write-behind.batch-size:500}") int batchSize,
+                                    @Value("${comment.write-behind.shutdown-timeout:10000}") long shutdownTimeoutMillis) {
+        this.reviewCommentRepository = reviewCommentRepository;
+        this.objectMapper = objectMapper;
+        this.clusterInvalidationBus = clusterInvalidationBus;
+        this.spillDirectory = Paths.get(spillDirectory);
+        this.capacity = capacity;
+        this.batchSize = Math.max(1, batchSize);
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    /**
+     * 启动时重新放入上次停机转存的评论（写库按修订号判断，重复写入不会覆盖更新的版本）
+     */
+    @PostConstruct
+    public void recoverSpilled() {
+        Path file = spillDirectory.resolve(SPILL_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            int count = 0;
+            synchronized (this) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        ReviewComment comment = objectMapper.readValue(line, ReviewComment.class);
+                        dirty.putIfAbsent(comment.getId(), comment);
+                        count++;
+                    }
+                }
+            }
+            Files.delete(file);
+            log.info("恢复停机时转存的缓冲评论: {} 条", count);
+        } catch (IOException e) {
+            // 保留文件，人工处理后再启动不会丢失
+            log.error("恢复停机时转存的缓冲评论失败: {}, error={}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * 放入缓冲区；同一评论已在缓冲区时直接覆盖（不占用新容量）
+     *
+     * @throws BusinessException 缓冲区已满
+     */
+    public void enqueue(ReviewComment comment) {
+        int size;
+        synchronized (this) {
+            if (dirty.size() >= capacity && !dirty.containsKey(comment.getId())) {
+                throw new BusinessException(503, "评论写入繁忙，请稍后重试");
+            }
+            dirty.put(comment.getId(), comment);
+            size = dirty.size();
+        }
+        // 攒满一批时不等定时任务，立即刷盘
+        if (size >= batchSize) {
+            flushAsync();
+        }
+    }
+
+    /**
+     * 房间中尚未写入数据库的评论（读取时与数据库结果合并）
+     */
+    public synchronized List<ReviewComment> pending(Long roomId) {
+        List<ReviewComment> comments = new ArrayList<>();
+        for (ReviewComment comment : dirty.values()) {
+            if (comment.getRoomId().equals(roomId)) {
+                comments.add(comment);
+            }
+        }
+        return comments;
+    }
+
+    public synchronized int size() {
+        return dirty.size();
+    }
+
+    /**
+     * 定时刷盘
+     */
+    @Scheduled(fixedDelayString = "${comment.write-behind.interval:200}")
+    public void flushAsync() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        flushAll()
+                .doFinally(signal -> flushing.set(false))
+                .subscribe(count -> {
+                    if (count > 0) {
+                        log.debug("评论批量写入: {} 条", count);
+                    }
+                }, e -> log.warn("评论批量写入失败，等待下次重试: {}", e.getMessage()));
+    }
+
+    /**
+     * 循环写入直到缓冲区清空
+     */
+    public Mono<Long> flushAll() {
+        return flushBatch()
+                .expand(written -> written > 0 && size() > 0 ? flushBatch() : Mono.empty())
+                .reduce(0L, Long::sum);
+    }
+
+    /**
+     * 停机前写入缓冲评论，超时或失败时剩余评论转存到本地文件，下次启动时恢复
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (size() == 0) {
+            return;
+        }
+        try {
+            Long written = flushAll().block(Duration.ofMillis(shutdownTimeoutMillis));
+            log.info("停机前写入缓冲评论: {} 条", written);
+        } catch (Exception e) {
+            log.warn("停机前写入缓冲评论失败，剩余 {} 条转存到本地: {}", size(), e.getMessage());
+        }
+        List<ReviewComment> remaining;
+        synchronized (this) {
+            remaining = new ArrayList<>(dirty.values());
+        }
+        if (remaining.isEmpty()) {
+            return;
+        }
+        try {
+            appendLines(SPILL_FILE, remaining);
+            log.info("缓冲评论已转存: {} 条, 文件={}", remaining.size(), spillDirectory.resolve(SPILL_FILE));
+        } catch (IOException e) {
+            log.error("缓冲评论转存失败，丢失 {} 条: {}", remaining.size(), e.getMessage());
+            remaining.forEach(comment -> log.error("丢失的评论: {}", comment));
+        }
+    }
+
+    /**
+     * 写入一批：写入成功后只移除未被再次修改的条目，写入期间的新修改留待下一批
+     */
+    private Mono<Long> flushBatch() {
+        List<ReviewComment> batch = takeBatch();
+        if (batch.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return write(batch);
+    }
+
+    /**
+     * 写入评论；因数据错误（超长、约束冲突等）失败时二分重试，单条仍失败的转入死信
+     * 连接中断、超时等其他错误原样抛出，整批留在缓冲区等待下次重试
+     */
+    private Mono<Long> write(List<ReviewComment> batch) {
+        return reviewCommentRepository.upsertAll(batch)
+                .doOnSuccess(rows -> {
+                    removeWritten(batch);
+                    publishWritten(batch);
+                })
+                .thenReturn((long) batch.size())
+                .onErrorResume(CommentWriteBehindBuffer::isDataError, e -> {
+                    if (batch.size() == 1) {
+                        return deadLetter(batch.get(0), e).thenReturn(1L);
+                    }
+                    int middle = batch.size() / 2;
+                    return write(batch.subList(0, middle))
+                            .concatWith(write(batch.subList(middle, batch.size())))
+                            .reduce(0L, Long::sum);
+                });
+    }
+
+    private void publishWritten(List<ReviewComment> batch) {
+        batch.stream()
+                .map(ReviewComment::getRoomId)
+                .distinct()
+                .forEach(roomId -> clusterInvalidationBus.publish(WRITTEN_TOPIC, String.valueOf(roomId)));
+    }
+
+    private static boolean isDataError(Throwable e) {
+        return e instanceof DataIntegrityViolationException || e instanceof R2dbcDataIntegrityViolationException;
+    }
+
+    /**
+     * 无法写入的评论追加到死信文件并移出缓冲区（死信文件写入失败时完整记录到日志）
+     */
+    private Mono<Void> deadLetter(ReviewComment comment, Throwable cause) {
+        return Mono.fromRunnable(() -> {
+                    log.error("评论无法写入数据库，转入死信: id={}, roomId={}, error={}",
+                            comment.getId(), comment.getRoomId(), cause.getMessage());
+                    try {
+                        appendLines(DEAD_LETTER_FILE, List.of(comment));
+                    } catch (IOException e) {
+                        log.error("写入评论死信文件失败: {}, comment={}", e.getMessage(), comment);
+                    }
+                    removeWritten(List.of(comment));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    private void appendLines(String fileName, List<ReviewComment> comments) throws IOException {
+        Files.createDirectories(spillDirectory);
+        try (BufferedWriter writer = Files.newBufferedWriter(spillDirectory.resolve(fileName), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (ReviewComment comment : comments) {
+                writer.write(objectMapper.writeValueAsString(comment));
+                writer.newLine();
+            }
+        }
+    }
+
+    private synchronized List<ReviewComment> takeBatch() {
+        List<ReviewComment> batch = new ArrayList<>(Math.min(batchSize, dirty.size()));
+        for (ReviewComment comment : dirty.values()) {
+            if (batch.size() >= batchSize) {
+                break;
+            }
+            batch.add(comment);
+        }
+        return batch;
+    }
+
+    private synchronized void removeWritten(List<ReviewComment> batch) {
+        for (ReviewComment comment : batch) {
+            dirty.remove(comment.getId(), comment);
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.common.util.LruCache;
+import com.jianxiang.codereviewer.domain.entity.CommentAnchor;
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
+import com.jianxiang.codereviewer.domain.entity.User;
+import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
+import com.jianxiang.codereviewer.domain.repository.RoomMemberRepository;
+import com.jianxiang.codereviewer.domain.repository.UserRepository;
+import com.jianxiang.codereviewer.dto.comment.CommentResponse;
+import com.jianxiang.codereviewer.websocket.message.payload.CommentPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @className: ReviewCommentService
+ * @author: jianXiang
+ * @description: 评审评论服务：WebSocket 评论立即分配ID并确认，写库由写后缓冲批量完成
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class ReviewCommentService {
+
+    /**
+     * 文件路径最大字符数（review_comment.file_path 为 VARCHAR(512)）
+     */
+    private static final int MAX_FILE_PATH_LENGTH = 512;
+
+    private final ReviewRoomRepository reviewRoomRepository;
+    private final RoomMemberRepository roomMemberRepository;
+    private final UserRepository userRepository;
+    private final CommentIdGenerator commentIdGenerator;
+    private final CommentWriteBehindBuffer writeBehindBuffer;
+    private final CommentIndexService commentIndexService;
+    private final CommentAnchorService commentAnchorService;
+    private final int maxLength;
+    private final Duration conflationWindow;
+
+    /**
+     * 房间码 -> 房间ID（房间码创建后不变），评论写入路径不再查询房间
+     */
+    private final LruCache<String, Long> roomIdCache;
+
+    /**
+     * 作者ID -> 用户名，查询评论时只为未缓存的作者查库；条目过期后重新查询
+     */
+    private final LruCache<Long, CachedUsername> usernameCache;
+    private final long usernameTtlMillis;
+
+    /**
+     * 合并窗口内待发布的修改: commentId -> 最新版本
+     * 窗口内的第一次修改负责在窗口结束时发布最新版本，后续修改只替换内容
+     */
+    private final Map<Long, ReviewComment> conflating = new ConcurrentHashMap<>();
+
+    private record CachedUsername(String username, long loadedAt) {}
+
+    public ReviewCommentService(ReviewRoomRepository reviewRoomRepository,
+                                RoomMemberRepository roomMemberRepository,
+                                UserRepository userRepository,
+                                CommentIdGenerator commentIdGenerator,
+                                CommentWriteBehindBuffer writeBehindBuffer,
+                                CommentIndexService commentIndexService,
+                                CommentAnchorService commentAnchorService,
+                                @Value("${comment.max-length:10000}") int maxLength,
+                                @Value("${comment.room-cache-entries:10000}") int roomCacheEntries,
+                                @Value("${comment.username-cache.max-entries:10000}") int usernameCacheEntries,
+                                @Value("${comment.username-cache.ttl:600000}") long usernameTtlMillis,
+                                @Value("${comment.conflation-window:300}") long conflationWindowMillis) {
+        this.reviewRoomRepository = reviewRoomRepository;
+        this.roomMemberRepository = roomMemberRepository;
+        this.userRepository = userRepository;
+        this.commentIdGenerator = commentIdGenerator;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.commentIndexService = commentIndexService;
+        this.commentAnchorService = commentAnchorService;
+        this.maxLength = maxLength;
+        this.conflationWindow = Duration.ofMillis(conflationWindowMillis);
+        this.roomIdCache = new LruCache<>(roomCacheEntries);
+        this.usernameCache = new LruCache<>(usernameCacheEntries);
+        this.usernameTtlMillis = usernameTtlMillis;
+    }
+
+    /**
+     * 添加评论：分配ID后放入写后缓冲即返回，返回的载荷带服务端ID和创建时间
+     */
+    public Mono<CommentPayload> addComment(String roomCode, Long userId, CommentPayload payload) {
+        if (payload == null || payload.getContent() == null || payload.getContent().isBlank()) {
+            return Mono.error(new BusinessException("评论内容不能为空"));
+        }
+        if (payload.getContent().length() > maxLength) {
+            return Mono.error(new BusinessException("评论内容不能超过" + maxLength + "个字符"));
+        }
+        String filePath = payload.getFilePath();
+        if (filePath != null && filePath.codePointCount(0, filePath.length()) > MAX_FILE_PATH_LENGTH) {
+            return Mono.error(new BusinessException("文件路径不能超过" + MAX_FILE_PATH_LENGTH + "个字符"));
+        }
+
+        return resolveRoomId(roomCode)
+                .flatMap(roomId -> checkParent(roomId, payload.getParentId()).thenReturn(roomId))
+                .zipWith(commentIdGenerator.nextId())
+                .map(tuple -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    ReviewComment comment = new ReviewComment();
+                    comment.setId(tuple.getT2());
+                    comment.setRoomId(tuple.getT1());
+                    comment.setSnapshotVersion(payload.getSnapshotVersion());
+                    comment.setFilePath(payload.getFilePath());
+                    comment.setLineNumber(payload.getLineNumber());
+                    comment.setContent(payload.getContent());
+                    comment.setParentId(payload.getParentId());
+                    comment.setRevision(1);
+                    comment.setDeleted(false);
+                    comment.setAuthorId(userId);
+                    comment.setCreateTime(now);
+                    comment.setUpdateTime(now);
+
+                    writeBehindBuffer.enqueue(comment);
+                    commentIndexService.onCommentSaved(comment);
+                    commentAnchorService.onCommentAdded(comment);
+                    return toPayload(comment);
+                });
+    }
+
+    /**
+     * 修改评论（仅作者）：立即更新内存索引并分配新修订号，
+     * 合并窗口内同一评论的连续修改只广播、写库最后一次
+     *
+     * @return 窗口结束时的最新版本；被同一窗口内更早的修改合并时为空
+     */
+    public Mono<CommentPayload> updateComment(String roomCode, Long userId, CommentPayload payload) {
+        if (payload == null || payload.getCommentId() == null) {
+            return Mono.error(new BusinessException("评论ID不能为空"));
+        }
+        if (payload.getContent() == null || payload.getContent().isBlank()) {
+            return Mono.error(new BusinessException("评论内容不能为空"));
+        }
+        if (payload.getContent().length() > maxLength) {
+            return Mono.error(new BusinessException("评论内容不能超过" + maxLength + "个字符"));
+        }
+
+        return resolveRoomId(roomCode)
+                .flatMap(commentIndexService::index)
+                .map(index -> index.compute(payload.getCommentId(), current -> {
+                    ReviewComment next = nextRevision(latest(current), userId);
+                    next.setContent(payload.getContent());
+                    return next;
+                }))
+                .flatMap(updated -> {
+                    AtomicBoolean opensWindow = new AtomicBoolean();
+                    conflating.compute(updated.getId(), (id, pending) -> {
+                        if (pending == null) {
+                            opensWindow.set(true);
+                            return updated;
+                        }
+                        // 并发修改可能乱序到达，只保留修订号更大的版本
+                        return revision(updated) > revision(pending) ? updated : pending;
+                    });
+                    if (!opensWindow.get()) {
+                        // 已有窗口在等待，由它发布最新版本
+                        return Mono.empty();
+                    }
+                    return Mono.delay(conflationWindow)
+                            .flatMap(tick -> {
+                                ReviewComment latest = conflating.remove(updated.getId());
+                                if (latest == null) {
+                                    // 窗口内评论已被删除
+                                    return Mono.empty();
+                                }
+                                writeBehindBuffer.enqueue(latest);
+                                return Mono.just(toPayload(latest));
+                            });
+                });
+    }
+
+    /**
+     * 删除评论（仅作者）：写入墓碑并立即广播，墓碑在保留期后由清理任务物理删除
+     */
+    public Mono<CommentPayload> deleteComment(String roomCode, Long userId, CommentPayload payload) {
+        if (payload == null || payload.getCommentId() == null) {
+            return Mono.error(new BusinessException("评论ID不能为空"));
+        }
+        return resolveRoomId(roomCode)
+                .flatMap(commentIndexService::index)
+                .map(index -> index.compute(payload.getCommentId(), current -> {
+                    ReviewComment tombstone = nextRevision(latest(current), userId);
+                    tombstone.setContent("");
+                    tombstone.setDeleted(true);
+                    return tombstone;
+                }))
+                .map(tombstone -> {
+                    // 删除覆盖窗口内尚未发布的修改
+                    conflating.remove(tombstone.getId());
+                    writeBehindBuffer.enqueue(tombstone);
+                    return toPayload(tombstone);
+                });
+    }
+
+    /**
+     * 查询房间评论（仅房间成员），由内存索引提供，包含尚未写入数据库的评论
+     * 指定文件路径和行区间时只返回区间内的顶层评论（回复通过评论串展开）
+     *
+     * @param filePath 文件路径（可选）
+     * @param version  快照版本号（可选）
+     * @param fromLine 起始行（可选，需同时指定文件路径）
+     * @param toLine   结束行（可选，需同时指定文件路径）
+     */
+    public Flux<CommentResponse> listComments(String roomCode, Long userId, String filePath, Integer version,
+                                              Integer fromLine, Integer toLine) {
+        if ((fromLine != null || toLine != null) && filePath == null) {
+            return Flux.error(new BusinessException("按行区间查询时必须指定文件路径"));
+        }
+        boolean ranged = fromLine != null || toLine != null;
+        return findRoomIdAsMember(roomCode, userId)
+                .flatMap(commentIndexService::index)
+                .map(index -> ranged
+                        ? index.range(version, filePath, fromLine, toLine)
+                        : index.list(version, filePath))
+                .flatMapMany(this::toResponses);
+    }
+
+    /**
+     * 查询某个版本中文件的评论（含更早版本的评论定位到该版本后的位置），按行号排列
+     * 更早版本的评论只返回顶层评论，回复通过评论串展开
+     */
+    public Flux<CommentResponse> listAnchoredComments(String roomCode, Long userId, Integer version,
+                                                      String filePath) {
+        return findRoomIdAsMember(roomCode, userId)
+                .flatMap(roomId -> Mono.zip(commentIndexService.index(roomId),
+                        commentAnchorService.anchors(roomId, version, filePath)))
+                .flatMapMany(tuple -> {
+                    CommentLineIndex index = tuple.getT1();
+                    Map<Long, Integer> anchorLines = new HashMap<>();
+                    List<ReviewComment> comments = new ArrayList<>();
+                    for (ReviewComment comment : index.list(version, null)) {
+                        if (Objects.equals(comment.getFilePath(), filePath)) {
+                            comments.add(comment);
+                            anchorLines.put(comment.getId(), comment.getLineNumber());
+                        }
+                    }
+                    for (CommentAnchor anchor : tuple.getT2()) {
+                        ReviewComment comment = index.get(anchor.getCommentId());
+                        if (comment != null && !Boolean.TRUE.equals(comment.getDeleted())
+                                && !anchorLines.containsKey(comment.getId())) {
+                            comments.add(comment);
+                            anchorLines.put(comment.getId(), anchor.getLineNumber());
+                        }
+                    }
+                    return toResponses(comments).map(response -> {
+                        Integer line = anchorLines.get(response.getId());
+                        response.setAnchorLine(line);
+                        response.setOutdated(line == null && response.getLineNumber() != null);
+                        return response;
+                    });
+                })
+                .sort(Comparator.comparing(CommentResponse::getAnchorLine,
+                                Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(CommentResponse::getId));
+    }
+
+    /**
+     * 展开评论串：根评论及其所有回复
+     */
+    public Flux<CommentResponse> getThread(String roomCode, Long userId, Long commentId) {
+        return findRoomIdAsMember(roomCode, userId)
+                .flatMap(commentIndexService::index)
+                .map(index -> index.thread(commentId))
+                // 根评论已删除且没有回复时视为不存在
+                .filter(thread -> !thread.isEmpty()
+                        && !(thread.size() == 1 && Boolean.TRUE.equals(thread.get(0).getDeleted())))
+                .switchIfEmpty(Mono.error(new BusinessException("评论不存在")))
+                .flatMapMany(this::toResponses);
+    }
+
+    /**
+     * 索引中的版本与合并窗口内尚未写入缓冲区的版本取修订号较大者
+     * 索引在窗口内重新加载时不含待发布的修改，只看索引会重复分配修订号，写库时后一次修改被丢弃
+     */
+    private ReviewComment latest(ReviewComment current) {
+        if (current == null) {
+            return null;
+        }
+        ReviewComment pending = conflating.get(current.getId());
+        return pending != null && revision(pending) > revision(current) ? pending : current;
+    }
+
+    private static int revision(ReviewComment comment) {
+        return comment.getRevision() == null ? 0 : comment.getRevision();
+    }
+
+    /**
+     * 基于当前版本生成下一修订（复制后修改，索引和缓冲区中的旧版本保持不变）
+     */
+    private static ReviewComment nextRevision(ReviewComment current, Long userId) {
+        if (current == null || Boolean.TRUE.equals(current.getDeleted())) {
+            throw new BusinessException("评论不存在");
+        }
+        if (!current.getAuthorId().equals(userId)) {
+            throw new BusinessException("只能修改自己的评论");
+        }
+        ReviewComment next = new ReviewComment();
+        next.setId(current.getId());
+        next.setRoomId(current.getRoomId());
+        next.setSnapshotVersion(current.getSnapshotVersion());
+        next.setFilePath(current.getFilePath());
+        next.setLineNumber(current.getLineNumber());
+        next.setContent(current.getContent());
+        next.setParentId(current.getParentId());
+        next.setRevision(revision(current) + 1);
+        next.setDeleted(false);
+        next.setAuthorId(current.getAuthorId());
+        next.setCreateTime(current.getCreateTime());
+        next.setUpdateTime(LocalDateTime.now());
+        return next;
+    }
+
+    /**
+     * 回复的父评论必须是同一房间中未删除的评论
+     */
+    private Mono<Void> checkParent(Long roomId, Long parentId) {
+        if (parentId == null) {
+            return Mono.empty();
+        }
+        return commentIndexService.index(roomId)
+                .filter(index -> {
+                    ReviewComment parent = index.get(parentId);
+                    return parent != null && !Boolean.TRUE.equals(parent.getDeleted());
+                })
+                .switchIfEmpty(Mono.error(new BusinessException("回复的评论不存在")))
+                .then();
+    }
+
+    private Mono<Long> resolveRoomId(String roomCode) {
+        Long cached = roomIdCache.get(roomCode);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reviewRoomRepository.findByRoomCode(roomCode)
+                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
+                .map(ReviewRoom::getId)
+                .doOnNext(roomId -> roomIdCache.put(roomCode, roomId));
+    }
+
+    private Mono<Long> findRoomIdAsMember(String roomCode, Long userId) {
+        return resolveRoomId(roomCode)
+                .flatMap(roomId -> roomMemberRepository.existsByRoomIdAndUserId(roomId, userId)
+                        .filter(exists -> exists)
+                        .switchIfEmpty(Mono.error(new BusinessException("您不是该房间的成员")))
+                        .thenReturn(roomId));
+    }
+
+    /**
+     * 批量补充作者用户名（已缓存且未过期的作者不再查库，其余一次批量查询）
+     */
+    private Flux<CommentResponse> toResponses(List<ReviewComment> comments) {
+        Map<Long, String> usernames = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        comments.stream()
+                .map(ReviewComment::getAuthorId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(authorId -> {
+                    CachedUsername cached = usernameCache.get(authorId);
+                    if (cached != null && now - cached.loadedAt() < usernameTtlMillis) {
+                        usernames.put(authorId, cached.username());
+                    } else {
+                        missing.add(authorId);
+                    }
+                });
+        Mono<Map<Long, String>> resolved = missing.isEmpty()
+                ? Mono.just(usernames)
+                : userRepository.findAllById(missing)
+                        .doOnNext(user -> usernameCache.put(user.getId(), new CachedUsername(user.getUsername(), now)))
+                        .collectMap(User::getId, User::getUsername, () -> usernames);
+        return resolved.flatMapIterable(names -> comments.stream()
+                .map(comment -> toResponse(comment, names))
+                .toList());
+    }
+
+    private static CommentResponse toResponse(ReviewComment comment, Map<Long, String> usernames) {
+        return CommentResponse.builder()
+                .id(comment.getId())
+                .roomId(comment.getRoomId())
+                .snapshotVersion(comment.getSnapshotVersion())
+                .filePath(comment.getFilePath())
+                .lineNumber(comment.getLineNumber())
+                .content(comment.getContent())
+                .parentId(comment.getParentId())
+                .revision(comment.getRevision())
+                .deleted(comment.getDeleted())
+                .authorId(comment.getAuthorId())
+                .authorUsername(usernames.getOrDefault(comment.getAuthorId(), "未知用户"))
+                .createTime(comment.getCreateTime())
+                .updateTime(comment.getUpdateTime())
+                .build();
+    }
+
+    private static CommentPayload toPayload(ReviewComment comment) {
+        return CommentPayload.builder()
+                .commentId(comment.getId())
+                .snapshotVersion(comment.getSnapshotVersion())
+                .filePath(comment.getFilePath())
+                .lineNumber(comment.getLineNumber())
+                .content(comment.getContent())
+                .parentId(comment.getParentId())
+                .revision(comment.getRevision())
+                .deleted(comment.getDeleted())
+                .createTime(comment.getCreateTime())
+                .build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+
+/**
+ * 房间事件（事件日志中的一条记录）
+ *
+ * @param seq            房间内事件序号（从 1 开始连续递增）
+ * @param timestamp      记录时间（毫秒时间戳）
+ * @param type           消息类型
+ * @param senderId       发送者ID，系统事件为空
+ * @param senderUsername 发送者用户名，系统事件为空
+ * @param payload        消息载荷的 JSON 字节
+ */
+public record RoomEvent(long seq, long timestamp, MessageType type, Long senderId, String senderUsername,
+                        byte[] payload) {
+}
@@ -0,0 +1,137 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 房间事件二进制编码
+ * 记录体: type(1B) | seq(varint) | timestamp(varint) | senderId+1(varint, 0 表示空)
+ * | usernameLength+1(varint, 0 表示空) | username | payloadLength(varint) | payload
+ */
+final class RoomEventCodec {
+
+    /**
+     * 类型编码表（下标即编码，已写入磁盘的编码不可变，只能在末尾追加）
+     */
+    private static final MessageType[] TYPES = {
+            null,
+            MessageType.JOIN_ROOM,
+            MessageType.LEAVE_ROOM,
+            MessageType.ROOM_STATUS_CHANGE,
+            MessageType.CODE_UPDATE,
+            MessageType.COMMENT_ADD,
+            MessageType.COMMENT_UPDATE,
+            MessageType.COMMENT_DELETE
+    };
+
+    private static final byte[] CODES = new byte[MessageType.values().length];
+
+    static {
+        for (int i = 1; i < TYPES.length; i++) {
+            CODES[TYPES[i].ordinal()] = (byte) i;
+        }
+    }
+
+    private RoomEventCodec() {
+    }
+
+    /**
+     * 是否为可记录的事件类型
+     */
+    static boolean supports(MessageType type) {
+        return type != null && CODES[type.ordinal()] != 0;
+    }
+
+    static byte[] encode(RoomEvent event) {
+        if (!supports(event.type())) {
+            throw new IllegalArgumentException("不支持记录的事件类型: " + event.type());
+        }
+        byte[] username = event.senderUsername() == null
+                ? null
+                : event.senderUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = event.payload() == null ? new byte[0] : event.payload();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 + payload.length);
+        out.write(CODES[event.type().ordinal()]);
+        writeVarLong(out, event.seq());
+        writeVarLong(out, event.timestamp());
+        writeVarLong(out, event.senderId() == null ? 0 : event.senderId() + 1);
+        writeVarLong(out, username == null ? 0 : username.length + 1L);
+        if (username != null) {
+            out.writeBytes(username);
+        }
+        writeVarLong(out, payload.length);
+        out.writeBytes(payload);
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码记录体（buffer 的 position 到 limit 为一条完整记录体）
+     */
+    static RoomEvent decode(ByteBuffer buffer) {
+        try {
+            int code = buffer.get() & 0xFF;
+            if (code == 0 || code >= TYPES.length) {
+                throw new IllegalArgumentException("未知的事件类型编码: " + code);
+            }
+            long seq = readVarLong(buffer);
+            long timestamp = readVarLong(buffer);
+            long sender = readVarLong(buffer);
+            int usernameLength = (int) readVarLong(buffer);
+            String username = null;
+            if (usernameLength > 0) {
+                byte[] bytes = new byte[usernameLength - 1];
+                buffer.get(bytes);
+                username = new String(bytes, StandardCharsets.UTF_8);
+            }
+            byte[] payload = new byte[(int) readVarLong(buffer)];
+            buffer.get(payload);
+            return new RoomEvent(seq, timestamp, TYPES[code], sender == 0 ? null : sender - 1, username, payload);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("事件记录不完整", e);
+        }
+    }
+
+    /**
+     * 只读取记录体中的序号（跳过不需要的记录时避免完整解码）
+     */
+    static long readSeq(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        view.get();
+        return readVarLong(view);
+    }
+
+    /**
+     * 只读取记录体中的时间戳（构建稀疏索引使用）
+     */
+    static long readTimestamp(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        view.get();
+        readVarLong(view);
+        return readVarLong(view);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("变长整数过长");
+    }
+}
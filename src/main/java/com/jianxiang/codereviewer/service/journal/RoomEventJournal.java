@@ -0,0 +1,493 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * @className: RoomEventJournal
+ * @author: jianXiang
+ * @description: 本节点的房间事件日志：每个房间一个目录，段文件只追加、内存映射写，按配置的策略刷盘
+ * 热路径只写页缓存，不增加数据库写入；房间结束后合并段文件，超过保留期后删除
+ * 打开房间日志时在 Redis 登记所在节点，其他节点收到的历史事件查询转发到本节点
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class RoomEventJournal {
+
+    /**
+     * 刷盘策略
+     */
+    public enum FsyncPolicy {
+        /**
+         * 每条事件写入后立即刷盘（最安全，写入在弹性线程池执行）
+         */
+        ALWAYS,
+        /**
+         * 定时刷盘，宕机最多丢失一个间隔内的事件
+         */
+        INTERVAL,
+        /**
+         * 只在段文件滚动和关闭时刷盘，其余交给操作系统
+         */
+        NONE
+    }
+
+    /**
+     * 合并完成标记（目录重新追加事件时删除）
+     */
+    static final String COMPACTED_MARKER = ".compacted";
+
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final String OLD_SUFFIX = ".old";
+    private static final Pattern ROOM_CODE_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final ObjectMapper objectMapper;
+    private final RoomJournalOwnership ownership;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+
+    /**
+     * 已打开的房间日志；关闭、合并、删除都在 compute 中完成，保证同一房间目录只有一个写入者
+     */
+    private final Map<String, RoomJournal> journals = new ConcurrentHashMap<>();
+
+    public RoomEventJournal(ObjectMapper objectMapper,
+                            RoomJournalOwnership ownership,
+                            @Value("${journal.enabled:true}") boolean enabled,
+                            @Value("${journal.dir:data/journal}") String directory,
+                            @Value("${journal.segment-bytes:16777216}") int segmentBytes,
+                            @Value("${journal.fsync-policy:INTERVAL}") String fsyncPolicy) {
+        this.objectMapper = objectMapper;
+        this.ownership = ownership;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = Math.max(segmentBytes, 4096);
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.trim().toUpperCase());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一条房间事件，返回分配的序号；未开启或类型不需要记录时为空
+     */
+    public Mono<Long> append(String roomCode, MessageType type, Long senderId, String senderUsername,
+                             Object payload) {
+        return append(roomCode, type, senderId, senderUsername, payload, null);
+    }
+
+    /**
+     * 记录一条房间事件，写入后在房间日志的锁内回调 onAppended：同一房间的回调按序号顺序执行，不会乱序，
+     * 回调只能做内存操作（可能在事件循环线程执行）；未记录（未开启、类型不需要记录、写入失败）时不回调
+     */
+    public Mono<Long> append(String roomCode, MessageType type, Long senderId, String senderUsername,
+                             Object payload, Consumer<RoomEvent> onAppended) {
+        if (!enabled || !RoomEventCodec.supports(type)) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> objectMapper.writeValueAsBytes(payload))
+                .flatMap(bytes -> {
+                    long now = System.currentTimeMillis();
+                    // 打开（建目录、映射段文件、恢复扫描）、滚动和每条刷盘都有文件 I/O，在弹性线程池执行
+                    Mono<Long> write = Mono.fromCallable(() -> appendEvent(roomCode, now, type, senderId,
+                                    senderUsername, bytes, onAppended).seq())
+                            .subscribeOn(Schedulers.boundedElastic());
+                    if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                        return write;
+                    }
+                    // 房间日志已打开且当前段文件放得下时只写内存映射，直接在调用线程完成
+                    return Mono.fromCallable(() -> tryAppend(roomCode, now, type, senderId, senderUsername, bytes,
+                                    onAppended))
+                            .map(RoomEvent::seq)
+                            .switchIfEmpty(write);
+                });
+    }
+
+    /**
+     * 顺序读取房间从 fromSeq（含）开始的事件
+     */
+    public Flux<RoomEvent> read(String roomCode, long fromSeq) {
+        Path roomDirectory = roomDirectory(roomCode);
+        long toSeq = readableSeq(roomCode);
+        return Flux.using(() -> new RoomJournalReader(roomDirectory, fromSeq, toSeq),
+                        reader -> Flux.<RoomEvent>generate(sink -> {
+                            try {
+                                RoomEvent event = reader.next();
+                                if (event == null) {
+                                    sink.complete();
+                                } else {
+                                    sink.next(event);
+                                }
+                            } catch (IOException | RuntimeException e) {
+                                sink.error(e);
+                            }
+                        }),
+                        RoomJournalReader::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 第一条时间不早于 timestamp（毫秒）的事件序号；没有这样的事件时为空
+     */
+    public Mono<Long> seqAt(String roomCode, long timestamp) {
+        return Mono.fromCallable(() -> RoomJournalReader.seqAt(roomDirectory(roomCode), timestamp,
+                        readableSeq(roomCode)))
+                .filter(seq -> seq > 0)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 房间最后一条事件的序号，没有事件或未开启时为 0
+     */
+    public Mono<Long> lastSeq(String roomCode) {
+        if (!enabled) {
+            return Mono.just(0L);
+        }
+        RoomJournal open = journals.get(roomCode);
+        if (open != null) {
+            return Mono.just(open.lastSeq());
+        }
+        return Mono.fromCallable(() -> RoomJournalReader.lastSeq(roomDirectory(roomCode)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 从 fromSeq（含）开始、位于同一段文件内的最多 maxRecords 条连续记录；没有更多事件时为空
+     */
+    public Mono<RoomJournalReader.Region> region(String roomCode, long fromSeq, int maxRecords) {
+        return Mono.fromCallable(() -> {
+                    try (RoomJournalReader reader = new RoomJournalReader(roomDirectory(roomCode), fromSeq,
+                            readableSeq(roomCode))) {
+                        return reader.nextRegion(maxRecords);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * INTERVAL 策略下定时刷盘（msync 不持有房间日志的锁，不阻塞追加）
+     */
+    @Scheduled(fixedDelayString = "${journal.fsync-interval:1000}")
+    public void flush() {
+        if (fsyncPolicy != FsyncPolicy.INTERVAL) {
+            return;
+        }
+        journals.values().forEach(journal -> {
+            try {
+                journal.force();
+            } catch (RuntimeException e) {
+                log.warn("房间事件日志刷盘失败: {}, {}", journal.directory(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 关闭超过 idleMillis 没有新事件的房间日志，释放映射
+     *
+     * @return 关闭的房间数
+     */
+    public int closeIdle(long idleMillis) {
+        long deadline = System.currentTimeMillis() - idleMillis;
+        int closed = 0;
+        for (String roomCode : List.copyOf(journals.keySet())) {
+            RoomJournal removed = journals.computeIfPresent(roomCode, (code, journal) ->
+                    journal.lastAppendMillis() < deadline ? closeQuietly(journal) : journal);
+            closed += removed == null ? 1 : 0;
+        }
+        return closed;
+    }
+
+    /**
+     * 本节点磁盘上有事件日志的房间码（顺带清理上次合并中断留下的目录）
+     */
+    public List<String> roomCodes() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<String> roomCodes = new ArrayList<>();
+        try (Stream<Path> children = Files.list(directory)) {
+            for (Path child : children.filter(Files::isDirectory).toList()) {
+                String name = child.getFileName().toString();
+                if (name.endsWith(COMPACTING_SUFFIX)) {
+                    deleteRecursively(child);
+                } else if (name.endsWith(OLD_SUFFIX)) {
+                    recoverInterruptedSwap(child, name.substring(0, name.length() - OLD_SUFFIX.length()));
+                } else if (ROOM_CODE_PATTERN.matcher(name).matches()) {
+                    roomCodes.add(name);
+                }
+            }
+        }
+        return roomCodes;
+    }
+
+    public boolean isCompacted(String roomCode) {
+        return Files.exists(roomDirectory(roomCode).resolve(COMPACTED_MARKER));
+    }
+
+    /**
+     * 合并房间的段文件：去掉预分配的空白，按段容量紧密重写，写完后整体替换目录
+     *
+     * @return 合并后的事件数
+     */
+    public long compact(String roomCode) {
+        long[] count = new long[1];
+        journals.compute(roomCode, (code, journal) -> {
+            closeQuietly(journal);
+            try {
+                count[0] = compactDirectory(roomDirectory(code));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+        return count[0];
+    }
+
+    /**
+     * 删除房间的全部事件日志
+     */
+    public void delete(String roomCode) {
+        journals.compute(roomCode, (code, journal) -> {
+            closeQuietly(journal);
+            try {
+                deleteRecursively(roomDirectory(code));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+        ownership.release(roomCode);
+    }
+
+    @PreDestroy
+    public void close() {
+        for (String roomCode : List.copyOf(journals.keySet())) {
+            journals.computeIfPresent(roomCode, (code, journal) -> closeQuietly(journal));
+        }
+    }
+
+    private RoomEvent tryAppend(String roomCode, long now, MessageType type, Long senderId, String senderUsername,
+                                byte[] payload, Consumer<RoomEvent> onAppended) throws IOException {
+        RoomJournal journal = journals.get(roomCode);
+        if (journal == null) {
+            return null;
+        }
+        synchronized (journal) {
+            RoomEvent event = journal.tryAppend(now, type, senderId, senderUsername, payload);
+            notifyAppended(event, onAppended);
+            return event;
+        }
+    }
+
+    /**
+     * 在弹性线程池追加：按需打开房间日志、滚动段文件，追加后刷盘（ALWAYS 策略每条刷盘，其他策略借此刷出滚动前的段文件）
+     */
+    private RoomEvent appendEvent(String roomCode, long now, MessageType type, Long senderId, String senderUsername,
+                                  byte[] payload, Consumer<RoomEvent> onAppended) throws IOException {
+        while (true) {
+            RoomJournal journal = open(roomCode);
+            RoomEvent event;
+            synchronized (journal) {
+                if (journal.isClosed()) {
+                    // 刚被空闲关闭或合并，重新打开
+                    continue;
+                }
+                event = journal.append(now, type, senderId, senderUsername, payload);
+                notifyAppended(event, onAppended);
+            }
+            journal.force();
+            return event;
+        }
+    }
+
+    /**
+     * 在房间日志的锁内回调，回调失败不影响已写入的事件
+     */
+    private static void notifyAppended(RoomEvent event, Consumer<RoomEvent> onAppended) {
+        if (event == null || onAppended == null) {
+            return;
+        }
+        try {
+            onAppended.accept(event);
+        } catch (RuntimeException e) {
+            log.warn("房间事件写入后回调失败: seq={}, error={}", event.seq(), e.getMessage());
+        }
+    }
+
+    private RoomJournal open(String roomCode) {
+        Path roomDirectory = roomDirectory(roomCode);
+        return journals.computeIfAbsent(roomCode, code -> {
+            try {
+                Files.deleteIfExists(roomDirectory.resolve(COMPACTED_MARKER));
+                RoomJournal journal = new RoomJournal(roomDirectory, segmentBytes);
+                // 登记（续期）房间日志所在节点，其他节点的历史事件查询转发到这里
+                ownership.claim(code);
+                return journal;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 可读取的最大序号：已打开的日志只读到当前最后一条，排除读取过程中正在追加的记录
+     */
+    private long readableSeq(String roomCode) {
+        RoomJournal open = journals.get(roomCode);
+        return open == null ? Long.MAX_VALUE : open.lastSeq();
+    }
+
+    private Path roomDirectory(String roomCode) {
+        if (roomCode == null || !ROOM_CODE_PATTERN.matcher(roomCode).matches()) {
+            throw new IllegalArgumentException("无效的房间码: " + roomCode);
+        }
+        return directory.resolve(roomCode);
+    }
+
+    private long compactDirectory(Path roomDirectory) throws IOException {
+        if (!Files.isDirectory(roomDirectory)) {
+            return 0;
+        }
+        Path target = roomDirectory.resolveSibling(roomDirectory.getFileName() + COMPACTING_SUFFIX);
+        deleteRecursively(target);
+        Files.createDirectories(target);
+
+        long count = 0;
+        FileChannel out = null;
+        long written = 0;
+        long firstSeq = 0;
+        // 合并后的段文件不再追加，索引按实际条目数紧凑写出
+        ByteBuffer index = ByteBuffer.allocate(RoomJournalIndex.capacity(segmentBytes));
+        int indexCount = 0;
+        long lastIndexed = 0;
+        try (RoomJournalReader reader = new RoomJournalReader(roomDirectory, 1, Long.MAX_VALUE)) {
+            RoomEvent event;
+            while ((event = reader.next()) != null) {
+                byte[] body = RoomEventCodec.encode(event);
+                int recordSize = RoomJournal.HEADER_SIZE + body.length;
+                if (out == null || written + recordSize > segmentBytes) {
+                    if (out != null) {
+                        closeSegment(out);
+                        writeIndex(target, firstSeq, index, indexCount);
+                    }
+                    out = FileChannel.open(RoomJournal.segmentPath(target, event.seq()),
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                    written = 0;
+                    firstSeq = event.seq();
+                    indexCount = 0;
+                }
+                if (indexCount == 0 || written - lastIndexed >= RoomJournalIndex.INTERVAL_BYTES) {
+                    RoomJournalIndex.put(index, indexCount++, event.seq(), event.timestamp(), (int) written);
+                    lastIndexed = written;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                ByteBuffer record = ByteBuffer.allocate(recordSize)
+                        .putInt(body.length)
+                        .putInt((int) crc.getValue())
+                        .put(body)
+                        .flip();
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+                written += recordSize;
+                count++;
+            }
+        } finally {
+            closeSegment(out);
+        }
+        if (out != null) {
+            writeIndex(target, firstSeq, index, indexCount);
+        }
+        Files.createFile(target.resolve(COMPACTED_MARKER));
+
+        // 先把原目录改名再换入新目录，中断时由 roomCodes() 恢复
+        Path old = roomDirectory.resolveSibling(roomDirectory.getFileName() + OLD_SUFFIX);
+        deleteRecursively(old);
+        Files.move(roomDirectory, old, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(target, roomDirectory, StandardCopyOption.ATOMIC_MOVE);
+        deleteRecursively(old);
+        return count;
+    }
+
+    private void recoverInterruptedSwap(Path old, String roomCode) throws IOException {
+        Path roomDirectory = directory.resolve(roomCode);
+        if (Files.isDirectory(roomDirectory)) {
+            deleteRecursively(old);
+        } else {
+            Files.move(old, roomDirectory, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private static void writeIndex(Path directory, long firstSeq, ByteBuffer index, int count)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(RoomJournalIndex.indexPath(directory, firstSeq),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer entries = index.slice(0, count * RoomJournalIndex.ENTRY_SIZE);
+            while (entries.hasRemaining()) {
+                channel.write(entries);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static void closeSegment(FileChannel channel) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    private static RoomJournal closeQuietly(RoomJournal journal) {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("关闭房间事件日志失败: {}, {}", journal.directory(), e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path file : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * @className: RoomEventRoutingFilter
+ * @author: jianXiang
+ * @description: 房间历史事件查询转发：事件日志在其他节点时把请求原样转发过去，响应原样写回
+ * 在认证之后执行（未登录的请求不转发），目标节点重新校验令牌和成员身份；
+ * 目标节点不可达时读本节点（可能不完整），已转发的请求带来源标记，不会再次转发
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class RoomEventRoutingFilter implements WebFilter {
+
+    /**
+     * 转发来源节点，目标节点见到该请求头时直接读本节点
+     */
+    static final String FORWARDED_HEADER = "X-Forwarded-By-Node";
+
+    private static final PathPattern EVENTS_PATH =
+            PathPatternParser.defaultInstance.parse("/api/rooms/{roomCode}/events/**");
+
+    /**
+     * 转发的请求头（认证、内容协商）
+     */
+    private static final List<String> FORWARDED_REQUEST_HEADERS =
+            List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.ACCEPT);
+
+    /**
+     * 不写回的逐跳响应头（由本节点的连接重新决定）
+     */
+    private static final Set<String> HOP_BY_HOP_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        HOP_BY_HOP_HEADERS.addAll(List.of(HttpHeaders.CONNECTION, HttpHeaders.TRANSFER_ENCODING, "Keep-Alive",
+                HttpHeaders.UPGRADE, HttpHeaders.TRAILER));
+    }
+
+    private final RoomJournalOwnership ownership;
+    private final WebClient webClient;
+
+    public RoomEventRoutingFilter(RoomJournalOwnership ownership, WebClient.Builder webClientBuilder) {
+        this.ownership = ownership;
+        this.webClient = webClientBuilder.build();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!ownership.isEnabled() || request.getMethod() != HttpMethod.GET
+                || request.getHeaders().containsKey(FORWARDED_HEADER)) {
+            return chain.filter(exchange);
+        }
+        PathPattern.PathMatchInfo match = EVENTS_PATH.matchAndExtract(request.getPath().pathWithinApplication());
+        if (match == null) {
+            return chain.filter(exchange);
+        }
+        String roomCode = match.getUriVariables().get("roomCode");
+        return ownership.remoteOwner(roomCode)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(owner -> owner.isPresent()
+                        ? forward(exchange, chain, roomCode, owner.get())
+                        : chain.filter(exchange));
+    }
+
+    private Mono<Void> forward(ServerWebExchange exchange, WebFilterChain chain, String roomCode, String owner) {
+        ServerHttpRequest request = exchange.getRequest();
+        ServerHttpResponse response = exchange.getResponse();
+        String query = request.getURI().getRawQuery();
+        URI target = URI.create(owner + request.getURI().getRawPath() + (query == null ? "" : "?" + query));
+        log.debug("转发房间[{}]的历史事件查询到 {}", roomCode, owner);
+        return webClient.get()
+                .uri(target)
+                .headers(headers -> {
+                    FORWARDED_REQUEST_HEADERS.forEach(name -> {
+                        List<String> values = request.getHeaders().get(name);
+                        if (values != null) {
+                            headers.addAll(name, values);
+                        }
+                    });
+                    headers.set(FORWARDED_HEADER, ownership.advertisedUrl());
+                })
+                .exchangeToMono(remote -> {
+                    response.setStatusCode(remote.statusCode());
+                    remote.headers().asHttpHeaders().forEach((name, values) -> {
+                        if (!HOP_BY_HOP_HEADERS.contains(name)) {
+                            response.getHeaders().addAll(name, values);
+                        }
+                    });
+                    return response.writeWith(remote.bodyToFlux(DataBuffer.class));
+                })
+                // 连接失败时还没有写回任何内容，退回读本节点
+                .onErrorResume(WebClientRequestException.class, e -> {
+                    log.warn("转发房间[{}]的历史事件查询失败，读本节点: owner={}, error={}",
+                            roomCode, owner, e.getMessage());
+                    return chain.filter(exchange);
+                });
+    }
+}
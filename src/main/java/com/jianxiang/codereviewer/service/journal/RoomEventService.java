@@ -0,0 +1,131 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.common.util.CursorPage;
+import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
+import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
+import com.jianxiang.codereviewer.domain.repository.RoomMemberRepository;
+import com.jianxiang.codereviewer.dto.room.RoomEventResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * @className: RoomEventService
+ * @author: jianXiang
+ * @description: 房间历史事件查询（中途加入的成员追赶已发生的讨论和编辑、回放）
+ * 事件从本节点的房间事件日志顺序读取：按稀疏索引定位起点，逐条解码输出，不把房间事件整体读入内存；
+ * 日志在其他节点的房间由 RoomEventRoutingFilter 转发到该节点查询
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class RoomEventService {
+
+    private final RoomEventJournal roomEventJournal;
+    private final ReviewRoomRepository reviewRoomRepository;
+    private final RoomMemberRepository roomMemberRepository;
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final int rawMaxRecords;
+
+    public RoomEventService(RoomEventJournal roomEventJournal,
+                            ReviewRoomRepository reviewRoomRepository,
+                            RoomMemberRepository roomMemberRepository,
+                            @Value("${journal.catch-up.default-limit:100}") int defaultLimit,
+                            @Value("${journal.catch-up.max-limit:1000}") int maxLimit,
+                            @Value("${journal.catch-up.raw-max-records:10000}") int rawMaxRecords) {
+        this.roomEventJournal = roomEventJournal;
+        this.reviewRoomRepository = reviewRoomRepository;
+        this.roomMemberRepository = roomMemberRepository;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        this.rawMaxRecords = rawMaxRecords;
+    }
+
+    /**
+     * 分页查询房间事件，游标为当前页最后一条的序号（作为下一页的 afterSeq）
+     *
+     * @param afterSeq 从该序号之后开始（不含），为空时从头开始
+     * @param since    从该时间开始（毫秒时间戳，含），指定时忽略 afterSeq
+     */
+    public Mono<CursorPage<RoomEventResponse>> listEvents(String roomCode, Long userId, Long afterSeq,
+                                                          Long since, Integer limit) {
+        int size = limit == null || limit <= 0 ? defaultLimit : Math.min(limit, maxLimit);
+        return checkMember(roomCode, userId)
+                .thenMany(Flux.defer(() -> events(roomCode, afterSeq, since)))
+                .take(size + 1L)
+                .collectList()
+                .map(rows -> CursorPage.of(rows, size, RoomEventResponse::getSeq));
+    }
+
+    /**
+     * 流式输出房间事件（不分页，limit 为空时输出到当前最后一条）
+     */
+    public Flux<RoomEventResponse> streamEvents(String roomCode, Long userId, Long afterSeq, Long since,
+                                                Integer limit) {
+        Flux<RoomEventResponse> events = checkMember(roomCode, userId)
+                .thenMany(Flux.defer(() -> events(roomCode, afterSeq, since)));
+        return limit == null || limit <= 0 ? events : events.take(limit);
+    }
+
+    /**
+     * 按日志磁盘格式原样输出的一段连续记录（位于同一段文件内，持有段文件映射，可直接发送）；没有更多事件时为空
+     */
+    public Mono<RoomJournalReader.Region> rawEvents(String roomCode, Long userId, Long afterSeq, Long since,
+                                                    Integer limit) {
+        int maxRecords = limit == null || limit <= 0 ? rawMaxRecords : Math.min(limit, rawMaxRecords);
+        return checkMember(roomCode, userId)
+                .then(Mono.defer(() -> fromSeq(roomCode, afterSeq, since)))
+                .flatMap(fromSeq -> roomEventJournal.region(roomCode, fromSeq, maxRecords));
+    }
+
+    private Flux<RoomEventResponse> events(String roomCode, Long afterSeq, Long since) {
+        return fromSeq(roomCode, afterSeq, since)
+                .flatMapMany(fromSeq -> roomEventJournal.read(roomCode, fromSeq))
+                .map(RoomEventService::toResponse);
+    }
+
+    /**
+     * 起始序号：指定时间时按时间定位（没有更晚的事件时为空），否则取 afterSeq 的下一条
+     */
+    private Mono<Long> fromSeq(String roomCode, Long afterSeq, Long since) {
+        if (!roomEventJournal.isEnabled()) {
+            return Mono.empty();
+        }
+        if (since != null) {
+            return roomEventJournal.seqAt(roomCode, since);
+        }
+        return Mono.just(afterSeq == null || afterSeq < 0 ? 1 : afterSeq + 1);
+    }
+
+    /**
+     * 检查房间存在且用户是房间成员
+     */
+    private Mono<ReviewRoom> checkMember(String roomCode, Long userId) {
+        return reviewRoomRepository.findByRoomCode(roomCode)
+                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
+                .flatMap(room -> roomMemberRepository.existsByRoomIdAndUserId(room.getId(), userId)
+                        .filter(exists -> exists)
+                        .switchIfEmpty(Mono.error(new BusinessException("您不是该房间的成员")))
+                        .thenReturn(room));
+    }
+
+    private static RoomEventResponse toResponse(RoomEvent event) {
+        return RoomEventResponse.builder()
+                .seq(event.seq())
+                .type(event.type())
+                .senderId(event.senderId())
+                .senderUsername(event.senderUsername())
+                .timestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestamp()), ZoneId.systemDefault()))
+                .payload(new String(event.payload(), StandardCharsets.UTF_8))
+                .build();
+    }
+}
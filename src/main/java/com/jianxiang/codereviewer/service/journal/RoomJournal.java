@@ -0,0 +1,333 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 单个房间的事件日志（只追加，段文件内存映射写）
+ * 段文件以首条事件序号命名并预分配固定大小；每条记录: length(4B) | crc32(4B) | 记录体，length 为 0 表示段内结束。
+ * 记录先写记录体和 CRC、最后写长度，读者看到非零长度且 CRC 匹配即为完整记录；
+ * 重启时扫描最后一个段文件，从第一条不完整的记录处截断继续追加，并重建该段的稀疏索引。
+ * 刷盘只在锁内取出待刷区间，msync 在锁外执行，不阻塞追加；滚动时旧段文件留待下一次刷盘
+ */
+@Slf4j
+public class RoomJournal implements Closeable {
+
+    static final int HEADER_SIZE = 8;
+    static final String FILE_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+
+    /**
+     * 当前追加的段文件（由 this 保护）
+     */
+    private FileChannel activeChannel;
+    private MappedByteBuffer active;
+    private MappedByteBuffer activeIndex;
+    private long activeFirstSeq;
+    private int position;
+    private int syncedPosition;
+    private int indexCount;
+    private int lastIndexedOffset;
+
+    /**
+     * 已滚动但尚未刷盘的段文件（由 this 保护）
+     */
+    private final List<DirtyRange> retired = new ArrayList<>();
+
+    private long nextSeq = 1;
+    private long lastAppendMillis = System.currentTimeMillis();
+    private boolean closed;
+
+    /**
+     * 待刷盘的区间（映射在通道关闭后仍然有效，可在锁外刷盘）
+     */
+    private record DirtyRange(MappedByteBuffer segment, MappedByteBuffer index, int from, int to) {
+
+        void force() {
+            if (to > from) {
+                segment.force(from, to - from);
+            }
+            index.force();
+        }
+    }
+
+    public RoomJournal(Path directory, int segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        List<Long> segments = segments(directory);
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            recover(segments.get(segments.size() - 1));
+        }
+    }
+
+    /**
+     * 追加一条事件，返回分配的序号；当前段文件写满时滚动（打开新段文件有文件 I/O，不要在事件循环线程调用）
+     * 记录只写入页缓存，落盘由 {@link #force()} 完成
+     */
+    public synchronized RoomEvent append(long timestamp, MessageType type, Long senderId, String senderUsername,
+                                         byte[] payload) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("房间事件日志已关闭: " + directory);
+        }
+        RoomEvent event = new RoomEvent(nextSeq, timestamp, type, senderId, senderUsername, payload);
+        byte[] body = encode(event);
+        if (position + HEADER_SIZE + body.length > segmentBytes) {
+            roll();
+        }
+        write(event, body);
+        return event;
+    }
+
+    /**
+     * 只写内存映射的追加：已关闭或当前段文件放不下时返回 null，由调用方改在弹性线程池调用 {@link #append}
+     */
+    public synchronized RoomEvent tryAppend(long timestamp, MessageType type, Long senderId, String senderUsername,
+                                            byte[] payload) throws IOException {
+        if (closed) {
+            return null;
+        }
+        RoomEvent event = new RoomEvent(nextSeq, timestamp, type, senderId, senderUsername, payload);
+        byte[] body = encode(event);
+        if (position + HEADER_SIZE + body.length > segmentBytes) {
+            return null;
+        }
+        write(event, body);
+        return event;
+    }
+
+    /**
+     * 将已追加的记录刷到磁盘：锁内只取出待刷区间，msync 在锁外执行
+     */
+    public void force() {
+        List<DirtyRange> dirty;
+        MappedByteBuffer segment;
+        int to;
+        synchronized (this) {
+            if (closed || (position == syncedPosition && retired.isEmpty())) {
+                return;
+            }
+            dirty = new ArrayList<>(retired);
+            retired.clear();
+            segment = active;
+            to = position;
+            dirty.add(new DirtyRange(active, activeIndex, syncedPosition, position));
+        }
+        dirty.forEach(DirtyRange::force);
+        synchronized (this) {
+            // 刷盘期间可能已滚动到新段文件，只推进同一段文件的已刷位置
+            if (active == segment && to > syncedPosition) {
+                syncedPosition = to;
+            }
+        }
+    }
+
+    /**
+     * 最后一条事件的序号，没有事件时为 0
+     */
+    public synchronized long lastSeq() {
+        return nextSeq - 1;
+    }
+
+    public synchronized long lastAppendMillis() {
+        return lastAppendMillis;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        retired.forEach(DirtyRange::force);
+        retired.clear();
+        new DirtyRange(active, activeIndex, syncedPosition, position).force();
+        closed = true;
+        active = null;
+        activeIndex = null;
+        activeChannel.close();
+    }
+
+    /**
+     * 列出目录下的段文件（按首条序号升序）
+     */
+    static List<Long> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(FILE_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - FILE_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static Path segmentPath(Path directory, long firstSeq) {
+        return directory.resolve(String.format("%020d%s", firstSeq, FILE_SUFFIX));
+    }
+
+    /**
+     * 校验 offset 处的记录，返回记录体长度；没有完整记录时返回 -1
+     */
+    static int checkRecord(ByteBuffer buffer, int offset) {
+        if (offset + HEADER_SIZE > buffer.limit()) {
+            return -1;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || length > buffer.limit() - offset - HEADER_SIZE) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + HEADER_SIZE, length));
+        return (int) crc.getValue() == buffer.getInt(offset + 4) ? length : -1;
+    }
+
+    /**
+     * 扫描最后一个段文件，定位追加位置和下一个序号
+     * 段文件大于段容量（压缩合并产生）时不再追加，直接滚动到新段文件
+     */
+    private void recover(long firstSeq) throws IOException {
+        Path path = segmentPath(directory, firstSeq);
+        boolean appendable = Files.size(path) <= segmentBytes;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = appendable
+                ? channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes)
+                : channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        if (!appendable) {
+            scan(buffer, firstSeq, false);
+            channel.close();
+            openSegment(nextSeq);
+            return;
+        }
+        activeIndex = mapIndex(firstSeq);
+        indexCount = 0;
+        int offset = scan(buffer, firstSeq, true);
+        if (offset + HEADER_SIZE <= segmentBytes && buffer.getInt(offset) != 0) {
+            // 上次写入中断留下的残缺记录，清零后从此处继续追加
+            log.warn("房间事件日志尾部记录不完整，已截断: {} @ {}", path, offset);
+            buffer.put(offset, new byte[segmentBytes - offset]);
+            buffer.force();
+        }
+        activeChannel = channel;
+        active = buffer;
+        activeFirstSeq = firstSeq;
+        position = offset;
+        syncedPosition = offset;
+    }
+
+    /**
+     * 从段首按序号连续性扫描完整记录，设置下一个序号并返回追加位置；rebuildIndex 时同时重建稀疏索引
+     */
+    private int scan(ByteBuffer buffer, long firstSeq, boolean rebuildIndex) {
+        long seq = firstSeq;
+        int offset = 0;
+        int length;
+        while ((length = checkRecord(buffer, offset)) > 0) {
+            ByteBuffer body = buffer.slice(offset + HEADER_SIZE, length);
+            if (RoomEventCodec.readSeq(body) != seq) {
+                break;
+            }
+            if (rebuildIndex) {
+                index(seq, RoomEventCodec.readTimestamp(body), offset);
+            }
+            offset += HEADER_SIZE + length;
+            seq++;
+        }
+        nextSeq = seq;
+        return offset;
+    }
+
+    /**
+     * 段内第一条记录以及距上一个索引条目超过 INTERVAL_BYTES 的记录写入稀疏索引
+     */
+    private void index(long seq, long timestamp, int offset) {
+        if (indexCount > 0 && offset - lastIndexedOffset < RoomJournalIndex.INTERVAL_BYTES) {
+            return;
+        }
+        if ((indexCount + 1) * RoomJournalIndex.ENTRY_SIZE > activeIndex.capacity()) {
+            return;
+        }
+        RoomJournalIndex.put(activeIndex, indexCount++, seq, timestamp, offset);
+        lastIndexedOffset = offset;
+    }
+
+    /**
+     * 索引可由段文件重建，打开时总是清空重写
+     */
+    private MappedByteBuffer mapIndex(long firstSeq) throws IOException {
+        try (FileChannel channel = FileChannel.open(RoomJournalIndex.indexPath(directory, firstSeq),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, RoomJournalIndex.capacity(segmentBytes));
+        }
+    }
+
+    private byte[] encode(RoomEvent event) throws IOException {
+        byte[] body = RoomEventCodec.encode(event);
+        if (body.length > segmentBytes - HEADER_SIZE) {
+            throw new IOException("事件超过段文件容量: " + body.length + " 字节");
+        }
+        return body;
+    }
+
+    private void write(RoomEvent event, byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        active.put(position + HEADER_SIZE, body);
+        active.putInt(position + 4, (int) crc.getValue());
+        active.putInt(position, body.length);
+        index(event.seq(), event.timestamp(), position);
+        position += HEADER_SIZE + body.length;
+        nextSeq++;
+        lastAppendMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * 滚动到新段文件：旧段文件未刷盘的部分交给下一次刷盘，这里不做 msync
+     */
+    private void roll() throws IOException {
+        retired.add(new DirtyRange(active, activeIndex, syncedPosition, position));
+        activeChannel.close();
+        log.debug("房间事件日志滚动: {} -> {}", segmentPath(directory, activeFirstSeq), nextSeq);
+        openSegment(nextSeq);
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(directory, firstSeq),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        active = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        activeIndex = mapIndex(firstSeq);
+        activeFirstSeq = firstSeq;
+        position = 0;
+        syncedPosition = 0;
+        indexCount = 0;
+        lastIndexedOffset = 0;
+    }
+}
@@ -0,0 +1,94 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Predicate;
+
+/**
+ * 段文件稀疏索引（与段文件同名，后缀 .idx）
+ * 段内每隔 INTERVAL_BYTES 字节记录一个条目: seq(8B) | timestamp(8B) | offset(4B)；段内第一条记录总有条目，seq 为 0 表示结束
+ */
+final class RoomJournalIndex {
+
+    static final int ENTRY_SIZE = 20;
+    static final int INTERVAL_BYTES = 4096;
+    static final String FILE_SUFFIX = ".idx";
+
+    /**
+     * 索引条目
+     *
+     * @param seq       记录序号
+     * @param timestamp 记录时间（毫秒时间戳）
+     * @param offset    记录在段文件中的偏移（含记录头）
+     */
+    record Entry(long seq, long timestamp, int offset) {}
+
+    private RoomJournalIndex() {
+    }
+
+    static Path indexPath(Path directory, long firstSeq) {
+        return directory.resolve(String.format("%020d%s", firstSeq, FILE_SUFFIX));
+    }
+
+    /**
+     * 段容量对应的索引文件容量
+     */
+    static int capacity(int segmentBytes) {
+        return (segmentBytes / INTERVAL_BYTES + 2) * ENTRY_SIZE;
+    }
+
+    static void put(ByteBuffer index, int slot, long seq, long timestamp, int offset) {
+        index.putLong(slot * ENTRY_SIZE, seq)
+                .putLong(slot * ENTRY_SIZE + 8, timestamp)
+                .putInt(slot * ENTRY_SIZE + 16, offset);
+    }
+
+    /**
+     * 序号不大于 seq 的最后一个条目；没有索引文件或没有满足条件的条目时返回 null
+     */
+    static Entry floorBySeq(Path path, long seq) throws IOException {
+        return floor(path, entry -> entry.seq() <= seq);
+    }
+
+    /**
+     * 时间早于 timestamp 的最后一个条目；没有索引文件或没有满足条件的条目时返回 null
+     */
+    static Entry floorByTimestamp(Path path, long timestamp) throws IOException {
+        return floor(path, entry -> entry.timestamp() < timestamp);
+    }
+
+    /**
+     * 二分查找满足条件的最后一个条目（条件对条目单调：前段满足、后段不满足）
+     */
+    private static Entry floor(Path path, Predicate<Entry> predicate) throws IOException {
+        ByteBuffer index;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        int low = 0;
+        int high = index.capacity() / ENTRY_SIZE - 1;
+        Entry found = null;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Entry entry = get(index, mid);
+            if (entry.seq() != 0 && predicate.test(entry)) {
+                found = entry;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static Entry get(ByteBuffer index, int slot) {
+        int base = slot * ENTRY_SIZE;
+        return new Entry(index.getLong(base), index.getLong(base + 8), index.getInt(base + 16));
+    }
+}
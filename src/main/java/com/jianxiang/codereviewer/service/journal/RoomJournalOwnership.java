@@ -0,0 +1,101 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @className: RoomJournalOwnership
+ * @author: jianXiang
+ * @description: 房间事件日志所在节点登记（Redis）
+ * 事件日志写在接收房间 WebSocket 连接的节点本地磁盘上，其他节点收到历史事件查询时按登记转发到该节点；
+ * 未配置本节点地址时不登记、不转发（单节点部署）
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class RoomJournalOwnership {
+
+    private static final String KEY_PREFIX = "journal:owner:";
+
+    /**
+     * 只删除自己的登记（房间日志可能已在其他节点重新打开）
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final String advertisedUrl;
+
+    /**
+     * 登记有效期：与房间结束后日志的保留时长一致，每次打开房间日志时续期
+     */
+    private final Duration ttl;
+
+    public RoomJournalOwnership(ReactiveStringRedisTemplate redisTemplate,
+                                @Value("${cluster.node.advertised-url:}") String advertisedUrl,
+                                @Value("${journal.retention:2592000000}") long retentionMillis) {
+        this.redisTemplate = redisTemplate;
+        this.advertisedUrl = advertisedUrl.endsWith("/")
+                ? advertisedUrl.substring(0, advertisedUrl.length() - 1)
+                : advertisedUrl;
+        this.ttl = Duration.ofMillis(retentionMillis);
+    }
+
+    public boolean isEnabled() {
+        return !advertisedUrl.isBlank();
+    }
+
+    /**
+     * 本节点对其他节点可访问的地址
+     */
+    public String advertisedUrl() {
+        return advertisedUrl;
+    }
+
+    /**
+     * 登记房间日志在本节点（登记失败只记录日志，查询退化为读本节点）
+     */
+    public void claim(String roomCode) {
+        if (!isEnabled()) {
+            return;
+        }
+        redisTemplate.opsForValue().set(KEY_PREFIX + roomCode, advertisedUrl, ttl)
+                .subscribe(null, e -> log.warn("登记房间事件日志节点失败: roomCode={}, error={}",
+                        roomCode, e.getMessage()));
+    }
+
+    /**
+     * 删除房间日志后撤销登记
+     */
+    public void release(String roomCode) {
+        if (!isEnabled()) {
+            return;
+        }
+        redisTemplate.execute(RELEASE_SCRIPT, List.of(KEY_PREFIX + roomCode), List.of(advertisedUrl))
+                .subscribe(null, e -> log.warn("撤销房间事件日志节点登记失败: roomCode={}, error={}",
+                        roomCode, e.getMessage()));
+    }
+
+    /**
+     * 房间日志所在的其他节点地址；在本节点、未登记或查询失败时为空
+     */
+    public Mono<String> remoteOwner(String roomCode) {
+        if (!isEnabled()) {
+            return Mono.empty();
+        }
+        return redisTemplate.opsForValue().get(KEY_PREFIX + roomCode)
+                .filter(owner -> !owner.equals(advertisedUrl))
+                .onErrorResume(e -> {
+                    log.warn("查询房间事件日志节点失败，读本节点: roomCode={}, error={}", roomCode, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
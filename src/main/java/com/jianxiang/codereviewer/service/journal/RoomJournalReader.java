@@ -0,0 +1,231 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 房间事件日志顺序读取（逐个段文件只读映射，不把事件整体读入内存）
+ * 从包含 fromSeq 的段文件开始，按稀疏索引跳到 fromSeq 附近再读取，读到 toSeq、段内结束标记或不完整记录为止
+ */
+public class RoomJournalReader implements Closeable {
+
+    /**
+     * 段文件内一段连续的完整记录（按磁盘格式原样输出，直接包装发送，不复制到堆内）
+     * 持有段文件的只读映射而不是路径：合并替换或清理目录后映射仍指向原文件内容，响应头发出后不会读不到文件
+     *
+     * @param data     记录所在的映射区间（只读）
+     * @param firstSeq 第一条记录序号
+     * @param lastSeq  最后一条记录序号
+     */
+    public record Region(ByteBuffer data, long firstSeq, long lastSeq) {
+
+        /**
+         * 字节数
+         */
+        public int length() {
+            return data.remaining();
+        }
+    }
+
+    private final Path directory;
+    private final List<Long> segments;
+    private final long fromSeq;
+    private final long toSeq;
+
+    private int segmentIndex;
+    private MappedByteBuffer buffer;
+    private long currentFirstSeq;
+    private int offset;
+    private long expectedSeq;
+
+    /**
+     * @param fromSeq 起始序号（含）
+     * @param toSeq   结束序号（含），用于排除读取过程中正在追加的记录
+     */
+    public RoomJournalReader(Path directory, long fromSeq, long toSeq) throws IOException {
+        this.directory = directory;
+        this.fromSeq = Math.max(1, fromSeq);
+        this.toSeq = toSeq;
+        List<Long> all = RoomJournal.segments(directory);
+        int start = 0;
+        for (int i = 0; i < all.size(); i++) {
+            if (all.get(i) <= this.fromSeq) {
+                start = i;
+            }
+        }
+        this.segments = all.subList(start, all.size());
+    }
+
+    /**
+     * 第一条时间不早于 timestamp 的事件序号，没有时返回 -1
+     * 倒序找到最后一个有早于 timestamp 的索引条目的段文件，从该条目开始顺序扫描
+     */
+    public static long seqAt(Path directory, long timestamp, long toSeq) throws IOException {
+        List<Long> segments = RoomJournal.segments(directory);
+        long startSeq = 1;
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            RoomJournalIndex.Entry entry = RoomJournalIndex.floorByTimestamp(
+                    RoomJournalIndex.indexPath(directory, segments.get(i)), timestamp);
+            if (entry != null) {
+                startSeq = entry.seq();
+                break;
+            }
+        }
+        try (RoomJournalReader reader = new RoomJournalReader(directory, startSeq, toSeq)) {
+            RoomEvent event;
+            while ((event = reader.next()) != null) {
+                if (event.timestamp() >= timestamp) {
+                    return event.seq();
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 最后一条完整记录的序号，没有事件时返回 0（只扫描最后一个段文件，不解码）
+     */
+    public static long lastSeq(Path directory) throws IOException {
+        List<Long> segments = RoomJournal.segments(directory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        long firstSeq = segments.get(segments.size() - 1);
+        long lastSeq = firstSeq - 1;
+        try (RoomJournalReader reader = new RoomJournalReader(directory, firstSeq, Long.MAX_VALUE)) {
+            Region region;
+            while ((region = reader.nextRegion(Integer.MAX_VALUE)) != null) {
+                lastSeq = region.lastSeq();
+            }
+        }
+        return lastSeq;
+    }
+
+    /**
+     * 读取下一条事件，没有更多事件时返回 null
+     */
+    public RoomEvent next() throws IOException {
+        while (true) {
+            if (buffer == null && !openNextSegment()) {
+                return null;
+            }
+            int length = peek();
+            if (length < 0) {
+                buffer = null;
+                continue;
+            }
+            if (expectedSeq > toSeq) {
+                close();
+                return null;
+            }
+            int start = offset;
+            offset += RoomJournal.HEADER_SIZE + length;
+            if (expectedSeq++ >= fromSeq) {
+                return RoomEventCodec.decode(buffer.slice(start + RoomJournal.HEADER_SIZE, length));
+            }
+        }
+    }
+
+    /**
+     * 读取当前段文件中接下来最多 maxRecords 条连续记录的位置（不解码），没有更多事件时返回 null
+     */
+    public Region nextRegion(int maxRecords) throws IOException {
+        if (maxRecords <= 0) {
+            throw new IllegalArgumentException("maxRecords 必须大于 0");
+        }
+        while (true) {
+            if (buffer == null && !openNextSegment()) {
+                return null;
+            }
+            int start = offset;
+            long firstSeq = expectedSeq;
+            int count = 0;
+            int length;
+            while (count < maxRecords && expectedSeq <= toSeq && (length = peek()) >= 0) {
+                offset += RoomJournal.HEADER_SIZE + length;
+                if (expectedSeq++ < fromSeq) {
+                    start = offset;
+                    firstSeq = expectedSeq;
+                } else {
+                    count++;
+                }
+            }
+            if (count > 0) {
+                return new Region(buffer.slice(start, offset - start).asReadOnlyBuffer(), firstSeq, expectedSeq - 1);
+            }
+            if (expectedSeq > toSeq) {
+                close();
+                return null;
+            }
+            buffer = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        segmentIndex = segments.size();
+    }
+
+    /**
+     * 校验 offset 处的记录，返回记录体长度；记录不完整或序号不连续（写入中断后残留的旧字节）时返回 -1
+     */
+    private int peek() {
+        int length = RoomJournal.checkRecord(buffer, offset);
+        if (length < 0 || RoomEventCodec.readSeq(
+                buffer.slice(offset + RoomJournal.HEADER_SIZE, length)) != expectedSeq) {
+            return -1;
+        }
+        return length;
+    }
+
+    private boolean openNextSegment() throws IOException {
+        boolean first = segmentIndex == 0;
+        while (segmentIndex < segments.size()) {
+            long firstSeq = segments.get(segmentIndex++);
+            if (firstSeq > toSeq) {
+                return false;
+            }
+            try (FileChannel channel = FileChannel.open(RoomJournal.segmentPath(directory, firstSeq),
+                    StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (NoSuchFileException e) {
+                // 段文件在读取期间被清理
+                first = false;
+                continue;
+            }
+            currentFirstSeq = firstSeq;
+            offset = 0;
+            expectedSeq = firstSeq;
+            if (first && fromSeq > firstSeq) {
+                seek(firstSeq);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 按稀疏索引跳到不大于 fromSeq 的最近记录；索引缺失或与段文件不一致时从段首读取
+     */
+    private void seek(long firstSeq) throws IOException {
+        RoomJournalIndex.Entry entry = RoomJournalIndex.floorBySeq(
+                RoomJournalIndex.indexPath(directory, firstSeq), fromSeq);
+        if (entry == null || entry.offset() < 0 || entry.seq() < firstSeq) {
+            return;
+        }
+        offset = entry.offset();
+        expectedSeq = entry.seq();
+        if (peek() < 0) {
+            offset = 0;
+            expectedSeq = firstSeq;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
+import com.jianxiang.codereviewer.domain.enums.RoomStatus;
+import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * @className: RoomJournalRetentionService
+ * @author: jianXiang
+ * @description: 房间事件日志按房间生命周期维护：关闭空闲日志，房间结束后合并段文件，超过保留期或房间不存在时删除
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class RoomJournalRetentionService {
+
+    private final RoomEventJournal roomEventJournal;
+    private final ReviewRoomRepository reviewRoomRepository;
+
+    /**
+     * 房间结束后事件日志的保留时长
+     */
+    @Value("${journal.retention:2592000000}")
+    private long retentionMillis;
+
+    @Value("${journal.idle-close:600000}")
+    private long idleCloseMillis;
+
+    @Value("${journal.compaction.batch-size:200}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public RoomJournalRetentionService(RoomEventJournal roomEventJournal,
+                                       ReviewRoomRepository reviewRoomRepository) {
+        this.roomEventJournal = roomEventJournal;
+        this.reviewRoomRepository = reviewRoomRepository;
+    }
+
+    /**
+     * 定时维护本节点的房间事件日志
+     */
+    @Scheduled(fixedDelayString = "${journal.compaction.interval:3600000}",
+            initialDelayString = "${journal.compaction.interval:3600000}")
+    public void maintainJournals() {
+        if (!roomEventJournal.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        int closed = roomEventJournal.closeIdle(idleCloseMillis);
+        if (closed > 0) {
+            log.debug("关闭空闲房间事件日志: {} 个", closed);
+        }
+        maintainRooms()
+                .doFinally(signal -> running.set(false))
+                .subscribe(count -> {
+                    if (count > 0) {
+                        log.info("房间事件日志维护完成: {} 个房间", count);
+                    }
+                }, e -> log.warn("房间事件日志维护失败: {}", e.getMessage()));
+    }
+
+    /**
+     * 按批查询房间状态并合并或删除对应的事件日志
+     *
+     * @return 合并或删除的房间数
+     */
+    public Mono<Integer> maintainRooms() {
+        LocalDateTime expireBefore = LocalDateTime.now().minus(Duration.ofMillis(retentionMillis));
+        return Mono.fromCallable(roomEventJournal::roomCodes)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(Flux::fromIterable)
+                .buffer(batchSize)
+                .concatMap(roomCodes -> reviewRoomRepository.findByRoomCodeIn(roomCodes)
+                        .collectMap(ReviewRoom::getRoomCode, Function.identity())
+                        .flatMapMany(rooms -> maintainBatch(roomCodes, rooms, expireBefore)))
+                .reduce(0, Integer::sum);
+    }
+
+    private Flux<Integer> maintainBatch(List<String> roomCodes, Map<String, ReviewRoom> rooms,
+                                        LocalDateTime expireBefore) {
+        return Flux.fromIterable(roomCodes)
+                .concatMap(roomCode -> Mono.fromCallable(() -> maintain(roomCode, rooms.get(roomCode), expireBefore))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> {
+                            log.warn("维护房间事件日志失败: roomCode={}, error={}", roomCode, e.getMessage());
+                            return Mono.just(0);
+                        }));
+    }
+
+    private int maintain(String roomCode, ReviewRoom room, LocalDateTime expireBefore) {
+        if (room == null) {
+            log.info("房间不存在，删除事件日志: {}", roomCode);
+            roomEventJournal.delete(roomCode);
+            return 1;
+        }
+        RoomStatus status = RoomStatus.getRoomStatus(room.getStatus());
+        if (status == null || !status.isTerminal()) {
+            return 0;
+        }
+        LocalDateTime closedAt = room.getCloseTime() != null ? room.getCloseTime() : room.getUpdateTime();
+        if (closedAt != null && closedAt.isBefore(expireBefore)) {
+            log.info("房间结束超过保留期，删除事件日志: {}", roomCode);
+            roomEventJournal.delete(roomCode);
+            return 1;
+        }
+        if (roomEventJournal.isCompacted(roomCode)) {
+            return 0;
+        }
+        long events = roomEventJournal.compact(roomCode);
+        log.info("房间已结束，合并事件日志: {}, {} 条事件", roomCode, events);
+        return 1;
+    }
+}
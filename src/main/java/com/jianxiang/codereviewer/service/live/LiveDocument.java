@@ -0,0 +1,121 @@
+package com.jianxiang.codereviewer.service.live;
+
+import com.jianxiang.codereviewer.common.util.ContentUtil;
+import com.jianxiang.codereviewer.websocket.message.payload.CodeUpdatePayload;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 房间内单个文件的实时内容：最新快照版本 + 之后的代码更新
+ * 行号从 1 开始；未指定起始行时按整个文件替换（DELETE 为清空）
+ */
+public class LiveDocument {
+
+    private final String filePath;
+
+    /**
+     * 基准快照版本，文件没有快照时为空
+     */
+    private final Integer baseVersion;
+
+    /**
+     * 基准快照创建时的事件日志序号，不大于它的代码更新已包含在快照中；旧快照没有记录时为空
+     */
+    private final Long baseSeq;
+
+    /**
+     * 基准快照创建时间（毫秒时间戳），仅在没有 baseSeq 的旧快照上用于跳过早于快照的更新
+     */
+    private final long baseTime;
+
+    private final List<String> lines;
+    private long lastSeq;
+
+    public LiveDocument(String filePath, Integer baseVersion, Long baseSeq, long baseTime, String content) {
+        this.filePath = filePath;
+        this.baseVersion = baseVersion;
+        this.baseSeq = baseSeq;
+        this.baseTime = baseTime;
+        this.lines = new ArrayList<>(ContentUtil.splitLines(content));
+        this.lastSeq = baseSeq == null ? 0 : baseSeq;
+    }
+
+    /**
+     * 应用一条代码更新；序号不大于已应用序号（含基准快照的序号）的更新被跳过，
+     * 旧快照没有记录序号时改为跳过早于快照创建时间的更新
+     *
+     * @param seq       事件序号，未记录事件日志时为空（不做去重）
+     * @param timestamp 事件时间（毫秒时间戳）
+     * @return 是否已应用
+     */
+    public synchronized boolean apply(Long seq, long timestamp, CodeUpdatePayload update) {
+        if ((seq != null && seq <= lastSeq) || (baseSeq == null && timestamp <= baseTime)) {
+            return false;
+        }
+        List<String> replacement = ContentUtil.splitLines(update.getContent());
+        String operation = update.getOperation() == null ? "UPDATE" : update.getOperation().toUpperCase();
+        Integer startLine = update.getStartLine();
+
+        if (startLine == null) {
+            lines.clear();
+            if (!"DELETE".equals(operation)) {
+                lines.addAll(replacement);
+            }
+        } else {
+            int from = Math.min(Math.max(startLine, 1), lines.size() + 1) - 1;
+            int endLine = update.getEndLine() == null ? startLine : Math.max(update.getEndLine(), startLine);
+            int to = Math.max(from, Math.min(endLine, lines.size()));
+            switch (operation) {
+                case "INSERT" -> lines.addAll(from, terminate(replacement, from < lines.size()));
+                case "DELETE" -> lines.subList(from, to).clear();
+                default -> {
+                    lines.subList(from, to).clear();
+                    lines.addAll(from, terminate(replacement, from < lines.size()));
+                }
+            }
+        }
+        if (seq != null) {
+            lastSeq = seq;
+        }
+        return true;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public Integer getBaseVersion() {
+        return baseVersion;
+    }
+
+    public Long getBaseSeq() {
+        return baseSeq;
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    public synchronized int getLineCount() {
+        return lines.size();
+    }
+
+    public synchronized String getContent() {
+        return String.join("", lines);
+    }
+
+    /**
+     * 插入到已有行之前时补齐最后一行的换行符，避免与后一行拼接
+     */
+    private static List<String> terminate(List<String> replacement, boolean followed) {
+        if (!followed || replacement.isEmpty()) {
+            return replacement;
+        }
+        String last = replacement.get(replacement.size() - 1);
+        if (!last.endsWith("\n")) {
+            replacement.set(replacement.size() - 1, last + "\n");
+        }
+        return replacement;
+    }
+}
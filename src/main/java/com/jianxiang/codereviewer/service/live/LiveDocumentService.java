@@ -0,0 +1,337 @@
+package com.jianxiang.codereviewer.service.live;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.common.util.LruCache;
+import com.jianxiang.codereviewer.domain.projection.CodeSnapshotSummary;
+import com.jianxiang.codereviewer.domain.repository.CodeSnapshotRepository;
+import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
+import com.jianxiang.codereviewer.dto.snapshot.LiveDocumentResponse;
+import com.jianxiang.codereviewer.service.journal.RoomEvent;
+import com.jianxiang.codereviewer.service.journal.RoomEventJournal;
+import com.jianxiang.codereviewer.service.snapshot.SnapshotContentStore;
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import com.jianxiang.codereviewer.websocket.message.payload.CodeUpdatePayload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @className: LiveDocumentService
+ * @author: jianXiang
+ * @description: 房间实时文档：每个文件的最新快照加上之后的代码更新
+ * 按房间懒加载（读取最新快照后重放事件日志中的代码更新），之后由代码更新事件增量维护；进程重启后可完整恢复
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class LiveDocumentService {
+
+    /**
+     * 并发读取快照内容的文件数
+     */
+    private static final int READ_CONCURRENCY = 4;
+
+    private final ReviewRoomRepository reviewRoomRepository;
+    private final CodeSnapshotRepository codeSnapshotRepository;
+    private final SnapshotContentStore snapshotContentStore;
+    private final RoomEventJournal roomEventJournal;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 已加载的房间（按最近访问淘汰，淘汰后可从快照和事件日志重新加载）
+     */
+    private final LruCache<String, LiveRoom> rooms;
+
+    /**
+     * 加载中的房间：加载期间到达的代码更新先暂存，重放结束后按序号应用
+     */
+    private final Map<String, LiveRoom> building = new ConcurrentHashMap<>();
+
+    /**
+     * 进行中的加载（同一房间并发请求共用一次加载）
+     */
+    private final Map<String, Mono<LiveRoom>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * 失效计数：加载开始后有房间被丢弃时，该次加载的结果不再缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public LiveDocumentService(ReviewRoomRepository reviewRoomRepository,
+                               CodeSnapshotRepository codeSnapshotRepository,
+                               SnapshotContentStore snapshotContentStore,
+                               RoomEventJournal roomEventJournal,
+                               ObjectMapper objectMapper,
+                               @Value("${live.max-rooms:512}") int maxRooms) {
+        this.reviewRoomRepository = reviewRoomRepository;
+        this.codeSnapshotRepository = codeSnapshotRepository;
+        this.snapshotContentStore = snapshotContentStore;
+        this.roomEventJournal = roomEventJournal;
+        this.objectMapper = objectMapper;
+        this.rooms = new LruCache<>(maxRooms);
+    }
+
+    /**
+     * 获取房间所有文件的实时内容
+     */
+    public Mono<List<LiveDocument>> documents(String roomCode) {
+        return room(roomCode).map(LiveRoom::documents);
+    }
+
+    /**
+     * 查询房间所有文件的实时内容
+     */
+    public Flux<LiveDocumentResponse> getLiveDocuments(String roomCode) {
+        return documents(roomCode)
+                .flatMapIterable(documents -> documents)
+                .map(document -> LiveDocumentResponse.builder()
+                        .filePath(document.getFilePath())
+                        .baseVersion(document.getBaseVersion())
+                        .lastSeq(document.getLastSeq())
+                        .lineCount(document.getLineCount())
+                        .content(document.getContent())
+                        .build());
+    }
+
+    /**
+     * 加载房间实时文档（启动恢复使用），返回重放的代码更新条数
+     */
+    public Mono<Long> recover(String roomCode) {
+        return room(roomCode).map(LiveRoom::replayed);
+    }
+
+    /**
+     * 代码更新同步到已加载（或加载中）的房间；未加载的房间不处理，下次加载时从事件日志重放
+     * 记录了事件日志时由事件日志的锁内回调调用，同一房间按序号顺序到达
+     */
+    public void onCodeUpdate(String roomCode, Long seq, CodeUpdatePayload update) {
+        LiveRoom room = rooms.get(roomCode);
+        if (room == null) {
+            room = building.get(roomCode);
+        }
+        if (room != null) {
+            room.offer(seq, System.currentTimeMillis(), update);
+        }
+    }
+
+    /**
+     * 房间创建新快照版本后丢弃实时文档，下次访问时以新版本为基准重新加载
+     * 进行中的加载读到的可能是旧版本，递增失效计数使其结果不再缓存
+     */
+    public synchronized void evict(String roomCode) {
+        generation.incrementAndGet();
+        rooms.remove(roomCode);
+        loading.remove(roomCode);
+    }
+
+    private Mono<LiveRoom> room(String roomCode) {
+        LiveRoom loaded = rooms.get(roomCode);
+        if (loaded != null && !loaded.truncated()) {
+            return Mono.just(loaded);
+        }
+        // 从快照序号之后重放的房间出现了没有快照的文件，该文件之前的更新未重放，改为从头重放
+        boolean fullReplay = loaded != null;
+        if (fullReplay) {
+            // 重新加载期间的代码更新交给加载中的房间暂存
+            rooms.remove(roomCode);
+        }
+        return loading.computeIfAbsent(roomCode, code -> startLoad(code, fullReplay));
+    }
+
+    private Mono<LiveRoom> startLoad(String roomCode, boolean fullReplay) {
+        long started = generation.get();
+        // 只移除自己这次加载（丢弃后可能已开始新的加载）
+        AtomicReference<Mono<LiveRoom>> self = new AtomicReference<>();
+        Mono<LiveRoom> shared = load(roomCode, fullReplay)
+                .map(room -> {
+                    synchronized (this) {
+                        if (generation.get() == started) {
+                            rooms.put(roomCode, room);
+                        }
+                    }
+                    return room;
+                })
+                .doFinally(signal -> loading.remove(roomCode, self.get()))
+                .cache();
+        self.set(shared);
+        return shared;
+    }
+
+    private Mono<LiveRoom> load(String roomCode, boolean fullReplay) {
+        List<LiveDocument> bases = new ArrayList<>();
+        return Mono.defer(() -> reviewRoomRepository.findByRoomCode(roomCode)
+                        .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
+                        .flatMapMany(reviewRoom -> latestFiles(reviewRoom.getId()))
+                        .doOnNext(bases::add)
+                        .then(Mono.fromCallable(() -> replayFrom(bases, fullReplay))))
+                .flatMap(fromSeq -> replay(roomCode, bases, fromSeq))
+                .flatMap(room -> room.truncated()
+                        ? load(roomCode, true)
+                        : Mono.just(room));
+    }
+
+    /**
+     * 快照之后再重放事件日志：各文件快照记录序号之前的更新已包含在快照中，从最小的记录序号之后开始重放；
+     * 有文件的快照没有记录序号（旧数据）时从头重放，由 LiveDocument 按创建时间跳过
+     */
+    private Mono<LiveRoom> replay(String roomCode, List<LiveDocument> bases, long fromSeq) {
+        LiveRoom room = new LiveRoom(fromSeq);
+        return Mono.defer(() -> {
+                    building.put(roomCode, room);
+                    bases.forEach(room::base);
+                    return roomEventJournal.read(roomCode, fromSeq)
+                            .filter(event -> event.type() == MessageType.CODE_UPDATE)
+                            .doOnNext(event -> room.replay(event.seq(), event.timestamp(), decode(event)))
+                            .then();
+                })
+                .then(Mono.fromCallable(() -> {
+                    room.ready();
+                    log.debug("房间实时文档已加载: roomCode={}, fromSeq={}, files={}, replayed={}",
+                            roomCode, fromSeq, room.documents().size(), room.replayed());
+                    return room;
+                }))
+                .doFinally(signal -> building.remove(roomCode, room));
+    }
+
+    private static long replayFrom(List<LiveDocument> bases, boolean fullReplay) {
+        if (fullReplay || bases.isEmpty()) {
+            return 1;
+        }
+        long minSeq = Long.MAX_VALUE;
+        for (LiveDocument base : bases) {
+            if (base.getBaseSeq() == null) {
+                return 1;
+            }
+            minSeq = Math.min(minSeq, base.getBaseSeq());
+        }
+        return minSeq + 1;
+    }
+
+    /**
+     * 每个文件的最新快照内容
+     */
+    private Flux<LiveDocument> latestFiles(Long roomId) {
+        return codeSnapshotRepository.findSummariesByRoomId(roomId)
+                .distinct(summary -> Optional.ofNullable(summary.getFilePath()))
+                .flatMapSequential(summary -> codeSnapshotRepository.findFileByVersion(roomId,
+                                summary.getVersion(), summary.getFilePath())
+                        .flatMap(snapshot -> snapshotContentStore.readText(snapshot).defaultIfEmpty(""))
+                        .map(content -> new LiveDocument(summary.getFilePath(), summary.getVersion(),
+                                summary.getJournalSeq(), toMillis(summary), content)), READ_CONCURRENCY);
+    }
+
+    private CodeUpdatePayload decode(RoomEvent event) {
+        try {
+            return objectMapper.readValue(event.payload(), CodeUpdatePayload.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("解析代码更新事件失败: seq=" + event.seq(), e);
+        }
+    }
+
+    /**
+     * 快照创建时间（秒精度），只用于没有记录事件日志序号的旧快照
+     */
+    private static long toMillis(CodeSnapshotSummary summary) {
+        LocalDateTime createTime = summary.getCreateTime();
+        return createTime == null ? 0 : createTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 单个房间的实时文档（由 this 保护）
+     */
+    private static final class LiveRoom {
+
+        private final Map<String, LiveDocument> documents = new LinkedHashMap<>();
+        private final List<PendingUpdate> pending = new ArrayList<>();
+
+        /**
+         * 重放起始序号，大于 1 时没有快照的文件缺少之前的更新
+         */
+        private final long fromSeq;
+        private boolean ready;
+        private boolean truncated;
+        private long replayed;
+
+        private record PendingUpdate(Long seq, long timestamp, CodeUpdatePayload update) {}
+
+        LiveRoom(long fromSeq) {
+            this.fromSeq = fromSeq;
+        }
+
+        synchronized void base(LiveDocument document) {
+            documents.put(document.getFilePath(), document);
+        }
+
+        synchronized void replay(long seq, long timestamp, CodeUpdatePayload update) {
+            if (apply(seq, timestamp, update)) {
+                replayed++;
+            }
+        }
+
+        synchronized void offer(Long seq, long timestamp, CodeUpdatePayload update) {
+            if (ready) {
+                if (!apply(seq, timestamp, update) && seq != null && !truncated) {
+                    // 就绪后的更新按序号顺序到达，被跳过说明乱序，实时文档与事件日志不一致
+                    log.warn("实时文档跳过乱序的代码更新: filePath={}, seq={}", update.getFilePath(), seq);
+                }
+            } else {
+                pending.add(new PendingUpdate(seq, timestamp, update));
+            }
+        }
+
+        /**
+         * 重放结束：按序号应用加载期间暂存的更新（已重放过的由序号去重）
+         */
+        synchronized void ready() {
+            pending.sort(Comparator.comparing(PendingUpdate::seq, Comparator.nullsLast(Comparator.naturalOrder())));
+            pending.forEach(update -> apply(update.seq(), update.timestamp(), update.update()));
+            pending.clear();
+            ready = true;
+        }
+
+        synchronized List<LiveDocument> documents() {
+            return List.copyOf(documents.values());
+        }
+
+        synchronized long replayed() {
+            return replayed;
+        }
+
+        /**
+         * 是否出现了没有快照、且之前的更新未重放的文件（需要从头重新加载）
+         */
+        synchronized boolean truncated() {
+            return truncated;
+        }
+
+        private boolean apply(Long seq, long timestamp, CodeUpdatePayload update) {
+            LiveDocument document = documents.get(update.getFilePath());
+            if (document == null) {
+                if (fromSeq > 1) {
+                    truncated = true;
+                    return false;
+                }
+                document = new LiveDocument(update.getFilePath(), null, null, 0, "");
+                documents.put(update.getFilePath(), document);
+            }
+            return document.apply(seq, timestamp, update);
+        }
+    }
+}
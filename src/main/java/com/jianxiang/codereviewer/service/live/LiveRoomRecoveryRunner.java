@@ -0,0 +1,114 @@
+package com.jianxiang.codereviewer.service.live;
+
+import com.jianxiang.codereviewer.domain.enums.RoomStatus;
+import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
+import com.jianxiang.codereviewer.service.journal.RoomEventJournal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @className: LiveRoomRecoveryRunner
+ * @author: jianXiang
+ * @description: 启动恢复：本节点有事件日志且仍在进行中的房间，加载最新快照并重放之后的代码更新
+ * 各房间并行恢复，总时长受超时限制；ApplicationRunner 执行完毕后 Spring Boot 才将就绪状态切换为 ACCEPTING_TRAFFIC
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class LiveRoomRecoveryRunner implements ApplicationRunner {
+
+    private static final int QUERY_BATCH_SIZE = 500;
+
+    private final RoomEventJournal roomEventJournal;
+    private final ReviewRoomRepository reviewRoomRepository;
+    private final LiveDocumentService liveDocumentService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${live.recovery.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 恢复总时长上限，超时后未完成的房间在首次访问时再加载
+     */
+    @Value("${live.recovery.timeout:60000}")
+    private long timeoutMillis;
+
+    @Value("${live.recovery.parallelism:8}")
+    private int parallelism;
+
+    public LiveRoomRecoveryRunner(RoomEventJournal roomEventJournal,
+                                  ReviewRoomRepository reviewRoomRepository,
+                                  LiveDocumentService liveDocumentService,
+                                  MeterRegistry meterRegistry) {
+        this.roomEventJournal = roomEventJournal;
+        this.reviewRoomRepository = reviewRoomRepository;
+        this.liveDocumentService = liveDocumentService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || !roomEventJournal.isEnabled()) {
+            return;
+        }
+        List<String> roomCodes;
+        try {
+            roomCodes = roomEventJournal.roomCodes();
+        } catch (IOException e) {
+            log.warn("读取房间事件日志目录失败，跳过启动恢复: {}", e.getMessage());
+            return;
+        }
+        if (roomCodes.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        AtomicInteger recovered = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong events = new AtomicLong();
+        try {
+            Flux.fromIterable(roomCodes)
+                    .buffer(QUERY_BATCH_SIZE)
+                    .concatMap(reviewRoomRepository::findByRoomCodeIn)
+                    .filter(room -> RoomStatus.IN_PROGRESS.getCode().equals(room.getStatus()))
+                    .flatMap(room -> liveDocumentService.recover(room.getRoomCode())
+                            .doOnNext(replayed -> {
+                                events.addAndGet(replayed);
+                                recovered.incrementAndGet();
+                            })
+                            .onErrorResume(e -> {
+                                failed.incrementAndGet();
+                                log.warn("恢复房间失败: roomCode={}, error={}", room.getRoomCode(), e.getMessage());
+                                return Mono.empty();
+                            }), parallelism)
+                    .then()
+                    .block(Duration.ofMillis(timeoutMillis));
+        } catch (RuntimeException e) {
+            log.warn("启动恢复未完成，剩余房间在首次访问时加载: {}", e.getMessage());
+        }
+
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        Timer.builder("live.recovery.duration")
+                .description("启动时恢复进行中房间的耗时")
+                .register(meterRegistry)
+                .record(elapsed);
+        meterRegistry.counter("live.recovery.rooms", "result", "recovered").increment(recovered.get());
+        meterRegistry.counter("live.recovery.rooms", "result", "failed").increment(failed.get());
+        meterRegistry.counter("live.recovery.events").increment(events.get());
+        log.info("进行中房间恢复完成: {} 个房间, 重放 {} 条代码更新, 失败 {} 个, 耗时 {} ms",
+                recovered.get(), events.get(), failed.get(), elapsed.toMillis());
+    }
+}
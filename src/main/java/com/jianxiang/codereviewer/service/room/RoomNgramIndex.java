@@ -0,0 +1,216 @@
+package com.jianxiang.codereviewer.service.room;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 房间名称 N-gram 倒排索引（纯内存数据结构）
+ *
+ * 对每个房间名称建立 1~3 gram 的倒排表，查询时取查询串所有 gram 的倒排表求交集，
+ * 再对候选集做包含校验和排序。候选集只与命中数量相关，与房间总数无关。
+ *
+ * 排序规则：完全匹配 > 前缀匹配 > 单词前缀匹配 > 子串匹配，
+ * 同级按匹配位置、名称长度升序，最后按房间ID倒序（新房间优先）。
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+public class RoomNgramIndex {
+
+    /**
+     * 最大 gram 长度（trigram）
+     */
+    static final int MAX_GRAM = 3;
+
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_PREFIX = 1;
+    private static final int RANK_WORD_PREFIX = 2;
+    private static final int RANK_SUBSTRING = 3;
+
+    /**
+     * 已索引房间: roomId -> 房间条目
+     */
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 倒排表: gram -> roomId 集合
+     */
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * 索引条目
+     */
+    public record Entry(Long roomId, String name, String normalizedName, String status) {}
+
+    /**
+     * 新增或更新房间（名称变化时重建其倒排项）
+     */
+    public synchronized void put(Long roomId, String name, String status) {
+        if (roomId == null || name == null) {
+            return;
+        }
+        String normalized = normalize(name);
+        Entry previous = entries.get(roomId);
+        if (previous != null && !previous.normalizedName().equals(normalized)) {
+            removePostings(roomId, previous.normalizedName());
+        }
+        entries.put(roomId, new Entry(roomId, name, normalized, status));
+        if (previous == null || !previous.normalizedName().equals(normalized)) {
+            for (String gram : grams(normalized)) {
+                postings.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(roomId);
+            }
+        }
+    }
+
+    /**
+     * 移除房间
+     */
+    public synchronized void remove(Long roomId) {
+        Entry previous = entries.remove(roomId);
+        if (previous != null) {
+            removePostings(roomId, previous.normalizedName());
+        }
+    }
+
+    /**
+     * 搜索房间
+     *
+     * @param query  名称关键字
+     * @param status 状态过滤（可选）
+     * @param limit  最大返回数量
+     * @return 按相关度排序的房间ID
+     */
+    public List<Long> search(String query, String status, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        boolean filterStatus = status != null && !status.isEmpty();
+        List<Scored> matches = new ArrayList<>();
+        for (Long roomId : candidates(normalized)) {
+            Entry entry = entries.get(roomId);
+            if (entry == null || (filterStatus && !status.equals(entry.status()))) {
+                continue;
+            }
+            int position = entry.normalizedName().indexOf(normalized);
+            if (position < 0) {
+                // 倒排表只保证 gram 全部出现，这里校验真实的子串关系
+                continue;
+            }
+            matches.add(new Scored(entry, rank(entry.normalizedName(), normalized, position), position));
+        }
+
+        return matches.stream()
+                .sorted(Comparator.comparingInt(Scored::rank)
+                        .thenComparingInt(Scored::position)
+                        .thenComparingInt(s -> s.entry().normalizedName().length())
+                        .thenComparing(s -> s.entry().roomId(), Comparator.reverseOrder()))
+                .limit(limit)
+                .map(s -> s.entry().roomId())
+                .toList();
+    }
+
+    /**
+     * 已索引房间数量
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        postings.clear();
+    }
+
+    /**
+     * 取查询串所有 gram 的倒排表交集，从最短的倒排表开始
+     */
+    private Set<Long> candidates(String normalized) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : queryGrams(normalized)) {
+            Set<Long> list = postings.get(gram);
+            if (list == null || list.isEmpty()) {
+                return Set.of();
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    private void removePostings(Long roomId, String normalizedName) {
+        for (String gram : grams(normalizedName)) {
+            Set<Long> list = postings.get(gram);
+            if (list != null) {
+                list.remove(roomId);
+                if (list.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static int rank(String name, String query, int position) {
+        if (name.equals(query)) {
+            return RANK_EXACT;
+        }
+        if (position == 0) {
+            return RANK_PREFIX;
+        }
+        if (!Character.isLetterOrDigit(name.charAt(position - 1))) {
+            return RANK_WORD_PREFIX;
+        }
+        // 首次出现不在单词边界时，再看后续是否有单词前缀匹配
+        for (int i = name.indexOf(query, position + 1); i > 0; i = name.indexOf(query, i + 1)) {
+            if (!Character.isLetterOrDigit(name.charAt(i - 1))) {
+                return RANK_WORD_PREFIX;
+            }
+        }
+        return RANK_SUBSTRING;
+    }
+
+    /**
+     * 名称的全部 1~3 gram（用于建索引）
+     */
+    static Set<String> grams(String normalized) {
+        Set<String> result = new HashSet<>();
+        for (int n = 1; n <= MAX_GRAM; n++) {
+            for (int i = 0; i + n <= normalized.length(); i++) {
+                result.add(normalized.substring(i, i + n));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查询串的 gram：长度不足 3 时直接用整串，否则用全部 trigram
+     */
+    static Set<String> queryGrams(String normalized) {
+        if (normalized.length() <= MAX_GRAM) {
+            return Set.of(normalized);
+        }
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + MAX_GRAM <= normalized.length(); i++) {
+            result.add(normalized.substring(i, i + MAX_GRAM));
+        }
+        return result;
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Scored(Entry entry, int rank, int position) {}
+}
@@ -1,6 +1,7 @@
 package com.jianxiang.codereviewer.service.room;
 
 import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.common.util.CursorPage;
 import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
 import com.jianxiang.codereviewer.domain.entity.User;
 import com.jianxiang.codereviewer.domain.enums.RoomStatus;
@@ -8,16 +9,20 @@ import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
 import com.jianxiang.codereviewer.domain.repository.RoomMemberRepository;
 import com.jianxiang.codereviewer.domain.repository.UserRepository;
 import com.jianxiang.codereviewer.dto.room.CreateRoomRequest;
+import com.jianxiang.codereviewer.dto.room.ParticipatingRoomResponse;
 import com.jianxiang.codereviewer.dto.room.RoomResponse;
 import com.jianxiang.codereviewer.dto.room.UpdateRoomRequest;
+import com.jianxiang.codereviewer.service.journal.RoomEventJournal;
+import com.jianxiang.codereviewer.websocket.message.MessageType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Random;
 
 /**
@@ -31,12 +36,22 @@ import java.util.Random;
 @RequiredArgsConstructor
 public class RoomReviewService {
 
+    /**
+     * 参与房间列表的默认/最大每页条数
+     */
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ReviewRoomRepository reviewRoomRepository;
 
     private final UserRepository userRepository;
 
     private final RoomMemberService roomMemberService;
 
+    private final RoomSearchService roomSearchService;
+
+    private final RoomEventJournal roomEventJournal;
+
     public Mono<RoomResponse> createRoom(CreateRoomRequest createRoomRequest, Long userId) {
         return generateRoomCodeUnique()
                 .flatMap(roomCode -> {
@@ -56,15 +71,15 @@ public class RoomReviewService {
 
                     return reviewRoomRepository.save(reviewRoom);
                 })
+                .doOnNext(roomSearchService::onRoomSaved)
                 .flatMap(savedRoom -> roomMemberService.addOwner(savedRoom.getId(), userId)
                         .thenReturn(savedRoom))
                 .flatMap(this::convertToResponse);
     }
 
     public Mono<RoomResponse> getRoomByCode(String roomCode) {
-        return reviewRoomRepository.findByRoomCode(roomCode)
-                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
-                .flatMap(this::convertToResponse);
+        return reviewRoomRepository.findResponseByRoomCode(roomCode)
+                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")));
     }
 
     public Mono<RoomResponse> updateRoom(String roomCode, UpdateRoomRequest updateRoomRequest, Long userId) {
@@ -99,30 +114,55 @@ public class RoomReviewService {
 
                     return reviewRoomRepository.save(room);
                 })
+                .doOnNext(roomSearchService::onRoomSaved)
                 .flatMap(this::convertToResponse);
     }
 
     /**
      * 获取房间列表（支持动态条件查询）
      *
+     * 带名称关键字时走内存 N-gram 索引，按相关度排序返回，不再对名称做 LIKE 全表扫描
+     *
      * @param status 房间状态（可选）
      * @param name 房间名称（可选）
      * @return 房间列表
      */
     public Flux<RoomResponse> getRoomList(String status, String name) {
+        if (name != null && !name.isBlank()) {
+            return roomSearchService.search(name, status)
+                    .flatMapMany(roomIds -> reviewRoomRepository.findResponsesByIds(roomIds)
+                            .collectMap(RoomResponse::getId)
+                            .flatMapIterable(rooms -> roomIds.stream()
+                                    .map(rooms::get)
+                                    .filter(Objects::nonNull)
+                                    .toList()));
+        }
         // ✅ 使用动态查询，自动处理参数为空的情况
-        return reviewRoomRepository.findByDynamicConditions(status, name)
-                .flatMap(this::convertToResponse);
+        return reviewRoomRepository.findResponsesByDynamicConditions(status, null);
     }
 
     public Flux<RoomResponse> getUserRoom(Long userId, String status) {
-        Flux<ReviewRoom> roomFlux;
-        if (status != null && !status.isEmpty()) {
-            roomFlux = reviewRoomRepository.findByOwnerIdAndStatus(userId, status);
-        } else {
-            roomFlux = reviewRoomRepository.findByOwnerId(userId);
+        return reviewRoomRepository.findResponsesByOwnerId(userId, status);
+    }
+
+    /**
+     * 获取用户参与的房间（作为房主或成员），带角色信息，按房间ID倒序游标分页
+     *
+     * @param userId 用户ID
+     * @param status 房间状态（可选）
+     * @param cursor 上一页返回的游标（可选，为空表示第一页）
+     * @param size 每页条数（可选）
+     * @return 分页结果
+     */
+    public Mono<CursorPage<ParticipatingRoomResponse>> getParticipatingRooms(Long userId, String status,
+                                                                            Long cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return Mono.error(new BusinessException("每页条数必须在1到" + MAX_PAGE_SIZE + "之间"));
         }
-        return roomFlux.flatMap(this::convertToResponse);
+        return reviewRoomRepository.findParticipatingRooms(userId, status, cursor, pageSize + 1)
+                .collectList()
+                .map(rows -> CursorPage.of(rows, pageSize, row -> row.getRoom().getId()));
     }
 
     /**
@@ -133,29 +173,7 @@ public class RoomReviewService {
      * @return 房间响应
      */
     public Mono<RoomResponse> cancelRoom(String roomCode, Long userId) {
-        return reviewRoomRepository.findByRoomCode(roomCode)
-                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
-                .flatMap(room -> {
-                    // 检查权限
-                    if (!room.getOwnerId().equals(userId)) {
-                        return Mono.error(new BusinessException("无权限操作"));
-                    }
-
-                    // 检查状态是否可以取消
-                    RoomStatus currentStatus = RoomStatus.getRoomStatus(room.getStatus());
-                    if (!currentStatus.canTransitionTo(RoomStatus.CANCELLED)) {
-                        return Mono.error(new BusinessException(
-                                String.format("房间当前状态[%s]不允许取消", currentStatus.getDesc())));
-                    }
-
-                    // 更新状态为已取消
-                    room.setStatus(RoomStatus.CANCELLED.getCode());
-                    room.setCloseTime(LocalDateTime.now());
-                    room.setUpdateTime(LocalDateTime.now());
-
-                    return reviewRoomRepository.save(room);
-                })
-                .flatMap(this::convertToResponse);
+        return transitionRoom(roomCode, userId, RoomStatus.CANCELLED, "取消");
     }
 
     /**
@@ -166,28 +184,7 @@ public class RoomReviewService {
      * @return 房间响应
      */
     public Mono<RoomResponse> startRoom(String roomCode, Long userId) {
-        return reviewRoomRepository.findByRoomCode(roomCode)
-                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
-                .flatMap(room -> {
-                    // 检查权限
-                    if (!room.getOwnerId().equals(userId)) {
-                        return Mono.error(new BusinessException("无权限操作"));
-                    }
-
-                    // 检查状态转换是否合法
-                    RoomStatus currentStatus = RoomStatus.getRoomStatus(room.getStatus());
-                    if (!currentStatus.canTransitionTo(RoomStatus.IN_PROGRESS)) {
-                        return Mono.error(new BusinessException(
-                                String.format("房间当前状态[%s]不允许开始评审", currentStatus.getDesc())));
-                    }
-
-                    // 更新状态为进行中
-                    room.setStatus(RoomStatus.IN_PROGRESS.getCode());
-                    room.setUpdateTime(LocalDateTime.now());
-
-                    return reviewRoomRepository.save(room);
-                })
-                .flatMap(this::convertToResponse);
+        return transitionRoom(roomCode, userId, RoomStatus.IN_PROGRESS, "开始评审");
     }
 
     /**
@@ -198,29 +195,46 @@ public class RoomReviewService {
      * @return 房间响应
      */
     public Mono<RoomResponse> completeRoom(String roomCode, Long userId) {
-        return reviewRoomRepository.findByRoomCode(roomCode)
-                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
-                .flatMap(room -> {
-                    // 检查权限
-                    if (!room.getOwnerId().equals(userId)) {
-                        return Mono.error(new BusinessException("无权限操作"));
-                    }
-
-                    // 检查状态转换是否合法
-                    RoomStatus currentStatus = RoomStatus.getRoomStatus(room.getStatus());
-                    if (!currentStatus.canTransitionTo(RoomStatus.COMPLETED)) {
-                        return Mono.error(new BusinessException(
-                                String.format("房间当前状态[%s]不允许完成评审", currentStatus.getDesc())));
-                    }
+        return transitionRoom(roomCode, userId, RoomStatus.COMPLETED, "完成评审");
+    }
 
-                    // 更新状态为已完成
-                    room.setStatus(RoomStatus.COMPLETED.getCode());
-                    room.setCloseTime(LocalDateTime.now());
-                    room.setUpdateTime(LocalDateTime.now());
+    /**
+     * 状态转换：一条条件 UPDATE 完成权限和状态校验，按影响行数判断是否成功
+     * 失败时再查询房间给出具体原因
+     */
+    private Mono<RoomResponse> transitionRoom(String roomCode, Long userId, RoomStatus target, String action) {
+        return reviewRoomRepository.transitionStatus(roomCode, userId, target, LocalDateTime.now())
+                .flatMap(updated -> reviewRoomRepository.findResponseByRoomCode(roomCode)
+                        .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
+                        .flatMap(room -> {
+                            if (updated > 0) {
+                                return Mono.just(room);
+                            }
+                            // 检查权限
+                            if (!room.getOwnerId().equals(userId)) {
+                                return Mono.error(new BusinessException("无权限操作"));
+                            }
+                            RoomStatus currentStatus = RoomStatus.getRoomStatus(room.getStatus());
+                            return Mono.error(new BusinessException(
+                                    String.format("房间当前状态[%s]不允许%s", currentStatus.getDesc(), action)));
+                        }))
+                .doOnNext(room -> roomSearchService.onRoomSaved(room.getId(), room.getName(), room.getStatus()))
+                .flatMap(room -> recordStatusChange(roomCode, userId, room.getOwnerUsername(), room.getStatus())
+                        .thenReturn(room));
+    }
 
-                    return reviewRoomRepository.save(room);
+    /**
+     * 状态变更写入房间事件日志（写入失败只记录错误，不影响状态变更结果）
+     */
+    private Mono<Void> recordStatusChange(String roomCode, Long userId, String username, String status) {
+        return roomEventJournal.append(roomCode, MessageType.ROOM_STATUS_CHANGE, userId, username,
+                        Map.of("status", status))
+                .onErrorResume(e -> {
+                    log.error("写入房间状态变更事件失败: roomCode={}, status={}, error={}",
+                            roomCode, status, e.getMessage());
+                    return Mono.empty();
                 })
-                .flatMap(this::convertToResponse);
+                .then();
     }
 
     /**
@@ -266,15 +280,26 @@ public class RoomReviewService {
         return code.toString();
     }
 
+    /**
+     * 写操作后的响应：房间实体已在手，只需补充房主用户名
+     */
     private Mono<RoomResponse> convertToResponse(ReviewRoom reviewRoom) {
         return userRepository.findById(reviewRoom.getOwnerId())
                 .map(User::getUsername)
                 .defaultIfEmpty("未知用户")
-                .map(username -> {
-                    RoomResponse roomResponse = new RoomResponse();
-                    BeanUtils.copyProperties(reviewRoom, roomResponse);
-                    roomResponse.setOwnerUsername(username);
-                    return roomResponse;
-                });
+                .map(username -> RoomResponse.builder()
+                        .id(reviewRoom.getId())
+                        .name(reviewRoom.getName())
+                        .roomCode(reviewRoom.getRoomCode())
+                        .description(reviewRoom.getDescription())
+                        .ownerId(reviewRoom.getOwnerId())
+                        .ownerUsername(username)
+                        .status(reviewRoom.getStatus())
+                        .repoInfo(reviewRoom.getRepoInfo())
+                        .codeScope(reviewRoom.getCodeScope())
+                        .createTime(reviewRoom.getCreateTime())
+                        .closeTime(reviewRoom.getCloseTime())
+                        .updateTime(reviewRoom.getUpdateTime())
+                        .build());
     }
 }
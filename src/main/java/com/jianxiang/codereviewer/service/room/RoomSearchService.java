@@ -0,0 +1,135 @@
+package com.jianxiang.codereviewer.service.room;
+
+import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+
+/**
+ * @className: RoomSearchService
+ * @author: jianXiang
+ * @description: 房间名称搜索服务（本节点内存 N-gram 索引）
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RoomSearchService {
+
+    private final R2dbcEntityTemplate template;
+
+    private final RoomNgramIndex index = new RoomNgramIndex();
+
+    /**
+     * 全量加载任务（首次搜索时触发，加载失败后允许重试）
+     */
+    private final AtomicReference<Mono<Void>> loader = new AtomicReference<>();
+
+    /**
+     * 增量同步水位线（从数据库读到的最大更新时间，只由全量加载和增量同步推进）
+     */
+    private final AtomicReference<LocalDateTime> watermark = new AtomicReference<>();
+
+    @Value("${room.search.max-results:100}")
+    private Integer maxResults;
+
+    /**
+     * 增量同步的重叠窗口：其他节点提交较晚或时钟略慢时，更新时间可能早于水位线，回看一段时间避免漏读
+     */
+    @Value("${room.search.sync-overlap:10000}")
+    private Long syncOverlapMillis;
+
+    /**
+     * 按名称搜索房间
+     *
+     * @param name   名称关键字
+     * @param status 状态过滤（可选）
+     * @return 按相关度排序的房间ID
+     */
+    public Mono<List<Long>> search(String name, String status) {
+        return ensureLoaded()
+                .then(Mono.fromCallable(() -> index.search(name, status, maxResults)));
+    }
+
+    /**
+     * 本节点房间创建或更新后同步到索引（不推进水位线，其他节点更早的变更仍由增量同步读取）
+     */
+    public void onRoomSaved(ReviewRoom room) {
+        onRoomSaved(room.getId(), room.getName(), room.getStatus());
+    }
+
+    public void onRoomSaved(Long roomId, String name, String status) {
+        index.put(roomId, name, status);
+    }
+
+    /**
+     * 定时拉取其他节点写入的变更（仅在索引已加载后生效）
+     */
+    @Scheduled(fixedDelayString = "${room.search.sync-interval:30000}",
+            initialDelayString = "${room.search.sync-interval:30000}")
+    public void syncChanges() {
+        if (loader.get() == null) {
+            return;
+        }
+        // 按 ID 覆盖写入索引，重叠窗口内重复读到的房间不会重复计入；尚未读到任何房间时全量读取
+        LocalDateTime since = watermark.get();
+        Criteria criteria = since == null
+                ? Criteria.empty()
+                : where("update_time").greaterThanOrEquals(since.minus(Duration.ofMillis(syncOverlapMillis)));
+        selectRooms(criteria)
+                .subscribe(count -> {
+                    if (count > 0) {
+                        log.debug("房间搜索索引增量同步: {} 条", count);
+                    }
+                }, e -> log.warn("房间搜索索引增量同步失败: {}", e.getMessage()));
+    }
+
+    private Mono<Void> ensureLoaded() {
+        Mono<Void> current = loader.get();
+        if (current != null) {
+            return current;
+        }
+        Mono<Void> created = selectRooms(Criteria.empty())
+                .doOnNext(count -> log.info("房间搜索索引加载完成: {} 个房间", count))
+                .doOnError(e -> {
+                    log.error("房间搜索索引加载失败", e);
+                    loader.set(null);
+                })
+                .then()
+                .cache();
+        return loader.compareAndSet(null, created) ? created : loader.get();
+    }
+
+    /**
+     * 只查询索引需要的列，写入索引并推进水位线
+     */
+    private Mono<Long> selectRooms(Criteria criteria) {
+        Query query = Query.query(criteria).columns("id", "name", "status", "update_time");
+        return template.select(query, ReviewRoom.class)
+                .doOnNext(room -> {
+                    index.put(room.getId(), room.getName(), room.getStatus());
+                    advanceWatermark(room.getUpdateTime());
+                })
+                .count();
+    }
+
+    private void advanceWatermark(LocalDateTime updateTime) {
+        if (updateTime != null) {
+            watermark.accumulateAndGet(updateTime,
+                    (current, next) -> current == null || next.isAfter(current) ? next : current);
+        }
+    }
+}
@@ -1,21 +1,40 @@
 package com.jianxiang.codereviewer.service.snapshot;
 
+import com.jianxiang.codereviewer.common.cluster.ClusterInvalidationBus;
 import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.common.util.ContentUtil;
 import com.jianxiang.codereviewer.domain.entity.CodeSnapshot;
+import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
 import com.jianxiang.codereviewer.domain.entity.User;
+import com.jianxiang.codereviewer.domain.projection.CodeSnapshotSummary;
 import com.jianxiang.codereviewer.domain.repository.CodeSnapshotRepository;
 import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
 import com.jianxiang.codereviewer.domain.repository.RoomMemberRepository;
 import com.jianxiang.codereviewer.domain.repository.UserRepository;
 import com.jianxiang.codereviewer.dto.snapshot.CreateSnapshotRequest;
+import com.jianxiang.codereviewer.dto.snapshot.CreateSnapshotTreeRequest;
+import com.jianxiang.codereviewer.dto.snapshot.SnapshotFileRequest;
 import com.jianxiang.codereviewer.dto.snapshot.SnapshotResponse;
+import com.jianxiang.codereviewer.dto.snapshot.SnapshotSummaryResponse;
+import com.jianxiang.codereviewer.service.comment.CommentAnchorService;
+import com.jianxiang.codereviewer.service.journal.RoomEventJournal;
+import com.jianxiang.codereviewer.service.live.LiveDocumentService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  * @className: CodeSnapshotService
@@ -32,38 +51,152 @@ public class CodeSnapshotService {
     private final ReviewRoomRepository reviewRoomRepository;
     private final RoomMemberRepository roomMemberRepository;
     private final UserRepository userRepository;
+    private final SnapshotContentStore snapshotContentStore;
+    private final SnapshotDiffService snapshotDiffService;
+    private final SnapshotETagCache snapshotETagCache;
+    private final TransactionalOperator transactionalOperator;
+    private final CommentAnchorService commentAnchorService;
+    private final LiveDocumentService liveDocumentService;
+    private final RoomEventJournal roomEventJournal;
+    private final ClusterInvalidationBus clusterInvalidationBus;
+
+    /**
+     * 快照删除的失效通知主题，键为 roomId|version|roomCode|filePath
+     */
+    private static final String SNAPSHOT_DELETED_TOPIC = "snapshot-deleted";
+
+    /**
+     * 批量上传时并发写入内容的文件数
+     */
+    private static final int WRITE_CONCURRENCY = 4;
+
+    /**
+     * 其他节点删除快照后清理本节点的 ETag 和差异缓存
+     */
+    @PostConstruct
+    public void subscribeInvalidation() {
+        clusterInvalidationBus.subscribe(SNAPSHOT_DELETED_TOPIC, key -> {
+            String[] parts = key.split("\\|", 4);
+            evictCaches(Long.valueOf(parts[0]), Integer.valueOf(parts[1]), parts[2],
+                    parts[3].isEmpty() ? null : parts[3]);
+        }, () -> {
+            snapshotETagCache.clear();
+            snapshotDiffService.clear();
+        });
+    }
 
     /**
      * 创建代码快照
      */
     public Mono<SnapshotResponse> createSnapshot(String roomCode, CreateSnapshotRequest request, Long userId) {
-        return reviewRoomRepository.findByRoomCode(roomCode)
-                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
-                // 检查用户是否是房间成员
-                .flatMap(room -> roomMemberRepository.existsByRoomIdAndUserId(room.getId(), userId)
-                        .filter(exists -> exists)
-                        .switchIfEmpty(Mono.error(new BusinessException("您不是该房间的成员")))
-                        .thenReturn(room))
-                // 获取下一个版本号
-                .flatMap(room -> codeSnapshotRepository.findMaxVersionByRoomId(room.getId())
-                        .defaultIfEmpty(0)
-                        .map(maxVersion -> maxVersion + 1)
-                        .map(nextVersion -> {
-                            CodeSnapshot snapshot = new CodeSnapshot();
-                            snapshot.setRoomId(room.getId());
-                            snapshot.setVersion(nextVersion);
-                            snapshot.setContent(request.getContent());
-                            snapshot.setLanguage(request.getLanguage());
-                            snapshot.setFilePath(request.getFilePath());
-                            snapshot.setDescription(request.getDescription());
-                            snapshot.setCreatedBy(userId);
-                            snapshot.setCreateTime(LocalDateTime.now());
-                            return snapshot;
+        return findRoomAsMember(roomCode, userId)
+                // 记录创建时的事件日志位置，实时文档从该位置之后重放代码更新
+                .zipWith(roomEventJournal.lastSeq(roomCode))
+                // 原子分配下一个版本号
+                .flatMap(tuple -> codeSnapshotRepository.allocateVersion(tuple.getT1().getId())
+                        .flatMap(nextVersion -> {
+                            CodeSnapshot snapshot = newSnapshot(tuple.getT1().getId(), nextVersion,
+                                    request.getLanguage(), request.getFilePath(), request.getDescription(), userId);
+                            snapshot.setJournalSeq(tuple.getT2());
+                            // 写入时压缩一次
+                            return snapshotContentStore.write(snapshot, request.getContent());
                         }))
                 .flatMap(codeSnapshotRepository::save)
+                .doOnNext(snapshot -> onVersionCreated(roomCode, snapshot))
                 .flatMap(this::convertToResponse);
     }
 
+    /**
+     * 流式上传代码快照（请求体为原始文本，分块写入存储，不整体缓冲）
+     */
+    public Mono<SnapshotSummaryResponse> uploadSnapshot(String roomCode, String language, String filePath,
+                                                        String description, Flux<DataBuffer> body, Long userId) {
+        return findRoomAsMember(roomCode, userId)
+                .zipWith(roomEventJournal.lastSeq(roomCode))
+                .flatMap(tuple -> codeSnapshotRepository.allocateVersion(tuple.getT1().getId())
+                        .flatMap(nextVersion -> {
+                            CodeSnapshot snapshot = newSnapshot(tuple.getT1().getId(), nextVersion, language,
+                                    filePath, description, userId);
+                            snapshot.setJournalSeq(tuple.getT2());
+                            return snapshotContentStore.writeStream(snapshot, body);
+                        }))
+                .flatMap(codeSnapshotRepository::save)
+                .doOnNext(snapshot -> onVersionCreated(roomCode, snapshot))
+                // 响应不回传内容，避免再次读取大文件
+                .flatMap(snapshot -> toSummaryResponses(List.of(toSummary(snapshot))))
+                .map(responses -> responses.get(0));
+    }
+
+    /**
+     * 批量上传代码快照：所有文件共用一个版本号，内容写入后一次批量插入
+     */
+    public Mono<List<SnapshotSummaryResponse>> createSnapshotTree(String roomCode, CreateSnapshotTreeRequest request,
+                                                                  Long userId) {
+        Set<String> paths = new HashSet<>();
+        for (SnapshotFileRequest file : request.getFiles()) {
+            if (!paths.add(file.getFilePath())) {
+                return Mono.error(new BusinessException("文件路径重复: " + file.getFilePath()));
+            }
+        }
+
+        return createVersion(roomCode, userId, (roomId, version) -> Flux.fromIterable(request.getFiles())
+                .flatMapSequential(file -> snapshotContentStore.write(
+                        newSnapshot(roomId, version, file.getLanguage(), file.getFilePath(),
+                                request.getDescription(), userId),
+                        file.getContent()), WRITE_CONCURRENCY));
+    }
+
+    /**
+     * 创建多文件版本：分配版本号后由 filesWriter 写入各文件内容，再一次批量插入
+     *
+     * @param filesWriter (roomId, version) -> 已写入内容的快照
+     */
+    public Mono<List<SnapshotSummaryResponse>> createVersion(String roomCode, Long userId,
+                                                             BiFunction<Long, Integer, Flux<CodeSnapshot>> filesWriter) {
+        return findRoomAsMember(roomCode, userId)
+                // 记录创建时的事件日志位置，实时文档从该位置之后重放代码更新
+                .zipWith(roomEventJournal.lastSeq(roomCode))
+                .flatMap(tuple -> writeVersion(roomCode, tuple.getT1().getId(), tuple.getT2(), filesWriter))
+                .flatMap(this::toSummaryResponses);
+    }
+
+    /**
+     * 分配版本号，写入各文件内容后一次批量插入
+     */
+    private Mono<List<CodeSnapshotSummary>> writeVersion(String roomCode, Long roomId, Long journalSeq,
+                                                         BiFunction<Long, Integer, Flux<CodeSnapshot>> filesWriter) {
+        return codeSnapshotRepository.allocateVersion(roomId)
+                .flatMap(nextVersion -> filesWriter.apply(roomId, nextVersion)
+                        .doOnNext(snapshot -> snapshot.setJournalSeq(journalSeq))
+                        .collectList()
+                        .filter(snapshots -> !snapshots.isEmpty())
+                        .switchIfEmpty(Mono.error(new BusinessException("没有可保存的文件")))
+                        .flatMap(snapshots -> transactionalOperator.transactional(
+                                codeSnapshotRepository.insertAll(snapshots)))
+                        .doOnNext(count -> log.info("房间[{}]批量创建快照版本[{}]: {} 个文件",
+                                roomCode, nextVersion, count))
+                        .then(codeSnapshotRepository.findSummariesByRoomIdAndVersion(roomId, nextVersion)
+                                .collectList())
+                        // 事务提交后再提交评论定位任务
+                        .doOnNext(summaries -> {
+                            commentAnchorService.onVersionCreated(roomId, nextVersion);
+                            liveDocumentService.evict(roomCode);
+                        }));
+    }
+
+    /**
+     * 获取版本的文件列表（仅元数据）
+     */
+    public Mono<List<SnapshotSummaryResponse>> getVersionFiles(String roomCode, Integer version) {
+        return reviewRoomRepository.findByRoomCode(roomCode)
+                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
+                .flatMap(room -> codeSnapshotRepository.findSummariesByRoomIdAndVersion(room.getId(), version)
+                        .collectList())
+                .filter(summaries -> !summaries.isEmpty())
+                .switchIfEmpty(Mono.error(new BusinessException("快照版本不存在")))
+                .flatMap(this::toSummaryResponses);
+    }
+
     /**
      * 根据ID获取快照详情
      */
@@ -76,22 +209,48 @@ public class CodeSnapshotService {
     /**
      * 根据房间和版本号获取快照
      */
-    public Mono<SnapshotResponse> getSnapshotByVersion(String roomCode, Integer version) {
+    public Mono<SnapshotResponse> getSnapshotByVersion(String roomCode, Integer version, String filePath) {
         return reviewRoomRepository.findByRoomCode(roomCode)
                 .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
-                .flatMap(room -> codeSnapshotRepository.findByRoomIdAndVersion(room.getId(), version))
+                .flatMap(room -> codeSnapshotRepository.findFileByVersion(room.getId(), version, filePath))
                 .switchIfEmpty(Mono.error(new BusinessException("快照版本不存在")))
-                .flatMap(this::convertToResponse);
+                .flatMap(this::convertToResponse)
+                .doOnNext(response -> snapshotETagCache.put(roomCode, version, filePath, response.getContentHash()));
     }
 
     /**
-     * 获取房间的快照列表
+     * 查询内存中已知的版本内容哈希（不访问数据库，未知时返回 null）
      */
-    public Flux<SnapshotResponse> getRoomSnapshots(String roomCode) {
+    public SnapshotETagCache.Tag getCachedTag(String roomCode, Integer version, String filePath) {
+        return snapshotETagCache.get(roomCode, version, filePath);
+    }
+
+    /**
+     * 根据房间和版本号获取快照内容（按存储编码原样返回）
+     */
+    public Mono<SnapshotContent> getSnapshotContent(String roomCode, Integer version, String filePath) {
         return reviewRoomRepository.findByRoomCode(roomCode)
                 .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
-                .flatMapMany(room -> codeSnapshotRepository.findByRoomIdOrderByVersionDesc(room.getId()))
-                .flatMap(this::convertToResponse);
+                .flatMap(room -> codeSnapshotRepository.findFileByVersion(room.getId(), version, filePath))
+                .switchIfEmpty(Mono.error(new BusinessException("快照版本不存在")))
+                .flatMap(snapshot -> snapshotContentStore.readEncoded(snapshot)
+                        .map(content -> content.withContentHash(snapshot.getContentHash() != null
+                                ? snapshot.getContentHash()
+                                // 旧数据没有哈希，按原文现算
+                                : ContentUtil.sha256Hex(content.decodedBytes()))))
+                .doOnNext(content -> snapshotETagCache.put(roomCode, version, filePath,
+                        content.contentHash(), content.codec()));
+    }
+
+    /**
+     * 获取房间的快照列表（仅元数据，内容通过版本号单独获取）
+     */
+    public Flux<SnapshotSummaryResponse> getRoomSnapshots(String roomCode) {
+        return reviewRoomRepository.findByRoomCode(roomCode)
+                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
+                .flatMap(room -> codeSnapshotRepository.findSummariesByRoomId(room.getId()).collectList())
+                .flatMap(this::toSummaryResponses)
+                .flatMapIterable(responses -> responses);
     }
 
     /**
@@ -102,34 +261,147 @@ public class CodeSnapshotService {
                 .switchIfEmpty(Mono.error(new BusinessException("快照不存在")))
                 .flatMap(snapshot -> reviewRoomRepository.findById(snapshot.getRoomId())
                         .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
-                        // 检查权限：只有创建者或房主可以删除
                         .flatMap(room -> {
-                            if (snapshot.getCreatedBy().equals(userId) || room.getOwnerId().equals(userId)) {
-                                return Mono.just(snapshot);
+                            // 检查权限：只有创建者或房主可以删除
+                            if (!snapshot.getCreatedBy().equals(userId) && !room.getOwnerId().equals(userId)) {
+                                return Mono.error(new BusinessException("无权限删除该快照"));
                             }
-                            return Mono.error(new BusinessException("无权限删除该快照"));
-                        }))
-                .flatMap(snapshot -> codeSnapshotRepository.deleteById(snapshot.getId()));
+                            // 先把依赖该快照的增量版本改写为关键帧，再删除
+                            return snapshotContentStore.detachDependents(snapshot)
+                                    .then(codeSnapshotRepository.deleteById(snapshot.getId()))
+                                    .then(commentAnchorService.evict(snapshot.getRoomId(), snapshot.getVersion(),
+                                            snapshot.getFilePath()))
+                                    .then(Mono.fromRunnable(() -> {
+                                        evictCaches(snapshot.getRoomId(), snapshot.getVersion(),
+                                                room.getRoomCode(), snapshot.getFilePath());
+                                        liveDocumentService.evict(room.getRoomCode());
+                                        clusterInvalidationBus.publish(SNAPSHOT_DELETED_TOPIC,
+                                                snapshot.getRoomId() + "|" + snapshot.getVersion() + "|"
+                                                        + room.getRoomCode() + "|"
+                                                        + (snapshot.getFilePath() == null ? "" : snapshot.getFilePath()));
+                                    }));
+                        }));
+    }
+
+    private void evictCaches(Long roomId, Integer version, String roomCode, String filePath) {
+        snapshotDiffService.evict(roomId, version);
+        snapshotETagCache.evict(roomCode, version, filePath);
+    }
+
+    /**
+     * 新版本写入后在后台把已有评论定位到新版本，实时文档改以新版本为基准
+     */
+    private void onVersionCreated(String roomCode, CodeSnapshot snapshot) {
+        commentAnchorService.onVersionCreated(snapshot.getRoomId(), snapshot.getVersion());
+        liveDocumentService.evict(roomCode);
+    }
+
+    /**
+     * 查询房间并检查用户是否是房间成员
+     */
+    private Mono<ReviewRoom> findRoomAsMember(String roomCode, Long userId) {
+        return reviewRoomRepository.findByRoomCode(roomCode)
+                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")))
+                .flatMap(room -> roomMemberRepository.existsByRoomIdAndUserId(room.getId(), userId)
+                        .filter(exists -> exists)
+                        .switchIfEmpty(Mono.error(new BusinessException("您不是该房间的成员")))
+                        .thenReturn(room));
+    }
+
+    static CodeSnapshot newSnapshot(Long roomId, Integer version, String language, String filePath,
+                                            String description, Long userId) {
+        CodeSnapshot snapshot = new CodeSnapshot();
+        snapshot.setRoomId(roomId);
+        snapshot.setVersion(version);
+        snapshot.setLanguage(language);
+        snapshot.setFilePath(filePath);
+        snapshot.setDescription(description);
+        snapshot.setCreatedBy(userId);
+        snapshot.setCreateTime(LocalDateTime.now());
+        return snapshot;
+    }
+
+    /**
+     * 批量查询创建者用户名后转换为摘要响应，避免逐条查询
+     */
+    private Mono<List<SnapshotSummaryResponse>> toSummaryResponses(List<CodeSnapshotSummary> summaries) {
+        List<Long> creatorIds = summaries.stream()
+                .map(CodeSnapshotSummary::getCreatedBy)
+                .distinct()
+                .toList();
+        return userRepository.findAllById(creatorIds)
+                .collectMap(User::getId, User::getUsername)
+                .map(usernames -> summaries.stream()
+                        .map(summary -> convertToSummaryResponse(summary, usernames))
+                        .toList());
     }
 
     /**
      * 转换为响应对象
      */
     private Mono<SnapshotResponse> convertToResponse(CodeSnapshot snapshot) {
-        return userRepository.findById(snapshot.getCreatedBy())
+        Mono<String> usernameMono = userRepository.findById(snapshot.getCreatedBy())
                 .map(User::getUsername)
-                .defaultIfEmpty("未知用户")
-                .map(username -> SnapshotResponse.builder()
+                .defaultIfEmpty("未知用户");
+        Mono<String> contentMono = snapshotContentStore.readText(snapshot)
+                .defaultIfEmpty("");
+
+        return Mono.zip(usernameMono, contentMono)
+                .map(tuple -> SnapshotResponse.builder()
                         .id(snapshot.getId())
                         .roomId(snapshot.getRoomId())
                         .version(snapshot.getVersion())
-                        .content(snapshot.getContent())
+                        .content(tuple.getT2())
+                        .contentHash(snapshot.getContentHash() != null
+                                ? snapshot.getContentHash()
+                                : ContentUtil.sha256Hex(tuple.getT2().getBytes(StandardCharsets.UTF_8)))
+                        .contentSize(snapshot.getContentSize())
+                        .lineCount(snapshot.getLineCount())
                         .language(snapshot.getLanguage())
                         .filePath(snapshot.getFilePath())
                         .description(snapshot.getDescription())
                         .createdBy(snapshot.getCreatedBy())
-                        .createdByUsername(username)
+                        .createdByUsername(tuple.getT1())
                         .createTime(snapshot.getCreateTime())
                         .build());
     }
+
+    /**
+     * 已保存的快照实体转为元数据投影，与列表查询共用同一个摘要转换
+     */
+    private static CodeSnapshotSummary toSummary(CodeSnapshot snapshot) {
+        CodeSnapshotSummary summary = new CodeSnapshotSummary();
+        summary.setId(snapshot.getId());
+        summary.setRoomId(snapshot.getRoomId());
+        summary.setVersion(snapshot.getVersion());
+        summary.setContentSize(snapshot.getContentSize());
+        summary.setLineCount(snapshot.getLineCount());
+        summary.setLanguage(snapshot.getLanguage());
+        summary.setFilePath(snapshot.getFilePath());
+        summary.setDescription(snapshot.getDescription());
+        summary.setJournalSeq(snapshot.getJournalSeq());
+        summary.setCreatedBy(snapshot.getCreatedBy());
+        summary.setCreateTime(snapshot.getCreateTime());
+        return summary;
+    }
+
+    /**
+     * 转换为摘要响应对象
+     */
+    private SnapshotSummaryResponse convertToSummaryResponse(CodeSnapshotSummary summary,
+                                                             Map<Long, String> usernames) {
+        return SnapshotSummaryResponse.builder()
+                .id(summary.getId())
+                .roomId(summary.getRoomId())
+                .version(summary.getVersion())
+                .contentSize(summary.getContentSize())
+                .lineCount(summary.getLineCount())
+                .language(summary.getLanguage())
+                .filePath(summary.getFilePath())
+                .description(summary.getDescription())
+                .createdBy(summary.getCreatedBy())
+                .createdByUsername(usernames.getOrDefault(summary.getCreatedBy(), "未知用户"))
+                .createTime(summary.getCreateTime())
+                .build();
+    }
 }
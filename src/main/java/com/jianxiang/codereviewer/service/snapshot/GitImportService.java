@@ -0,0 +1,221 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.common.util.ContentUtil;
+import com.jianxiang.codereviewer.common.util.LruCache;
+import com.jianxiang.codereviewer.domain.entity.CodeSnapshot;
+import com.jianxiang.codereviewer.dto.snapshot.GitImportRequest;
+import com.jianxiang.codereviewer.dto.snapshot.SnapshotSummaryResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @className: GitImportService
+ * @author: jianXiang
+ * @description: 从服务器本地 Git 仓库导入快照版本（离线读取，有界线程池并行读取文件内容，每个线程借用一个 cat-file 进程）
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class GitImportService {
+
+    /**
+     * 二进制文件判定：前 8000 字节内出现 NUL（与 git 的判定方式一致）
+     */
+    private static final int BINARY_CHECK_BYTES = 8000;
+
+    private static final Map<String, String> LANGUAGES = Map.ofEntries(
+            Map.entry("java", "java"), Map.entry("kt", "kotlin"), Map.entry("scala", "scala"),
+            Map.entry("js", "javascript"), Map.entry("jsx", "javascript"), Map.entry("mjs", "javascript"),
+            Map.entry("ts", "typescript"), Map.entry("tsx", "typescript"), Map.entry("vue", "vue"),
+            Map.entry("py", "python"), Map.entry("go", "go"), Map.entry("rs", "rust"),
+            Map.entry("c", "c"), Map.entry("h", "c"), Map.entry("cpp", "cpp"), Map.entry("cc", "cpp"),
+            Map.entry("hpp", "cpp"), Map.entry("cs", "csharp"), Map.entry("rb", "ruby"), Map.entry("php", "php"),
+            Map.entry("swift", "swift"), Map.entry("sql", "sql"), Map.entry("sh", "shell"),
+            Map.entry("xml", "xml"), Map.entry("html", "html"), Map.entry("css", "css"), Map.entry("scss", "scss"),
+            Map.entry("json", "json"), Map.entry("yml", "yaml"), Map.entry("yaml", "yaml"),
+            Map.entry("md", "markdown"), Map.entry("properties", "properties"), Map.entry("gradle", "groovy"));
+
+    private final CodeSnapshotService codeSnapshotService;
+    private final SnapshotContentStore snapshotContentStore;
+
+    /**
+     * 允许导入的仓库根目录，为空表示未开启导入
+     */
+    private final String baseDir;
+    private final String gitBinary;
+    private final int threads;
+    private final int maxFiles;
+    private final long maxFileSize;
+    private final long timeoutMillis;
+    private final Scheduler gitScheduler;
+
+    /**
+     * Git 对象ID -> 内容元数据（Git 对象ID由内容决定，跨仓库通用），命中时不再读取文件内容
+     */
+    private final LruCache<String, BlobInfo> blobInfoCache;
+
+    private record BlobInfo(String contentHash, long size, int lineCount) {}
+
+    private record TextBlob(String text, BlobInfo info) {}
+
+    public GitImportService(CodeSnapshotService codeSnapshotService,
+                            SnapshotContentStore snapshotContentStore,
+                            @Value("${snapshot.git-import.base-dir:}") String baseDir,
+                            @Value("${snapshot.git-import.git-binary:git}") String gitBinary,
+                            @Value("${snapshot.git-import.threads:4}") int threads,
+                            @Value("${snapshot.git-import.max-files:2000}") int maxFiles,
+                            @Value("${snapshot.git-import.max-file-size:1048576}") long maxFileSize,
+                            @Value("${snapshot.git-import.timeout:30000}") long timeoutMillis,
+                            @Value("${snapshot.git-import.blob-cache-entries:100000}") int blobCacheEntries) {
+        this.codeSnapshotService = codeSnapshotService;
+        this.snapshotContentStore = snapshotContentStore;
+        this.baseDir = baseDir;
+        this.gitBinary = gitBinary;
+        this.threads = Math.max(1, threads);
+        this.maxFiles = maxFiles;
+        this.maxFileSize = maxFileSize;
+        this.timeoutMillis = timeoutMillis;
+        this.gitScheduler = Schedulers.newBoundedElastic(this.threads, Integer.MAX_VALUE, "git-import");
+        this.blobInfoCache = new LruCache<>(blobCacheEntries);
+    }
+
+    /**
+     * 导入提交（或区间内变更的文件）为一个新的快照版本
+     */
+    public Mono<List<SnapshotSummaryResponse>> importRevision(String roomCode, GitImportRequest request, Long userId) {
+        return Mono.fromCallable(() -> new GitRepositoryReader(gitBinary, resolveRepository(request.getRepoPath()),
+                        timeoutMillis, threads))
+                .subscribeOn(gitScheduler)
+                .flatMap(reader -> codeSnapshotService.createVersion(roomCode, userId, (roomId, version) ->
+                                Mono.fromCallable(() -> listEntries(reader, request.getRevision()))
+                                        .subscribeOn(gitScheduler)
+                                        .doOnNext(entries -> log.info("房间[{}]从 Git 导入 {}: {} 个文件",
+                                                roomCode, request.getRevision(), entries.size()))
+                                        .flatMapMany(Flux::fromIterable)
+                                        .flatMapSequential(entry -> importEntry(reader, entry,
+                                                CodeSnapshotService.newSnapshot(roomId, version,
+                                                        detectLanguage(entry.path()), entry.path(),
+                                                        request.getDescription(), userId)), threads))
+                        // 结束常驻的 cat-file 进程池
+                        .doFinally(signal -> reader.close()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        gitScheduler.dispose();
+    }
+
+    private List<GitRepositoryReader.Entry> listEntries(GitRepositoryReader reader, String revision) {
+        int range = revision.indexOf("..");
+        List<GitRepositoryReader.Entry> entries = range < 0
+                ? reader.listTree(reader.resolveCommit(revision))
+                : reader.listChanged(reader.resolveCommit(revision.substring(0, range)),
+                        reader.resolveCommit(revision.substring(range + 2)));
+        if (entries.size() > maxFiles) {
+            throw new BusinessException("文件数超过导入上限: " + entries.size() + " > " + maxFiles);
+        }
+        return entries;
+    }
+
+    /**
+     * 导入单个文件：内容已知且已存储时直接引用，否则读取内容后写入；二进制或超大文件跳过
+     */
+    private Mono<CodeSnapshot> importEntry(GitRepositoryReader reader, GitRepositoryReader.Entry entry,
+                                           CodeSnapshot snapshot) {
+        if (entry.size() > maxFileSize) {
+            log.debug("跳过超大文件: {} ({} 字节)", entry.path(), entry.size());
+            return Mono.empty();
+        }
+        BlobInfo known = blobInfoCache.get(entry.objectId());
+        Mono<CodeSnapshot> referenced = known == null
+                ? Mono.empty()
+                : snapshotContentStore.reference(snapshot, known.contentHash(), known.size(), known.lineCount());
+
+        return referenced.switchIfEmpty(Mono.defer(() -> Mono.fromCallable(() -> readText(reader, entry))
+                .subscribeOn(gitScheduler)
+                .flatMap(blob -> {
+                    blobInfoCache.put(entry.objectId(), blob.info());
+                    return snapshotContentStore.reference(snapshot, blob.info().contentHash(),
+                                    blob.info().size(), blob.info().lineCount())
+                            .switchIfEmpty(Mono.defer(() -> snapshotContentStore.write(snapshot, blob.text())));
+                })));
+    }
+
+    /**
+     * 读取文本文件内容，二进制、超大或非 UTF-8 文件返回 null
+     */
+    private TextBlob readText(GitRepositoryReader reader, GitRepositoryReader.Entry entry) {
+        byte[] data = reader.readBlob(entry.objectId(), maxFileSize);
+        if (data == null || isBinary(data)) {
+            log.debug("跳过二进制或超大文件: {}", entry.path());
+            return null;
+        }
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(data))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            log.debug("跳过非 UTF-8 文件: {}", entry.path());
+            return null;
+        }
+        return new TextBlob(text, new BlobInfo(ContentUtil.sha256Hex(data), data.length, ContentUtil.countLines(text)));
+    }
+
+    /**
+     * 解析仓库路径，必须位于配置的导入根目录内
+     */
+    private Path resolveRepository(String repoPath) {
+        if (baseDir == null || baseDir.isBlank()) {
+            throw new BusinessException("未开启 Git 仓库导入");
+        }
+        try {
+            Path base = Paths.get(baseDir).toRealPath();
+            Path repository = base.resolve(repoPath).normalize().toRealPath();
+            if (!repository.startsWith(base) || !Files.isDirectory(repository)) {
+                throw new BusinessException("仓库路径不在允许导入的目录内");
+            }
+            return repository;
+        } catch (IOException e) {
+            throw new BusinessException("仓库路径不存在: " + repoPath);
+        }
+    }
+
+    private static boolean isBinary(byte[] data) {
+        int limit = Math.min(data.length, BINARY_CHECK_BYTES);
+        for (int i = 0; i < limit; i++) {
+            if (data[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String detectLanguage(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot < path.lastIndexOf('/')) {
+            return "text";
+        }
+        return LANGUAGES.getOrDefault(path.substring(dot + 1).toLowerCase(), "text");
+    }
+}
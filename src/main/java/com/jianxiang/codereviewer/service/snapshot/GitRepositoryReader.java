@@ -0,0 +1,405 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * 本地 Git 仓库读取（调用 git 命令行，只读、离线）
+ * 标准输出在独立线程读取，调用方按超时等待，git 卡住时强制结束进程；
+ * 文件内容通过常驻的 git cat-file --batch 进程池读取：每次读取借用一个进程，读完归还，
+ * 最多同时运行 batchProcesses 个进程，并发读取互不阻塞；用完后须 {@link #close()}
+ *
+ * @author jianXiang
+ * @date 2026/10/19
+ */
+@Slf4j
+public class GitRepositoryReader implements AutoCloseable {
+
+    /**
+     * 允许的版本表达式字符（禁止以 - 开头，避免被当作命令行选项）
+     */
+    private static final Pattern REVISION_PATTERN = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._/~^@{}-]*");
+
+    private static final Pattern OBJECT_ID_PATTERN = Pattern.compile("[0-9a-f]{4,64}");
+
+    private static final String MODE_SYMLINK = "120000";
+    private static final String MODE_GITLINK = "160000";
+
+    private final String gitBinary;
+    private final Path repository;
+    private final long timeoutMillis;
+
+    /**
+     * 同时借出的 cat-file 进程数上限
+     */
+    private final Semaphore batchPermits;
+
+    /**
+     * 空闲的 cat-file 进程（由 this 保护）
+     */
+    private final Deque<BatchProcess> idleBatches = new ArrayDeque<>();
+
+    /**
+     * 借出中的 cat-file 进程（由 this 保护，关闭时一并结束）
+     */
+    private final List<BatchProcess> borrowedBatches = new ArrayList<>();
+
+    private boolean closed;
+
+    /**
+     * 读取 git 标准输出的线程（守护线程，随读取器关闭）
+     */
+    private final ExecutorService drainer = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "git-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 常驻的 cat-file --batch 进程（出错或超时后结束并丢弃，下次借用时重新启动）
+     */
+    private record BatchProcess(Process process, OutputStream input, InputStream output) {
+
+        void stop() {
+            try {
+                input.close();
+            } catch (IOException ignored) {
+                // 进程随后被强制结束
+            }
+            process.destroyForcibly();
+        }
+    }
+
+    /**
+     * 仓库中的文件
+     *
+     * @param path     文件路径（相对仓库根目录）
+     * @param objectId Git 对象ID
+     * @param size     文件大小，未知时为 -1
+     */
+    public record Entry(String path, String objectId, long size) {}
+
+    public GitRepositoryReader(String gitBinary, Path repository, long timeoutMillis) {
+        this(gitBinary, repository, timeoutMillis, 1);
+    }
+
+    public GitRepositoryReader(String gitBinary, Path repository, long timeoutMillis, int batchProcesses) {
+        this.gitBinary = gitBinary;
+        this.repository = repository;
+        this.timeoutMillis = timeoutMillis;
+        this.batchPermits = new Semaphore(Math.max(1, batchProcesses));
+    }
+
+    /**
+     * 解析版本表达式为提交ID
+     */
+    public String resolveCommit(String revision) {
+        if (revision == null || !REVISION_PATTERN.matcher(revision).matches()) {
+            throw new BusinessException("无效的提交: " + revision);
+        }
+        byte[] output = run(List.of("rev-parse", "--verify", "--quiet", revision + "^{commit}"), -1, true);
+        if (output == null) {
+            throw new BusinessException("提交不存在: " + revision);
+        }
+        return new String(output, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * 列出提交中的所有文件（跳过符号链接和子模块）
+     */
+    public List<Entry> listTree(String commit) {
+        byte[] output = run(List.of("ls-tree", "-r", "-z", "-l", "--full-tree", commit), -1, false);
+        return parseLsTree(new String(output, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 列出两个提交之间新增或修改的文件（不含删除）
+     */
+    public List<Entry> listChanged(String baseCommit, String commit) {
+        byte[] output = run(List.of("diff-tree", "-r", "-z", "--no-renames", "--no-commit-id", baseCommit, commit),
+                -1, false);
+        return parseDiffTree(new String(output, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 读取文件内容；超过 maxSize 时返回 null
+     * 从进程池借用一个 cat-file 进程，进程都已借出时等待归还（等待时间计入超时）
+     */
+    public byte[] readBlob(String objectId, long maxSize) {
+        if (objectId == null || !OBJECT_ID_PATTERN.matcher(objectId).matches()) {
+            throw new BusinessException("无效的 Git 对象: " + objectId);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            if (!batchPermits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                throw new BusinessException("git 命令超时: cat-file");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("git 命令被中断");
+        }
+        BatchProcess batch = null;
+        boolean reusable = false;
+        try {
+            batch = borrowBatch();
+            batch.input().write((objectId + "\n").getBytes(StandardCharsets.US_ASCII));
+            batch.input().flush();
+            InputStream output = batch.output();
+            BatchProcess borrowed = batch;
+            byte[] data = await(drainer.submit(() -> readBatchEntry(output, objectId, maxSize)), deadline,
+                    "cat-file", borrowed::stop);
+            reusable = true;
+            return data;
+        } catch (IOException e) {
+            throw new BusinessException("git 命令执行失败: " + e.getMessage());
+        } finally {
+            returnBatch(batch, reusable);
+            batchPermits.release();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        idleBatches.forEach(BatchProcess::stop);
+        idleBatches.clear();
+        borrowedBatches.forEach(BatchProcess::stop);
+        borrowedBatches.clear();
+        drainer.shutdownNow();
+    }
+
+    /**
+     * 解析 ls-tree -r -z -l 输出: mode SP type SP object SP+ size TAB path NUL
+     */
+    static List<Entry> parseLsTree(String output) {
+        List<Entry> entries = new ArrayList<>();
+        for (String record : output.split("\0")) {
+            if (record.isEmpty()) {
+                continue;
+            }
+            int tab = record.indexOf('\t');
+            String[] meta = record.substring(0, tab).trim().split(" +");
+            if (!"blob".equals(meta[1]) || MODE_SYMLINK.equals(meta[0])) {
+                continue;
+            }
+            long size = "-".equals(meta[3]) ? -1 : Long.parseLong(meta[3]);
+            entries.add(new Entry(record.substring(tab + 1), meta[2], size));
+        }
+        return entries;
+    }
+
+    /**
+     * 解析 diff-tree -r -z 输出: :srcMode SP dstMode SP srcObject SP dstObject SP status NUL path NUL
+     */
+    static List<Entry> parseDiffTree(String output) {
+        List<Entry> entries = new ArrayList<>();
+        String[] parts = output.split("\0");
+        for (int i = 0; i + 1 < parts.length; i += 2) {
+            String[] meta = parts[i].trim().split(" ");
+            if (meta.length < 5 || !meta[0].startsWith(":")) {
+                continue;
+            }
+            String dstMode = meta[1];
+            String status = meta[4];
+            if (status.startsWith("D") || MODE_SYMLINK.equals(dstMode) || MODE_GITLINK.equals(dstMode)) {
+                continue;
+            }
+            entries.add(new Entry(parts[i + 1], meta[3], -1));
+        }
+        return entries;
+    }
+
+    /**
+     * 执行 git 命令并读取标准输出（整条命令受超时限制，包括读取输出）
+     *
+     * @param limit       最多读取的字节数（超出时多读 1 字节后停止），-1 表示不限
+     * @param allowFailure 为 true 时命令失败返回 null
+     */
+    private byte[] run(List<String> args, long limit, boolean allowFailure) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Process process = null;
+        try {
+            process = start(args);
+            process.getOutputStream().close();
+            InputStream stdout = process.getInputStream();
+            Process started = process;
+            byte[] output = await(drainer.submit(() -> readLimited(stdout, limit)), deadline, args.get(0),
+                    started::destroyForcibly);
+            if (limit >= 0 && output.length > limit) {
+                return output;
+            }
+            if (!process.waitFor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                throw new BusinessException("git 命令超时: " + args.get(0));
+            }
+            if (process.exitValue() != 0) {
+                if (allowFailure) {
+                    return null;
+                }
+                throw new BusinessException("git 命令执行失败: " + args.get(0) + "，退出码 " + process.exitValue());
+            }
+            return output;
+        } catch (IOException e) {
+            throw new BusinessException("git 命令执行失败: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("git 命令被中断");
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private Process start(List<String> args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(gitBinary);
+        command.add("-C");
+        command.add(repository.toString());
+        command.addAll(args);
+
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .redirectInput(ProcessBuilder.Redirect.PIPE);
+        builder.environment().put("GIT_TERMINAL_PROMPT", "0");
+        builder.environment().put("GIT_OPTIONAL_LOCKS", "0");
+        return builder.start();
+    }
+
+    /**
+     * 等待读取线程的结果，超时或失败时执行 onFailure（结束进程，使读取线程退出）
+     */
+    private static <T> T await(Future<T> future, long deadline, String command, Runnable onFailure) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            onFailure.run();
+            future.cancel(true);
+            throw new BusinessException("git 命令超时: " + command);
+        } catch (ExecutionException e) {
+            onFailure.run();
+            if (e.getCause() instanceof BusinessException business) {
+                throw business;
+            }
+            throw new BusinessException("git 命令执行失败: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            onFailure.run();
+            Thread.currentThread().interrupt();
+            throw new BusinessException("git 命令被中断");
+        }
+    }
+
+    /**
+     * 借用一个空闲的 cat-file 进程，没有空闲进程时启动新进程（调用方已持有许可，进程数不超过上限）
+     */
+    private BatchProcess borrowBatch() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                throw new BusinessException("Git 仓库读取器已关闭");
+            }
+            BatchProcess batch;
+            while ((batch = idleBatches.pollFirst()) != null) {
+                if (batch.process().isAlive()) {
+                    borrowedBatches.add(batch);
+                    return batch;
+                }
+                batch.stop();
+            }
+        }
+        Process process = start(List.of("cat-file", "--batch"));
+        BatchProcess batch = new BatchProcess(process, process.getOutputStream(),
+                new BufferedInputStream(process.getInputStream()));
+        synchronized (this) {
+            if (closed) {
+                batch.stop();
+                throw new BusinessException("Git 仓库读取器已关闭");
+            }
+            borrowedBatches.add(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * 归还进程；出错、超时或读取器已关闭时结束进程
+     */
+    private synchronized void returnBatch(BatchProcess batch, boolean reusable) {
+        if (batch == null) {
+            return;
+        }
+        borrowedBatches.remove(batch);
+        if (reusable && !closed && batch.process().isAlive()) {
+            idleBatches.addFirst(batch);
+        } else {
+            batch.stop();
+        }
+    }
+
+    /**
+     * 读取 cat-file --batch 的一条输出: objectId SP type SP size LF data LF，对象不存在时为 objectId SP missing LF
+     * 超过 maxSize 时跳过内容（保持输出流对齐）并返回 null
+     */
+    private static byte[] readBatchEntry(InputStream in, String objectId, long maxSize) throws IOException {
+        String[] header = readLine(in).split(" ");
+        if (header.length < 3) {
+            throw new BusinessException("Git 对象不存在: " + objectId);
+        }
+        if (!"blob".equals(header[1])) {
+            throw new BusinessException("Git 对象不是文件: " + objectId);
+        }
+        long size = Long.parseLong(header[2]);
+        if (size > maxSize) {
+            in.skipNBytes(size + 1);
+            return null;
+        }
+        byte[] data = in.readNBytes((int) size);
+        if (data.length < size || in.read() != '\n') {
+            throw new EOFException("cat-file 输出不完整: " + objectId);
+        }
+        return data;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new EOFException("cat-file 输出意外结束");
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readLimited(InputStream in, long limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            if (limit >= 0 && out.size() > limit) {
+                break;
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,195 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import com.jianxiang.codereviewer.domain.entity.SnapshotBlob;
+import com.jianxiang.codereviewer.domain.repository.SnapshotBlobRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @className: SnapshotArchiveService
+ * @author: jianXiang
+ * @description: 冷数据归档：只被已结束房间引用的内容块迁移到段文件，库内只保留位置
+ * 段文件目录为各节点共享的存储，同一时间只允许一个节点归档（Redis 锁，归档期间定期续期），段文件编号不会冲突
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class SnapshotArchiveService {
+
+    private static final String LOCK_KEY = "snapshot:archive:lock";
+
+    /**
+     * 只释放自己持有的锁（锁过期后可能已被其他节点取得）
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    /**
+     * 只续期自己持有的锁
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    private final SnapshotBlobRepository snapshotBlobRepository;
+    private final SnapshotSegmentStore snapshotSegmentStore;
+    private final ReactiveStringRedisTemplate redisTemplate;
+
+    @Value("${snapshot.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${snapshot.archive.batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 内容块写入后至少经过该时长才归档（避免归档刚上传、快照行尚未写入的内容）
+     */
+    @Value("${snapshot.archive.min-age:3600000}")
+    private long minAgeMillis;
+
+    /**
+     * 归档锁的租期，归档期间每隔租期的三分之一续期一次
+     */
+    @Value("${snapshot.archive.lock-lease:600000}")
+    private long lockLeaseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SnapshotArchiveService(SnapshotBlobRepository snapshotBlobRepository,
+                                  SnapshotSegmentStore snapshotSegmentStore,
+                                  ReactiveStringRedisTemplate redisTemplate) {
+        this.snapshotBlobRepository = snapshotBlobRepository;
+        this.snapshotSegmentStore = snapshotSegmentStore;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 开启归档时必须配置段文件存储标识，避免各节点使用本地目录却共用同一个标识
+     */
+    @PostConstruct
+    public void checkStoreId() {
+        if (enabled && (snapshotSegmentStore.getStoreId() == null || snapshotSegmentStore.getStoreId().isBlank())) {
+            throw new IllegalStateException("开启快照归档时必须配置 snapshot.archive.store-id");
+        }
+    }
+
+    /**
+     * 定时归档一批冷内容块
+     */
+    @Scheduled(fixedDelayString = "${snapshot.archive.interval:600000}",
+            initialDelayString = "${snapshot.archive.interval:600000}")
+    public void archiveColdBlobs() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        withLock(Mono.defer(this::archiveBatch))
+                .doFinally(signal -> running.set(false))
+                .subscribe(count -> {
+                    if (count > 0) {
+                        log.info("快照内容块归档完成: {} 个", count);
+                    }
+                }, e -> log.warn("快照内容块归档失败: {}", e.getMessage()));
+    }
+
+    /**
+     * 取得归档锁后执行，未取得（其他节点正在归档）时跳过本轮；执行期间续期，续期失败时中止执行
+     */
+    private Mono<Long> withLock(Mono<Long> task) {
+        String token = UUID.randomUUID().toString();
+        return redisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, token, Duration.ofMillis(lockLeaseMillis))
+                .flatMap(acquired -> {
+                    if (!acquired) {
+                        log.debug("其他节点正在归档快照内容块，跳过本轮");
+                        return Mono.just(0L);
+                    }
+                    // 其他节点可能已在共享目录追加或滚动段文件，重新定位最后一个段文件
+                    return Mono.fromCallable(() -> {
+                                snapshotSegmentStore.reopen();
+                                return true;
+                            })
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(Mono.firstWithSignal(task, leaseLost(token)))
+                            .flatMap(count -> release(token).thenReturn(count))
+                            .onErrorResume(e -> release(token).then(Mono.error(e)));
+                });
+    }
+
+    /**
+     * 每隔租期的三分之一续期归档锁，锁已不属于本节点或 Redis 不可用时报错
+     * 与归档任务竞争，报错时取消归档（已追加但未登记的内容不会被引用），不会在锁过期后继续追加段文件
+     */
+    private Mono<Long> leaseLost(String token) {
+        return Flux.interval(Duration.ofMillis(Math.max(1, lockLeaseMillis / 3)))
+                .concatMap(tick -> redisTemplate.execute(RENEW_SCRIPT, List.of(LOCK_KEY),
+                                List.of(token, String.valueOf(lockLeaseMillis)))
+                        .next()
+                        .defaultIfEmpty(0L))
+                .filter(renewed -> renewed == 0)
+                .next()
+                .then(Mono.error(new IllegalStateException("归档锁续期失败，中止本批归档")));
+    }
+
+    private Mono<Long> release(String token) {
+        // 释放锁前关闭段文件，下一个取得锁的节点看到完整的文件
+        return Mono.fromCallable(() -> {
+                    snapshotSegmentStore.reopen();
+                    return true;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then(redisTemplate.execute(RELEASE_SCRIPT, List.of(LOCK_KEY), List.of(token)).then())
+                .thenReturn(0L)
+                .onErrorResume(e -> {
+                    log.warn("释放快照归档锁失败: {}", e.getMessage());
+                    return Mono.just(0L);
+                });
+    }
+
+    /**
+     * 归档一批：先全部追加并刷盘，再更新数据库位置，保证库内内容清空前段文件已落盘
+     */
+    public Mono<Long> archiveBatch() {
+        LocalDateTime before = LocalDateTime.now().minus(Duration.ofMillis(minAgeMillis));
+        return snapshotBlobRepository.findArchivableHashes(before, batchSize)
+                .concatMap(snapshotBlobRepository::findById)
+                .filter(blob -> blob.getData() != null)
+                .publishOn(Schedulers.boundedElastic())
+                .concatMap(blob -> Mono.fromCallable(() ->
+                        new Archived(blob, snapshotSegmentStore.append(blob.getData()))))
+                .collectList()
+                .flatMap(archived -> archived.isEmpty()
+                        ? Mono.just(0L)
+                        : Mono.fromCallable(() -> {
+                                    snapshotSegmentStore.sync();
+                                    return archived;
+                                })
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMapMany(Flux::fromIterable)
+                                .concatMap(this::markArchived)
+                                .reduce(0L, Long::sum));
+    }
+
+    private Mono<Long> markArchived(Archived archived) {
+        SnapshotSegmentStore.Locator locator = archived.locator();
+        return snapshotBlobRepository.markArchived(archived.blob().getHash(), locator.storeId(),
+                        locator.segmentId(), locator.offset(), locator.length())
+                .map(Integer::longValue);
+    }
+
+    private record Archived(SnapshotBlob blob, SnapshotSegmentStore.Locator locator) {}
+}
@@ -0,0 +1,28 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import com.jianxiang.codereviewer.domain.enums.SnapshotContentCodec;
+
+/**
+ * 快照内容（按存储编码原样返回的字节）
+ *
+ * @param codec       编码
+ * @param data        编码后的字节（RAW 时为 UTF-8 原文）
+ * @param contentHash 原文 SHA-256（用作 ETag，可能为空）
+ */
+public record SnapshotContent(SnapshotContentCodec codec, byte[] data, String contentHash) {
+
+    public SnapshotContent(SnapshotContentCodec codec, byte[] data) {
+        this(codec, data, null);
+    }
+
+    /**
+     * 解码后的 UTF-8 字节
+     */
+    public byte[] decodedBytes() {
+        return codec.decodeBytes(data);
+    }
+
+    public SnapshotContent withContentHash(String hash) {
+        return new SnapshotContent(codec, data, hash);
+    }
+}
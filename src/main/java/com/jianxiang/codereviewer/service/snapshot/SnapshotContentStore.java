@@ -0,0 +1,482 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import com.jianxiang.codereviewer.common.diff.LineDelta;
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.common.util.ContentUtil;
+import com.jianxiang.codereviewer.common.util.LruCache;
+import com.jianxiang.codereviewer.domain.entity.CodeSnapshot;
+import com.jianxiang.codereviewer.domain.entity.SnapshotBlob;
+import com.jianxiang.codereviewer.domain.enums.SnapshotContentCodec;
+import com.jianxiang.codereviewer.domain.repository.CodeSnapshotRepository;
+import com.jianxiang.codereviewer.domain.repository.SnapshotBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @className: SnapshotContentStore
+ * @author: jianXiang
+ * @description: 快照内容存取（内容块按哈希去重；同一文件的连续版本按行增量存储，定期写关键帧；
+ * 已归档的内容块从本地段文件读取）
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class SnapshotContentStore {
+
+    private final SnapshotBlobRepository snapshotBlobRepository;
+    private final SnapshotSegmentStore snapshotSegmentStore;
+    private final CodeSnapshotRepository codeSnapshotRepository;
+    private final R2dbcEntityTemplate template;
+
+    /**
+     * 小于该字节数的内容不压缩，直接存原文
+     */
+    private final long compressionMinSize;
+
+    /**
+     * 关键帧间隔：增量链最长 keyframeInterval - 1 个增量
+     */
+    private final int keyframeInterval;
+
+    /**
+     * 流式上传的最大字节数
+     */
+    private final long uploadMaxSize;
+
+    /**
+     * 已还原内容缓存: snapshotId -> 完整内容
+     */
+    private final LruCache<Long, String> contentCache;
+
+    public SnapshotContentStore(SnapshotBlobRepository snapshotBlobRepository,
+                                SnapshotSegmentStore snapshotSegmentStore,
+                                CodeSnapshotRepository codeSnapshotRepository,
+                                R2dbcEntityTemplate template,
+                                @Value("${snapshot.compression.min-size:512}") long compressionMinSize,
+                                @Value("${snapshot.delta.keyframe-interval:10}") int keyframeInterval,
+                                @Value("${snapshot.delta.cache-max-entries:1024}") int cacheMaxEntries,
+                                @Value("${snapshot.delta.cache-max-bytes:67108864}") long cacheMaxBytes,
+                                @Value("${snapshot.upload.max-size:52428800}") long uploadMaxSize) {
+        this.snapshotBlobRepository = snapshotBlobRepository;
+        this.snapshotSegmentStore = snapshotSegmentStore;
+        this.codeSnapshotRepository = codeSnapshotRepository;
+        this.template = template;
+        this.compressionMinSize = compressionMinSize;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.uploadMaxSize = uploadMaxSize;
+        // 按 UTF-16 字符数估算内存占用
+        this.contentCache = new LruCache<>(cacheMaxEntries, cacheMaxBytes, content -> 2L * content.length());
+    }
+
+    /**
+     * 写入内容
+     * 1. 完整内容块已存在：直接引用，作为关键帧
+     * 2. 同文件上一版本可作增量基准且增量足够小：只存增量
+     * 3. 否则存完整内容块，作为关键帧
+     */
+    public Mono<CodeSnapshot> write(CodeSnapshot snapshot, String content) {
+        return Mono.fromCallable(() -> {
+                    byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+                    snapshot.setContentSize((long) raw.length);
+                    snapshot.setLineCount(ContentUtil.countLines(content));
+                    snapshot.setContentHash(ContentUtil.sha256Hex(raw));
+                    snapshot.setContentCodec(null);
+                    snapshot.setContent(null);
+                    snapshot.setCompressedContent(null);
+                    markKeyframe(snapshot);
+                    return raw;
+                })
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(raw -> snapshotBlobRepository.existsById(snapshot.getContentHash())
+                        .flatMap(exists -> {
+                            if (exists) {
+                                log.debug("快照内容块已存在，跳过写入: hash={}", snapshot.getContentHash());
+                                return Mono.just(snapshot);
+                            }
+                            return writeDelta(snapshot, content, raw)
+                                    .switchIfEmpty(Mono.defer(() -> storeBlob(snapshot.getContentHash(), raw)
+                                            .thenReturn(snapshot)));
+                        }));
+    }
+
+    /**
+     * 流式写入内容（大文件上传）
+     * 请求体分块写入临时文件，同时计算哈希、大小和行数，内存占用与文件大小无关；
+     * 增量计算需要完整文本，流式上传的版本一律作为关键帧
+     */
+    public Mono<CodeSnapshot> writeStream(CodeSnapshot snapshot, Flux<DataBuffer> body) {
+        return Mono.usingWhen(
+                Mono.fromCallable(() -> Files.createTempFile("snapshot-upload-", ".tmp"))
+                        .subscribeOn(Schedulers.boundedElastic()),
+                file -> {
+                    StreamingStats stats = new StreamingStats(uploadMaxSize);
+                    return DataBufferUtils.write(body.doOnNext(stats::update), file)
+                            .then(Mono.fromCallable(() -> {
+                                stats.finish();
+                                snapshot.setContentSize(stats.size);
+                                snapshot.setLineCount(stats.lineCount());
+                                snapshot.setContentHash(stats.hashHex());
+                                snapshot.setContentCodec(null);
+                                snapshot.setContent(null);
+                                snapshot.setCompressedContent(null);
+                                markKeyframe(snapshot);
+                                return snapshot;
+                            }))
+                            .flatMap(written -> snapshotBlobRepository.existsById(written.getContentHash()))
+                            .flatMap(exists -> {
+                                if (exists) {
+                                    log.debug("快照内容块已存在，跳过写入: hash={}", snapshot.getContentHash());
+                                    return Mono.just(snapshot);
+                                }
+                                return Mono.fromCallable(() -> encodeBlob(snapshot.getContentHash(), file, stats.size))
+                                        .subscribeOn(Schedulers.boundedElastic())
+                                        .flatMap(template::insert)
+                                        .onErrorResume(DataIntegrityViolationException.class, e -> Mono.empty())
+                                        .thenReturn(snapshot);
+                            });
+                },
+                file -> Mono.fromCallable(() -> Files.deleteIfExists(file))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    /**
+     * 按已知内容哈希直接引用已存储的内容，不需要原文
+     * 1. 同文件上一版本内容相同：沿用其存储（关键帧或增量）
+     * 2. 完整内容块已存在：作为关键帧引用
+     * 否则返回空，调用方需提供原文走 {@link #write}
+     */
+    public Mono<CodeSnapshot> reference(CodeSnapshot snapshot, String contentHash, long contentSize, int lineCount) {
+        Mono<CodeSnapshot> previous = snapshot.getVersion() == null
+                ? Mono.empty()
+                : codeSnapshotRepository.findPreviousVersion(
+                        snapshot.getRoomId(), snapshot.getFilePath(), snapshot.getVersion());
+        return previous
+                .filter(base -> contentHash.equals(base.getContentHash()))
+                .map(base -> {
+                    fillMetadata(snapshot, contentHash, contentSize, lineCount);
+                    snapshot.setDeltaBaseId(base.getDeltaBaseId());
+                    snapshot.setDeltaDepth(base.getDeltaDepth());
+                    snapshot.setDeltaHash(base.getDeltaHash());
+                    return snapshot;
+                })
+                .switchIfEmpty(Mono.defer(() -> snapshotBlobRepository.existsById(contentHash)
+                        .filter(exists -> exists)
+                        .map(exists -> {
+                            fillMetadata(snapshot, contentHash, contentSize, lineCount);
+                            markKeyframe(snapshot);
+                            return snapshot;
+                        })));
+    }
+
+    /**
+     * 尝试以增量方式写入，不满足条件时返回空
+     */
+    private Mono<CodeSnapshot> writeDelta(CodeSnapshot snapshot, String content, byte[] raw) {
+        if (keyframeInterval <= 1 || snapshot.getVersion() == null) {
+            return Mono.empty();
+        }
+        return codeSnapshotRepository.findPreviousVersion(
+                        snapshot.getRoomId(), snapshot.getFilePath(), snapshot.getVersion())
+                .filter(base -> depthOf(base) + 1 < keyframeInterval)
+                .flatMap(base -> readText(base)
+                        .publishOn(Schedulers.parallel())
+                        .map(baseContent -> LineDelta.encode(
+                                ContentUtil.splitLines(baseContent), ContentUtil.splitLines(content)))
+                        // 增量超过原文一半时不划算，改写关键帧
+                        .filter(delta -> delta.length <= raw.length / 2)
+                        .flatMap(delta -> {
+                            String deltaHash = ContentUtil.sha256Hex(delta);
+                            snapshot.setDeltaBaseId(base.getId());
+                            snapshot.setDeltaDepth(depthOf(base) + 1);
+                            snapshot.setDeltaHash(deltaHash);
+                            log.debug("快照以增量存储: baseId={}, depth={}, {} -> {} 字节",
+                                    base.getId(), snapshot.getDeltaDepth(), raw.length, delta.length);
+                            return storeBlob(deltaHash, delta).thenReturn(snapshot);
+                        }));
+    }
+
+    /**
+     * 按哈希存入内容块（已存在则跳过）
+     */
+    public Mono<Void> storeBlob(String hash, byte[] raw) {
+        return snapshotBlobRepository.existsById(hash)
+                .flatMap(exists -> {
+                    if (exists) {
+                        return Mono.empty();
+                    }
+                    return Mono.fromCallable(() -> encodeBlob(hash, raw))
+                            .subscribeOn(Schedulers.parallel())
+                            .flatMap(template::insert)
+                            // 并发写入同一内容时主键冲突，视为已存在
+                            .onErrorResume(DataIntegrityViolationException.class, e -> Mono.empty())
+                            .then();
+                });
+    }
+
+    /**
+     * 读取完整文本内容
+     * 增量版本沿基准链还原，链长不超过关键帧间隔；还原结果进入缓存
+     */
+    public Mono<String> readText(CodeSnapshot snapshot) {
+        if (snapshot.getContentHash() == null
+                && SnapshotContentCodec.getCodec(snapshot.getContentCodec()) == SnapshotContentCodec.RAW) {
+            return Mono.justOrEmpty(snapshot.getContent());
+        }
+        if (snapshot.getId() != null) {
+            String cached = contentCache.get(snapshot.getId());
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+        }
+
+        Mono<String> contentMono;
+        if (snapshot.getDeltaBaseId() != null) {
+            contentMono = codeSnapshotRepository.findById(snapshot.getDeltaBaseId())
+                    .switchIfEmpty(Mono.error(new IllegalStateException(
+                            "增量基准快照丢失: baseId=" + snapshot.getDeltaBaseId())))
+                    .flatMap(this::readText)
+                    .zipWith(loadBlob(snapshot.getDeltaHash()))
+                    .publishOn(Schedulers.parallel())
+                    .map(tuple -> LineDelta.apply(tuple.getT1(),
+                            tuple.getT2().codec().decodeBytes(tuple.getT2().data())));
+        } else {
+            contentMono = readEncoded(snapshot)
+                    .publishOn(Schedulers.parallel())
+                    .map(content -> content.codec().decode(content.data()));
+        }
+
+        return contentMono.doOnNext(content -> {
+            if (snapshot.getId() != null) {
+                contentCache.put(snapshot.getId(), content);
+            }
+        });
+    }
+
+    /**
+     * 按存储编码原样读取内容（用于 Content-Encoding 直出）
+     * 增量版本需要还原，返回 RAW
+     */
+    public Mono<SnapshotContent> readEncoded(CodeSnapshot snapshot) {
+        if (snapshot.getDeltaBaseId() != null) {
+            return readText(snapshot)
+                    .map(content -> new SnapshotContent(SnapshotContentCodec.RAW,
+                            content.getBytes(StandardCharsets.UTF_8)));
+        }
+        if (snapshot.getContentHash() != null) {
+            return loadBlob(snapshot.getContentHash());
+        }
+
+        // 旧数据：内容内联在 code_snapshot 表中
+        SnapshotContentCodec codec = SnapshotContentCodec.getCodec(snapshot.getContentCodec());
+        if (codec == SnapshotContentCodec.RAW) {
+            String content = snapshot.getContent() != null ? snapshot.getContent() : "";
+            return Mono.just(new SnapshotContent(codec, content.getBytes(StandardCharsets.UTF_8)));
+        }
+        return Mono.just(new SnapshotContent(codec, snapshot.getCompressedContent()));
+    }
+
+    /**
+     * 删除快照前调用：以该快照为增量基准的快照改写为关键帧，保证链不断裂
+     */
+    public Mono<Void> detachDependents(CodeSnapshot snapshot) {
+        return codeSnapshotRepository.findByDeltaBaseId(snapshot.getId())
+                .concatMap(dependent -> readText(dependent)
+                        .flatMap(content -> storeBlob(dependent.getContentHash(),
+                                content.getBytes(StandardCharsets.UTF_8)))
+                        .then(Mono.defer(() -> {
+                            markKeyframe(dependent);
+                            return codeSnapshotRepository.save(dependent);
+                        })))
+                .then(Mono.fromRunnable(() -> contentCache.remove(snapshot.getId())));
+    }
+
+    /**
+     * 读取内容块：库内内容直接返回，已归档的从段文件读取
+     */
+    private Mono<SnapshotContent> loadBlob(String hash) {
+        return snapshotBlobRepository.findById(hash)
+                .switchIfEmpty(Mono.error(new IllegalStateException("快照内容块丢失: hash=" + hash)))
+                .flatMap(blob -> {
+                    SnapshotContentCodec codec = SnapshotContentCodec.getCodec(blob.getCodec());
+                    if (blob.getData() != null) {
+                        return Mono.just(new SnapshotContent(codec, blob.getData()));
+                    }
+                    if (blob.getSegmentId() == null) {
+                        return Mono.error(new IllegalStateException("快照内容块没有内容也没有归档位置: hash=" + hash));
+                    }
+                    SnapshotSegmentStore.Locator locator = new SnapshotSegmentStore.Locator(
+                            blob.getSegmentStore(), blob.getSegmentId(), blob.getSegmentOffset(), blob.getSegmentLength());
+                    return Mono.fromCallable(() -> new SnapshotContent(codec, snapshotSegmentStore.read(locator)))
+                            .subscribeOn(Schedulers.boundedElastic());
+                });
+    }
+
+    private SnapshotBlob encodeBlob(String hash, byte[] raw) {
+        SnapshotContentCodec codec = raw.length < compressionMinSize
+                ? SnapshotContentCodec.RAW
+                : SnapshotContentCodec.GZIP;
+
+        SnapshotBlob blob = new SnapshotBlob();
+        blob.setHash(hash);
+        blob.setCodec(codec.getCode());
+        blob.setData(codec.encode(raw));
+        blob.setContentSize((long) raw.length);
+        blob.setCreateTime(LocalDateTime.now());
+        log.debug("写入快照内容块: hash={}, codec={}, {} -> {} 字节",
+                hash, codec.getCode(), raw.length, blob.getData().length);
+        return blob;
+    }
+
+    /**
+     * 从临时文件编码内容块：GZIP 边读边压缩，只在内存中保留压缩结果
+     */
+    private SnapshotBlob encodeBlob(String hash, Path file, long size) throws IOException {
+        SnapshotContentCodec codec = size < compressionMinSize
+                ? SnapshotContentCodec.RAW
+                : SnapshotContentCodec.GZIP;
+
+        byte[] data;
+        if (codec == SnapshotContentCodec.RAW) {
+            data = Files.readAllBytes(file);
+        } else {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.max(64, size / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                Files.copy(file, gzip);
+            }
+            data = out.toByteArray();
+        }
+
+        SnapshotBlob blob = new SnapshotBlob();
+        blob.setHash(hash);
+        blob.setCodec(codec.getCode());
+        blob.setData(data);
+        blob.setContentSize(size);
+        blob.setCreateTime(LocalDateTime.now());
+        log.debug("流式写入快照内容块: hash={}, codec={}, {} -> {} 字节", hash, codec.getCode(), size, data.length);
+        return blob;
+    }
+
+    private static void fillMetadata(CodeSnapshot snapshot, String contentHash, long contentSize, int lineCount) {
+        snapshot.setContentSize(contentSize);
+        snapshot.setLineCount(lineCount);
+        snapshot.setContentHash(contentHash);
+        snapshot.setContentCodec(null);
+        snapshot.setContent(null);
+        snapshot.setCompressedContent(null);
+    }
+
+    private static void markKeyframe(CodeSnapshot snapshot) {
+        snapshot.setDeltaBaseId(null);
+        snapshot.setDeltaDepth(0);
+        snapshot.setDeltaHash(null);
+    }
+
+    private static int depthOf(CodeSnapshot snapshot) {
+        return snapshot.getDeltaDepth() != null ? snapshot.getDeltaDepth() : 0;
+    }
+
+    /**
+     * 流式统计：逐块累计哈希、字节数、换行数，并校验 UTF-8（跨块的多字节字符留到下一块）
+     */
+    private static final class StreamingStats {
+
+        private final long maxSize;
+        private final MessageDigest digest = ContentUtil.newSha256();
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        private final CharBuffer chars = CharBuffer.allocate(8192);
+        private ByteBuffer pending = ByteBuffer.allocate(0);
+        private long size;
+        private int newlines;
+        private byte lastByte;
+
+        private StreamingStats(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private void update(DataBuffer buffer) {
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    update(iterator.next());
+                }
+            }
+        }
+
+        private void update(ByteBuffer bytes) {
+            int length = bytes.remaining();
+            if (length == 0) {
+                return;
+            }
+            size += length;
+            if (size > maxSize) {
+                throw new BusinessException("快照内容超过上传上限: " + maxSize + " 字节");
+            }
+            digest.update(bytes.duplicate());
+            for (int i = bytes.position(); i < bytes.limit(); i++) {
+                if (bytes.get(i) == '\n') {
+                    newlines++;
+                }
+            }
+            lastByte = bytes.get(bytes.limit() - 1);
+            decode(bytes.duplicate(), false);
+        }
+
+        private void finish() {
+            decode(ByteBuffer.allocate(0), true);
+        }
+
+        private void decode(ByteBuffer bytes, boolean endOfInput) {
+            ByteBuffer input = bytes;
+            if (pending.hasRemaining()) {
+                input = ByteBuffer.allocate(pending.remaining() + bytes.remaining()).put(pending).put(bytes).flip();
+            }
+            while (true) {
+                chars.clear();
+                CoderResult result = decoder.decode(input, chars, endOfInput);
+                if (result.isError()) {
+                    throw new BusinessException("快照内容不是有效的 UTF-8 文本");
+                }
+                if (!result.isOverflow()) {
+                    break;
+                }
+            }
+            // 剩余不足一个字符的字节（最多3个）留到下一块
+            pending = ByteBuffer.allocate(input.remaining()).put(input).flip();
+        }
+
+        private int lineCount() {
+            if (size == 0) {
+                return 0;
+            }
+            return lastByte == '\n' ? newlines : newlines + 1;
+        }
+
+        private String hashHex() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
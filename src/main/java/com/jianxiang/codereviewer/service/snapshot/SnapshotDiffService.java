@@ -0,0 +1,282 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import com.jianxiang.codereviewer.common.diff.MyersDiff;
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import com.jianxiang.codereviewer.common.util.ContentUtil;
+import com.jianxiang.codereviewer.common.util.LruCache;
+import com.jianxiang.codereviewer.domain.entity.CodeSnapshot;
+import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
+import com.jianxiang.codereviewer.domain.repository.CodeSnapshotRepository;
+import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
+import com.jianxiang.codereviewer.dto.snapshot.DiffHunk;
+import com.jianxiang.codereviewer.dto.snapshot.DiffLine;
+import com.jianxiang.codereviewer.dto.snapshot.SnapshotDiffResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @className: SnapshotDiffService
+ * @author: jianXiang
+ * @description: 快照版本差异服务（服务端计算行级差异，结果按房间和版本缓存）
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Service
+public class SnapshotDiffService {
+
+    /**
+     * 默认上下文行数
+     */
+    public static final int DEFAULT_CONTEXT = 3;
+
+    private static final int MAX_CONTEXT = 50;
+
+    private final CodeSnapshotRepository codeSnapshotRepository;
+    private final ReviewRoomRepository reviewRoomRepository;
+    private final SnapshotContentStore snapshotContentStore;
+
+    /**
+     * 差异缓存: (roomId, from, to, filePath, context) -> 差异结果
+     */
+    private final LruCache<DiffKey, SnapshotDiffResponse> diffCache;
+
+    private record DiffKey(Long roomId, Integer from, Integer to, String filePath, int context) {}
+
+    /**
+     * 两个版本的行和编辑脚本
+     */
+    private record DiffSource(List<String> oldLines, List<String> newLines, List<MyersDiff.Edit> edits) {}
+
+    public SnapshotDiffService(CodeSnapshotRepository codeSnapshotRepository,
+                               ReviewRoomRepository reviewRoomRepository,
+                               SnapshotContentStore snapshotContentStore,
+                               @Value("${snapshot.diff.cache-max-entries:256}") int cacheMaxEntries,
+                               @Value("${snapshot.diff.cache-max-bytes:33554432}") long cacheMaxBytes) {
+        this.codeSnapshotRepository = codeSnapshotRepository;
+        this.reviewRoomRepository = reviewRoomRepository;
+        this.snapshotContentStore = snapshotContentStore;
+        this.diffCache = new LruCache<>(cacheMaxEntries, cacheMaxBytes, SnapshotDiffService::weigh);
+    }
+
+    /**
+     * 计算两个版本中同一文件的差异
+     * filePath 为空时比较两个版本的第一个文件；文件只在一侧存在时按新增/删除整个文件处理
+     */
+    public Mono<SnapshotDiffResponse> diff(String roomCode, Integer fromVersion, Integer toVersion,
+                                           String filePath, Integer context) {
+        int contextLines = context == null ? DEFAULT_CONTEXT : context;
+        if (contextLines < 0 || contextLines > MAX_CONTEXT) {
+            return Mono.error(new BusinessException("上下文行数必须在0到" + MAX_CONTEXT + "之间"));
+        }
+
+        return findRoom(roomCode)
+                .flatMap(room -> {
+                    DiffKey key = new DiffKey(room.getId(), fromVersion, toVersion, filePath, contextLines);
+                    SnapshotDiffResponse cached = diffCache.get(key);
+                    if (cached != null) {
+                        return Mono.just(cached);
+                    }
+                    return load(room.getId(), fromVersion, toVersion, filePath)
+                            .map(source -> compute(room.getId(), fromVersion, toVersion, source, contextLines))
+                            .doOnNext(response -> diffCache.put(key, response));
+                });
+    }
+
+    /**
+     * 逐块输出差异（用于大差异的流式响应）
+     * 编辑脚本需要一次算完，差异块按下游请求逐个组装输出，不先构建完整的差异结果，也不写入缓存
+     */
+    public Flux<DiffHunk> streamDiff(String roomCode, Integer fromVersion, Integer toVersion,
+                                     String filePath, Integer context) {
+        int contextLines = context == null ? DEFAULT_CONTEXT : context;
+        if (contextLines < 0 || contextLines > MAX_CONTEXT) {
+            return Flux.error(new BusinessException("上下文行数必须在0到" + MAX_CONTEXT + "之间"));
+        }
+
+        return findRoom(roomCode)
+                .flatMapMany(room -> {
+                    SnapshotDiffResponse cached = diffCache.get(
+                            new DiffKey(room.getId(), fromVersion, toVersion, filePath, contextLines));
+                    if (cached != null) {
+                        return Flux.fromIterable(cached.getHunks());
+                    }
+                    return load(room.getId(), fromVersion, toVersion, filePath)
+                            .flatMapMany(source -> Flux.fromIterable(groupChanges(source.edits(), contextLines))
+                                    .map(group -> buildHunk(group, source.oldLines(), source.newLines(),
+                                            contextLines)));
+                });
+    }
+
+    /**
+     * 快照删除后清理相关缓存
+     */
+    public void evict(Long roomId, Integer version) {
+        diffCache.removeIf(key -> key.roomId().equals(roomId)
+                && (key.from().equals(version) || key.to().equals(version)));
+    }
+
+    public void clear() {
+        diffCache.removeIf(key -> true);
+    }
+
+    private Mono<Optional<CodeSnapshot>> findFile(Long roomId, Integer version, String filePath) {
+        return codeSnapshotRepository.findFileByVersion(roomId, version, filePath)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private Mono<String> readText(Optional<CodeSnapshot> snapshot) {
+        return snapshot.map(snapshotContentStore::readText)
+                .orElse(Mono.empty())
+                .defaultIfEmpty("");
+    }
+
+    private Mono<ReviewRoom> findRoom(String roomCode) {
+        return reviewRoomRepository.findByRoomCode(roomCode)
+                .switchIfEmpty(Mono.error(new BusinessException("房间不存在")));
+    }
+
+    /**
+     * 读取两个版本的文件内容并计算编辑脚本
+     */
+    private Mono<DiffSource> load(Long roomId, Integer fromVersion, Integer toVersion, String filePath) {
+        return Mono.zip(findFile(roomId, fromVersion, filePath), findFile(roomId, toVersion, filePath))
+                .filter(tuple -> tuple.getT1().isPresent() || tuple.getT2().isPresent())
+                .switchIfEmpty(Mono.error(new BusinessException("快照版本不存在")))
+                .flatMap(tuple -> Mono.zip(readText(tuple.getT1()), readText(tuple.getT2())))
+                .publishOn(Schedulers.parallel())
+                .map(contents -> {
+                    List<String> oldLines = ContentUtil.splitLines(contents.getT1());
+                    List<String> newLines = ContentUtil.splitLines(contents.getT2());
+                    return new DiffSource(oldLines, newLines, MyersDiff.diff(oldLines, newLines));
+                });
+    }
+
+    private SnapshotDiffResponse compute(Long roomId, Integer fromVersion, Integer toVersion,
+                                         DiffSource source, int context) {
+        int added = 0;
+        int removed = 0;
+        for (MyersDiff.Edit edit : source.edits()) {
+            added += edit.type() == MyersDiff.Type.INSERT ? edit.bLength() : 0;
+            removed += edit.type() == MyersDiff.Type.DELETE ? edit.aLength() : 0;
+        }
+
+        return SnapshotDiffResponse.builder()
+                .roomId(roomId)
+                .fromVersion(fromVersion)
+                .toVersion(toVersion)
+                .addedLines(added)
+                .removedLines(removed)
+                .hunks(buildHunks(source.edits(), source.oldLines(), source.newLines(), context))
+                .build();
+    }
+
+    /**
+     * 将差异片段组装为 unified diff 风格的差异块
+     */
+    static List<DiffHunk> buildHunks(List<MyersDiff.Edit> edits, List<String> oldLines,
+                                     List<String> newLines, int context) {
+        List<DiffHunk> hunks = new ArrayList<>();
+        for (List<int[]> group : groupChanges(edits, context)) {
+            hunks.add(buildHunk(group, oldLines, newLines, context));
+        }
+        return hunks;
+    }
+
+    /**
+     * 把编辑脚本划分为差异块对应的变更区间组（只含下标，不复制行内容）
+     * 相邻变更之间的相同行不超过 2 * context 时合并为同一块
+     */
+    private static List<List<int[]>> groupChanges(List<MyersDiff.Edit> edits, int context) {
+        // 合并相邻的删除/插入为一个变更区间: [aStart, aEnd, bStart, bEnd]
+        List<int[]> changes = new ArrayList<>();
+        for (MyersDiff.Edit edit : edits) {
+            if (edit.type() == MyersDiff.Type.EQUAL) {
+                continue;
+            }
+            int[] last = changes.isEmpty() ? null : changes.get(changes.size() - 1);
+            if (last != null && last[1] == edit.aStart() && last[3] == edit.bStart()) {
+                last[1] = edit.aEnd();
+                last[3] = edit.bEnd();
+            } else {
+                changes.add(new int[]{edit.aStart(), edit.aEnd(), edit.bStart(), edit.bEnd()});
+            }
+        }
+
+        List<List<int[]>> groups = new ArrayList<>();
+        int i = 0;
+        while (i < changes.size()) {
+            int j = i;
+            while (j + 1 < changes.size() && changes.get(j + 1)[0] - changes.get(j)[1] <= 2 * context) {
+                j++;
+            }
+            groups.add(changes.subList(i, j + 1));
+            i = j + 1;
+        }
+        return groups;
+    }
+
+    private static DiffHunk buildHunk(List<int[]> group, List<String> oldLines, List<String> newLines, int context) {
+        int[] first = group.get(0);
+        int[] last = group.get(group.size() - 1);
+        int aStart = Math.max(0, first[0] - context);
+        int bStart = first[2] - (first[0] - aStart);
+        int aEnd = Math.min(oldLines.size(), last[1] + context);
+        int bEnd = last[3] + (aEnd - last[1]);
+
+        List<DiffLine> lines = new ArrayList<>();
+        int a = aStart;
+        for (int[] change : group) {
+            while (a < change[0]) {
+                lines.add(line("CONTEXT", oldLines.get(a++)));
+            }
+            for (int k = change[0]; k < change[1]; k++) {
+                lines.add(line("DELETE", oldLines.get(k)));
+            }
+            for (int k = change[2]; k < change[3]; k++) {
+                lines.add(line("INSERT", newLines.get(k)));
+            }
+            a = change[1];
+        }
+        while (a < aEnd) {
+            lines.add(line("CONTEXT", oldLines.get(a++)));
+        }
+
+        return DiffHunk.builder()
+                .oldStart(aStart + 1)
+                .oldLines(aEnd - aStart)
+                .newStart(bStart + 1)
+                .newLines(bEnd - bStart)
+                .lines(lines)
+                .build();
+    }
+
+    private static DiffLine line(String type, String text) {
+        int end = text.length();
+        if (end > 0 && text.charAt(end - 1) == '\n') {
+            end--;
+            if (end > 0 && text.charAt(end - 1) == '\r') {
+                end--;
+            }
+        }
+        return new DiffLine(type, text.substring(0, end));
+    }
+
+    private static long weigh(SnapshotDiffResponse response) {
+        long weight = 0;
+        for (DiffHunk hunk : response.getHunks()) {
+            for (DiffLine line : hunk.getLines()) {
+                weight += 2L * line.getContent().length() + 32;
+            }
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,69 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import com.jianxiang.codereviewer.common.util.LruCache;
+import com.jianxiang.codereviewer.domain.enums.SnapshotContentCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * @className: SnapshotETagCache
+ * @author: jianXiang
+ * @description: 快照版本文件 -> 内容哈希 的内存缓存
+ * 版本写入后内容不再变化，条件请求命中缓存时直接返回 304，不查询数据库
+ * 快照删除由删除所在节点广播失效通知，其他节点收到后清理（见 CodeSnapshotService）
+ * @date: 2026/10/19
+ */
+@Component
+public class SnapshotETagCache {
+
+    private final LruCache<Key, Tag> cache;
+
+    private record Key(String roomCode, Integer version, String filePath) {}
+
+    /**
+     * @param contentHash 原文哈希
+     * @param codec       原始内容接口输出的存储编码，未读取过原始内容时为空
+     */
+    public record Tag(String contentHash, SnapshotContentCodec codec) {}
+
+    public SnapshotETagCache(@Value("${snapshot.etag.cache-max-entries:65536}") int maxEntries) {
+        this.cache = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * filePath 为空表示未指定文件的请求（对应版本的第一个文件）
+     */
+    public Tag get(String roomCode, Integer version, String filePath) {
+        return cache.get(new Key(roomCode, version, filePath));
+    }
+
+    /**
+     * 记录内容哈希（保留已知的存储编码）
+     */
+    public void put(String roomCode, Integer version, String filePath, String contentHash) {
+        Tag existing = get(roomCode, version, filePath);
+        if (existing != null && existing.contentHash().equals(contentHash)) {
+            return;
+        }
+        cache.put(new Key(roomCode, version, filePath), new Tag(contentHash, null));
+    }
+
+    public void put(String roomCode, Integer version, String filePath, String contentHash, SnapshotContentCodec codec) {
+        cache.put(new Key(roomCode, version, filePath), new Tag(contentHash, codec));
+    }
+
+    /**
+     * 文件删除后清理：同时清理未指定文件的请求（可能指向该文件）
+     */
+    public void evict(String roomCode, Integer version, String filePath) {
+        cache.remove(new Key(roomCode, version, filePath));
+        cache.remove(new Key(roomCode, version, null));
+    }
+
+    /**
+     * 可能漏收其他节点的删除通知时整体清空
+     */
+    public void clear() {
+        cache.removeIf(key -> true);
+    }
+}
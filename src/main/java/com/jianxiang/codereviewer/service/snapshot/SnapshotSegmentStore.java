@@ -0,0 +1,224 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * @className: SnapshotSegmentStore
+ * @author: jianXiang
+ * @description: 冷数据段文件存储（只追加写，内存映射读）
+ * 每条记录: magic(4B) | length(4B) | crc32(4B) | data；单个段文件写满后滚动到下一个
+ * 多节点部署时段文件目录须放在各节点共享的存储上，并由 store-id 标识（每个节点必须配置）；位置记录存储标识，
+ * 读取时发现不是本节点挂载的存储直接报错，不会按同一编号读到本地另一个段文件
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class SnapshotSegmentStore {
+
+    private static final int RECORD_MAGIC = 0x534E4150;
+    private static final int HEADER_SIZE = 12;
+    private static final String FILE_PREFIX = "segment-";
+    private static final String FILE_SUFFIX = ".seg";
+
+    /**
+     * 单个段文件的映射上限（MappedByteBuffer 最大 2GB）
+     */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final Path directory;
+    private final String storeId;
+    private final long segmentMaxBytes;
+
+    /**
+     * 段文件只读映射: segmentId -> 映射（段文件追加后按需重新映射）
+     */
+    private final Map<Integer, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+    /**
+     * 当前追加的段文件（由 this 保护）
+     */
+    private FileChannel activeChannel;
+    private int activeId;
+
+    /**
+     * 段文件中的内容位置
+     *
+     * @param storeId   段文件存储标识（早期归档的数据为空，视为本节点存储）
+     * @param segmentId 段文件编号
+     * @param offset    内容起始偏移（不含记录头）
+     * @param length    内容长度
+     */
+    public record Locator(String storeId, int segmentId, long offset, int length) {}
+
+    public SnapshotSegmentStore(@Value("${snapshot.archive.dir:data/snapshot-segments}") String directory,
+                                @Value("${snapshot.archive.store-id:}") String storeId,
+                                @Value("${snapshot.archive.segment-max-bytes:268435456}") long segmentMaxBytes) {
+        this.directory = Paths.get(directory);
+        this.storeId = storeId;
+        this.segmentMaxBytes = Math.min(Math.max(segmentMaxBytes, HEADER_SIZE), MAX_SEGMENT_BYTES);
+    }
+
+    public String getStoreId() {
+        return storeId;
+    }
+
+    /**
+     * 追加一条内容，返回位置（调用 {@link #sync()} 后才保证落盘）
+     */
+    public synchronized Locator append(byte[] data) throws IOException {
+        if (storeId.isBlank()) {
+            throw new IOException("未配置段文件存储标识 snapshot.archive.store-id");
+        }
+        if (data.length > segmentMaxBytes - HEADER_SIZE) {
+            throw new IOException("内容超过段文件容量: " + data.length + " 字节");
+        }
+        FileChannel channel = activeChannel();
+        long position = channel.size();
+        if (position > 0 && position + HEADER_SIZE + data.length > segmentMaxBytes) {
+            channel = roll();
+            position = 0;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(RECORD_MAGIC)
+                .putInt(data.length)
+                .putInt((int) crc.getValue())
+                .flip();
+        ByteBuffer[] record = {header, ByteBuffer.wrap(data)};
+        long written = 0;
+        long expected = HEADER_SIZE + (long) data.length;
+        while (written < expected) {
+            written += channel.write(record);
+        }
+        return new Locator(storeId, activeId, position + HEADER_SIZE, data.length);
+    }
+
+    /**
+     * 关闭当前追加的段文件，下次追加时重新定位最后一个段文件
+     * 共享存储上其他节点可能已追加或滚动段文件，每次取得归档锁后调用
+     */
+    public synchronized void reopen() throws IOException {
+        close();
+    }
+
+    /**
+     * 将已追加的内容刷到磁盘
+     */
+    public synchronized void sync() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.force(false);
+        }
+    }
+
+    /**
+     * 读取内容（内存映射，校验记录头和 CRC）
+     */
+    public byte[] read(Locator locator) throws IOException {
+        if (locator.storeId() != null && !locator.storeId().equals(storeId)) {
+            throw new IOException("内容块归档在段文件存储[" + locator.storeId() + "]，本节点挂载的是[" + storeId + "]");
+        }
+        long headerStart = locator.offset() - HEADER_SIZE;
+        long end = locator.offset() + locator.length();
+        if (headerStart < 0) {
+            throw new IOException("无效的段文件位置: " + locator);
+        }
+        ByteBuffer view = mapping(locator.segmentId(), end).duplicate();
+        view.position((int) headerStart);
+        if (view.getInt() != RECORD_MAGIC || view.getInt() != locator.length()) {
+            throw new IOException("段文件记录头不匹配: " + locator);
+        }
+        int expectedCrc = view.getInt();
+        byte[] data = new byte[locator.length()];
+        view.get(data);
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("段文件记录校验失败: " + locator);
+        }
+        return data;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.force(false);
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+
+    private MappedByteBuffer mapping(int segmentId, long requiredEnd) throws IOException {
+        MappedByteBuffer existing = mappings.get(segmentId);
+        if (existing != null && existing.capacity() >= requiredEnd) {
+            return existing;
+        }
+        // 段文件在映射之后又追加了内容，重新映射
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < requiredEnd) {
+                throw new IOException("段文件长度不足: segment=" + segmentId + ", size=" + size);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mappings.put(segmentId, mapped);
+            return mapped;
+        }
+    }
+
+    private FileChannel activeChannel() throws IOException {
+        if (activeChannel == null) {
+            Files.createDirectories(directory);
+            activeId = Math.max(1, lastSegmentId());
+            activeChannel = open(activeId);
+            log.info("打开快照段文件: {}", segmentPath(activeId));
+        }
+        return activeChannel;
+    }
+
+    private FileChannel roll() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        activeId++;
+        activeChannel = open(activeId);
+        log.info("快照段文件滚动: {}", segmentPath(activeId));
+        return activeChannel;
+    }
+
+    private FileChannel open(int segmentId) throws IOException {
+        return FileChannel.open(segmentPath(segmentId),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private int lastSegmentId() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX))
+                    .mapToInt(name -> Integer.parseInt(
+                            name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())))
+                    .max()
+                    .orElse(0);
+        }
+    }
+
+    private Path segmentPath(int segmentId) {
+        return directory.resolve(String.format("%s%06d%s", FILE_PREFIX, segmentId, FILE_SUFFIX));
+    }
+}
@@ -0,0 +1,172 @@
+package com.jianxiang.codereviewer.websocket.capture;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * WebSocket 入站流量抓包文件格式
+ * 文件头: magic(4B "RCAP") | version(1B) | 开始时间(8B 毫秒时间戳)；
+ * 每条记录: kind(1B) | 距上一条记录的微秒数(varint) | 连接号(varint) | 按类型的内容，
+ * OPEN 为房间码、用户ID、用户名，FRAME 为文本帧内容，CLOSE 没有内容；字符串为 varint 长度 + UTF-8 字节
+ */
+public final class TrafficCapture {
+
+    static final int MAGIC = 0x52434150;
+    static final byte VERSION = 1;
+    static final String FILE_SUFFIX = ".rcap";
+
+    /**
+     * 记录类型（编码值写入文件，只能追加）
+     */
+    public enum Kind {
+        OPEN, FRAME, CLOSE
+    }
+
+    /**
+     * 一条抓包记录
+     *
+     * @param offsetMicros 距抓包开始的微秒数
+     * @param kind         记录类型
+     * @param connectionId 连接号（抓包内唯一）
+     * @param roomCode     房间码（OPEN）
+     * @param userId       用户ID（OPEN）
+     * @param username     用户名（OPEN）
+     * @param payload      文本帧内容（FRAME）
+     */
+    public record Record(long offsetMicros, Kind kind, long connectionId, String roomCode, Long userId,
+                         String username, String payload) {}
+
+    private TrafficCapture() {
+    }
+
+    static byte[] header(long startMillis) {
+        return ByteBuffer.allocate(13).putInt(MAGIC).put(VERSION).putLong(startMillis).array();
+    }
+
+    static void encode(ByteArrayOutputStream out, Kind kind, long deltaMicros, long connectionId,
+                       String roomCode, Long userId, String username, String payload) {
+        out.write(kind.ordinal() + 1);
+        writeVarLong(out, deltaMicros);
+        writeVarLong(out, connectionId);
+        switch (kind) {
+            case OPEN -> {
+                writeString(out, roomCode);
+                writeVarLong(out, userId == null ? 0 : userId + 1);
+                writeString(out, username);
+            }
+            case FRAME -> writeString(out, payload);
+            case CLOSE -> {
+            }
+        }
+    }
+
+    /**
+     * 顺序读取抓包文件
+     */
+    public static Reader open(Path path) throws IOException {
+        return new Reader(Files.newInputStream(path));
+    }
+
+    public static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+        private final long startMillis;
+        private long offsetMicros;
+
+        private Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+            if (this.in.readInt() != MAGIC) {
+                throw new IOException("不是流量抓包文件");
+            }
+            int version = this.in.readByte();
+            if (version != VERSION) {
+                throw new IOException("不支持的抓包文件版本: " + version);
+            }
+            this.startMillis = this.in.readLong();
+        }
+
+        /**
+         * 抓包开始时间（毫秒时间戳）
+         */
+        public long startMillis() {
+            return startMillis;
+        }
+
+        /**
+         * 读取下一条记录，读到文件末尾或不完整的最后一条记录时返回 null
+         */
+        public Record next() throws IOException {
+            int code = in.read();
+            if (code <= 0) {
+                return null;
+            }
+            if (code > Kind.values().length) {
+                throw new IOException("未知的抓包记录类型: " + code);
+            }
+            try {
+                Kind kind = Kind.values()[code - 1];
+                offsetMicros += readVarLong(in);
+                long connectionId = readVarLong(in);
+                return switch (kind) {
+                    case OPEN -> {
+                        String roomCode = readString(in);
+                        long userId = readVarLong(in);
+                        yield new Record(offsetMicros, kind, connectionId, roomCode,
+                                userId == 0 ? null : userId - 1, readString(in), null);
+                    }
+                    case FRAME -> new Record(offsetMicros, kind, connectionId, null, null, null, readString(in));
+                    case CLOSE -> new Record(offsetMicros, kind, connectionId, null, null, null, null);
+                };
+            } catch (EOFException e) {
+                // 进程退出前未写完的最后一条
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数过长");
+    }
+}
@@ -0,0 +1,199 @@
+package com.jianxiang.codereviewer.websocket.capture;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @className: TrafficRecorder
+ * @author: jianXiang
+ * @description: WebSocket 入站流量录制：连接建立、客户端文本帧、连接关闭连同时间间隔写入抓包文件，用于回放复现性能问题
+ * 录制只写内存缓冲（不在事件循环线程做文件 IO），按固定间隔追加到文件；缓冲区满或文件达到上限时丢弃并计数
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+public class TrafficRecorder {
+
+    private static final DateTimeFormatter FILE_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int maxBufferBytes;
+    private final long maxFileBytes;
+
+    private final long startMillis;
+    private final AtomicLong connectionIds = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * 待写入的记录（按录制顺序编码，由 lock 保护）
+     */
+    private final Object lock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private int pendingRecords;
+    private long lastRecordNanos;
+
+    /**
+     * 抓包文件达到上限后停止录制
+     */
+    private volatile boolean full;
+
+    /**
+     * 当前抓包文件（由 flush 线程独占）
+     */
+    private FileChannel file;
+    private long fileBytes;
+
+    public TrafficRecorder(@Value("${capture.enabled:false}") boolean enabled,
+                           @Value("${capture.dir:data/capture}") String directory,
+                           @Value("${capture.max-buffer-bytes:8388608}") int maxBufferBytes,
+                           @Value("${capture.max-file-bytes:1073741824}") long maxFileBytes) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxBufferBytes = maxBufferBytes;
+        this.maxFileBytes = maxFileBytes;
+        this.startMillis = System.currentTimeMillis();
+        this.lastRecordNanos = System.nanoTime();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录连接建立，返回连接号；未开启录制时返回 -1
+     */
+    public long open(String roomCode, Long userId, String username) {
+        if (!enabled) {
+            return -1;
+        }
+        long connectionId = connectionIds.incrementAndGet();
+        record(TrafficCapture.Kind.OPEN, connectionId, roomCode, userId, username, null);
+        return connectionId;
+    }
+
+    /**
+     * 记录客户端发来的文本帧
+     */
+    public void frame(long connectionId, String payload) {
+        if (connectionId > 0) {
+            record(TrafficCapture.Kind.FRAME, connectionId, null, null, null, payload);
+        }
+    }
+
+    /**
+     * 记录连接关闭
+     */
+    public void close(long connectionId) {
+        if (connectionId > 0) {
+            record(TrafficCapture.Kind.CLOSE, connectionId, null, null, null, null);
+        }
+    }
+
+    /**
+     * 把缓冲的记录追加到抓包文件
+     */
+    @Scheduled(fixedDelayString = "${capture.flush-interval:1000}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+        ByteArrayOutputStream batch;
+        int batchRecords;
+        synchronized (lock) {
+            if (pending.size() == 0) {
+                return;
+            }
+            batch = pending;
+            batchRecords = pendingRecords;
+            pending = new ByteArrayOutputStream(batch.size());
+            pendingRecords = 0;
+        }
+        if (full) {
+            // 停止录制前已进入缓冲的记录，不再写入文件
+            dropped.addAndGet(batchRecords);
+            return;
+        }
+        try {
+            if (file == null) {
+                openFile();
+            }
+            if (fileBytes + batch.size() > maxFileBytes) {
+                full = true;
+                dropped.addAndGet(batchRecords);
+                log.warn("流量抓包文件达到上限 {} 字节，停止录制", maxFileBytes);
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+            while (buffer.hasRemaining()) {
+                fileBytes += file.write(buffer);
+            }
+        } catch (IOException e) {
+            dropped.addAndGet(batchRecords);
+            log.warn("写入流量抓包文件失败，丢弃 {} 条记录: {}", batchRecords, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        flush();
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                log.warn("关闭流量抓包文件失败: {}", e.getMessage());
+            }
+            file = null;
+        }
+        if (dropped.get() > 0) {
+            log.warn("流量录制丢弃了 {} 条记录（缓冲区或文件已满、写入失败）", dropped.get());
+        }
+    }
+
+    private void record(TrafficCapture.Kind kind, long connectionId, String roomCode, Long userId,
+                        String username, String payload) {
+        if (full) {
+            dropped.incrementAndGet();
+            return;
+        }
+        synchronized (lock) {
+            if (pending.size() >= maxBufferBytes) {
+                dropped.incrementAndGet();
+                return;
+            }
+            long deltaMicros = (System.nanoTime() - lastRecordNanos) / 1000;
+            TrafficCapture.encode(pending, kind, deltaMicros, connectionId, roomCode, userId, username, payload);
+            pendingRecords++;
+            // 按写入的微秒数推进，截断误差不累积
+            lastRecordNanos += deltaMicros * 1000;
+        }
+    }
+
+    private void openFile() throws IOException {
+        Files.createDirectories(directory);
+        Path path = directory.resolve("capture-" + LocalDateTime.now().format(FILE_NAME_FORMAT)
+                + TrafficCapture.FILE_SUFFIX);
+        file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        // 文件头记录录制开始时间，即第一条记录时间偏移的起点
+        ByteBuffer header = ByteBuffer.wrap(TrafficCapture.header(startMillis));
+        while (header.hasRemaining()) {
+            fileBytes += file.write(header);
+        }
+        log.info("开始录制 WebSocket 入站流量: {}", path);
+    }
+}
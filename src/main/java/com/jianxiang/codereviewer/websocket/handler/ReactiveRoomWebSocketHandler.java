@@ -1,8 +1,16 @@
 package com.jianxiang.codereviewer.websocket.handler;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.jianxiang.codereviewer.common.exception.BusinessException;
 import com.jianxiang.codereviewer.common.util.JwtUtil;
+import com.jianxiang.codereviewer.service.comment.ReviewCommentService;
+import com.jianxiang.codereviewer.service.journal.RoomEventJournal;
+import com.jianxiang.codereviewer.service.journal.RoomEventService;
+import com.jianxiang.codereviewer.service.live.LiveDocumentService;
 import com.jianxiang.codereviewer.service.room.RoomReviewService;
+import com.jianxiang.codereviewer.websocket.capture.TrafficRecorder;
 import com.jianxiang.codereviewer.websocket.message.MessageType;
 import com.jianxiang.codereviewer.websocket.message.WebSocketMessage;
 import com.jianxiang.codereviewer.websocket.message.payload.*;
@@ -19,6 +27,8 @@ import reactor.core.publisher.Sinks;
 
 import java.net.URI;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * 响应式 WebSocket 处理器
@@ -33,6 +43,11 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
     private final ObjectMapper objectMapper;
     private final ReactiveWebSocketSessionManager sessionManager;
     private final RoomReviewService roomReviewService;
+    private final ReviewCommentService reviewCommentService;
+    private final RoomEventJournal roomEventJournal;
+    private final RoomEventService roomEventService;
+    private final LiveDocumentService liveDocumentService;
+    private final TrafficRecorder trafficRecorder;
 
     @Override
     public Mono<Void> handle(WebSocketSession session) {
@@ -60,6 +75,7 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
                     // 3. 验证房间存在性
                     return roomReviewService.getRoomByCode(roomCode)
                             .flatMap(room -> {
+                                long connectionId = trafficRecorder.open(roomCode, userId, username);
                                 // 4. 注册会话到 SessionManager
                                 return sessionManager.addSession(roomCode, userId, username, session)
                                         .then(Mono.defer(() -> {
@@ -72,8 +88,10 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
                                         }))
                                         .then(Mono.defer(() -> {
                                             // 7. 处理消息流
-                                            return handleMessageFlow(session, roomCode, userId, username);
-                                        }));
+                                            return handleMessageFlow(session, roomCode, userId, username,
+                                                    connectionId);
+                                        }))
+                                        .doFinally(signalType -> trafficRecorder.close(connectionId));
                             })
                             .doFinally(signalType -> {
                                 // 8. 连接关闭时清理
@@ -178,13 +196,14 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
      * 接收客户端消息并处理
      */
     private Mono<Void> handleMessageFlow(WebSocketSession session, String roomCode,
-                                          Long userId, String username) {
+                                          Long userId, String username, long connectionId) {
         // 接收消息流
         Mono<Void> receiveHandler = session.receive()
                 .filter(msg -> msg.getType() == Type.TEXT)
                 .flatMap(msg -> {
                     String payload = msg.getPayloadAsText();
-                    return handleIncomingMessage(roomCode, userId, username, payload);
+                    trafficRecorder.frame(connectionId, payload);
+                    return handleIncomingMessage(roomCode, session.getId(), userId, username, payload);
                 })
                 .onErrorResume(e -> {
                     log.error("处理消息异常: roomCode={}, userId={}", roomCode, userId, e);
@@ -205,7 +224,7 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
     /**
      * 处理接收到的消息
      */
-    private Mono<Void> handleIncomingMessage(String roomCode, Long userId,
+    private Mono<Void> handleIncomingMessage(String roomCode, String sessionId, Long userId,
                                               String username, String payload) {
         return Mono.fromCallable(() -> {
             try {
@@ -238,7 +257,12 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
                 case CODE_UPDATE -> handleCodeUpdate(roomCode, userId, username, payloadObj);
                 case CODE_CURSOR -> handleCursorPosition(roomCode, userId, username, payloadObj);
                 case COMMENT_ADD -> handleAddComment(roomCode, userId, username, payloadObj);
+                case COMMENT_UPDATE -> handleCommentChange(roomCode, userId, username, payloadObj,
+                        MessageType.COMMENT_UPDATE);
+                case COMMENT_DELETE -> handleCommentChange(roomCode, userId, username, payloadObj,
+                        MessageType.COMMENT_DELETE);
                 case LEAVE_ROOM -> handleLeaveRoom(roomCode, userId, username);
+                case CATCH_UP -> handleCatchUp(roomCode, sessionId, userId, payloadObj);
                 default -> {
                     log.warn("未知消息类型: {}", type);
                     yield Mono.empty();
@@ -280,25 +304,18 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
                         .username(username)
                         .build();
 
-                WebSocketMessage<JoinRoomPayload> message = WebSocketMessage.<JoinRoomPayload>builder()
+                return WebSocketMessage.<JoinRoomPayload>builder()
                         .type(MessageType.JOIN_ROOM)
                         .roomCode(roomCode)
                         .senderId(userId)
                         .senderUsername(username)
                         .payload(payload)
                         .build();
-
-                return objectMapper.writeValueAsString(message);
             } catch (Exception e) {
                 log.error("构建加入消息失败", e);
                 return null;
             }
-        }).flatMap(json -> {
-            if (json != null) {
-                return sessionManager.broadcastToRoom(roomCode, json);
-            }
-            return Mono.empty();
-        });
+        }).flatMap(this::recordAndBroadcast);
     }
 
     /**
@@ -312,25 +329,18 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
                         .username(username)
                         .build();
 
-                WebSocketMessage<JoinRoomPayload> message = WebSocketMessage.<JoinRoomPayload>builder()
+                return WebSocketMessage.<JoinRoomPayload>builder()
                         .type(MessageType.LEAVE_ROOM)
                         .roomCode(roomCode)
                         .senderId(userId)
                         .senderUsername(username)
                         .payload(payload)
                         .build();
-
-                return objectMapper.writeValueAsString(message);
             } catch (Exception e) {
                 log.error("构建离开消息失败", e);
                 return null;
             }
-        }).flatMap(json -> {
-            if (json != null) {
-                return sessionManager.broadcastToRoom(roomCode, json);
-            }
-            return Mono.empty();
-        });
+        }).flatMap(this::recordAndBroadcast);
     }
 
     /**
@@ -342,25 +352,20 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
             try {
                 CodeUpdatePayload payload = objectMapper.convertValue(payloadObj, CodeUpdatePayload.class);
 
-                WebSocketMessage<CodeUpdatePayload> message = WebSocketMessage.<CodeUpdatePayload>builder()
+                return WebSocketMessage.<CodeUpdatePayload>builder()
                         .type(MessageType.CODE_UPDATE)
                         .roomCode(roomCode)
                         .senderId(userId)
                         .senderUsername(username)
                         .payload(payload)
                         .build();
-
-                return objectMapper.writeValueAsString(message);
             } catch (Exception e) {
                 log.error("处理代码更新失败", e);
                 return null;
             }
-        }).flatMap(json -> {
-            if (json != null) {
-                return sessionManager.broadcastToRoom(roomCode, json);
-            }
-            return Mono.empty();
-        });
+        }).flatMap(message -> recordAndBroadcast(message,
+                // 在事件日志的锁内按序号顺序更新实时文档，并发编辑同一文件时不会乱序
+                seq -> liveDocumentService.onCodeUpdate(roomCode, seq, message.getPayload())));
     }
 
     /**
@@ -397,32 +402,148 @@ public class ReactiveRoomWebSocketHandler implements WebSocketHandler {
 
     /**
      * 处理添加评论
+     * 评论分配服务端ID后立即广播（发送者据此确认），写库由写后缓冲异步完成
      */
     private Mono<Void> handleAddComment(String roomCode, Long userId,
                                          String username, Object payloadObj) {
-        return Mono.fromCallable(() -> {
-            try {
-                CommentPayload payload = objectMapper.convertValue(payloadObj, CommentPayload.class);
-
-                WebSocketMessage<CommentPayload> message = WebSocketMessage.<CommentPayload>builder()
+        return Mono.fromCallable(() -> objectMapper.convertValue(payloadObj, CommentPayload.class))
+                .flatMap(payload -> reviewCommentService.addComment(roomCode, userId, payload))
+                .map(saved -> WebSocketMessage.<CommentPayload>builder()
                         .type(MessageType.COMMENT_ADD)
                         .roomCode(roomCode)
                         .senderId(userId)
                         .senderUsername(username)
-                        .payload(payload)
-                        .build();
+                        .payload(saved)
+                        .build())
+                .flatMap(this::recordAndBroadcast)
+                .onErrorResume(e -> {
+                    log.error("处理评论失败: roomCode={}, userId={}, error={}", roomCode, userId, e.getMessage());
+                    String reason = e instanceof BusinessException ? e.getMessage() : "评论提交失败";
+                    return sendError(roomCode, userId, MessageType.COMMENT_ADD, reason);
+                });
+    }
 
-                return objectMapper.writeValueAsString(message);
-            } catch (Exception e) {
-                log.error("处理评论失败", e);
-                return null;
-            }
-        }).flatMap(json -> {
-            if (json != null) {
-                return sessionManager.broadcastToRoom(roomCode, json);
+    /**
+     * 处理修改、删除评论
+     * 修改在合并窗口结束时只广播最新修订（被合并的修改不广播），删除立即广播
+     */
+    private Mono<Void> handleCommentChange(String roomCode, Long userId, String username,
+                                           Object payloadObj, MessageType type) {
+        return Mono.fromCallable(() -> objectMapper.convertValue(payloadObj, CommentPayload.class))
+                .flatMap(payload -> type == MessageType.COMMENT_UPDATE
+                        ? reviewCommentService.updateComment(roomCode, userId, payload)
+                        : reviewCommentService.deleteComment(roomCode, userId, payload))
+                .map(changed -> WebSocketMessage.<CommentPayload>builder()
+                        .type(type)
+                        .roomCode(roomCode)
+                        .senderId(userId)
+                        .senderUsername(username)
+                        .payload(changed)
+                        .build())
+                .flatMap(this::recordAndBroadcast)
+                .onErrorResume(e -> {
+                    log.error("处理评论变更失败: roomCode={}, userId={}, type={}, error={}",
+                            roomCode, userId, type, e.getMessage());
+                    String reason = e instanceof BusinessException ? e.getMessage() : "评论操作失败";
+                    return sendError(roomCode, userId, type, reason);
+                });
+    }
+
+    /**
+     * 处理历史事件追赶：按原消息类型和序号补发事件给请求方，最后回复一条 CATCH_UP 给出续传位置
+     */
+    private Mono<Void> handleCatchUp(String roomCode, String sessionId, Long userId, Object payloadObj) {
+        return Mono.fromCallable(() -> objectMapper.convertValue(payloadObj, CatchUpPayload.class))
+                .flatMap(request -> roomEventService.listEvents(roomCode, userId, request.getAfterSeq(),
+                                request.getSince(), request.getLimit())
+                        .flatMap(page -> {
+                            Flux<String> events = Flux.fromIterable(page.getItems())
+                                    .map(event -> toJson(WebSocketMessage.builder()
+                                            .type(event.getType())
+                                            .roomCode(roomCode)
+                                            .senderId(event.getSenderId())
+                                            .senderUsername(event.getSenderUsername())
+                                            .payload(new RawValue(event.getPayload()))
+                                            .timestamp(event.getTimestamp())
+                                            .seq(event.getSeq())
+                                            .build()));
+                            Long lastSeq = page.getItems().isEmpty()
+                                    ? request.getAfterSeq()
+                                    : page.getItems().get(page.getItems().size() - 1).getSeq();
+                            Mono<String> done = Mono.fromCallable(() -> toJson(
+                                    WebSocketMessage.<CatchUpPayload>builder()
+                                            .type(MessageType.CATCH_UP)
+                                            .roomCode(roomCode)
+                                            .payload(CatchUpPayload.builder()
+                                                    .afterSeq(lastSeq)
+                                                    .hasMore(page.isHasMore())
+                                                    .build())
+                                            .build()));
+                            return sessionManager.sendToSession(roomCode, sessionId, events.concatWith(done));
+                        }))
+                .onErrorResume(e -> {
+                    log.error("处理历史事件追赶失败: roomCode={}, userId={}, error={}",
+                            roomCode, userId, e.getMessage());
+                    String reason = e instanceof BusinessException ? e.getMessage() : "历史事件查询失败";
+                    return sendError(roomCode, userId, MessageType.CATCH_UP, reason);
+                });
+    }
+
+    private String toJson(WebSocketMessage<?> message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化消息失败: " + message.getType(), e);
+        }
+    }
+
+    /**
+     * 写入房间事件日志后广播，消息带上分配的事件序号（日志写入失败只记录错误，不影响广播）
+     */
+    private Mono<Void> recordAndBroadcast(WebSocketMessage<?> message) {
+        return recordAndBroadcast(message, null);
+    }
+
+    /**
+     * 记录并广播，onRecorded 在事件日志的锁内按序号顺序回调；未记录到事件日志时以空序号回调一次
+     */
+    private Mono<Void> recordAndBroadcast(WebSocketMessage<?> message, Consumer<Long> onRecorded) {
+        AtomicBoolean recorded = new AtomicBoolean();
+        Runnable unrecorded = () -> {
+            if (onRecorded != null && recorded.compareAndSet(false, true)) {
+                onRecorded.accept(null);
             }
-            return Mono.empty();
-        });
+        };
+        return roomEventJournal.append(message.getRoomCode(), message.getType(), message.getSenderId(),
+                        message.getSenderUsername(), message.getPayload(),
+                        onRecorded == null ? null : event -> {
+                            recorded.set(true);
+                            onRecorded.accept(event.seq());
+                        })
+                .doOnNext(message::setSeq)
+                .switchIfEmpty(Mono.fromRunnable(unrecorded))
+                .onErrorResume(e -> {
+                    log.error("写入房间事件日志失败: roomCode={}, type={}, error={}",
+                            message.getRoomCode(), message.getType(), e.getMessage());
+                    unrecorded.run();
+                    return Mono.empty();
+                })
+                .then(Mono.fromCallable(() -> objectMapper.writeValueAsString(message)))
+                .flatMap(json -> sessionManager.broadcastToRoom(message.getRoomCode(), json));
+    }
+
+    /**
+     * 向发送者回复错误消息
+     */
+    private Mono<Void> sendError(String roomCode, Long userId, MessageType sourceType, String reason) {
+        return Mono.fromCallable(() -> {
+            WebSocketMessage<Map<String, String>> message = WebSocketMessage.<Map<String, String>>builder()
+                    .type(MessageType.ERROR)
+                    .roomCode(roomCode)
+                    .payload(Map.of("source", sourceType.name(), "message", reason))
+                    .build();
+            return objectMapper.writeValueAsString(message);
+        }).flatMap(json -> sessionManager.sendToUser(roomCode, userId, json));
     }
 
     /**
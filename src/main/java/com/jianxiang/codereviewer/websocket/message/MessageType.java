@@ -8,6 +8,8 @@ public enum MessageType {
     JOIN_ROOM,           // 加入房间
     LEAVE_ROOM,          // 离开房间
     ROOM_MEMBER_UPDATE,  // 房间成员更新
+    ROOM_STATUS_CHANGE,  // 房间状态变更
+    CATCH_UP,            // 历史事件追赶
 
     // 代码同步
     CODE_UPDATE,         // 代码更新
@@ -54,4 +54,9 @@ public class WebSocketMessage<T> {
      */
     @Builder.Default
     private String messageId = UUID.randomUUID().toString();
+
+    /**
+     * 房间事件序号（写入事件日志的消息才有，用于断点续传）
+     */
+    private Long seq;
 }
@@ -0,0 +1,37 @@
+package com.jianxiang.codereviewer.websocket.message.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 历史事件追赶消息载荷
+ * 请求时指定 afterSeq 或 since；回复在补发的事件之后以同类型消息结束，afterSeq 为已补发的最后序号
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatchUpPayload {
+
+    /**
+     * 从该序号之后开始（不含）
+     */
+    private Long afterSeq;
+
+    /**
+     * 从该时间开始（毫秒时间戳，含），指定时忽略 afterSeq
+     */
+    private Long since;
+
+    /**
+     * 最多补发的事件数
+     */
+    private Integer limit;
+
+    /**
+     * 是否还有更多事件（回复时设置，客户端以 afterSeq 继续请求）
+     */
+    private Boolean hasMore;
+}
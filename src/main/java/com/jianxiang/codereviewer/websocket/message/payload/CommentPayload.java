@@ -21,6 +21,11 @@ public class CommentPayload {
      */
     private Long commentId;
 
+    /**
+     * 评论所针对的快照版本号
+     */
+    private Integer snapshotVersion;
+
     /**
      * 文件路径
      */
@@ -41,6 +46,16 @@ public class CommentPayload {
      */
     private Long parentId;
 
+    /**
+     * 修订号（服务端分配，客户端丢弃不大于本地修订号的消息）
+     */
+    private Integer revision;
+
+    /**
+     * 是否已删除
+     */
+    private Boolean deleted;
+
     /**
      * 创建时间
      */
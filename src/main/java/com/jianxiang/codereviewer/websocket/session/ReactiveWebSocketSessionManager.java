@@ -165,6 +165,21 @@ public class ReactiveWebSocketSessionManager {
                 .onErrorResume(e -> Mono.empty());
     }
 
+    /**
+     * 按顺序发送消息给指定连接（历史事件追赶等只回复请求方的消息）
+     */
+    public Mono<Void> sendToSession(String roomCode, String sessionId, Flux<String> messages) {
+        Map<String, SessionInfo> roomSessions = localSessions.get(roomCode);
+        SessionInfo info = roomSessions == null ? null : roomSessions.get(sessionId);
+        if (info == null) {
+            return Mono.empty();
+        }
+
+        return info.session().send(messages.map(info.session()::textMessage))
+                .doOnError(e -> log.error("发送消息给连接失败: roomCode={}, sessionId={}", roomCode, sessionId, e))
+                .onErrorResume(e -> Mono.empty());
+    }
+
     /**
      * 获取房间在线用户列表
      */
@@ -0,0 +1,138 @@
+-- 数据库结构变更脚本（MySQL）
+-- 按顺序追加，部署前手动执行
+
+-- 快照列表元数据：内容大小与行数，列表查询不再读取 content 列
+ALTER TABLE code_snapshot
+    ADD COLUMN content_size BIGINT NULL COMMENT '内容大小（UTF-8 字节数）' AFTER content,
+    ADD COLUMN line_count INT NULL COMMENT '内容行数' AFTER content_size;
+
+UPDATE code_snapshot
+SET content_size = OCTET_LENGTH(content),
+    line_count   = IF(content = '', 0,
+                      LENGTH(content) - LENGTH(REPLACE(content, '\n', ''))
+                          + IF(RIGHT(content, 1) = '\n', 0, 1))
+WHERE content_size IS NULL;
+
+-- 快照内容压缩存储：content_codec 为空的旧数据按原文读取 content 列
+ALTER TABLE code_snapshot
+    MODIFY COLUMN content LONGTEXT NULL COMMENT '代码内容（未压缩存储时使用）',
+    ADD COLUMN content_codec VARCHAR(16) NULL COMMENT '内容编码：RAW/GZIP' AFTER content,
+    ADD COLUMN compressed_content LONGBLOB NULL COMMENT '压缩后的代码内容' AFTER content_codec;
+
+-- 快照内容按哈希寻址存储：相同内容只存一份，code_snapshot 通过 content_hash 引用
+CREATE TABLE IF NOT EXISTS snapshot_blob
+(
+    hash         CHAR(64)    NOT NULL COMMENT '原文 SHA-256（十六进制）',
+    codec        VARCHAR(16) NOT NULL COMMENT '内容编码：RAW/GZIP',
+    data         LONGBLOB    NOT NULL COMMENT '编码后的内容',
+    content_size BIGINT      NOT NULL COMMENT '原文大小（UTF-8 字节数）',
+    create_time  DATETIME    NOT NULL COMMENT '创建时间',
+    PRIMARY KEY (hash)
+) COMMENT '快照内容块';
+
+ALTER TABLE code_snapshot
+    ADD COLUMN content_hash CHAR(64) NULL COMMENT '内容哈希，指向 snapshot_blob' AFTER line_count;
+
+-- 快照增量链：同一文件的连续版本只存行级增量，每隔固定版本数写一次关键帧
+ALTER TABLE code_snapshot
+    ADD COLUMN delta_base_id BIGINT NULL COMMENT '增量基准快照ID，为空表示关键帧' AFTER content_hash,
+    ADD COLUMN delta_depth INT NULL COMMENT '增量链深度，关键帧为0' AFTER delta_base_id,
+    ADD COLUMN delta_hash CHAR(64) NULL COMMENT '增量内容块哈希' AFTER delta_depth,
+    ADD INDEX idx_code_snapshot_delta_base (delta_base_id);
+
+-- 快照版本号计数：每个房间一行，原地自增分配版本号，不再查询 MAX(version)
+-- 计数行在首次分配时按现有最大版本号自动初始化
+CREATE TABLE IF NOT EXISTS room_snapshot_seq
+(
+    room_id      BIGINT NOT NULL COMMENT '房间ID',
+    last_version INT    NOT NULL COMMENT '已分配的最大版本号',
+    PRIMARY KEY (room_id)
+) COMMENT '房间快照版本号计数';
+
+-- 冷数据归档：已结束房间的内容块移到本地段文件，库内只保留位置
+ALTER TABLE snapshot_blob
+    MODIFY COLUMN data LONGBLOB NULL COMMENT '编码后的内容（已归档时为空）',
+    ADD COLUMN segment_id INT NULL COMMENT '归档段文件编号' AFTER content_size,
+    ADD COLUMN segment_offset BIGINT NULL COMMENT '段文件内偏移' AFTER segment_id,
+    ADD COLUMN segment_length INT NULL COMMENT '段文件内长度' AFTER segment_offset;
+
+ALTER TABLE code_snapshot
+    ADD INDEX idx_code_snapshot_content_hash (content_hash),
+    ADD INDEX idx_code_snapshot_delta_hash (delta_hash);
+
+-- 用户参与的房间查询：按 user_id 定位成员行，按 room_id 倒序游标分页
+ALTER TABLE room_member
+    ADD INDEX idx_room_member_user_room (user_id, room_id);
+
+-- 评审评论：ID 由服务端号段分配，写入由写后缓冲批量完成
+CREATE TABLE IF NOT EXISTS review_comment
+(
+    id               BIGINT       NOT NULL COMMENT '评论ID（服务端分配）',
+    room_id          BIGINT       NOT NULL COMMENT '房间ID',
+    snapshot_version INT          NULL COMMENT '评论所针对的快照版本号',
+    file_path        VARCHAR(512) NULL COMMENT '文件路径',
+    line_number      INT          NULL COMMENT '行号',
+    content          TEXT         NOT NULL COMMENT '评论内容',
+    parent_id        BIGINT       NULL COMMENT '父评论ID（回复）',
+    author_id        BIGINT       NOT NULL COMMENT '作者ID',
+    create_time      DATETIME     NOT NULL COMMENT '创建时间',
+    update_time      DATETIME     NOT NULL COMMENT '更新时间',
+    PRIMARY KEY (id),
+    INDEX idx_review_comment_room_file (room_id, file_path, line_number)
+) COMMENT '评审评论';
+
+-- 评论ID号段：单行计数，每次分配一段ID在内存中发放
+CREATE TABLE IF NOT EXISTS comment_id_seq
+(
+    id      TINYINT NOT NULL COMMENT '固定为1',
+    last_id BIGINT  NOT NULL COMMENT '已分配的最大评论ID',
+    PRIMARY KEY (id)
+) COMMENT '评论ID号段计数';
+
+INSERT IGNORE INTO comment_id_seq (id, last_id) VALUES (1, 0);
+
+-- 评论修改与删除：修订号用于丢弃乱序旧版本，删除先写墓碑，过保留期后清理
+ALTER TABLE review_comment
+    ADD COLUMN revision INT NOT NULL DEFAULT 1 COMMENT '修订号（每次修改或删除加一）' AFTER parent_id,
+    ADD COLUMN deleted TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否已删除（墓碑）' AFTER revision,
+    ADD INDEX idx_review_comment_parent (parent_id),
+    ADD INDEX idx_review_comment_tombstone (deleted, update_time);
+
+-- 评论跨版本定位：每个新版本按与上一版本的差异推算已有评论的位置
+CREATE TABLE IF NOT EXISTS comment_anchor
+(
+    id               BIGINT       NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    comment_id       BIGINT       NOT NULL COMMENT '评论ID',
+    room_id          BIGINT       NOT NULL COMMENT '房间ID',
+    snapshot_version INT          NOT NULL COMMENT '快照版本号',
+    file_path        VARCHAR(512) NULL COMMENT '文件路径',
+    line_number      INT          NULL COMMENT '该版本中的行号（已过时为空）',
+    outdated         TINYINT(1)   NOT NULL DEFAULT 0 COMMENT '是否已过时',
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_comment_anchor_comment_version (comment_id, snapshot_version),
+    INDEX idx_comment_anchor_room_version_file (room_id, snapshot_version, file_path)
+) COMMENT '评论跨版本位置';
+
+-- 归档段文件存储标识：多节点共享同一段文件目录时用于识别存储，避免不同存储的段文件编号混淆
+ALTER TABLE snapshot_blob
+    ADD COLUMN segment_store VARCHAR(64) NULL COMMENT '归档段文件存储标识' AFTER content_size;
+
+-- 评论定位进度：每个房间已定位到的版本号，待定位的版本由已分配的版本号推算，重启后可继续
+-- 向更早版本添加评论或版本乱序提交时回退进度，request_seq 防止并发推进覆盖回退
+CREATE TABLE IF NOT EXISTS comment_anchor_progress
+(
+    room_id          BIGINT NOT NULL COMMENT '房间ID',
+    anchored_version INT    NOT NULL COMMENT '已定位到的版本号',
+    request_seq      BIGINT NOT NULL DEFAULT 0 COMMENT '回退请求序号',
+    PRIMARY KEY (room_id)
+) COMMENT '评论跨版本定位进度';
+
+-- 已有房间视为已定位到当前最大版本，避免上线后重算全部历史版本
+INSERT IGNORE INTO comment_anchor_progress (room_id, anchored_version, request_seq)
+SELECT room_id, last_version, 0
+FROM room_snapshot_seq;
+
+-- 快照对应的事件日志位置：创建快照时房间事件日志的最后序号，实时文档据此去重并从该序号之后重放
+-- 旧数据为空，按创建时间去重并从头重放
+ALTER TABLE code_snapshot
+    ADD COLUMN journal_seq BIGINT NULL COMMENT '创建时房间事件日志的最后序号' AFTER description;
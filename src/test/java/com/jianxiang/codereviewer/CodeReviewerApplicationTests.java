@@ -3,7 +3,7 @@ package com.jianxiang.codereviewer;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "snapshot.archive.store-id=test")
 class CodeReviewerApplicationTests {
 
 	@Test
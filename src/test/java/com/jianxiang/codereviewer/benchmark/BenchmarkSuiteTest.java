@@ -0,0 +1,108 @@
+package com.jianxiang.codereviewer.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * WebSocket 消息链路的 JMH 基准：解码、封装序列化、房间扇出、JWT 解析
+ * <p>
+ * 用法:
+ * <pre>
+ * mvn test -Pbench -Dtest=BenchmarkSuiteTest
+ * </pre>
+ * 参数: bench.include 只运行匹配的基准（正则，默认全部）、bench.update-baseline=true 用本次结果覆盖基线
+ * <p>
+ * 预热、测量轮次、fork 数和堆大小固定写在这里，不随命令行变化，保证不同提交的结果可比；
+ * 结果写入 target/jmh/result.json，并与 src/test/resources/benchmark/baseline.json 对比输出耗时和每次操作分配字节数的变化。
+ * 基线只在同一台机器、同一 JDK 上可比，换机器后先更新基线
+ */
+@Tag("bench")
+class BenchmarkSuiteTest {
+
+	private static final Path RESULT = Paths.get("target/jmh/result.json");
+	private static final Path BASELINE = Paths.get("src/test/resources/benchmark/baseline.json");
+	private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void runBenchmarks() throws Exception {
+		Files.createDirectories(RESULT.getParent());
+		Options options = new OptionsBuilder()
+				.include(System.getProperty("bench.include", getClass().getPackageName() + ".*Benchmark"))
+				.forks(1)
+				.jvmArgs("-Xms1g", "-Xmx1g", "-XX:+UseG1GC")
+				.warmupIterations(3)
+				.warmupTime(TimeValue.seconds(2))
+				.measurementIterations(5)
+				.measurementTime(TimeValue.seconds(2))
+				.timeUnit(TimeUnit.NANOSECONDS)
+				.addProfiler(GCProfiler.class)
+				.result(RESULT.toString())
+				.resultFormat(ResultFormatType.JSON)
+				.build();
+		assertFalse(new Runner(options).run().isEmpty(), "没有匹配的基准");
+
+		Map<String, double[]> current = load(RESULT);
+		if (Files.exists(BASELINE)) {
+			compare(load(BASELINE), current);
+		} else {
+			System.out.println("未找到基线 " + BASELINE + "，使用 -Dbench.update-baseline=true 生成");
+		}
+		if (Boolean.getBoolean("bench.update-baseline")) {
+			Files.createDirectories(BASELINE.getParent());
+			Files.copy(RESULT, BASELINE, StandardCopyOption.REPLACE_EXISTING);
+			System.out.println("基线已更新: " + BASELINE);
+		}
+	}
+
+	/**
+	 * 读取 JMH 的 JSON 结果，按“基准名 + 参数”索引，值为 [平均耗时, 每次操作分配字节数]
+	 */
+	private Map<String, double[]> load(Path path) throws Exception {
+		Map<String, double[]> results = new LinkedHashMap<>();
+		for (JsonNode run : objectMapper.readTree(path.toFile())) {
+			StringBuilder key = new StringBuilder(run.path("benchmark").asText()
+					.substring(getClass().getPackageName().length() + 1));
+			run.path("params").properties().forEach(param ->
+					key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+			results.put(key.toString(), new double[]{
+					run.path("primaryMetric").path("score").asDouble(),
+					run.path("secondaryMetrics").path(ALLOC_METRIC).path("score").asDouble(Double.NaN)
+			});
+		}
+		return results;
+	}
+
+	private void compare(Map<String, double[]> baseline, Map<String, double[]> current) {
+		System.out.printf("%-58s %12s %12s %9s %10s %10s%n",
+				"benchmark", "ns/op", "基线 ns/op", "变化", "B/op", "基线 B/op");
+		current.forEach((key, score) -> {
+			double[] base = baseline.get(key);
+			if (base == null) {
+				System.out.printf("%-58s %12.1f %12s %9s %10.0f %10s%n", key, score[0], "-", "-", score[1], "-");
+				return;
+			}
+			System.out.printf("%-58s %12.1f %12.1f %+8.1f%% %10.0f %10.0f%n", key, score[0], base[0],
+					(score[0] / base[0] - 1) * 100, score[1], base[1]);
+		});
+	}
+}
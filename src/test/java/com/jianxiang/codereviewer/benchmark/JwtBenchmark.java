@@ -0,0 +1,50 @@
+package com.jianxiang.codereviewer.benchmark;
+
+import com.jianxiang.codereviewer.common.util.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 解析与验签：parse 为单次解析，handshake 为 WebSocket 握手认证的完整步骤（过期检查 + 取用户ID + 取用户名）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+	private static final String SECRET =
+			"Y29kZS1yZXZpZXdlci1zZWNyZXQta2V5LWZvci1qd3QtdG9rZW4tZ2VuZXJhdGlvbi0yMDI2LXZlcnktbG9uZy1zZWNyZXQta2V5LWF0LWxlYXN0LTI1Ni1iaXRz";
+
+	private JwtUtil jwtUtil;
+	private String token;
+
+	@Setup
+	public void setup() {
+		jwtUtil = new JwtUtil();
+		ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+		ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.DAYS.toMillis(1));
+		ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", TimeUnit.DAYS.toMillis(7));
+		token = jwtUtil.generateToken(1001L, "alice");
+	}
+
+	@Benchmark
+	public Long parse() {
+		return jwtUtil.getUserIdFromToken(token);
+	}
+
+	@Benchmark
+	public void handshake(Blackhole blackhole) {
+		blackhole.consume(jwtUtil.isTokenExpired(token));
+		blackhole.consume(jwtUtil.getUserIdFromToken(token));
+		blackhole.consume(jwtUtil.getUsernameFromToken(token));
+	}
+}
@@ -0,0 +1,96 @@
+package com.jianxiang.codereviewer.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import com.jianxiang.codereviewer.websocket.message.payload.CatchUpPayload;
+import com.jianxiang.codereviewer.websocket.message.payload.CodeUpdatePayload;
+import com.jianxiang.codereviewer.websocket.message.payload.CommentPayload;
+import com.jianxiang.codereviewer.websocket.message.payload.CursorPositionPayload;
+import com.jianxiang.codereviewer.websocket.message.payload.JoinRoomPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站消息解码：与 ReactiveRoomWebSocketHandler 相同的步骤，先解析为 Map 取类型，再把载荷转换为对应类型
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class MessageDecodeBenchmark {
+
+	@Param({"JOIN_ROOM", "LEAVE_ROOM", "CODE_UPDATE", "CODE_CURSOR", "COMMENT_ADD", "COMMENT_UPDATE",
+			"COMMENT_DELETE", "CATCH_UP"})
+	public String type;
+
+	private ObjectMapper objectMapper;
+	private String frame;
+	private Class<?> payloadType;
+
+	@Setup
+	public void setup() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		switch (MessageType.valueOf(type)) {
+			case JOIN_ROOM, LEAVE_ROOM -> {
+				frame = """
+						{"type":"%s","payload":{"userId":10086,"username":"reviewer01",\
+						"avatar":"https://example.com/avatar/10086.png"}}""".formatted(type);
+				payloadType = JoinRoomPayload.class;
+			}
+			case CODE_UPDATE -> {
+				frame = """
+						{"type":"CODE_UPDATE","payload":{"filePath":"src/main/java/com/example/OrderService.java",\
+						"operation":"UPDATE","startLine":42,"endLine":44,"version":3,\
+						"content":"        if (order == null) {\\n            throw new IllegalArgumentException();\\n        }\\n"}}""";
+				payloadType = CodeUpdatePayload.class;
+			}
+			case CODE_CURSOR -> {
+				frame = """
+						{"type":"CODE_CURSOR","payload":{"filePath":"src/main/java/com/example/OrderService.java",\
+						"line":42,"column":17,"color":"#3b82f6"}}""";
+				payloadType = CursorPositionPayload.class;
+			}
+			case COMMENT_ADD -> {
+				frame = """
+						{"type":"COMMENT_ADD","payload":{"snapshotVersion":3,\
+						"filePath":"src/main/java/com/example/OrderService.java","lineNumber":42,\
+						"content":"这里需要判空，否则下游会抛出空指针异常"}}""";
+				payloadType = CommentPayload.class;
+			}
+			case COMMENT_UPDATE -> {
+				frame = """
+						{"type":"COMMENT_UPDATE","payload":{"commentId":5120,"revision":2,\
+						"content":"这里需要判空，否则下游会抛出空指针异常；建议在入口统一校验"}}""";
+				payloadType = CommentPayload.class;
+			}
+			case COMMENT_DELETE -> {
+				frame = """
+						{"type":"COMMENT_DELETE","payload":{"commentId":5120,"revision":3}}""";
+				payloadType = CommentPayload.class;
+			}
+			case CATCH_UP -> {
+				frame = """
+						{"type":"CATCH_UP","payload":{"afterSeq":1024,"limit":100}}""";
+				payloadType = CatchUpPayload.class;
+			}
+			default -> throw new IllegalArgumentException(type);
+		}
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public Object decode() throws Exception {
+		Map<String, Object> message = objectMapper.readValue(frame, Map.class);
+		MessageType.valueOf((String) message.get("type"));
+		return objectMapper.convertValue(message.get("payload"), payloadType);
+	}
+}
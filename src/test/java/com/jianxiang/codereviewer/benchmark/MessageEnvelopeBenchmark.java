@@ -0,0 +1,62 @@
+package com.jianxiang.codereviewer.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import com.jianxiang.codereviewer.websocket.message.WebSocketMessage;
+import com.jianxiang.codereviewer.websocket.message.payload.CodeUpdatePayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站消息封装：构建 WebSocketMessage（含默认的时间戳和 UUID 消息ID）以及序列化为广播的 JSON
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class MessageEnvelopeBenchmark {
+
+	private ObjectMapper objectMapper;
+	private CodeUpdatePayload payload;
+
+	@Setup
+	public void setup() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		payload = CodeUpdatePayload.builder()
+				.filePath("src/main/java/com/example/OrderService.java")
+				.operation("UPDATE")
+				.startLine(42)
+				.endLine(44)
+				.version(3L)
+				.content("        if (order == null) {\n            throw new IllegalArgumentException();\n        }\n")
+				.build();
+	}
+
+	@Benchmark
+	public WebSocketMessage<CodeUpdatePayload> build() {
+		return envelope();
+	}
+
+	@Benchmark
+	public String buildAndSerialize() throws Exception {
+		return objectMapper.writeValueAsString(envelope());
+	}
+
+	private WebSocketMessage<CodeUpdatePayload> envelope() {
+		return WebSocketMessage.<CodeUpdatePayload>builder()
+				.type(MessageType.CODE_UPDATE)
+				.roomCode("ROOM01")
+				.senderId(1001L)
+				.senderUsername("alice")
+				.payload(payload)
+				.seq(4096L)
+				.build();
+	}
+}
@@ -0,0 +1,68 @@
+package com.jianxiang.codereviewer.benchmark;
+
+import com.jianxiang.codereviewer.websocket.session.ReactiveWebSocketSessionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 房间广播扇出：一条消息经房间 Sink 发给 N 个订阅者
+ * broadcast 走 getMessageFlux（每个订阅者按 sessionId 过滤）；emitUnfiltered 为同样订阅数的裸 Sink，二者之差即过滤开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SessionFanOutBenchmark {
+
+	private static final String ROOM_CODE = "ROOM01";
+	private static final String MESSAGE = """
+			{"type":"CODE_CURSOR","roomCode":"ROOM01","senderId":1001,"senderUsername":"alice",\
+			"payload":{"filePath":"src/main/java/com/example/OrderService.java","line":42,"column":17,\
+			"color":"#3b82f6"},"timestamp":"2026-10-19T10:15:30.123","messageId":"6f1c2a9e-3b5d-4c8f-9a7e-1d2b3c4d5e6f"}""";
+
+	@Param({"1", "10", "100"})
+	public int subscribers;
+
+	private ReactiveWebSocketSessionManager sessionManager;
+	private Sinks.Many<String> plainSink;
+	private final List<Disposable> subscriptions = new ArrayList<>();
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		// 扇出路径不访问 Redis
+		sessionManager = new ReactiveWebSocketSessionManager(null);
+		plainSink = Sinks.many().multicast().onBackpressureBuffer();
+		for (int i = 0; i < subscribers; i++) {
+			subscriptions.add(sessionManager.getMessageFlux(ROOM_CODE, "session-" + i).subscribe(blackhole::consume));
+			subscriptions.add(plainSink.asFlux().subscribe(blackhole::consume));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		subscriptions.forEach(Disposable::dispose);
+	}
+
+	@Benchmark
+	public void broadcast() {
+		sessionManager.broadcastToRoom(ROOM_CODE, MESSAGE).subscribe();
+	}
+
+	@Benchmark
+	public Sinks.EmitResult emitUnfiltered() {
+		return plainSink.tryEmitNext(MESSAGE);
+	}
+}
@@ -0,0 +1,78 @@
+package com.jianxiang.codereviewer.common.diff;
+
+import com.jianxiang.codereviewer.common.util.ContentUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineDeltaTest {
+
+	@Test
+	void diffFindsShortestEditScript() {
+		List<String> a = List.of("a", "b", "c", "a", "b", "b", "a");
+		List<String> b = List.of("c", "b", "a", "b", "a", "c");
+
+		int changed = MyersDiff.diff(a, b).stream()
+				.filter(edit -> edit.type() != MyersDiff.Type.EQUAL)
+				.mapToInt(edit -> edit.aLength() + edit.bLength())
+				.sum();
+		// Myers 论文中的经典例子，最短编辑距离为 5
+		assertEquals(5, changed);
+	}
+
+	@Test
+	void deltaRoundTripsRandomEdits() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			List<String> base = randomLines(random, random.nextInt(60));
+			List<String> target = mutate(random, base);
+			String baseText = String.join("", base);
+			String targetText = String.join("", target) + (random.nextBoolean() ? "tail-without-newline" : "");
+
+			byte[] delta = LineDelta.encode(ContentUtil.splitLines(baseText), ContentUtil.splitLines(targetText));
+			assertEquals(targetText, LineDelta.apply(baseText, delta));
+		}
+	}
+
+	@Test
+	void smallEditProducesSmallDelta() {
+		StringBuilder base = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			base.append("line number ").append(i).append('\n');
+		}
+		String target = base.toString().replace("line number 1000\n", "line number 1000 changed\n");
+
+		byte[] delta = LineDelta.encode(ContentUtil.splitLines(base.toString()), ContentUtil.splitLines(target));
+		assertTrue(delta.length < 64, "delta size " + delta.length);
+		assertEquals(target, LineDelta.apply(base.toString(), delta));
+	}
+
+	private static List<String> randomLines(Random random, int count) {
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			lines.add("l" + random.nextInt(8) + "\n");
+		}
+		return lines;
+	}
+
+	private static List<String> mutate(Random random, List<String> base) {
+		List<String> result = new ArrayList<>(base);
+		int edits = random.nextInt(10);
+		for (int i = 0; i < edits; i++) {
+			int op = random.nextInt(3);
+			if (op == 0 || result.isEmpty()) {
+				result.add(random.nextInt(result.size() + 1), "n" + random.nextInt(8) + "\n");
+			} else if (op == 1) {
+				result.remove(random.nextInt(result.size()));
+			} else {
+				result.set(random.nextInt(result.size()), "m" + random.nextInt(8) + "\n");
+			}
+		}
+		return result;
+	}
+}
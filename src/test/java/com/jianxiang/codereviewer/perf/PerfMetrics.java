@@ -0,0 +1,47 @@
+package com.jianxiang.codereviewer.perf;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 性能测试的延迟统计：按名称和消息类型记录，结束时输出分位数
+ */
+@Slf4j
+final class PerfMetrics {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	void record(String name, String type, long nanos) {
+		Timer.builder(name)
+				.tag("type", type)
+				.publishPercentiles(0.5, 0.9, 0.99, 0.999)
+				// 整个测试期间的分布，不按默认的 2 分钟窗口衰减
+				.distributionStatisticExpiry(Duration.ofDays(1))
+				.distributionStatisticBufferLength(1)
+				.register(registry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	void print() {
+		registry.getMeters().stream()
+				.filter(Timer.class::isInstance)
+				.map(Timer.class::cast)
+				.sorted(Comparator.comparing(timer -> timer.getId().getName() + timer.getId().getTag("type")))
+				.forEach(timer -> {
+					StringBuilder line = new StringBuilder(String.format("%-16s %-14s count=%-9d",
+							timer.getId().getName(), timer.getId().getTag("type"), timer.count()));
+					for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+						line.append(String.format(" p%s=%.2fms", percentile.percentile() * 100,
+								percentile.value(TimeUnit.MILLISECONDS)));
+					}
+					line.append(String.format(" max=%.2fms", timer.max(TimeUnit.MILLISECONDS)));
+					log.info("{}", line);
+				});
+	}
+}
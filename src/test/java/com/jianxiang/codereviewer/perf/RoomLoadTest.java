@@ -0,0 +1,398 @@
+package com.jianxiang.codereviewer.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.common.util.JwtUtil;
+import com.jianxiang.codereviewer.domain.entity.ReviewRoom;
+import com.jianxiang.codereviewer.domain.enums.RoomStatus;
+import com.jianxiang.codereviewer.domain.repository.ReviewRoomRepository;
+import com.jianxiang.codereviewer.service.comment.CommentWriteBehindBuffer;
+import com.jianxiang.codereviewer.service.journal.RoomEventJournal;
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import com.jianxiang.codereviewer.websocket.message.payload.CodeUpdatePayload;
+import com.jianxiang.codereviewer.websocket.message.payload.CommentPayload;
+import com.jianxiang.codereviewer.websocket.message.payload.CursorPositionPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 进程内压测：在本进程启动服务，N 个房间 × 每房间 M 个 WebSocket 客户端按比例发送代码更新、光标、评论
+ * <p>
+ * 服务依赖的 MySQL、Redis 使用本地替身（如 {@code docker run -p 3306:3306 -e MYSQL_ROOT_PASSWORD=root mysql:8}、
+ * {@code docker run -p 6379:6379 redis:7}，通过 DB_URL、REDIS_HOST 等环境变量指向它们），不可用时跳过:
+ * <pre>
+ * mvn test -Pperf -Dtest=RoomLoadTest -Dload.rooms=20 -Dload.clients=100 -Dload.duration=60
+ * </pre>
+ * 参数: load.rooms 房间数（默认 10）、load.clients 每个房间的客户端数（默认 50）、load.duration 发送时长秒数（默认 30）、
+ * load.rate 每个客户端每秒发送的消息数（默认 1）、load.mix 消息比例（默认 CODE_UPDATE:2,CODE_CURSOR:7,COMMENT_ADD:1）、
+ * load.seed 随机种子（默认 1，相同参数下发送序列相同）
+ * <p>
+ * 输出连接延迟（建立连接到收到 WELCOME）、扇出延迟（发送到房间内每个客户端收到广播，按消息类型）、投递率，
+ * 以及进程 CPU、堆内存和 GC 的采样（压测客户端与服务在同一进程，CPU 包含客户端开销）
+ */
+@Slf4j
+@Tag("perf")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"journal.dir=target/perf/journal",
+		"capture.enabled=false",
+		"snapshot.archive.store-id=perf",
+		"live.recovery.enabled=false",
+		"logging.level.root=WARN",
+		"logging.level.com.jianxiang.codereviewer=WARN",
+		"logging.level.com.jianxiang.codereviewer.perf=INFO",
+		"logging.level.io.r2dbc.mysql=WARN",
+		"logging.level.org.springframework.data.r2dbc=WARN",
+		"logging.level.org.springframework.security=WARN"
+})
+class RoomLoadTest {
+
+	/**
+	 * 消息中携带的编号标记，接收方按编号找到发送时间（同一进程内 nanoTime 可直接相减）
+	 */
+	private static final String MARKER = "load#";
+
+	/**
+	 * 压测结束后按房间清理的表（评论、评论定位、成员、快照）
+	 */
+	private static final List<String> ROOM_TABLES = List.of("review_comment", "comment_anchor",
+			"comment_anchor_progress", "room_member", "code_snapshot", "room_snapshot_seq");
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private ReviewRoomRepository reviewRoomRepository;
+
+	@Autowired
+	private ReactiveRedisTemplate<String, Object> redisTemplate;
+
+	@Autowired
+	private DatabaseClient databaseClient;
+
+	@Autowired
+	private CommentWriteBehindBuffer commentWriteBehindBuffer;
+
+	@Autowired
+	private RoomEventJournal roomEventJournal;
+
+	private final PerfMetrics metrics = new PerfMetrics();
+	private final Map<Long, Sent> sent = new ConcurrentHashMap<>();
+	private final AtomicLong messageIds = new AtomicLong();
+	private final AtomicLong expectedDeliveries = new AtomicLong();
+	private final AtomicLong deliveries = new AtomicLong();
+
+	private record Sent(MessageType type, long nanos) {}
+
+	@Test
+	void generateLoad() throws Exception {
+		int rooms = Integer.getInteger("load.rooms", 10);
+		int clients = Integer.getInteger("load.clients", 50);
+		int duration = Integer.getInteger("load.duration", 30);
+		double rate = Double.parseDouble(System.getProperty("load.rate", "1"));
+		List<MessageType> mix = parseMix(System.getProperty("load.mix", "CODE_UPDATE:2,CODE_CURSOR:7,COMMENT_ADD:1"));
+		long seed = Long.getLong("load.seed", 1L);
+
+		assumeTrue(standInsAvailable(), "MySQL 或 Redis 不可用，跳过压测");
+
+		List<ReviewRoom> seeded = seedRooms(rooms);
+		ResourceSampler sampler = new ResourceSampler();
+		List<Client> all = new ArrayList<>();
+		try {
+			ReactorNettyWebSocketClient webSocketClient = new ReactorNettyWebSocketClient();
+			CountDownLatch connected = new CountDownLatch(rooms * clients);
+			Map<String, AtomicInteger> roomSizes = new ConcurrentHashMap<>();
+			long userId = 1_000_000L;
+			for (ReviewRoom room : seeded) {
+				AtomicInteger size = roomSizes.computeIfAbsent(room.getRoomCode(), key -> new AtomicInteger());
+				for (int i = 0; i < clients; i++) {
+					all.add(new Client(webSocketClient, room.getRoomCode(), ++userId, size, connected));
+				}
+			}
+			boolean allConnected = connected.await(Math.max(30, rooms * clients / 50), TimeUnit.SECONDS);
+			log.info("已连接 {}/{} 个客户端", rooms * clients - connected.getCount(), rooms * clients);
+
+			Random random = new Random(seed);
+			long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+			List<Disposable> senders = new ArrayList<>();
+			for (Client client : all) {
+				// 每个客户端错开起始时间，避免同一时刻集中发送
+				long offset = (long) (random.nextDouble() * periodNanos);
+				Random clientRandom = new Random(random.nextLong());
+				senders.add(Flux.interval(Duration.ofNanos(offset), Duration.ofNanos(periodNanos))
+						.take(Duration.ofSeconds(duration))
+						.subscribe(tick -> client.send(mix.get(clientRandom.nextInt(mix.size())), clientRandom)));
+			}
+			Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+			// 等待最后一批广播送达
+			Thread.sleep(2000);
+			senders.forEach(Disposable::dispose);
+			sampler.stop();
+
+			report(rooms, clients, sampler);
+			assertTrue(allConnected, "部分客户端未能在超时时间内连接");
+		} finally {
+			all.forEach(Client::close);
+			sampler.stop();
+			cleanUp(seeded);
+		}
+	}
+
+	/**
+	 * 删除压测产生的数据：先写入缓冲中的评论（避免清理后再写入），再按房间删除各表的行、房间和事件日志
+	 * 某张表不存在（未执行对应的结构变更）时跳过该表
+	 */
+	private void cleanUp(List<ReviewRoom> seeded) {
+		List<Long> roomIds = seeded.stream().map(ReviewRoom::getId).toList();
+		commentWriteBehindBuffer.flushAll()
+				.onErrorResume(e -> {
+					log.warn("写入缓冲评论失败: {}", e.getMessage());
+					return Mono.just(0L);
+				})
+				.block(Duration.ofSeconds(30));
+		Flux.fromIterable(ROOM_TABLES)
+				.concatMap(table -> databaseClient.sql("DELETE FROM " + table + " WHERE room_id IN (:roomIds)")
+						.bind("roomIds", roomIds)
+						.fetch()
+						.rowsUpdated()
+						.onErrorResume(e -> {
+							log.warn("清理压测数据失败: table={}, error={}", table, e.getMessage());
+							return Mono.just(0L);
+						}))
+				.then(reviewRoomRepository.deleteAll(seeded))
+				.block(Duration.ofSeconds(60));
+		seeded.forEach(room -> roomEventJournal.delete(room.getRoomCode()));
+	}
+
+	private boolean standInsAvailable() {
+		try {
+			reviewRoomRepository.count().block(Duration.ofSeconds(5));
+			redisTemplate.hasKey("load:ping").block(Duration.ofSeconds(5));
+			return true;
+		} catch (RuntimeException e) {
+			log.warn("本地替身不可用: {}", e.getMessage());
+			return false;
+		}
+	}
+
+	private List<ReviewRoom> seedRooms(int rooms) {
+		String prefix = "LOAD" + Long.toString(System.currentTimeMillis(), 36).toUpperCase();
+		return Flux.range(0, rooms)
+				.map(i -> {
+					LocalDateTime now = LocalDateTime.now();
+					ReviewRoom room = new ReviewRoom();
+					room.setName("压测房间 " + i);
+					room.setRoomCode(prefix + i);
+					room.setOwnerId(1L);
+					room.setStatus(RoomStatus.IN_PROGRESS.getCode());
+					room.setCreateTime(now);
+					room.setUpdateTime(now);
+					return room;
+				})
+				.concatMap(reviewRoomRepository::save)
+				.collectList()
+				.block(Duration.ofSeconds(30));
+	}
+
+	private static List<MessageType> parseMix(String mix) {
+		List<MessageType> weighted = new ArrayList<>();
+		for (String part : mix.split(",")) {
+			String[] pair = part.trim().split(":");
+			MessageType type = MessageType.valueOf(pair[0].trim());
+			int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+			for (int i = 0; i < weight; i++) {
+				weighted.add(type);
+			}
+		}
+		return weighted;
+	}
+
+	private void report(int rooms, int clients, ResourceSampler sampler) {
+		log.info("压测完成: {} 个房间 × {} 个客户端，发送 {} 条消息，投递 {}/{}（{}%）",
+				rooms, clients, sent.size(), deliveries.get(), expectedDeliveries.get(), String.format("%.2f",
+						expectedDeliveries.get() == 0 ? 0 : deliveries.get() * 100.0 / expectedDeliveries.get()));
+		metrics.print();
+		sampler.print();
+	}
+
+	/**
+	 * 一个压测客户端：连接建立后通过单播 Sink 发送，收到的广播按编号记录扇出延迟
+	 */
+	private final class Client {
+
+		private final long userId;
+		private final AtomicInteger roomSize;
+		private final Sinks.Many<String> outbound = Sinks.many().unicast().onBackpressureBuffer();
+		private final Disposable session;
+		private volatile boolean ready;
+
+		Client(ReactorNettyWebSocketClient webSocketClient, String roomCode, long userId, AtomicInteger roomSize,
+			   CountDownLatch connected) {
+			this.userId = userId;
+			this.roomSize = roomSize;
+			String token = jwtUtil.generateToken(userId, "load" + userId);
+			URI uri = URI.create("ws://localhost:" + port + "/ws/room/" + roomCode + "?token=" + token);
+			long connectNanos = System.nanoTime();
+			this.session = webSocketClient.execute(uri, session -> session.send(outbound.asFlux().map(session::textMessage))
+							.and(session.receive()
+									.doOnNext(message -> {
+										String text = message.getPayloadAsText();
+										if (!ready && text.contains("\"WELCOME\"")) {
+											metrics.record("load.connect", "WELCOME", System.nanoTime() - connectNanos);
+											ready = true;
+											roomSize.incrementAndGet();
+											connected.countDown();
+										} else {
+											onBroadcast(text);
+										}
+									})
+									.then()))
+					.onErrorResume(e -> {
+						log.warn("压测连接失败: {}", e.getMessage());
+						return Mono.empty();
+					})
+					.subscribe();
+		}
+
+		void send(MessageType type, Random random) {
+			if (!ready) {
+				return;
+			}
+			long id = messageIds.incrementAndGet();
+			String marker = MARKER + id + "#";
+			Object payload = switch (type) {
+				case CODE_UPDATE -> CodeUpdatePayload.builder()
+						.filePath("src/Main" + random.nextInt(5) + ".java")
+						.operation("INSERT")
+						.startLine(1 + random.nextInt(200))
+						.content("// " + marker + "\n")
+						.build();
+				case CODE_CURSOR -> CursorPositionPayload.builder()
+						.filePath("src/Main" + random.nextInt(5) + ".java")
+						.line(1 + random.nextInt(200))
+						.column(random.nextInt(80))
+						.color(marker)
+						.build();
+				case COMMENT_ADD -> CommentPayload.builder()
+						.filePath("src/Main" + random.nextInt(5) + ".java")
+						.lineNumber(1 + random.nextInt(200))
+						.content("压测评论 " + marker)
+						.build();
+				default -> throw new IllegalArgumentException("不支持的压测消息类型: " + type);
+			};
+			String json;
+			try {
+				json = objectMapper.writeValueAsString(Map.of("type", type.name(), "payload", payload));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			sent.put(id, new Sent(type, System.nanoTime()));
+			expectedDeliveries.addAndGet(roomSize.get());
+			outbound.tryEmitNext(json);
+		}
+
+		void close() {
+			outbound.tryEmitComplete();
+			session.dispose();
+		}
+
+		private void onBroadcast(String text) {
+			long now = System.nanoTime();
+			int start = text.indexOf(MARKER);
+			if (start < 0) {
+				return;
+			}
+			int end = text.indexOf('#', start + MARKER.length());
+			Sent message = sent.get(Long.parseLong(text.substring(start + MARKER.length(), end)));
+			if (message != null) {
+				deliveries.incrementAndGet();
+				metrics.record("load.fanout", message.type().name(), now - message.nanos());
+			}
+		}
+	}
+
+	/**
+	 * 每秒采样进程 CPU 使用率、堆内存和 GC
+	 */
+	private static final class ResourceSampler {
+
+		private final com.sun.management.OperatingSystemMXBean os =
+				(com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+		private final long gcCountStart = gcCount();
+		private final long gcTimeStart = gcTime();
+		private final Disposable sampling;
+		private double cpuSum;
+		private double cpuMax;
+		private long heapMax;
+		private int samples;
+
+		ResourceSampler() {
+			sampling = Flux.interval(Duration.ofSeconds(1)).subscribe(tick -> sample());
+		}
+
+		synchronized void sample() {
+			double cpu = os.getProcessCpuLoad();
+			long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+			if (cpu >= 0) {
+				cpuSum += cpu;
+				cpuMax = Math.max(cpuMax, cpu);
+				samples++;
+			}
+			heapMax = Math.max(heapMax, heap);
+		}
+
+		void stop() {
+			sampling.dispose();
+		}
+
+		synchronized void print() {
+			log.info("进程 CPU: 平均 {}%，峰值 {}%（{} 核）；堆内存峰值 {} MB；GC {} 次，共 {} ms",
+					String.format("%.1f", samples == 0 ? 0 : cpuSum / samples * 100),
+					String.format("%.1f", cpuMax * 100), os.getAvailableProcessors(), heapMax / (1024 * 1024),
+					gcCount() - gcCountStart, gcTime() - gcTimeStart);
+		}
+
+		private static long gcCount() {
+			return ManagementFactory.getGarbageCollectorMXBeans().stream()
+					.mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+		}
+
+		private static long gcTime() {
+			return ManagementFactory.getGarbageCollectorMXBeans().stream()
+					.mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.jianxiang.codereviewer.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.common.util.JwtUtil;
+import com.jianxiang.codereviewer.websocket.capture.TrafficCapture;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 流量回放：按抓包文件中的连接和时间间隔，通过真实 WebSocket 连接驱动本地实例，输出延迟分布
+ * <p>
+ * 用法（先以与录制环境相同的 jwt.secret 启动本地实例，MySQL、Redis 可用本地替身，
+ * 如 {@code docker run -p 3306:3306 -e MYSQL_ROOT_PASSWORD=root mysql:8}、{@code docker run -p 6379:6379 redis:7}，
+ * 通过 DB_URL、REDIS_HOST 等环境变量指向它们）:
+ * <pre>
+ * mvn test -Pperf -Dtest=TrafficReplayTest -Dreplay.capture=data/capture/capture-xxx.rcap -Dreplay.speed=4
+ * </pre>
+ * 参数: replay.capture 抓包文件（必填）、replay.target 实例地址（默认 ws://localhost:8080）、
+ * replay.speed 回放倍速（默认 1）、replay.room 把所有连接回放到指定房间（本地替身库只准备一个房间时使用）、
+ * replay.jwt-secret 签发令牌的密钥（默认取 application.yml 的默认值）
+ * <p>
+ * 延迟为客户端发出一帧到收到服务端对该帧的广播（同类型、同发送者）的时间；连接延迟为建立连接到收到 WELCOME 的时间
+ */
+@Slf4j
+@Tag("perf")
+class TrafficReplayTest {
+
+	private static final String DEFAULT_SECRET =
+			"Y29kZS1yZXZpZXdlci1zZWNyZXQta2V5LWZvci1qd3QtdG9rZW4tZ2VuZXJhdGlvbi0yMDI2LXZlcnktbG9uZy1zZWNyZXQta2V5LWF0LWxlYXN0LTI1Ni1iaXRz";
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final PerfMetrics metrics = new PerfMetrics();
+	private final AtomicLong unmatched = new AtomicLong();
+
+	@Test
+	void replayCapture() throws Exception {
+		String capture = System.getProperty("replay.capture");
+		assumeTrue(capture != null, "未指定 replay.capture，跳过流量回放");
+		String target = System.getProperty("replay.target", "ws://localhost:8080");
+		double speed = Double.parseDouble(System.getProperty("replay.speed", "1"));
+		String room = System.getProperty("replay.room");
+
+		JwtUtil jwtUtil = new JwtUtil();
+		ReflectionTestUtils.setField(jwtUtil, "secret", System.getProperty("replay.jwt-secret", DEFAULT_SECRET));
+		ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.DAYS.toMillis(1));
+		ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", TimeUnit.DAYS.toMillis(1));
+
+		ReactorNettyWebSocketClient client = new ReactorNettyWebSocketClient();
+		Map<Long, Connection> connections = new HashMap<>();
+		long frames = 0;
+		try (TrafficCapture.Reader reader = TrafficCapture.open(Paths.get(capture))) {
+			long startNanos = System.nanoTime();
+			Long firstOffset = null;
+			TrafficCapture.Record record;
+			while ((record = reader.next()) != null) {
+				if (firstOffset == null) {
+					firstOffset = record.offsetMicros();
+				}
+				// 按录制时的间隔（除以倍速）发出，保持每个连接内的帧顺序
+				long dueNanos = startNanos + (long) ((record.offsetMicros() - firstOffset) * 1000 / speed);
+				long waitNanos = dueNanos - System.nanoTime();
+				if (waitNanos > 0) {
+					TimeUnit.NANOSECONDS.sleep(waitNanos);
+				}
+				switch (record.kind()) {
+					case OPEN -> {
+						String roomCode = room != null ? room : record.roomCode();
+						String token = jwtUtil.generateToken(record.userId(), record.username());
+						URI uri = URI.create(target + "/ws/room/" + roomCode + "?token="
+								+ URLEncoder.encode(token, StandardCharsets.UTF_8));
+						connections.put(record.connectionId(), new Connection(client, uri, record.userId()));
+					}
+					case FRAME -> {
+						Connection connection = connections.get(record.connectionId());
+						if (connection != null) {
+							connection.send(record.payload());
+							frames++;
+						}
+					}
+					case CLOSE -> {
+						Connection connection = connections.remove(record.connectionId());
+						if (connection != null) {
+							connection.close();
+						}
+					}
+				}
+			}
+		}
+		// 等待最后一批广播返回后关闭剩余连接
+		Thread.sleep(2000);
+		connections.values().forEach(Connection::close);
+
+		report(frames);
+		assertTrue(frames > 0, "抓包文件中没有可回放的帧");
+	}
+
+	private void report(long frames) {
+		log.info("回放完成: 发送 {} 帧，未收到广播 {} 帧", frames, unmatched.get());
+		metrics.print();
+	}
+
+	/**
+	 * 一个回放连接：录制的帧经单播 Sink 按顺序发出，收到的广播与本连接发出的帧按类型依次配对
+	 */
+	private final class Connection {
+
+		private final Long userId;
+		private final Sinks.Many<String> outbound = Sinks.many().unicast().onBackpressureBuffer();
+		private final Map<String, Deque<Long>> sent = new ConcurrentHashMap<>();
+		private final Disposable session;
+
+		Connection(ReactorNettyWebSocketClient client, URI uri, Long userId) {
+			this.userId = userId;
+			long connectNanos = System.nanoTime();
+			this.session = client.execute(uri, session -> session.send(outbound.asFlux().map(session::textMessage))
+							.and(session.receive()
+									.doOnNext(message -> onMessage(message.getPayloadAsText(), connectNanos))
+									.then()))
+					.onErrorResume(e -> {
+						log.warn("回放连接失败: {}, {}", uri.getPath(), e.getMessage());
+						return Mono.empty();
+					})
+					.subscribe();
+		}
+
+		void send(String payload) {
+			String type = type(payload);
+			if (type != null) {
+				Deque<Long> queue = sent.computeIfAbsent(type, key -> new ArrayDeque<>());
+				synchronized (queue) {
+					queue.add(System.nanoTime());
+				}
+			}
+			outbound.tryEmitNext(payload);
+		}
+
+		void close() {
+			outbound.tryEmitComplete();
+			sent.values().forEach(queue -> {
+				synchronized (queue) {
+					unmatched.addAndGet(queue.size());
+				}
+			});
+			session.dispose();
+		}
+
+		private void onMessage(String text, long connectNanos) {
+			long now = System.nanoTime();
+			JsonNode message;
+			try {
+				message = objectMapper.readTree(text);
+			} catch (Exception e) {
+				return;
+			}
+			String type = message.path("type").asText();
+			if ("WELCOME".equals(type)) {
+				metrics.record("replay.connect", "WELCOME", now - connectNanos);
+				return;
+			}
+			if (userId == null || message.path("senderId").asLong() != userId) {
+				return;
+			}
+			Deque<Long> queue = sent.get(type);
+			if (queue == null) {
+				return;
+			}
+			Long sentNanos;
+			synchronized (queue) {
+				sentNanos = queue.poll();
+			}
+			if (sentNanos != null) {
+				metrics.record("replay.latency", type, now - sentNanos);
+			}
+		}
+
+		private String type(String payload) {
+			try {
+				return objectMapper.readTree(payload).path("type").asText(null);
+			} catch (Exception e) {
+				return null;
+			}
+		}
+	}
+}
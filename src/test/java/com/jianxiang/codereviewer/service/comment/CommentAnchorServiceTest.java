@@ -0,0 +1,137 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.jianxiang.codereviewer.common.diff.MyersDiff;
+import com.jianxiang.codereviewer.domain.entity.CommentAnchor;
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommentAnchorServiceTest {
+
+	@Test
+	void mapsUnchangedLinesAndMarksDeletedOrRewrittenLines() {
+		List<String> oldLines = List.of("a\n", "b\n", "c\n", "d\n", "e\n");
+		List<String> newLines = List.of("new\n", "a\n", "c\n", "D\n", "e\n");
+
+		int[] lineMap = CommentAnchorService.mapLines(MyersDiff.diff(oldLines, newLines), oldLines.size());
+
+		// a 下移一行，b 被删除，c 跟随，d 被改写，e 保持在末尾
+		assertArrayEquals(new int[]{1, -1, 2, -1, 4}, lineMap);
+	}
+
+	@Test
+	void relocateKeepsOutdatedAndRejectsOutOfRangeLines() {
+		List<CommentAnchorService.Position> positions = List.of(
+				new CommentAnchorService.Position(1L, 1, false),
+				new CommentAnchorService.Position(2L, 3, false),
+				new CommentAnchorService.Position(3L, 4, false),
+				new CommentAnchorService.Position(4L, 5, true),
+				new CommentAnchorService.Position(5L, 99, false));
+
+		List<CommentAnchor> anchors = CommentAnchorService.relocate(positions,
+				"a\nb\nc\nd\ne\n", "new\na\nc\nD\ne\n", 1L, 2, "A.java");
+
+		assertEquals(5, anchors.size());
+		assertEquals(2, anchors.get(0).getLineNumber());
+		assertEquals(3, anchors.get(1).getLineNumber());
+		// 所在行被改写
+		assertNull(anchors.get(2).getLineNumber());
+		assertTrue(anchors.get(2).getOutdated());
+		// 已过时的评论即使原行号仍存在也保持过时
+		assertTrue(anchors.get(3).getOutdated());
+		assertTrue(anchors.get(4).getOutdated());
+		assertEquals(2, anchors.get(0).getSnapshotVersion());
+		assertEquals("A.java", anchors.get(0).getFilePath());
+	}
+
+	@Test
+	void sourcePositionsMergesCarriedAnchorsWithDirectTopLevelComments() {
+		CommentLineIndex index = new CommentLineIndex();
+		index.merge(comment(10L, null, 2, "A.java", 5));
+		index.merge(comment(11L, 10L, 2, "A.java", 5));
+		index.merge(comment(12L, null, 2, "B.java", 5));
+		ReviewComment deleted = comment(13L, null, 2, "A.java", 6);
+		deleted.setDeleted(true);
+		index.merge(deleted);
+		index.merge(comment(20L, null, 1, "A.java", 3));
+		ReviewComment deletedEarlier = comment(21L, null, 1, "A.java", 4);
+		deletedEarlier.setDeleted(true);
+		index.merge(deletedEarlier);
+
+		List<CommentAnchorService.Position> positions = CommentAnchorService.sourcePositions(index,
+				List.of(anchor(20L, 2, 7, false), anchor(21L, 2, 8, false)), 2, "A.java");
+
+		// 回复、其他文件、已删除的评论和已删除评论的位置都不参与定位
+		assertEquals(List.of(new CommentAnchorService.Position(20L, 7, false),
+				new CommentAnchorService.Position(10L, 5, false)), positions);
+	}
+
+	@Test
+	void chainsPositionsAcrossVersions() {
+		List<String> versions = List.of(
+				"a\nb\nc\n",
+				"x\na\nb\nc\n",
+				"x\na\nc\n",
+				"x\na\nB\nc\n");
+		CommentLineIndex index = new CommentLineIndex();
+		// v1 第 2 行（b），v2 第 1 行（x）
+		index.merge(comment(1L, null, 1, "A.java", 2));
+		index.merge(comment(2L, null, 2, "A.java", 1));
+
+		List<CommentAnchor> previous = List.of();
+		List<List<CommentAnchor>> history = new ArrayList<>();
+		for (int version = 2; version <= versions.size(); version++) {
+			List<CommentAnchorService.Position> positions = CommentAnchorService.sourcePositions(index, previous,
+					version - 1, "A.java");
+			previous = CommentAnchorService.relocate(positions, versions.get(version - 2), versions.get(version - 1),
+					1L, version, "A.java");
+			history.add(previous);
+		}
+
+		// v2: b 下移到第 3 行；v3: b 被删除后过时；v4: 同内容的行再次出现也不恢复
+		assertEquals(Arrays.asList(3), lines(history.get(0)));
+		assertEquals(Arrays.asList(null, 1), lines(history.get(1)));
+		assertEquals(Arrays.asList(null, 1), lines(history.get(2)));
+		assertTrue(history.get(2).get(0).getOutdated());
+		assertFalse(history.get(2).get(1).getOutdated());
+	}
+
+	private static List<Integer> lines(List<CommentAnchor> anchors) {
+		return anchors.stream().map(CommentAnchor::getLineNumber).toList();
+	}
+
+	private static CommentAnchor anchor(Long commentId, Integer version, Integer line, boolean outdated) {
+		CommentAnchor anchor = new CommentAnchor();
+		anchor.setCommentId(commentId);
+		anchor.setRoomId(1L);
+		anchor.setSnapshotVersion(version);
+		anchor.setFilePath("A.java");
+		anchor.setLineNumber(line);
+		anchor.setOutdated(outdated);
+		return anchor;
+	}
+
+	private static ReviewComment comment(Long id, Long parentId, Integer version, String filePath, Integer line) {
+		ReviewComment comment = new ReviewComment();
+		comment.setId(id);
+		comment.setRoomId(1L);
+		comment.setParentId(parentId);
+		comment.setSnapshotVersion(version);
+		comment.setFilePath(filePath);
+		comment.setLineNumber(line);
+		comment.setContent("c" + id);
+		comment.setRevision(1);
+		comment.setDeleted(false);
+		comment.setAuthorId(1L);
+		return comment;
+	}
+}
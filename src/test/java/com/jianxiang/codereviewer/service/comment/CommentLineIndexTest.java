@@ -0,0 +1,67 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class CommentLineIndexTest {
+
+	@Test
+	void rangeReturnsTopLevelCommentsOrderedByLine() {
+		CommentLineIndex index = new CommentLineIndex();
+		index.merge(comment(1L, null, 1, "A.java", 150, 1));
+		index.merge(comment(2L, null, 1, "A.java", 120, 1));
+		index.merge(comment(3L, null, 1, "A.java", 250, 1));
+		index.merge(comment(4L, null, 2, "A.java", 130, 1));
+		index.merge(comment(5L, 2L, 1, "A.java", 120, 1));
+
+		assertEquals(List.of(2L, 1L), ids(index.range(1, "A.java", 100, 200)));
+		assertEquals(List.of(2L, 4L, 1L), ids(index.range(null, "A.java", 100, 200)));
+	}
+
+	@Test
+	void threadExpandsNestedRepliesAndMoveKeepsIndexConsistent() {
+		CommentLineIndex index = new CommentLineIndex();
+		index.merge(comment(1L, null, 1, "A.java", 10, 1));
+		index.merge(comment(2L, 1L, 1, "A.java", 10, 1));
+		index.merge(comment(3L, 2L, 1, "A.java", 10, 1));
+		index.merge(comment(4L, 1L, 1, "A.java", 10, 1));
+
+		assertEquals(List.of(1L, 2L, 4L, 3L), ids(index.thread(1L)));
+
+		// 行号修改后旧位置不再命中；修订号更小的版本不会覆盖
+		index.merge(comment(1L, null, 1, "A.java", 40, 2));
+		assertEquals(List.of(), ids(index.range(1, "A.java", 1, 20)));
+		assertFalse(index.merge(comment(1L, null, 1, "A.java", 10, 1)));
+		assertEquals(List.of(1L), ids(index.range(1, "A.java", 30, 50)));
+
+		// 删除后区间查询不再返回，评论串保留墓碑
+		ReviewComment tombstone = comment(1L, null, 1, "A.java", 40, 3);
+		tombstone.setDeleted(true);
+		index.merge(tombstone);
+		assertEquals(List.of(), ids(index.range(1, "A.java", 30, 50)));
+		assertEquals(List.of(1L, 2L, 4L, 3L), ids(index.thread(1L)));
+	}
+
+	private static ReviewComment comment(Long id, Long parentId, Integer version, String filePath, Integer line,
+										 int revision) {
+		ReviewComment comment = new ReviewComment();
+		comment.setId(id);
+		comment.setRoomId(1L);
+		comment.setParentId(parentId);
+		comment.setSnapshotVersion(version);
+		comment.setFilePath(filePath);
+		comment.setLineNumber(line);
+		comment.setContent("c" + id);
+		comment.setRevision(revision);
+		return comment;
+	}
+
+	private static List<Long> ids(List<ReviewComment> comments) {
+		return comments.stream().map(ReviewComment::getId).toList();
+	}
+}
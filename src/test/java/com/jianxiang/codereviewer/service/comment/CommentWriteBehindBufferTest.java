@@ -0,0 +1,106 @@
+package com.jianxiang.codereviewer.service.comment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.common.cluster.ClusterInvalidationBus;
+import com.jianxiang.codereviewer.common.config.JacksonConfig;
+import com.jianxiang.codereviewer.domain.entity.ReviewComment;
+import com.jianxiang.codereviewer.domain.repository.ReviewCommentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CommentWriteBehindBufferTest {
+
+	private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+
+	private final ClusterInvalidationBus clusterInvalidationBus = mock(ClusterInvalidationBus.class);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void deadLettersOnlyTheBadRow() throws IOException {
+		ReviewCommentRepository repository = mock(ReviewCommentRepository.class);
+		List<Long> written = new ArrayList<>();
+		when(repository.upsertAll(anyList())).thenAnswer(invocation -> {
+			List<ReviewComment> batch = invocation.getArgument(0);
+			if (batch.stream().anyMatch(comment -> comment.getId() == 7L)) {
+				return Mono.error(new DataIntegrityViolationException("Data too long for column 'file_path'"));
+			}
+			batch.forEach(comment -> written.add(comment.getId()));
+			return Mono.just((long) batch.size());
+		});
+		CommentWriteBehindBuffer buffer = newBuffer(repository);
+		for (long id = 1; id <= 10; id++) {
+			buffer.enqueue(comment(id));
+		}
+
+		buffer.flushAll().block();
+
+		assertEquals(0, buffer.size(), "坏数据不应阻塞缓冲区");
+		assertEquals(9, written.size());
+		assertFalse(written.contains(7L));
+		List<String> deadLetters = Files.readAllLines(directory.resolve("dead-letter.ndjson"), StandardCharsets.UTF_8);
+		assertEquals(1, deadLetters.size());
+		assertEquals(7L, objectMapper.readValue(deadLetters.get(0), ReviewComment.class).getId());
+		verify(clusterInvalidationBus, atLeastOnce()).publish(CommentWriteBehindBuffer.WRITTEN_TOPIC, "100");
+	}
+
+	@Test
+	void spillsOnShutdownAndRecoversOnStartup() {
+		ReviewCommentRepository unavailable = mock(ReviewCommentRepository.class);
+		when(unavailable.upsertAll(anyList()))
+				.thenReturn(Mono.error(new TransientDataAccessResourceException("connection refused")));
+		CommentWriteBehindBuffer buffer = newBuffer(unavailable);
+		buffer.enqueue(comment(1L));
+		buffer.enqueue(comment(2L));
+
+		buffer.shutdown();
+		assertTrue(Files.exists(directory.resolve("pending.ndjson")), "连接失败的评论应转存到本地");
+		assertFalse(Files.exists(directory.resolve("dead-letter.ndjson")), "非数据错误不应转入死信");
+
+		CommentWriteBehindBuffer restarted = newBuffer(unavailable);
+		restarted.recoverSpilled();
+		assertEquals(2, restarted.size());
+		assertEquals("comment-2", restarted.pending(100L).get(1).getContent());
+		assertFalse(Files.exists(directory.resolve("pending.ndjson")));
+	}
+
+	private CommentWriteBehindBuffer newBuffer(ReviewCommentRepository repository) {
+		return new CommentWriteBehindBuffer(repository, objectMapper, clusterInvalidationBus, directory.toString(), 100, 16, 1000);
+	}
+
+	private static ReviewComment comment(long id) {
+		ReviewComment comment = new ReviewComment();
+		comment.setId(id);
+		comment.setRoomId(100L);
+		comment.setFilePath("src/Main.java");
+		comment.setLineNumber((int) id);
+		comment.setContent("comment-" + id);
+		comment.setRevision(1);
+		comment.setDeleted(false);
+		comment.setAuthorId(1L);
+		comment.setCreateTime(LocalDateTime.now());
+		comment.setUpdateTime(comment.getCreateTime());
+		return comment;
+	}
+}
@@ -0,0 +1,59 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomEventJournalTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void appendCallbacksRunInSeqOrder() throws Exception {
+		RoomEventJournal journal = new RoomEventJournal(new ObjectMapper(), new RoomJournalOwnership(null, "", 60_000),
+				true, directory.toString(), 1 << 16, "INTERVAL");
+		List<Long> applied = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch firstEntered = new CountDownLatch(1);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+
+		// seq 1 的回调阻塞期间另一个会话追加 seq 2：seq 2 不能先于 seq 1 应用
+		CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> journal.append("ROOM1",
+				MessageType.CODE_UPDATE, 1L, "a", Map.of("n", 1), event -> {
+					firstEntered.countDown();
+					try {
+						releaseFirst.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					applied.add(event.seq());
+				}).block());
+		assertTrue(firstEntered.await(5, TimeUnit.SECONDS));
+		CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> journal.append("ROOM1",
+				MessageType.CODE_UPDATE, 2L, "b", Map.of("n", 2), event -> applied.add(event.seq())).block());
+
+		Thread.sleep(200);
+		assertFalse(second.isDone(), "seq 1 的回调完成前不应写入 seq 2");
+		assertTrue(applied.isEmpty());
+
+		releaseFirst.countDown();
+		assertEquals(1L, first.get(5, TimeUnit.SECONDS));
+		assertEquals(2L, second.get(5, TimeUnit.SECONDS));
+		assertEquals(List.of(1L, 2L), applied);
+		journal.close();
+	}
+}
@@ -0,0 +1,147 @@
+package com.jianxiang.codereviewer.service.journal;
+
+import com.jianxiang.codereviewer.websocket.message.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomJournalTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readsBackAcrossSegmentsAndRestarts() throws IOException {
+		RoomJournal journal = new RoomJournal(directory, 1024);
+		for (int i = 1; i <= 100; i++) {
+			RoomEvent event = journal.append(1000L + i, MessageType.CODE_UPDATE, (long) i % 3, "user" + i,
+					("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+			assertEquals(i, event.seq());
+		}
+		journal.close();
+		assertTrue(RoomJournal.segments(directory).size() > 1, "应滚动到新的段文件");
+		assertEquals(100, RoomJournalReader.lastSeq(directory));
+		assertEquals(0, RoomJournalReader.lastSeq(directory.resolve("missing")));
+
+		RoomJournal reopened = new RoomJournal(directory, 1024);
+		assertEquals(100, reopened.lastSeq());
+		assertEquals(101, reopened.append(2000L, MessageType.ROOM_STATUS_CHANGE, null, null, new byte[0]).seq());
+		reopened.close();
+
+		List<RoomEvent> events = readAll(40);
+		assertEquals(62, events.size());
+		assertEquals(40, events.get(0).seq());
+		assertEquals("user40", events.get(0).senderUsername());
+		assertEquals(1L, events.get(0).senderId());
+		assertArrayEquals("{\"n\":40}".getBytes(StandardCharsets.UTF_8), events.get(0).payload());
+		assertEquals(MessageType.ROOM_STATUS_CHANGE, events.get(61).type());
+		assertNull(events.get(61).senderId());
+	}
+
+	@Test
+	void tryAppendLeavesRollToCallerAndForceFlushesRetiredSegments() throws IOException {
+		RoomJournal journal = new RoomJournal(directory, 1024);
+		byte[] payload = "x".repeat(200).getBytes(StandardCharsets.UTF_8);
+		int appended = 0;
+		while (journal.tryAppend(1000L + appended, MessageType.CODE_UPDATE, 1L, "a", payload) != null) {
+			appended++;
+		}
+		assertTrue(appended > 0);
+		assertEquals(1, RoomJournal.segments(directory).size(), "只写内存映射的追加不应滚动");
+
+		// 放不下时由调用方改用 append 滚动，滚动前的段文件在下一次 force 时刷盘
+		assertEquals(appended + 1, journal.append(2000L, MessageType.CODE_UPDATE, 1L, "a", payload).seq());
+		assertEquals(2, RoomJournal.segments(directory).size());
+		journal.force();
+		journal.close();
+		assertNull(journal.tryAppend(3000L, MessageType.CODE_UPDATE, 1L, "a", payload));
+
+		assertEquals(appended + 1, readAll(1).size());
+	}
+
+	@Test
+	void truncatesTornTailOnRecovery() throws IOException {
+		RoomJournal journal = new RoomJournal(directory, 1 << 16);
+		journal.append(1L, MessageType.COMMENT_ADD, 7L, "a", "first".getBytes(StandardCharsets.UTF_8));
+		journal.append(2L, MessageType.COMMENT_ADD, 7L, "a", "second".getBytes(StandardCharsets.UTF_8));
+		journal.close();
+
+		// 模拟第二条记录写入中断：破坏记录体，CRC 不再匹配
+		Path segment = RoomJournal.segmentPath(directory, 1);
+		int firstRecord;
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer length = ByteBuffer.allocate(4);
+			channel.read(length, 0);
+			firstRecord = RoomJournal.HEADER_SIZE + length.flip().getInt();
+			channel.write(ByteBuffer.wrap(new byte[]{'X'}), firstRecord + RoomJournal.HEADER_SIZE + 2);
+		}
+
+		RoomJournal recovered = new RoomJournal(directory, 1 << 16);
+		assertEquals(1, recovered.lastSeq());
+		recovered.append(3L, MessageType.COMMENT_ADD, 7L, "a", "again".getBytes(StandardCharsets.UTF_8));
+		recovered.close();
+
+		List<RoomEvent> events = readAll(1);
+		assertEquals(2, events.size());
+		assertArrayEquals("again".getBytes(StandardCharsets.UTF_8), events.get(1).payload());
+	}
+
+	@Test
+	void seeksBySparseIndex() throws IOException {
+		RoomJournal journal = new RoomJournal(directory, 1 << 20);
+		for (int i = 1; i <= 5000; i++) {
+			journal.append(10_000L + i * 10L, MessageType.CODE_UPDATE, 1L, "u",
+					("{\"n\":" + i + "}").getBytes(StandardCharsets.UTF_8));
+		}
+		journal.close();
+		// 重启后由段文件重建索引
+		new RoomJournal(directory, 1 << 20).close();
+
+		RoomJournalIndex.Entry entry = RoomJournalIndex.floorBySeq(RoomJournalIndex.indexPath(directory, 1), 3000);
+		assertTrue(entry != null && entry.seq() > 1 && entry.seq() <= 3000, "应跳到段内靠近 3000 的位置");
+		assertEquals(3000, readAll(3000).get(0).seq());
+		assertEquals(2501, RoomJournalReader.seqAt(directory, 35_005L, Long.MAX_VALUE));
+		assertEquals(-1, RoomJournalReader.seqAt(directory, 99_999L, Long.MAX_VALUE));
+
+		try (RoomJournalReader reader = new RoomJournalReader(directory, 4001, 4100)) {
+			RoomJournalReader.Region region = reader.nextRegion(1000);
+			assertEquals(4001, region.firstSeq());
+			assertEquals(4100, region.lastSeq());
+			assertNull(reader.nextRegion(1000));
+
+			// 段文件被合并替换或清理后，已取得的区间仍可读出
+			for (long firstSeq : RoomJournal.segments(directory)) {
+				Files.delete(RoomJournal.segmentPath(directory, firstSeq));
+			}
+			ByteBuffer data = region.data().duplicate();
+			int length = RoomJournal.checkRecord(data, 0);
+			assertTrue(length > 0);
+			assertEquals(4001, RoomEventCodec.readSeq(data.slice(RoomJournal.HEADER_SIZE, length)));
+		}
+	}
+
+	private List<RoomEvent> readAll(long fromSeq) throws IOException {
+		List<RoomEvent> events = new ArrayList<>();
+		try (RoomJournalReader reader = new RoomJournalReader(directory, fromSeq, Long.MAX_VALUE)) {
+			RoomEvent event;
+			while ((event = reader.next()) != null) {
+				events.add(event);
+			}
+		}
+		return events;
+	}
+}
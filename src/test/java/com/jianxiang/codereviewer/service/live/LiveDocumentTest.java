@@ -0,0 +1,58 @@
+package com.jianxiang.codereviewer.service.live;
+
+import com.jianxiang.codereviewer.websocket.message.payload.CodeUpdatePayload;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiveDocumentTest {
+
+	@Test
+	void appliesLineOperationsInOrder() {
+		LiveDocument document = new LiveDocument("A.java", 1, null, 100, "a\nb\nc\n");
+
+		assertTrue(document.apply(1L, 200, update("UPDATE", "B", 2, 2)));
+		assertTrue(document.apply(2L, 200, update("INSERT", "x", 1, null)));
+		assertTrue(document.apply(3L, 200, update("DELETE", null, 4, 4)));
+		assertTrue(document.apply(4L, 200, update("INSERT", "tail\n", 99, null)));
+
+		assertEquals("x\na\nB\ntail\n", document.getContent());
+		assertEquals(4, document.getLastSeq());
+	}
+
+	@Test
+	void skipsUpdatesUpToSnapshotSeq() {
+		LiveDocument document = new LiveDocument("A.java", 2, 5L, 100_000, "old\n");
+
+		assertFalse(document.apply(5L, 100_500, update("UPDATE", "stale\n", null, null)),
+				"快照记录的序号之前的更新已包含在快照中，即使时间晚于快照的秒级创建时间");
+		assertTrue(document.apply(6L, 99_000, update("UPDATE", "new\n", null, null)),
+				"快照之后的更新按序号应用，不受时间影响");
+
+		assertEquals("new\n", document.getContent());
+		assertEquals(6, document.getLastSeq());
+	}
+
+	@Test
+	void skipsReplayedAndPreSnapshotUpdatesWithoutSnapshotSeq() {
+		LiveDocument document = new LiveDocument("A.java", 2, null, 100, "old\n");
+
+		assertFalse(document.apply(1L, 50, update("UPDATE", "stale\n", null, null)), "快照之前的更新已包含在快照中");
+		assertTrue(document.apply(2L, 150, update("UPDATE", "new\n", null, null)));
+		assertFalse(document.apply(2L, 150, update("UPDATE", "again\n", null, null)), "重复序号应被跳过");
+
+		assertEquals("new\n", document.getContent());
+	}
+
+	private static CodeUpdatePayload update(String operation, String content, Integer startLine, Integer endLine) {
+		return CodeUpdatePayload.builder()
+				.filePath("A.java")
+				.operation(operation)
+				.content(content)
+				.startLine(startLine)
+				.endLine(endLine)
+				.build();
+	}
+}
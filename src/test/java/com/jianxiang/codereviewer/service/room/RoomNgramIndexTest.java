@@ -0,0 +1,52 @@
+package com.jianxiang.codereviewer.service.room;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomNgramIndexTest {
+
+	@Test
+	void ranksExactThenPrefixThenWordPrefixThenSubstring() {
+		RoomNgramIndex index = new RoomNgramIndex();
+		index.put(1L, "Order Service Review", "WAITING");
+		index.put(2L, "order", "WAITING");
+		index.put(3L, "Reorder Fix", "WAITING");
+		index.put(4L, "Payment order sync", "WAITING");
+
+		assertEquals(List.of(2L, 1L, 4L, 3L), index.search("Order", null, 10));
+	}
+
+	@Test
+	void filtersByStatusAndHonoursLimit() {
+		RoomNgramIndex index = new RoomNgramIndex();
+		index.put(1L, "gateway-a", "WAITING");
+		index.put(2L, "gateway-b", "IN_PROGRESS");
+		index.put(3L, "gateway-c", "IN_PROGRESS");
+
+		assertEquals(List.of(3L, 2L), index.search("gate", "IN_PROGRESS", 10));
+		assertEquals(1, index.search("gateway", null, 1).size());
+	}
+
+	@Test
+	void renameReplacesOldGrams() {
+		RoomNgramIndex index = new RoomNgramIndex();
+		index.put(1L, "alpha", "WAITING");
+		index.put(1L, "beta", "WAITING");
+
+		assertTrue(index.search("alp", null, 10).isEmpty());
+		assertEquals(List.of(1L), index.search("et", null, 10));
+	}
+
+	@Test
+	void trigramCandidatesAreVerifiedAsSubstring() {
+		RoomNgramIndex index = new RoomNgramIndex();
+		// 含有 abc 和 bcd 两个 trigram，但不包含 abcd
+		index.put(1L, "abc-bcd", "WAITING");
+
+		assertTrue(index.search("abcd", null, 10).isEmpty());
+	}
+}
@@ -0,0 +1,149 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import com.jianxiang.codereviewer.common.exception.BusinessException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitRepositoryReaderTest {
+
+	@TempDir
+	Path repository;
+
+	private GitRepositoryReader reader;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		assumeTrue(git("init", "-q") == 0, "需要本地 git");
+		git("config", "user.email", "test@example.com");
+		git("config", "user.name", "test");
+		reader = new GitRepositoryReader("git", repository, 10000);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	@Test
+	void listsTreeAndChangedFiles() throws Exception {
+		write("src/A.java", "class A {}\n");
+		write("docs/read me.md", "# doc\n");
+		commit("first");
+		String first = reader.resolveCommit("HEAD");
+
+		write("src/A.java", "class A { int x; }\n");
+		write("src/B.java", "class B {}\n");
+		Files.delete(repository.resolve("docs/read me.md"));
+		commit("second");
+		String second = reader.resolveCommit("HEAD");
+
+		List<GitRepositoryReader.Entry> tree = reader.listTree(second);
+		assertEquals(List.of("src/A.java", "src/B.java"), tree.stream().map(GitRepositoryReader.Entry::path).toList());
+		assertEquals(19, tree.get(0).size());
+		assertArrayEquals("class A { int x; }\n".getBytes(StandardCharsets.UTF_8),
+				reader.readBlob(tree.get(0).objectId(), 1024));
+		assertNull(reader.readBlob(tree.get(0).objectId(), 5));
+		// 跳过超大内容后同一个 cat-file 进程继续读取下一个对象
+		assertArrayEquals("class B {}\n".getBytes(StandardCharsets.UTF_8),
+				reader.readBlob(tree.get(1).objectId(), 1024));
+		assertThrows(BusinessException.class, () -> reader.readBlob("0123456789abcdef0123456789abcdef01234567", 1024));
+		assertArrayEquals("class B {}\n".getBytes(StandardCharsets.UTF_8),
+				reader.readBlob(tree.get(1).objectId(), 1024));
+
+		List<GitRepositoryReader.Entry> changed = reader.listChanged(first, second);
+		assertEquals(List.of("src/A.java", "src/B.java"), changed.stream().map(GitRepositoryReader.Entry::path).toList());
+		assertEquals(tree.get(1).objectId(), changed.get(1).objectId());
+	}
+
+	@Test
+	void timesOutHungGit() throws Exception {
+		Path hungGit = repository.resolve("hung-git.sh");
+		Files.writeString(hungGit, "#!/bin/sh\nsleep 30\n");
+		assumeTrue(hungGit.toFile().setExecutable(true), "需要可执行脚本");
+		try (GitRepositoryReader hung = new GitRepositoryReader(hungGit.toString(), repository, 300)) {
+			long start = System.nanoTime();
+			assertThrows(BusinessException.class, () -> hung.listTree("HEAD"));
+			assertThrows(BusinessException.class, () -> hung.readBlob("0123456789abcdef", 1024));
+			assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "应在超时后结束 git 进程");
+		}
+	}
+
+	@Test
+	void readsBlobsConcurrentlyFromPool() throws Exception {
+		for (int i = 0; i < 16; i++) {
+			write("src/F" + i + ".java", "class F" + i + " {}\n");
+		}
+		commit("files");
+		List<GitRepositoryReader.Entry> tree = reader.listTree(reader.resolveCommit("HEAD"));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (GitRepositoryReader pooled = new GitRepositoryReader("git", repository, 10000, 4)) {
+			List<Future<byte[]>> reads = new ArrayList<>();
+			for (int round = 0; round < 4; round++) {
+				for (GitRepositoryReader.Entry entry : tree) {
+					reads.add(executor.submit(() -> pooled.readBlob(entry.objectId(), 1024)));
+				}
+			}
+			for (int i = 0; i < reads.size(); i++) {
+				GitRepositoryReader.Entry entry = tree.get(i % tree.size());
+				String name = entry.path().substring("src/".length(), entry.path().length() - ".java".length());
+				assertArrayEquals(("class " + name + " {}\n").getBytes(StandardCharsets.UTF_8),
+						reads.get(i).get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void rejectsOptionLikeRevision() {
+		assertThrows(BusinessException.class,
+				() -> reader.resolveCommit("--output=/tmp/x"));
+	}
+
+	private void write(String path, String content) throws IOException {
+		Path file = repository.resolve(path);
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, content);
+	}
+
+	private void commit(String message) throws Exception {
+		git("add", "-A");
+		git("commit", "-q", "-m", message);
+	}
+
+	private int git(String... args) throws Exception {
+		String[] command = new String[args.length + 3];
+		command[0] = "git";
+		command[1] = "-C";
+		command[2] = repository.toString();
+		System.arraycopy(args, 0, command, 3, args.length);
+		try {
+			return new ProcessBuilder(command).redirectErrorStream(true)
+					.redirectOutput(ProcessBuilder.Redirect.DISCARD).start().waitFor();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+}
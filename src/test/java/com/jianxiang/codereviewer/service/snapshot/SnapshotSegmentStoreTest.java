@@ -0,0 +1,72 @@
+package com.jianxiang.codereviewer.service.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnapshotSegmentStoreTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readsBackAcrossSegmentsAndRestarts() throws IOException {
+		SnapshotSegmentStore store = new SnapshotSegmentStore(directory.toString(), "local", 256);
+		List<byte[]> contents = new ArrayList<>();
+		List<SnapshotSegmentStore.Locator> locators = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			byte[] data = ("content-" + i + "-".repeat(i * 3)).getBytes(StandardCharsets.UTF_8);
+			contents.add(data);
+			locators.add(store.append(data));
+			// 追加过程中读取，触发重新映射
+			assertArrayEquals(data, store.read(locators.get(i)));
+		}
+		store.sync();
+		assertTrue(locators.get(19).segmentId() > 1, "应滚动到新的段文件");
+		store.close();
+
+		SnapshotSegmentStore reopened = new SnapshotSegmentStore(directory.toString(), "local", 256);
+		for (int i = 0; i < contents.size(); i++) {
+			assertArrayEquals(contents.get(i), reopened.read(locators.get(i)));
+		}
+		SnapshotSegmentStore.Locator next = reopened.append("after restart".getBytes(StandardCharsets.UTF_8));
+		assertTrue(next.segmentId() >= locators.get(19).segmentId(), "重启后应继续写最后一个段文件");
+		assertArrayEquals("after restart".getBytes(StandardCharsets.UTF_8), reopened.read(next));
+		reopened.close();
+	}
+
+	@Test
+	void detectsCorruptedRecord() throws IOException {
+		SnapshotSegmentStore store = new SnapshotSegmentStore(directory.toString(), "local", 1 << 20);
+		SnapshotSegmentStore.Locator locator = store.append("hello segment".getBytes(StandardCharsets.UTF_8));
+		store.close();
+
+		try (FileChannel channel = FileChannel.open(directory.resolve("segment-000001.seg"), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{'X'}), locator.offset());
+		}
+		SnapshotSegmentStore reopened = new SnapshotSegmentStore(directory.toString(), "local", 1 << 20);
+		assertThrows(IOException.class, () -> reopened.read(locator));
+	}
+
+	@Test
+	void rejectsLocatorFromAnotherStore() throws IOException {
+		SnapshotSegmentStore store = new SnapshotSegmentStore(directory.toString(), "local", 1 << 20);
+		SnapshotSegmentStore.Locator locator = store.append("hello segment".getBytes(StandardCharsets.UTF_8));
+		store.close();
+
+		SnapshotSegmentStore other = new SnapshotSegmentStore(directory.toString(), "other", 1 << 20);
+		assertThrows(IOException.class, () -> other.read(locator), "其他存储的位置不能按编号读取本地段文件");
+	}
+}
@@ -0,0 +1,56 @@
+package com.jianxiang.codereviewer.websocket.capture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrafficCaptureTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recordsAndReadsBackConnectionTraffic() throws IOException {
+		TrafficRecorder recorder = new TrafficRecorder(true, directory.toString(), 1 << 20, 1 << 20);
+		long first = recorder.open("ROOM01", 7L, "alice");
+		long second = recorder.open("ROOM01", 8L, "bob");
+		recorder.frame(first, "{\"type\":\"CODE_CURSOR\"}");
+		recorder.flush();
+		recorder.frame(second, "{\"type\":\"COMMENT_ADD\",\"payload\":{\"content\":\"评论\"}}");
+		recorder.close(first);
+		recorder.shutdown();
+
+		Path capture;
+		try (Stream<Path> files = Files.list(directory)) {
+			List<Path> captures = files.toList();
+			assertEquals(1, captures.size(), "多次写入应追加到同一个抓包文件");
+			capture = captures.get(0);
+		}
+		try (TrafficCapture.Reader reader = TrafficCapture.open(capture)) {
+			TrafficCapture.Record open = reader.next();
+			assertEquals(TrafficCapture.Kind.OPEN, open.kind());
+			assertEquals("ROOM01", open.roomCode());
+			assertEquals(7L, open.userId());
+			assertEquals("alice", open.username());
+
+			assertEquals(second, reader.next().connectionId());
+			TrafficCapture.Record cursor = reader.next();
+			assertEquals(first, cursor.connectionId());
+			assertEquals("{\"type\":\"CODE_CURSOR\"}", cursor.payload());
+			TrafficCapture.Record comment = reader.next();
+			assertEquals("{\"type\":\"COMMENT_ADD\",\"payload\":{\"content\":\"评论\"}}", comment.payload());
+			assertTrue(comment.offsetMicros() >= cursor.offsetMicros());
+			assertEquals(TrafficCapture.Kind.CLOSE, reader.next().kind());
+			assertNull(reader.next());
+		}
+	}
+}